@@ -0,0 +1,99 @@
+/*
+ * Copyright 2015 Ross Binden
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seventh_root.ld33.benchmarks;
+
+/**
+ * The solid tiles of a square map along with where to find a path from and to.
+ * Tiles are laid out from 1 to size - 1 on each axis, like a world, so the first row and column are always solid.
+ */
+public class Layout {
+
+    private final int size;
+    private final boolean[] solid;
+    private int startX = 1;
+    private int startY = 1;
+    private int goalX;
+    private int goalY;
+
+    Layout(int size) {
+        this.size = size;
+        this.solid = new boolean[size * size];
+        goalX = size - 2;
+        goalY = size - 2;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public boolean isSolid(int x, int y) {
+        return x <= 0 || y <= 0 || x >= size || y >= size || solid[x * size + y];
+    }
+
+    void setSolid(int x, int y, boolean solid) {
+        if (x > 0 && y > 0 && x < size && y < size) this.solid[x * size + y] = solid;
+    }
+
+    /**
+     * Makes the square of tiles the given distance from the centre on either axis solid, leaving out the given gaps.
+     *
+     * @param centreX the x coordinate of the centre
+     * @param centreY the y coordinate of the centre
+     * @param radius the distance of the ring from the centre
+     * @param gaps the tiles to leave open, as x and y coordinate pairs
+     */
+    void addRing(int centreX, int centreY, int radius, int... gaps) {
+        for (int i = -radius; i <= radius; i++) {
+            setSolid(centreX + i, centreY - radius, true);
+            setSolid(centreX + i, centreY + radius, true);
+            setSolid(centreX - radius, centreY + i, true);
+            setSolid(centreX + radius, centreY + i, true);
+        }
+        for (int i = 0; i + 1 < gaps.length; i += 2) {
+            setSolid(gaps[i], gaps[i + 1], false);
+        }
+    }
+
+    public int getStartX() {
+        return startX;
+    }
+
+    public int getStartY() {
+        return startY;
+    }
+
+    public int getGoalX() {
+        return goalX;
+    }
+
+    public int getGoalY() {
+        return goalY;
+    }
+
+    void setStart(int x, int y) {
+        startX = x;
+        startY = y;
+        setSolid(x, y, false);
+    }
+
+    void setGoal(int x, int y) {
+        goalX = x;
+        goalY = y;
+        setSolid(x, y, false);
+    }
+
+}
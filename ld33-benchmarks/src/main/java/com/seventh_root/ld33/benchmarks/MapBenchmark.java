@@ -0,0 +1,75 @@
+/*
+ * Copyright 2015 Ross Binden
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seventh_root.ld33.benchmarks;
+
+import com.seventh_root.ld33.common.pathfinding.Heuristic;
+import com.seventh_root.ld33.common.pathfinding.Map;
+import com.seventh_root.ld33.common.pathfinding.NodeFactoryImpl;
+import com.seventh_root.ld33.common.pathfinding.NodeImpl;
+import com.seventh_root.ld33.common.pathfinding.SearchAlgorithm;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Measures a single search over a bare pathfinding map, with none of the world's caching in front of it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(SECONDS)
+public class MapBenchmark {
+
+    @Param
+    private Scenario scenario;
+
+    @Param({"100", "500", "2000"})
+    private int size;
+
+    @Param
+    private SearchAlgorithm algorithm;
+
+    private Map<NodeImpl> map;
+    private Layout layout;
+
+    @Setup
+    public void setUp() {
+        layout = scenario.generate(size);
+        map = new Map<>(size, size, new NodeFactoryImpl());
+        map.setHeuristic(Heuristic.MANHATTAN);
+        map.setSearchAlgorithm(algorithm);
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                if (layout.isSolid(x, y)) map.setWalkable(x, y, false);
+            }
+        }
+    }
+
+    @Benchmark
+    public List<NodeImpl> findPath() {
+        return map.findPath(layout.getStartX(), layout.getStartY(), layout.getGoalX(), layout.getGoalY());
+    }
+
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2015 Ross Binden
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seventh_root.ld33.benchmarks;
+
+import java.util.Random;
+
+/**
+ * The maps paths are searched for over in benchmarks. Every scenario is generated from a fixed seed, so each run
+ * searches the same map.
+ */
+public enum Scenario {
+
+    /**
+     * A path from corner to corner across a field with a tenth of its tiles solid.
+     */
+    OPEN_FIELD {
+        @Override
+        void generate(Layout layout, Random random) {
+            scatter(layout, random, 0.1D);
+            layout.setStart(1, 1);
+            layout.setGoal(layout.getSize() - 2, layout.getSize() - 2);
+        }
+    },
+
+    /**
+     * A path from corner to corner across a field with nothing on it, where jump point search should barely search.
+     */
+    EMPTY_FIELD {
+        @Override
+        void generate(Layout layout, Random random) {
+            layout.setStart(1, 1);
+            layout.setGoal(layout.getSize() - 2, layout.getSize() - 2);
+        }
+    },
+
+    /**
+     * A path from corner to corner through a maze of corridors one tile wide, with a single way through.
+     */
+    MAZE {
+        @Override
+        void generate(Layout layout, Random random) {
+            int size = layout.getSize();
+            for (int x = 1; x < size; x++) {
+                for (int y = 1; y < size; y++) {
+                    layout.setSolid(x, y, true);
+                }
+            }
+            // Carve out corridors between the odd tiles depth first, so there are no loops
+            int cells = (size - 1) / 2;
+            boolean[] visited = new boolean[cells * cells];
+            int[] stack = new int[cells * cells];
+            int depth = 0;
+            stack[depth++] = 0;
+            visited[0] = true;
+            layout.setSolid(1, 1, false);
+            int[] directions = new int[4];
+            while (depth > 0) {
+                int cell = stack[depth - 1];
+                int cellX = cell / cells;
+                int cellY = cell % cells;
+                int count = 0;
+                if (cellX > 0 && !visited[cell - cells]) directions[count++] = -cells;
+                if (cellX < cells - 1 && !visited[cell + cells]) directions[count++] = cells;
+                if (cellY > 0 && !visited[cell - 1]) directions[count++] = -1;
+                if (cellY < cells - 1 && !visited[cell + 1]) directions[count++] = 1;
+                if (count == 0) {
+                    depth--;
+                    continue;
+                }
+                int next = cell + directions[random.nextInt(count)];
+                int nextX = next / cells;
+                int nextY = next % cells;
+                layout.setSolid(cellX + nextX + 1, cellY + nextY + 1, false);
+                layout.setSolid(nextX * 2 + 1, nextY * 2 + 1, false);
+                visited[next] = true;
+                stack[depth++] = next;
+            }
+            layout.setStart(1, 1);
+            layout.setGoal(cells * 2 - 1, cells * 2 - 1);
+        }
+    },
+
+    /**
+     * A path from a corner to the centre through rings of walls, each with a gap on a different side to the last.
+     */
+    WALL_RINGS {
+        @Override
+        void generate(Layout layout, Random random) {
+            int centre = layout.getSize() / 2;
+            for (int radius = 4, side = 0; radius < centre - 1; radius += 4, side++) {
+                switch (side % 4) {
+                    case 0: layout.addRing(centre, centre, radius, centre, centre - radius); break;
+                    case 1: layout.addRing(centre, centre, radius, centre + radius, centre); break;
+                    case 2: layout.addRing(centre, centre, radius, centre, centre + radius); break;
+                    default: layout.addRing(centre, centre, radius, centre - radius, centre); break;
+                }
+            }
+            layout.setStart(1, 1);
+            layout.setGoal(centre, centre);
+        }
+    },
+
+    /**
+     * A path across an open field to a tile walled in on every side, so that a search has to give up.
+     */
+    UNREACHABLE_GOAL {
+        @Override
+        void generate(Layout layout, Random random) {
+            scatter(layout, random, 0.1D);
+            int centre = layout.getSize() / 2;
+            layout.setStart(1, 1);
+            layout.setGoal(centre, centre);
+            layout.addRing(centre, centre, 2);
+        }
+    };
+
+    private static final long SEED = 33L;
+
+    /**
+     * Generates the scenario on a map of the given size.
+     *
+     * @param size the width and height of the map
+     * @return the layout
+     */
+    public Layout generate(int size) {
+        Layout layout = new Layout(size);
+        generate(layout, new Random(SEED));
+        return layout;
+    }
+
+    abstract void generate(Layout layout, Random random);
+
+    private static void scatter(Layout layout, Random random, double density) {
+        for (int x = 1; x < layout.getSize(); x++) {
+            for (int y = 1; y < layout.getSize(); y++) {
+                if (random.nextDouble() < density) layout.setSolid(x, y, true);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2015 Ross Binden
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seventh_root.ld33.benchmarks;
+
+import com.seventh_root.ld33.common.world.Tile;
+import com.seventh_root.ld33.common.world.Wall;
+import com.seventh_root.ld33.common.world.World;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.UUID;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Measures finding a path in a world with its solid tiles taken up by walls. The path cache and flow fields are turned
+ * off, so every call searches, and the whole path is walked so that long paths found over chunks are filled in.
+ * <p>
+ * Walls are full units, so worlds of 2000 tiles across are left out to keep the heap of a fork reasonable; the map
+ * benchmark covers searches at that size.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(SECONDS)
+public class WorldBenchmark {
+
+    private static final UUID PLAYER_UUID = new UUID(0L, 0L);
+
+    @Param
+    private Scenario scenario;
+
+    @Param({"100", "500"})
+    private int size;
+
+    private World world;
+    private Tile start;
+    private Tile goal;
+
+    @Setup
+    public void setUp() {
+        Layout layout = scenario.generate(size);
+        world = new World(size, size);
+        world.getPathCache().setCapacity(0);
+        world.getFlowFieldCache().setThreshold(0);
+        long walls = 0;
+        for (int x = 1; x < size; x++) {
+            for (int y = 1; y < size; y++) {
+                if (layout.isSolid(x, y)) {
+                    Tile tile = world.getTileAt(x, y);
+                    tile.setUnit(new Wall(new UUID(1L, walls++), PLAYER_UUID, tile, 0L));
+                }
+            }
+        }
+        start = world.getTileAt(layout.getStartX(), layout.getStartY());
+        goal = world.getTileAt(layout.getGoalX(), layout.getGoalY());
+    }
+
+    @Benchmark
+    public void findPath(Blackhole blackhole) {
+        for (Tile tile : world.findPath(start, goal)) {
+            blackhole.consume(tile);
+        }
+    }
+
+}
@@ -22,6 +22,8 @@ import com.seventh_root.ld33.client.sound.SoundPlayer;
 import com.seventh_root.ld33.client.texture.TextureManager;
 import com.seventh_root.ld33.common.economy.EconomyManager;
 import com.seventh_root.ld33.common.encrypt.EncryptionManager;
+import com.seventh_root.ld33.common.network.ClientBoundPacketDecoder;
+import com.seventh_root.ld33.common.network.Protocol;
 import com.seventh_root.ld33.common.network.packet.serverbound.PlayerQuitServerBoundPacket;
 import com.seventh_root.ld33.common.network.packet.serverbound.ServerBoundPacket;
 import com.seventh_root.ld33.common.player.Player;
@@ -32,9 +34,6 @@ import io.netty.channel.EventLoopGroup;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.channel.socket.nio.NioSocketChannel;
-import io.netty.handler.codec.serialization.ClassResolvers;
-import io.netty.handler.codec.serialization.ObjectDecoder;
-import io.netty.handler.codec.serialization.ObjectEncoder;
 
 import javax.swing.*;
 import java.awt.*;
@@ -111,6 +110,7 @@ public class LD33Client extends JPanel {
     }
 
     public void connect(String address, int port) {
+        Protocol protocol = Protocol.getByName(System.getProperty("ld33.protocol", "binary"));
         EventLoopGroup group = new NioEventLoopGroup();
         try {
             Bootstrap bootstrap = new Bootstrap();
@@ -119,13 +119,8 @@ public class LD33Client extends JPanel {
                     .handler(new ChannelInitializer<SocketChannel>() {
                         @Override
                         public void initChannel(SocketChannel channel) throws Exception {
-                            channel.pipeline().addLast(
-                                    new ObjectEncoder(),
-                                    new ObjectDecoder(ClassResolvers.cacheDisabled(null)),
-                                    //new LD33ServerBoundPacketEncoder(),
-                                    //new LD33ClientBoundPacketDecoder(LD33Client.this),
-                                    new LD33ClientHandler(LD33Client.this)
-                            );
+                            protocol.addCodec(channel.pipeline(), new ClientBoundPacketDecoder());
+                            channel.pipeline().addLast(new LD33ClientHandler(LD33Client.this));
                         }
                     });
             channel = bootstrap.connect(address, port).sync().channel();
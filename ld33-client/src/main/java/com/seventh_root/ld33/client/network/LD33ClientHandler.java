@@ -116,6 +116,7 @@ public class LD33ClientHandler extends ChannelHandlerAdapter {
                     unit.setHealth(packet.getUnitHealth());
                     if (unit.getHealth() <= 0) {
                         unit.getTile().setUnit(null);
+                        Unit.uncacheUnit(unit);
                     }
                 }
             }
@@ -171,7 +171,7 @@ public class WorldPanel extends JPanel {
                             }
                             frontGraphics.drawImage(texture, (x * 64) + unit.getXOffset(), (y * 64) + unit.getYOffset(), null);
                             particleGraphics.setColor(Color.BLACK);
-                            if (unit.getAttackTarget() != null && ((abs(unit.getAttackTarget().getTile().getX() - unit.getTile().getX()) == 1 && unit.getAttackTarget().getTile().getY() == unit.getTile().getY()) || (abs(unit.getAttackTarget().getTile().getY() - unit.getTile().getY()) == 1 && unit.getAttackTarget().getTile().getX() == unit.getTile().getX()))) {
+                            if (unit.getAttackTarget() != null && world.getSpatialIndex().getDistance(unit, unit.getAttackTarget()) == 1) {
                                 int xStart = min(unit.getTile().getX(), unit.getAttackTarget().getTile().getX());
                                 int xEnd = max(unit.getTile().getX(), unit.getAttackTarget().getTile().getX());
                                 int yStart = min(unit.getTile().getY(), unit.getAttackTarget().getTile().getY());
@@ -14,18 +14,16 @@
  * limitations under the License.
  */
 
-package com.seventh_root.ld33.server.network;
+package com.seventh_root.ld33.common.database;
 
-import com.seventh_root.ld33.common.network.packet.clientbound.ClientBoundPacket;
-import io.netty.buffer.ByteBuf;
-import io.netty.channel.ChannelHandlerContext;
-import io.netty.handler.codec.MessageToByteEncoder;
+import java.sql.SQLException;
 
-public class LD33ClientBoundPacketEncoder extends MessageToByteEncoder<ClientBoundPacket> {
+/**
+ * A write to the database, made from values captured when it was asked for, so that it can be made on another thread.
+ */
+@FunctionalInterface
+public interface DatabaseWrite {
 
-    @Override
-    protected void encode(ChannelHandlerContext ctx, ClientBoundPacket msg, ByteBuf out) throws Exception {
-        msg.write(out);
-    }
+    void execute() throws SQLException;
 
 }
@@ -0,0 +1,31 @@
+/*
+ * Copyright 2015 Ross Binden
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seventh_root.ld33.common.database;
+
+/**
+ * Makes writes to the database in the order they are submitted, away from the threads that submit them.
+ */
+public interface DatabaseWriter {
+
+    /**
+     * Submits a write, to be made after every write submitted before it.
+     *
+     * @param write the write
+     */
+    void submit(DatabaseWrite write);
+
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2015 Ross Binden
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seventh_root.ld33.common.network;
+
+import com.seventh_root.ld33.common.network.packet.clientbound.*;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.MessageToMessageDecoder;
+
+import java.util.List;
+import java.util.UUID;
+
+import static com.seventh_root.ld33.common.network.packet.Packet.readByteArray;
+import static com.seventh_root.ld33.common.network.packet.Packet.readString;
+
+/**
+ * Reads client bound packets for the binary protocol, one from each frame.
+ */
+public class ClientBoundPacketDecoder extends MessageToMessageDecoder<ByteBuf> {
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
+        int id = in.readInt();
+        switch (id) {
+            case 0:
+                out.add(new PublicKeyClientBoundPacket(readByteArray(in)));
+                break;
+            case 1:
+                out.add(new PlayerLoginClientBoundPacket());
+                break;
+            case 2:
+                UUID joiningPlayerUUID = UUID.fromString(readString(in));
+                String joiningPlayerName = readString(in);
+                out.add(new PlayerJoinClientBoundPacket(joiningPlayerUUID, joiningPlayerName, in.readInt()));
+                break;
+            case 3:
+                UUID quittingPlayerUUID = UUID.fromString(readString(in));
+                out.add(new PlayerQuitClientBoundPacket(quittingPlayerUUID, readString(in)));
+                break;
+            case 4:
+                String loginResponseMessage = readString(in);
+                out.add(new PlayerLoginResponseClientBoundPacket(loginResponseMessage, in.readBoolean()));
+                break;
+            case 5:
+                UUID spawningUnitUUID = UUID.fromString(readString(in));
+                UUID spawningPlayerUUID = UUID.fromString(readString(in));
+                int spawningX = in.readInt();
+                int spawningY = in.readInt();
+                String spawningType = readString(in);
+                out.add(new UnitSpawnClientBoundPacket(spawningUnitUUID, spawningPlayerUUID, spawningX, spawningY, spawningType, in.readLong()));
+                break;
+            case 6:
+                UUID movingUnitUUID = UUID.fromString(readString(in));
+                int x = in.readInt();
+                int y = in.readInt();
+                int targetX = in.readInt();
+                out.add(new UnitMoveClientBoundPacket(movingUnitUUID, x, y, targetX, in.readInt()));
+                break;
+            case 7:
+                out.add(new ChatMessageClientBoundPacket(readString(in)));
+                break;
+            case 8:
+                UUID purchasingPlayerUUID = UUID.fromString(readString(in));
+                int purchaseX = in.readInt();
+                int purchaseY = in.readInt();
+                out.add(new UnitPurchaseClientBoundPacket(purchasingPlayerUUID, purchaseX, purchaseY, readString(in)));
+                break;
+            case 9:
+                UUID playerUUID = UUID.fromString(readString(in));
+                String playerName = readString(in);
+                out.add(new PlayerInformationClientBoundPacket(playerUUID, playerName, in.readInt()));
+                break;
+            case 10:
+                int width = in.readInt();
+                out.add(new WorldInformationClientBoundPacket(width, in.readInt()));
+                break;
+            case 11:
+                String damagedUnitUUID = readString(in);
+                out.add(new UnitDamageClientBoundPacket(damagedUnitUUID, in.readInt()));
+                break;
+            default:
+                throw new CorruptedFrameException("Unknown client bound packet id " + id);
+        }
+        if (in.isReadable()) {
+            throw new CorruptedFrameException(in.readableBytes() + " bytes left over after client bound packet " + id);
+        }
+    }
+
+}
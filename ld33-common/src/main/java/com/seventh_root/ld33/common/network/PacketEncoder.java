@@ -14,17 +14,20 @@
  * limitations under the License.
  */
 
-package com.seventh_root.ld33.client.network;
+package com.seventh_root.ld33.common.network;
 
-import com.seventh_root.ld33.common.network.packet.serverbound.ServerBoundPacket;
+import com.seventh_root.ld33.common.network.packet.Packet;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.MessageToByteEncoder;
 
-public class LD33ServerBoundPacketEncoder extends MessageToByteEncoder<ServerBoundPacket> {
+/**
+ * Writes packets for the binary protocol. The frame length is added after this by the pipeline.
+ */
+public class PacketEncoder extends MessageToByteEncoder<Packet> {
 
     @Override
-    protected void encode(ChannelHandlerContext ctx, ServerBoundPacket msg, ByteBuf out) throws Exception {
+    protected void encode(ChannelHandlerContext ctx, Packet msg, ByteBuf out) throws Exception {
         msg.write(out);
     }
 
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2015 Ross Binden
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seventh_root.ld33.common.network;
+
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelPipeline;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import io.netty.handler.codec.LengthFieldPrepender;
+import io.netty.handler.codec.serialization.ClassResolvers;
+import io.netty.handler.codec.serialization.ObjectDecoder;
+import io.netty.handler.codec.serialization.ObjectEncoder;
+
+/**
+ * The ways packets can be sent between the client and server. Both ends of a connection must use the same one.
+ */
+public enum Protocol {
+
+    /**
+     * Packets as written by {@link com.seventh_root.ld33.common.network.packet.Packet#write}, each in a frame that
+     * starts with its length, so a packet split across reads is only decoded once all of it has arrived.
+     */
+    BINARY,
+
+    /** Packets as serialized Java objects, which carry their class descriptors and so are much larger. */
+    SERIALIZATION;
+
+    /** The largest frame accepted, in bytes, not counting the length. */
+    public static final int MAX_FRAME_LENGTH = 1 << 20;
+
+    /**
+     * Adds the handlers that turn packets into bytes and back to the end of a pipeline, ahead of the handler for the
+     * packets themselves.
+     *
+     * @param pipeline the pipeline
+     * @param decoder the decoder for the packets this end receives, which is only used by the binary protocol
+     */
+    public void addCodec(ChannelPipeline pipeline, ChannelHandler decoder) {
+        switch (this) {
+            case BINARY:
+                pipeline.addLast(
+                        new LengthFieldBasedFrameDecoder(MAX_FRAME_LENGTH, 0, 4, 0, 4),
+                        new LengthFieldPrepender(4),
+                        decoder,
+                        new PacketEncoder()
+                );
+                break;
+            case SERIALIZATION:
+                pipeline.addLast(
+                        new ObjectEncoder(),
+                        new ObjectDecoder(ClassResolvers.cacheDisabled(null))
+                );
+                break;
+        }
+    }
+
+    /**
+     * Gets the protocol with the given name, such as "binary" or "serialization".
+     *
+     * @param name the name
+     * @return the protocol
+     * @throws IllegalArgumentException if there is no protocol with the name
+     */
+    public static Protocol getByName(String name) {
+        return valueOf(name.toUpperCase().replace('-', '_'));
+    }
+
+}
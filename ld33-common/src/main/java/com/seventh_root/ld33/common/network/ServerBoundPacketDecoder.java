@@ -0,0 +1,97 @@
+/*
+ * Copyright 2015 Ross Binden
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seventh_root.ld33.common.network;
+
+import com.seventh_root.ld33.common.network.packet.serverbound.*;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.MessageToMessageDecoder;
+
+import java.util.List;
+import java.util.UUID;
+
+import static com.seventh_root.ld33.common.network.packet.Packet.readByteArray;
+import static com.seventh_root.ld33.common.network.packet.Packet.readString;
+
+/**
+ * Reads server bound packets for the binary protocol, one from each frame.
+ */
+public class ServerBoundPacketDecoder extends MessageToMessageDecoder<ByteBuf> {
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
+        int id = in.readInt();
+        switch (id) {
+            case 0:
+                out.add(new PublicKeyServerBoundPacket(readByteArray(in)));
+                break;
+            case 1:
+                String playerName = readString(in);
+                byte[] encryptedPassword = readByteArray(in);
+                out.add(new PlayerLoginServerBoundPacket(playerName, encryptedPassword, in.readBoolean()));
+                break;
+            case 2:
+                out.add(new PlayerJoinServerBoundPacket());
+                break;
+            case 3:
+                out.add(new PlayerQuitServerBoundPacket());
+                break;
+            case 4:
+                String loginResponseMessage = readString(in);
+                out.add(new PlayerLoginResponseServerBoundPacket(loginResponseMessage, in.readBoolean()));
+                break;
+            case 5:
+                UUID spawningUnitUUID = UUID.fromString(readString(in));
+                UUID spawningPlayerUUID = UUID.fromString(readString(in));
+                int spawningX = in.readInt();
+                int spawningY = in.readInt();
+                String spawningType = readString(in);
+                out.add(new UnitSpawnServerBoundPacket(spawningUnitUUID, spawningPlayerUUID, spawningX, spawningY, spawningType, in.readLong()));
+                break;
+            case 6:
+                UUID movingUnitUUID = UUID.fromString(readString(in));
+                int targetX = in.readInt();
+                out.add(new UnitMoveServerBoundPacket(movingUnitUUID, targetX, in.readInt()));
+                break;
+            case 7:
+                out.add(new ChatMessageServerBoundPacket(readString(in)));
+                break;
+            case 8:
+                int purchaseX = in.readInt();
+                int purchaseY = in.readInt();
+                out.add(new UnitPurchaseServerBoundPacket(purchaseX, purchaseY, readString(in)));
+                break;
+            case 9:
+                out.add(new PlayerInformationServerBoundPacket(UUID.fromString(readString(in))));
+                break;
+            case 10:
+                out.add(new WorldInformationServerBoundPacket());
+                break;
+            case 11:
+                String damagedUnitUUID = readString(in);
+                out.add(new UnitDamageServerBoundPacket(damagedUnitUUID, in.readInt()));
+                break;
+            default:
+                throw new CorruptedFrameException("Unknown server bound packet id " + id);
+        }
+        if (in.isReadable()) {
+            throw new CorruptedFrameException(in.readableBytes() + " bytes left over after server bound packet " + id);
+        }
+    }
+
+}
@@ -17,9 +17,11 @@
 package com.seventh_root.ld33.common.network.packet;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.CorruptedFrameException;
 
 import java.io.Serializable;
 import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
 
 public abstract class Packet implements Serializable {
 
@@ -29,8 +31,80 @@ public abstract class Packet implements Serializable {
         buf.writeInt(getId());
     }
 
+    /**
+     * Writes a string as the number of bytes in its UTF-8 encoding, as a variable-length int, followed by those
+     * bytes. Any character can be sent, including NUL.
+     *
+     * @param buf the buffer to write to
+     * @param string the string
+     */
     public void writeString(ByteBuf buf, String string) throws UnsupportedEncodingException {
-        buf.writeBytes((string + "\0").getBytes("utf8"));
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(buf, bytes.length);
+        buf.writeBytes(bytes);
+    }
+
+    /**
+     * Reads a string written by {@link #writeString(ByteBuf, String)}.
+     *
+     * @param buf the buffer to read from
+     * @return the string
+     * @throws CorruptedFrameException if the length is longer than what is left to read
+     */
+    public static String readString(ByteBuf buf) {
+        int length = readVarInt(buf);
+        if (length < 0 || length > buf.readableBytes()) throw new CorruptedFrameException("String of length " + length + " with only " + buf.readableBytes() + " bytes left");
+        String string = buf.toString(buf.readerIndex(), length, StandardCharsets.UTF_8);
+        buf.skipBytes(length);
+        return string;
+    }
+
+    /**
+     * Writes an int seven bits at a time, lowest first, with the top bit of each byte set if more follow, so that
+     * small values such as string lengths only take a byte.
+     *
+     * @param buf the buffer to write to
+     * @param value the value
+     */
+    public static void writeVarInt(ByteBuf buf, int value) {
+        while ((value & ~0x7F) != 0) {
+            buf.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buf.writeByte(value);
+    }
+
+    /**
+     * Reads an int written by {@link #writeVarInt(ByteBuf, int)}.
+     *
+     * @param buf the buffer to read from
+     * @return the value
+     * @throws CorruptedFrameException if the int runs past the end of the buffer or is longer than five bytes
+     */
+    public static int readVarInt(ByteBuf buf) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            if (!buf.isReadable()) throw new CorruptedFrameException("Unterminated variable-length int");
+            byte b = buf.readByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new CorruptedFrameException("Variable-length int longer than five bytes");
+    }
+
+    /**
+     * Reads an array of bytes written as its length followed by its contents.
+     *
+     * @param buf the buffer to read from
+     * @return the bytes
+     * @throws CorruptedFrameException if the length is longer than what is left to read
+     */
+    public static byte[] readByteArray(ByteBuf buf) {
+        int length = buf.readInt();
+        if (length < 0 || length > buf.readableBytes()) throw new CorruptedFrameException("Byte array of length " + length + " with only " + buf.readableBytes() + " bytes left");
+        byte[] bytes = new byte[length];
+        buf.readBytes(bytes);
+        return bytes;
     }
 
 }
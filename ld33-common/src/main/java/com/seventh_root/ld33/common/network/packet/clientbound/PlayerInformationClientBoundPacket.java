@@ -29,9 +29,13 @@ public class PlayerInformationClientBoundPacket extends ClientBoundPacket {
     private int playerResources;
 
     public PlayerInformationClientBoundPacket(Player player) {
-        this.playerUUID = player.getUUID().toString();
-        this.playerName = player.getName();
-        this.playerResources = player.getResources();
+        this(player.getUUID(), player.getName(), player.getResources());
+    }
+
+    public PlayerInformationClientBoundPacket(UUID playerUUID, String playerName, int playerResources) {
+        this.playerUUID = playerUUID.toString();
+        this.playerName = playerName;
+        this.playerResources = playerResources;
     }
 
     @Override
@@ -47,6 +47,7 @@ public class PlayerQuitClientBoundPacket extends ClientBoundPacket {
     @Override
     public void write(ByteBuf buf) throws UnsupportedEncodingException {
         super.write(buf);
+        writeString(buf, getPlayerUUID().toString());
         writeString(buf, getPlayerName());
     }
 }
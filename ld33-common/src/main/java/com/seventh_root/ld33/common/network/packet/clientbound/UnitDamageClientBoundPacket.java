@@ -16,6 +16,9 @@
 
 package com.seventh_root.ld33.common.network.packet.clientbound;
 
+import io.netty.buffer.ByteBuf;
+
+import java.io.UnsupportedEncodingException;
 import java.util.UUID;
 
 public class UnitDamageClientBoundPacket extends ClientBoundPacket {
@@ -41,4 +44,11 @@ public class UnitDamageClientBoundPacket extends ClientBoundPacket {
         return unitHealth;
     }
 
+    @Override
+    public void write(ByteBuf buf) throws UnsupportedEncodingException {
+        super.write(buf);
+        writeString(buf, unitUUID);
+        buf.writeInt(getUnitHealth());
+    }
+
 }
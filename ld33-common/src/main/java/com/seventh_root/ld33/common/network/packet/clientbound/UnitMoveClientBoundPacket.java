@@ -31,7 +31,11 @@ public class UnitMoveClientBoundPacket extends ClientBoundPacket {
     private int targetY;
 
     public UnitMoveClientBoundPacket(Unit unit, int x, int y, int targetX, int targetY) {
-        this.unitUUID = unit.getUUID().toString();
+        this(unit.getUUID(), x, y, targetX, targetY);
+    }
+
+    public UnitMoveClientBoundPacket(UUID unitUUID, int x, int y, int targetX, int targetY) {
+        this.unitUUID = unitUUID.toString();
         this.x = x;
         this.y = y;
         this.targetX = targetX;
@@ -33,17 +33,26 @@ public class UnitSpawnClientBoundPacket extends ClientBoundPacket {
     private long completionTime;
 
     public UnitSpawnClientBoundPacket(Unit unit) throws SQLException {
-        this.unitUUID = unit.getUUID().toString();
-        this.playerUUID = unit.getPlayer().getUUID().toString();
-        this.x = unit.getTile().getX();
-        this.y = unit.getTile().getY();
-        this.completionTime = unit.getCompletionTime();
+        this(unit.getUUID(), unit.getPlayer().getUUID(), unit.getTile().getX(), unit.getTile().getY(), getType(unit), unit.getCompletionTime());
+    }
+
+    public UnitSpawnClientBoundPacket(UUID unitUUID, UUID playerUUID, int x, int y, String type, long completionTime) {
+        this.unitUUID = unitUUID.toString();
+        this.playerUUID = playerUUID.toString();
+        this.x = x;
+        this.y = y;
+        this.type = type;
+        this.completionTime = completionTime;
+    }
+
+    private static String getType(Unit unit) {
         if (unit instanceof Wall)
-            this.type = "wall";
+            return "wall";
         else if (unit instanceof Dragon)
-            this.type = "dragon";
+            return "dragon";
         else if (unit instanceof Flag)
-            this.type = "flag";
+            return "flag";
+        return null;
     }
 
     @Override
@@ -16,12 +16,11 @@
 
 package com.seventh_root.ld33.common.network.packet.serverbound;
 
-import com.seventh_root.ld33.common.network.packet.clientbound.ClientBoundPacket;
 import io.netty.buffer.ByteBuf;
 
 import java.io.UnsupportedEncodingException;
 
-public class PlayerLoginResponseServerBoundPacket extends ClientBoundPacket {
+public class PlayerLoginResponseServerBoundPacket extends ServerBoundPacket {
 
     private String message;
     private boolean success;
@@ -16,6 +16,9 @@
 
 package com.seventh_root.ld33.common.network.packet.serverbound;
 
+import io.netty.buffer.ByteBuf;
+
+import java.io.UnsupportedEncodingException;
 import java.util.UUID;
 
 public class UnitDamageServerBoundPacket extends ServerBoundPacket {
@@ -41,4 +44,11 @@ public class UnitDamageServerBoundPacket extends ServerBoundPacket {
         return unitHealth;
     }
 
+    @Override
+    public void write(ByteBuf buf) throws UnsupportedEncodingException {
+        super.write(buf);
+        writeString(buf, unitUUID);
+        buf.writeInt(getUnitHealth());
+    }
+
 }
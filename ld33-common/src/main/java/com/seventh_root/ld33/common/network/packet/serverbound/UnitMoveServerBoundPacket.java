@@ -29,7 +29,11 @@ public class UnitMoveServerBoundPacket extends ServerBoundPacket {
     private int targetY;
 
     public UnitMoveServerBoundPacket(Unit unit, int targetX, int targetY) {
-        this.unitUUID = unit.getUUID().toString();
+        this(unit.getUUID(), targetX, targetY);
+    }
+
+    public UnitMoveServerBoundPacket(UUID unitUUID, int targetX, int targetY) {
+        this.unitUUID = unitUUID.toString();
         this.targetX = targetX;
         this.targetY = targetY;
     }
@@ -16,7 +16,6 @@
 
 package com.seventh_root.ld33.common.network.packet.serverbound;
 
-import com.seventh_root.ld33.common.network.packet.clientbound.ClientBoundPacket;
 import com.seventh_root.ld33.common.player.Player;
 import com.seventh_root.ld33.common.world.*;
 import io.netty.buffer.ByteBuf;
@@ -25,7 +24,7 @@ import java.io.UnsupportedEncodingException;
 import java.sql.SQLException;
 import java.util.UUID;
 
-public class UnitSpawnServerBoundPacket extends ClientBoundPacket {
+public class UnitSpawnServerBoundPacket extends ServerBoundPacket {
 
     private String unitUUID;
     private String playerUUID;
@@ -35,17 +34,26 @@ public class UnitSpawnServerBoundPacket extends ClientBoundPacket {
     private long completionTime;
 
     public UnitSpawnServerBoundPacket(Unit unit) throws SQLException {
-        this.unitUUID = unit.getUUID().toString();
-        this.playerUUID = unit.getPlayer().getUUID().toString();
-        this.x = unit.getTile().getX();
-        this.y = unit.getTile().getY();
-        this.completionTime = unit.getCompletionTime();
+        this(unit.getUUID(), unit.getPlayer().getUUID(), unit.getTile().getX(), unit.getTile().getY(), getType(unit), unit.getCompletionTime());
+    }
+
+    public UnitSpawnServerBoundPacket(UUID unitUUID, UUID playerUUID, int x, int y, String type, long completionTime) {
+        this.unitUUID = unitUUID.toString();
+        this.playerUUID = playerUUID.toString();
+        this.x = x;
+        this.y = y;
+        this.type = type;
+        this.completionTime = completionTime;
+    }
+
+    private static String getType(Unit unit) {
         if (unit instanceof Wall)
-            this.type = "wall";
+            return "wall";
         else if (unit instanceof Dragon)
-            this.type = "dragon";
+            return "dragon";
         else if (unit instanceof Flag)
-            this.type = "flag";
+            return "flag";
+        return null;
     }
 
     @Override
@@ -254,10 +254,10 @@ public abstract class AbstractNode {
     public abstract void setHCosts(AbstractNode endAbstractNode);
 
 
-    /*
+    /**
      * @return the movementPenalty
      */
-    private int getMovementPenalty() {
+    int getMovementPenalty() {
         return movementPenalty;
     }
 
@@ -0,0 +1,514 @@
+package com.seventh_root.ld33.common.pathfinding;
+
+import java.util.Arrays;
+
+/**
+ * An abstract graph over the square clusters of a <code>Map</code>, used
+ * to find long paths hierarchically (HPA*).
+ * <p>
+ * Wherever two adjacent clusters share a run of walkable nodes along their
+ * border, there is an entrance with a node on either side. Nodes within a
+ * cluster are connected by the length of the shortest path between them
+ * inside the cluster, which is only calculated once a search reaches the
+ * cluster and then kept until the cluster changes. A search on this graph
+ * returns the entrances a path goes through, and it is up to the caller
+ * to find the path between each of them, which never has to leave a
+ * single cluster.
+ * <p>
+ * The graph reads walkability from the map, so every change to it must be
+ * reported through <code>invalidate</code>. Only the clusters next to the
+ * changed node are rebuilt, on the next search.
+ * <p>
+ * Positions on the graph are given as cells: <code>x * height + y</code>.
+ * Every move is assumed to cost the same, so movement penalties are
+ * ignored, and the paths found are close to, but not always, the shortest.
+ */
+public class ClusterGraph {
+
+    /** entrances at least this long get a node at each end rather than one in the middle. */
+    private static final int LONG_ENTRANCE = 6;
+    /** bits of a node id holding its index within its cluster. */
+    private static final int LOCAL_BITS = 8;
+    private static final int LOCAL_MASK = (1 << LOCAL_BITS) - 1;
+    private static final int UNREACHABLE = -1;
+
+    private Map<?> map;
+    private int width;
+    private int height;
+    private int clusterSize;
+    private int clustersWide;
+    private int clustersHigh;
+
+    /** clusters whose nodes have to be rebuilt before the next search. */
+    private boolean[] dirty;
+    private boolean anyDirty;
+    /** the cells of the nodes in each cluster. */
+    private int[][] nodes;
+    /** the distances between every pair of nodes in each cluster, or null until needed. */
+    private int[][] distances;
+    /** the ids of up to two nodes in other clusters next to each node. */
+    private int[][] partners;
+
+    // search buffers
+    private int generation;
+    private int[] reached;
+    private int[] closed;
+    private int[] gCosts;
+    private int[] previous;
+    private int[] openIds;
+    private int[] openFCosts;
+    private int openSize;
+    private int[] startDistances;
+    private int[] goalDistances;
+    private int[] queue;
+
+    /**
+     * constructs a graph over the given map, split into clusters of the
+     * given size.
+     *
+     * @param map
+     * @param width width of the map
+     * @param height height of the map
+     * @param clusterSize width and height of a cluster, at most 64
+     */
+    public ClusterGraph(Map<?> map, int width, int height, int clusterSize) {
+        if (clusterSize > 64) {
+            throw new IllegalArgumentException("Cluster size must be at most 64");
+        }
+        this.map = map;
+        this.width = width;
+        this.height = height;
+        this.clusterSize = clusterSize;
+        this.clustersWide = (width + clusterSize - 1) / clusterSize;
+        this.clustersHigh = (height + clusterSize - 1) / clusterSize;
+        int clusters = clustersWide * clustersHigh;
+        dirty = new boolean[clusters];
+        Arrays.fill(dirty, true);
+        anyDirty = true;
+        nodes = new int[clusters][];
+        distances = new int[clusters][];
+        partners = new int[clusters][];
+    }
+
+    /**
+     * marks the clusters whose entrances or distances depend on the node at
+     * given coordinates for rebuilding.
+     *
+     * @param x
+     * @param y
+     */
+    public void invalidate(int x, int y) {
+        int clusterX = x / clusterSize;
+        int clusterY = y / clusterSize;
+        markDirty(clusterX, clusterY);
+        if (x % clusterSize == 0) {
+            markDirty(clusterX - 1, clusterY);
+        }
+        if (x % clusterSize == clusterSize - 1) {
+            markDirty(clusterX + 1, clusterY);
+        }
+        if (y % clusterSize == 0) {
+            markDirty(clusterX, clusterY - 1);
+        }
+        if (y % clusterSize == clusterSize - 1) {
+            markDirty(clusterX, clusterY + 1);
+        }
+    }
+
+    private void markDirty(int clusterX, int clusterY) {
+        if (clusterX >= 0 && clusterY >= 0 && clusterX < clustersWide && clusterY < clustersHigh) {
+            dirty[clusterX * clustersHigh + clusterY] = true;
+            anyDirty = true;
+        }
+    }
+
+    /**
+     * finds the entrances a path from start to goal goes through.
+     * <p>
+     * Start and goal do not have to be walkable themselves.
+     *
+     * @param startX
+     * @param startY
+     * @param goalX
+     * @param goalY
+     * @return the cells of each entrance node along the path, ending with
+     * the goal, or null if no path exists
+     */
+    public int[] findPath(int startX, int startY, int goalX, int goalY) {
+        rebuild();
+        startSearch();
+        int startCluster = getCluster(startX, startY);
+        int goalCluster = getCluster(goalX, goalY);
+        int goalCell = goalX * height + goalY;
+        int goal = nodes.length << LOCAL_BITS;
+        search(startCluster, startX, startY, goalX, goalY, startDistances);
+        search(goalCluster, goalX, goalY, startX, startY, goalDistances);
+
+        if (startCluster == goalCluster && startDistances[getLocalIndex(goalCell)] != UNREACHABLE) {
+            visit(goal, startDistances[getLocalIndex(goalCell)], -1, 0);
+        }
+        int[] startNodes = nodes[startCluster];
+        for (int i = 0; i < startNodes.length; i++) {
+            int distance = startDistances[getLocalIndex(startNodes[i])];
+            if (distance != UNREACHABLE) {
+                visit((startCluster << LOCAL_BITS) | i, distance, -1, estimateCosts(startNodes[i], goalCell));
+            }
+        }
+
+        while (openSize > 0) {
+            int current = pollOpen();
+            if (closed[current] == generation) {
+                continue;
+            }
+            closed[current] = generation;
+            if (current == goal) {
+                return calcPath(goal, goalCell);
+            }
+
+            int cluster = current >>> LOCAL_BITS;
+            int node = current & LOCAL_MASK;
+            int costs = gCosts[current];
+            int[] clusterNodes = nodes[cluster];
+            if (cluster == goalCluster) {
+                int distance = goalDistances[getLocalIndex(clusterNodes[node])];
+                if (distance != UNREACHABLE) {
+                    visit(goal, costs + distance, current, 0);
+                }
+            }
+            int[] clusterDistances = getDistances(cluster);
+            int count = clusterNodes.length;
+            for (int other = 0; other < count; other++) {
+                int distance = clusterDistances[node * count + other];
+                if (other != node && distance != UNREACHABLE) {
+                    visit((cluster << LOCAL_BITS) | other, costs + distance, current, estimateCosts(clusterNodes[other], goalCell));
+                }
+            }
+            for (int i = 0; i < 2; i++) {
+                int partner = partners[cluster][node * 2 + i];
+                if (partner >= 0) {
+                    visit(partner, costs + 1, current, estimateCosts(nodes[partner >>> LOCAL_BITS][partner & LOCAL_MASK], goalCell));
+                }
+            }
+        }
+        return null;
+    }
+
+    private void visit(int id, int costs, int from, int estimate) {
+        if (closed[id] == generation || (reached[id] == generation && gCosts[id] <= costs)) {
+            return;
+        }
+        reached[id] = generation;
+        gCosts[id] = costs;
+        previous[id] = from;
+        addToOpen(id, costs + estimate);
+    }
+
+    private int estimateCosts(int cell, int goalCell) {
+        return Math.abs(cell / height - goalCell / height) + Math.abs(cell % height - goalCell % height);
+    }
+
+    private int[] calcPath(int goal, int goalCell) {
+        int length = 0;
+        for (int id = goal; id >= 0; id = previous[id]) {
+            length++;
+        }
+        int[] path = new int[length];
+        for (int id = goal, i = length - 1; id >= 0; id = previous[id], i--) {
+            path[i] = id == goal ? goalCell : nodes[id >>> LOCAL_BITS][id & LOCAL_MASK];
+        }
+        return path;
+    }
+
+    private void startSearch() {
+        if (reached == null) {
+            int size = (nodes.length << LOCAL_BITS) + 1;
+            reached = new int[size];
+            closed = new int[size];
+            gCosts = new int[size];
+            previous = new int[size];
+            openIds = new int[64];
+            openFCosts = new int[64];
+            startDistances = new int[clusterSize * clusterSize];
+            goalDistances = new int[clusterSize * clusterSize];
+            queue = new int[clusterSize * clusterSize];
+        }
+        if (++generation == Integer.MAX_VALUE) {
+            Arrays.fill(reached, 0);
+            Arrays.fill(closed, 0);
+            generation = 1;
+        }
+        openSize = 0;
+    }
+
+    /**
+     * rebuilds the nodes of every dirty cluster, and the partners of those
+     * nodes and the nodes next to them.
+     */
+    private void rebuild() {
+        if (!anyDirty) {
+            return;
+        }
+        for (int cluster = 0; cluster < nodes.length; cluster++) {
+            if (dirty[cluster]) {
+                nodes[cluster] = findNodes(cluster);
+                distances[cluster] = null;
+            }
+        }
+        for (int cluster = 0; cluster < nodes.length; cluster++) {
+            if (dirty[cluster]) {
+                int clusterX = cluster / clustersHigh;
+                int clusterY = cluster % clustersHigh;
+                findPartners(clusterX, clusterY);
+                findPartners(clusterX - 1, clusterY);
+                findPartners(clusterX + 1, clusterY);
+                findPartners(clusterX, clusterY - 1);
+                findPartners(clusterX, clusterY + 1);
+            }
+        }
+        Arrays.fill(dirty, false);
+        anyDirty = false;
+    }
+
+    private int[] findNodes(int cluster) {
+        int minX = getMinX(cluster);
+        int minY = getMinY(cluster);
+        int maxX = getMaxX(cluster);
+        int maxY = getMaxY(cluster);
+        int[] found = new int[0];
+        if (minX > 0) {
+            found = findEntrances(found, minX, minY, 0, 1, maxY - minY + 1, -1, 0);
+        }
+        if (maxX < width - 1) {
+            found = findEntrances(found, maxX, minY, 0, 1, maxY - minY + 1, 1, 0);
+        }
+        if (minY > 0) {
+            found = findEntrances(found, minX, minY, 1, 0, maxX - minX + 1, 0, -1);
+        }
+        if (maxY < height - 1) {
+            found = findEntrances(found, minX, maxY, 1, 0, maxX - minX + 1, 0, 1);
+        }
+        return found;
+    }
+
+    /**
+     * adds the node cells of the entrances along one border of a cluster.
+     * The cluster on the other side scans the same border in the same
+     * direction, so it finds the same entrances.
+     */
+    private int[] findEntrances(int[] found, int x, int y, int dx, int dy, int length, int outsideX, int outsideY) {
+        int runStart = -1;
+        for (int i = 0; i <= length; i++) {
+            int cellX = x + dx * i;
+            int cellY = y + dy * i;
+            boolean open = i < length && map.isWalkable(cellX, cellY) && map.isWalkable(cellX + outsideX, cellY + outsideY);
+            if (open && runStart < 0) {
+                runStart = i;
+            } else if (!open && runStart >= 0) {
+                int runEnd = i - 1;
+                if (runEnd - runStart + 1 >= LONG_ENTRANCE) {
+                    found = addNode(found, (x + dx * runStart) * height + y + dy * runStart);
+                    found = addNode(found, (x + dx * runEnd) * height + y + dy * runEnd);
+                } else {
+                    int middle = (runStart + runEnd) / 2;
+                    found = addNode(found, (x + dx * middle) * height + y + dy * middle);
+                }
+                runStart = -1;
+            }
+        }
+        return found;
+    }
+
+    private int[] addNode(int[] found, int cell) {
+        if (indexOf(found, cell) >= 0) {
+            return found; // corner node shared by two borders
+        }
+        int[] grown = Arrays.copyOf(found, found.length + 1);
+        grown[found.length] = cell;
+        return grown;
+    }
+
+    private int indexOf(int[] cells, int cell) {
+        for (int i = 0; i < cells.length; i++) {
+            if (cells[i] == cell) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void findPartners(int clusterX, int clusterY) {
+        if (clusterX < 0 || clusterY < 0 || clusterX >= clustersWide || clusterY >= clustersHigh) {
+            return;
+        }
+        int cluster = clusterX * clustersHigh + clusterY;
+        int[] clusterNodes = nodes[cluster];
+        int[] clusterPartners = new int[clusterNodes.length * 2];
+        Arrays.fill(clusterPartners, -1);
+        for (int i = 0; i < clusterNodes.length; i++) {
+            int x = clusterNodes[i] / height;
+            int y = clusterNodes[i] % height;
+            int found = 0;
+            found = addPartner(clusterPartners, i, found, cluster, x - 1, y);
+            found = addPartner(clusterPartners, i, found, cluster, x + 1, y);
+            found = addPartner(clusterPartners, i, found, cluster, x, y - 1);
+            addPartner(clusterPartners, i, found, cluster, x, y + 1);
+        }
+        partners[cluster] = clusterPartners;
+    }
+
+    private int addPartner(int[] clusterPartners, int node, int found, int cluster, int x, int y) {
+        if (found == 2 || x < 0 || y < 0 || x >= width || y >= height) {
+            return found;
+        }
+        int otherCluster = getCluster(x, y);
+        if (otherCluster == cluster) {
+            return found;
+        }
+        int other = indexOf(nodes[otherCluster], x * height + y);
+        if (other < 0) {
+            return found;
+        }
+        clusterPartners[node * 2 + found] = (otherCluster << LOCAL_BITS) | other;
+        return found + 1;
+    }
+
+    private int[] getDistances(int cluster) {
+        int[] clusterDistances = distances[cluster];
+        if (clusterDistances == null) {
+            int[] clusterNodes = nodes[cluster];
+            int count = clusterNodes.length;
+            clusterDistances = new int[count * count];
+            int[] nodeDistances = new int[clusterSize * clusterSize];
+            for (int i = 0; i < count; i++) {
+                search(cluster, clusterNodes[i] / height, clusterNodes[i] % height, -1, -1, nodeDistances);
+                for (int j = 0; j < count; j++) {
+                    clusterDistances[i * count + j] = nodeDistances[getLocalIndex(clusterNodes[j])];
+                }
+            }
+            distances[cluster] = clusterDistances;
+        }
+        return clusterDistances;
+    }
+
+    /**
+     * fills in the distance from the given node to every node of its
+     * cluster, by local index, without leaving the cluster. The node
+     * searched from and the other given node count as walkable.
+     */
+    private void search(int cluster, int fromX, int fromY, int passableX, int passableY, int[] result) {
+        Arrays.fill(result, UNREACHABLE);
+        int minX = getMinX(cluster);
+        int minY = getMinY(cluster);
+        int maxX = getMaxX(cluster);
+        int maxY = getMaxY(cluster);
+        int head = 0;
+        int tail = 0;
+        int from = (fromX - minX) * clusterSize + fromY - minY;
+        result[from] = 0;
+        queue[tail++] = from;
+        while (head < tail) {
+            int current = queue[head++];
+            int x = minX + current / clusterSize;
+            int y = minY + current % clusterSize;
+            int distance = result[current] + 1;
+            for (int direction = 0; direction < 4; direction++) {
+                int nextX = direction == 0 ? x - 1 : direction == 1 ? x + 1 : x;
+                int nextY = direction == 2 ? y - 1 : direction == 3 ? y + 1 : y;
+                if (nextX < minX || nextX > maxX || nextY < minY || nextY > maxY) {
+                    continue;
+                }
+                int next = (nextX - minX) * clusterSize + nextY - minY;
+                if (result[next] != UNREACHABLE || !(map.isWalkable(nextX, nextY) || (nextX == passableX && nextY == passableY))) {
+                    continue;
+                }
+                result[next] = distance;
+                queue[tail++] = next;
+            }
+        }
+    }
+
+    /**
+     * returns the bounds of the cluster containing the given position as
+     * minimum x, minimum y, maximum x and maximum y, all inclusive.
+     *
+     * @param x
+     * @param y
+     * @return the bounds
+     */
+    public int[] getClusterBounds(int x, int y) {
+        int cluster = getCluster(x, y);
+        return new int[] {getMinX(cluster), getMinY(cluster), getMaxX(cluster), getMaxY(cluster)};
+    }
+
+    private int getCluster(int x, int y) {
+        return (x / clusterSize) * clustersHigh + y / clusterSize;
+    }
+
+    private int getLocalIndex(int cell) {
+        return (cell / height % clusterSize) * clusterSize + cell % height % clusterSize;
+    }
+
+    private int getMinX(int cluster) {
+        return cluster / clustersHigh * clusterSize;
+    }
+
+    private int getMinY(int cluster) {
+        return cluster % clustersHigh * clusterSize;
+    }
+
+    private int getMaxX(int cluster) {
+        return Math.min(getMinX(cluster) + clusterSize, width) - 1;
+    }
+
+    private int getMaxY(int cluster) {
+        return Math.min(getMinY(cluster) + clusterSize, height) - 1;
+    }
+
+    private void addToOpen(int id, int fCosts) {
+        if (openSize == openIds.length) {
+            openIds = Arrays.copyOf(openIds, openSize * 2);
+            openFCosts = Arrays.copyOf(openFCosts, openSize * 2);
+        }
+        int position = openSize++;
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            if (!isCheaper(id, fCosts, openIds[parent], openFCosts[parent])) {
+                break;
+            }
+            openIds[position] = openIds[parent];
+            openFCosts[position] = openFCosts[parent];
+            position = parent;
+        }
+        openIds[position] = id;
+        openFCosts[position] = fCosts;
+    }
+
+    private int pollOpen() {
+        int cheapest = openIds[0];
+        int id = openIds[--openSize];
+        int fCosts = openFCosts[openSize];
+        int position = 0;
+        int half = openSize >>> 1;
+        while (position < half) {
+            int child = (position << 1) + 1;
+            int right = child + 1;
+            if (right < openSize && isCheaper(openIds[right], openFCosts[right], openIds[child], openFCosts[child])) {
+                child = right;
+            }
+            if (!isCheaper(openIds[child], openFCosts[child], id, fCosts)) {
+                break;
+            }
+            openIds[position] = openIds[child];
+            openFCosts[position] = openFCosts[child];
+            position = child;
+        }
+        openIds[position] = id;
+        openFCosts[position] = fCosts;
+        return cheapest;
+    }
+
+    private boolean isCheaper(int id, int fCosts, int otherId, int otherFCosts) {
+        return fCosts < otherFCosts || (fCosts == otherFCosts && gCosts[id] > gCosts[otherId]);
+    }
+
+}
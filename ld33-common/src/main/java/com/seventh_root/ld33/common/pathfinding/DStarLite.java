@@ -0,0 +1,479 @@
+package com.seventh_root.ld33.common.pathfinding;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * a D* Lite search on a <code>Map</code>, which keeps the shortest path
+ * from a moving start to a fixed goal up to date as nodes change
+ * walkability, repairing only the part of its search they affect.
+ * <p>
+ * The search runs backwards from the goal, so moving the start along the
+ * path costs nothing, and each node changed since the last path was found
+ * only has to be reported through <code>updateNode</code>. Walkability is
+ * read from the map whenever it is needed, so nodes the search has never
+ * reached don't have to be reported. The goal may be entered even if it is
+ * not walkable.
+ * <p>
+ * Like <code>ResumableSearch</code>, the state is kept in tables that only
+ * grow with the nodes reached, so many of these can be kept on one map,
+ * and the search can be carried on a few nodes at a time with
+ * <code>step</code> before the path is first asked for.
+ *
+ * @see Map#startDStarLite(int, int, int, int)
+ * @param <T>
+ */
+public class DStarLite<T extends AbstractNode> {
+
+    private static final int INFINITE = Integer.MAX_VALUE / 4;
+    private static final int EMPTY = -1;
+
+    private Map<T> map;
+    private int rows;
+    private int goal;
+    private int start;
+    private int startX;
+    private int startY;
+    /** how far the start has moved since the search began, added to every new key. */
+    private int km;
+
+    /** open addressing table of reached node indices, EMPTY where unused. */
+    private int[] keys;
+    /** costs to the goal, per table slot. */
+    private int[] gCosts;
+    /** one step lookahead costs to the goal, per table slot. */
+    private int[] rhs;
+    /** whether the node is on the open list, and under which key. */
+    private boolean[] open;
+    private int[] openKeys;
+    private int[] openSecondKeys;
+    private int size;
+
+    /** binary heap of node indices; entries whose key is out of date are skipped. */
+    private int[] heapNodes;
+    private int[] heapKeys;
+    private int[] heapSecondKeys;
+    private int heapSize;
+
+    private int expansions;
+    /** whether the costs from the start are known, as of the last step. */
+    private boolean finished;
+
+    DStarLite(Map<T> map, int startX, int startY, int goalX, int goalY) {
+        this.map = map;
+        this.rows = map.height + 1;
+        this.goal = map.getIndex(goalX, goalY);
+        this.start = map.getIndex(startX, startY);
+        this.startX = startX;
+        this.startY = startY;
+        keys = new int[256];
+        Arrays.fill(keys, EMPTY);
+        gCosts = new int[256];
+        rhs = new int[256];
+        open = new boolean[256];
+        openKeys = new int[256];
+        openSecondKeys = new int[256];
+        heapNodes = new int[64];
+        heapKeys = new int[64];
+        heapSecondKeys = new int[64];
+        int slot = getSlot(goal);
+        rhs[slot] = 0;
+        addToOpen(goal, slot);
+    }
+
+    /**
+     * moves the start of the path, which should be somewhere the search has
+     * already found, such as a node along the last path.
+     *
+     * @param x
+     * @param y
+     */
+    public void moveStart(int x, int y) {
+        if (x == startX && y == startY) {
+            return;
+        }
+        finished = false;
+        km += map.estimateCosts(startX, startY, x, y);
+        startX = x;
+        startY = y;
+        start = map.getIndex(x, y);
+    }
+
+    /**
+     * reports that the node at the given coordinates has changed
+     * walkability.
+     *
+     * @param x
+     * @param y
+     */
+    public void updateNode(int x, int y) {
+        finished = false;
+        int index = map.getIndex(x, y);
+        // only the costs of moving into the node change, and nodes never reached will read them when they are
+        if (x > 0 && findSlot(index - rows) != EMPTY) {
+            updateVertex(index - rows);
+        }
+        if (x < map.width && findSlot(index + rows) != EMPTY) {
+            updateVertex(index + rows);
+        }
+        if (y > 0 && findSlot(index - 1) != EMPTY) {
+            updateVertex(index - 1);
+        }
+        if (y < map.height && findSlot(index + 1) != EMPTY) {
+            updateVertex(index + 1);
+        }
+    }
+
+    /**
+     * returns the shortest path from the start to the goal, not including
+     * the start node and ending with the goal, repairing the search first.
+     *
+     * @return path, or null if no path exists
+     */
+    public List<T> findPath() {
+        computeShortestPath(Integer.MAX_VALUE);
+        if (getGCosts(start) >= INFINITE) {
+            return null;
+        }
+        List<T> path = new ArrayList<T>();
+        int current = start;
+        while (current != goal) {
+            int next = getCheapestSuccessor(current);
+            if (next == EMPTY || path.size() > size) { // only possible if the search is out of date
+                return null;
+            }
+            path.add(map.getNode(next / rows, next % rows));
+            current = next;
+        }
+        return path;
+    }
+
+    /**
+     * carries on the search for up to the given number of expansions,
+     * stopping early once the costs from the start are known.
+     *
+     * @param maxExpansions
+     * @return the number of nodes expanded
+     */
+    public int step(int maxExpansions) {
+        return computeShortestPath(maxExpansions);
+    }
+
+    /**
+     * returns whether the search has found the costs from the start, so
+     * that <code>findPath</code> has nothing left to search. moving the
+     * start or reporting a change may leave more to do.
+     *
+     * @return finished
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * returns the number of nodes expanded so far.
+     *
+     * @return expansions
+     */
+    public int getExpansions() {
+        return expansions;
+    }
+
+    private int computeShortestPath(int maxExpansions) {
+        int stepExpansions = 0;
+        while (true) {
+            int top = peekOpen();
+            if (top == EMPTY) {
+                finished = true;
+                break;
+            }
+            int startSlot = findSlot(start);
+            int startG = startSlot == EMPTY ? INFINITE : gCosts[startSlot];
+            int startRhs = startSlot == EMPTY ? INFINITE : rhs[startSlot];
+            int startMin = Math.min(startG, startRhs);
+            int startKey = calculateKey(start, startMin);
+            if (!isLess(heapKeys[0], heapSecondKeys[0], startKey, startMin) && startRhs == startG) {
+                finished = true;
+                break;
+            }
+            if (stepExpansions == maxExpansions) {
+                break;
+            }
+            int oldKey = heapKeys[0];
+            int oldSecondKey = heapSecondKeys[0];
+            pollOpen();
+            int slot = findSlot(top);
+            int min = Math.min(gCosts[slot], rhs[slot]);
+            int key = calculateKey(top, min);
+            if (isLess(oldKey, oldSecondKey, key, min)) {
+                addToOpen(top, slot);
+                continue;
+            }
+            open[slot] = false;
+            expansions++;
+            stepExpansions++;
+            if (gCosts[slot] > rhs[slot]) {
+                gCosts[slot] = rhs[slot];
+            } else {
+                gCosts[slot] = INFINITE;
+                updateVertex(top);
+            }
+            updatePredecessors(top);
+        }
+        return stepExpansions;
+    }
+
+    private void updatePredecessors(int index) {
+        int x = index / rows;
+        int y = index - x * rows;
+        if (x > 0) {
+            updateVertex(index - rows);
+        }
+        if (x < map.width) {
+            updateVertex(index + rows);
+        }
+        if (y > 0) {
+            updateVertex(index - 1);
+        }
+        if (y < map.height) {
+            updateVertex(index + 1);
+        }
+    }
+
+    /**
+     * recalculates the lookahead costs of a node from its successors, and
+     * puts it on the open list if they no longer match its costs.
+     */
+    private void updateVertex(int index) {
+        int slot = getSlot(index);
+        if (index != goal) {
+            int x = index / rows;
+            int y = index - x * rows;
+            int costs = INFINITE;
+            if (x > 0) {
+                costs = Math.min(costs, getCostsVia(index - rows, x - 1, y));
+            }
+            if (x < map.width) {
+                costs = Math.min(costs, getCostsVia(index + rows, x + 1, y));
+            }
+            if (y > 0) {
+                costs = Math.min(costs, getCostsVia(index - 1, x, y - 1));
+            }
+            if (y < map.height) {
+                costs = Math.min(costs, getCostsVia(index + 1, x, y + 1));
+            }
+            rhs[slot] = costs;
+        }
+        if (gCosts[slot] != rhs[slot]) {
+            addToOpen(index, slot);
+        } else {
+            open[slot] = false;
+        }
+    }
+
+    /**
+     * returns the costs of moving into the given node and on to the goal.
+     */
+    private int getCostsVia(int index, int x, int y) {
+        if (index != goal && !map.isWalkable(x, y)) {
+            return INFINITE;
+        }
+        int gCosts = getGCosts(index);
+        if (gCosts >= INFINITE) {
+            return INFINITE;
+        }
+        return gCosts + AbstractNode.BASIC_MOVEMENT_COST + map.getMovementPenalty(x, y);
+    }
+
+    private int getCheapestSuccessor(int index) {
+        int x = index / rows;
+        int y = index - x * rows;
+        int cheapest = EMPTY;
+        int cheapestCosts = INFINITE;
+        int costs;
+        if (x > 0 && (costs = getCostsVia(index - rows, x - 1, y)) < cheapestCosts) {
+            cheapest = index - rows;
+            cheapestCosts = costs;
+        }
+        if (x < map.width && (costs = getCostsVia(index + rows, x + 1, y)) < cheapestCosts) {
+            cheapest = index + rows;
+            cheapestCosts = costs;
+        }
+        if (y > 0 && (costs = getCostsVia(index - 1, x, y - 1)) < cheapestCosts) {
+            cheapest = index - 1;
+            cheapestCosts = costs;
+        }
+        if (y < map.height && getCostsVia(index + 1, x, y + 1) < cheapestCosts) {
+            cheapest = index + 1;
+        }
+        return cheapest;
+    }
+
+    private int getGCosts(int index) {
+        int slot = findSlot(index);
+        return slot == EMPTY ? INFINITE : gCosts[slot];
+    }
+
+    private int calculateKey(int index, int min) {
+        if (min >= INFINITE) {
+            return INFINITE;
+        }
+        int x = index / rows;
+        return min + map.estimateCosts(startX, startY, x, index - x * rows) + km;
+    }
+
+    /**
+     * returns the table slot of the given node index, or EMPTY if it has not
+     * been reached.
+     */
+    private int findSlot(int index) {
+        int mask = keys.length - 1;
+        for (int slot = mix(index) & mask; ; slot = (slot + 1) & mask) {
+            if (keys[slot] == index) {
+                return slot;
+            }
+            if (keys[slot] == EMPTY) {
+                return EMPTY;
+            }
+        }
+    }
+
+    /**
+     * returns the table slot of the given node index, adding it with
+     * infinite costs if it has not been reached. adding a node may move
+     * every other node to a new slot.
+     */
+    private int getSlot(int index) {
+        int slot = findSlot(index);
+        if (slot != EMPTY) {
+            return slot;
+        }
+        if ((size + 1) * 2 > keys.length) {
+            grow();
+        }
+        int mask = keys.length - 1;
+        slot = mix(index) & mask;
+        while (keys[slot] != EMPTY) {
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = index;
+        gCosts[slot] = INFINITE;
+        rhs[slot] = INFINITE;
+        size++;
+        return slot;
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        int[] oldGCosts = gCosts;
+        int[] oldRhs = rhs;
+        boolean[] oldOpen = open;
+        int[] oldOpenKeys = openKeys;
+        int[] oldOpenSecondKeys = openSecondKeys;
+        int capacity = oldKeys.length * 2;
+        keys = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+        gCosts = new int[capacity];
+        rhs = new int[capacity];
+        open = new boolean[capacity];
+        openKeys = new int[capacity];
+        openSecondKeys = new int[capacity];
+        int mask = capacity - 1;
+        for (int oldSlot = 0; oldSlot < oldKeys.length; oldSlot++) {
+            if (oldKeys[oldSlot] == EMPTY) {
+                continue;
+            }
+            int slot = mix(oldKeys[oldSlot]) & mask;
+            while (keys[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = oldKeys[oldSlot];
+            gCosts[slot] = oldGCosts[oldSlot];
+            rhs[slot] = oldRhs[oldSlot];
+            open[slot] = oldOpen[oldSlot];
+            openKeys[slot] = oldOpenKeys[oldSlot];
+            openSecondKeys[slot] = oldOpenSecondKeys[oldSlot];
+        }
+    }
+
+    private static int mix(int index) {
+        return index * 0x9E3779B9 >>> 7;
+    }
+
+    /**
+     * puts a node on the open list under its current key, replacing any
+     * entry it already has.
+     */
+    private void addToOpen(int index, int slot) {
+        int secondKey = Math.min(gCosts[slot], rhs[slot]);
+        int key = calculateKey(index, secondKey);
+        open[slot] = true;
+        openKeys[slot] = key;
+        openSecondKeys[slot] = secondKey;
+        if (heapSize == heapNodes.length) {
+            heapNodes = Arrays.copyOf(heapNodes, heapSize * 2);
+            heapKeys = Arrays.copyOf(heapKeys, heapSize * 2);
+            heapSecondKeys = Arrays.copyOf(heapSecondKeys, heapSize * 2);
+        }
+        int position = heapSize++;
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            if (!isLess(key, secondKey, heapKeys[parent], heapSecondKeys[parent])) {
+                break;
+            }
+            heapNodes[position] = heapNodes[parent];
+            heapKeys[position] = heapKeys[parent];
+            heapSecondKeys[position] = heapSecondKeys[parent];
+            position = parent;
+        }
+        heapNodes[position] = index;
+        heapKeys[position] = key;
+        heapSecondKeys[position] = secondKey;
+    }
+
+    /**
+     * drops out of date entries from the top of the heap and returns the
+     * node index now on top, or EMPTY if there are none.
+     */
+    private int peekOpen() {
+        while (heapSize > 0) {
+            int slot = findSlot(heapNodes[0]);
+            if (open[slot] && openKeys[slot] == heapKeys[0] && openSecondKeys[slot] == heapSecondKeys[0]) {
+                return heapNodes[0];
+            }
+            pollOpen();
+        }
+        return EMPTY;
+    }
+
+    private void pollOpen() {
+        int index = heapNodes[--heapSize];
+        int key = heapKeys[heapSize];
+        int secondKey = heapSecondKeys[heapSize];
+        int position = 0;
+        int half = heapSize >>> 1;
+        while (position < half) {
+            int child = (position << 1) + 1;
+            int right = child + 1;
+            if (right < heapSize && isLess(heapKeys[right], heapSecondKeys[right], heapKeys[child], heapSecondKeys[child])) {
+                child = right;
+            }
+            if (!isLess(heapKeys[child], heapSecondKeys[child], key, secondKey)) {
+                break;
+            }
+            heapNodes[position] = heapNodes[child];
+            heapKeys[position] = heapKeys[child];
+            heapSecondKeys[position] = heapSecondKeys[child];
+            position = child;
+        }
+        heapNodes[position] = index;
+        heapKeys[position] = key;
+        heapSecondKeys[position] = secondKey;
+    }
+
+    private boolean isLess(int key, int secondKey, int otherKey, int otherSecondKey) {
+        return key < otherKey || (key == otherKey && secondKey < otherSecondKey);
+    }
+
+}
@@ -0,0 +1,155 @@
+package com.seventh_root.ld33.common.pathfinding;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The distance from every node around a goal on a <code>Map</code> to that
+ * goal, found with a single breadth first search outwards from it.
+ * <p>
+ * Once the field has been built, a path to the goal from any node in it is
+ * found by stepping to whichever adjacent node is closest to the goal,
+ * without searching, so one field can be shared by everything headed for
+ * the same goal.
+ * <p>
+ * The field only covers the square of nodes within a given distance of
+ * the goal on either axis, and paths never leave it, so a path from near
+ * its edge may not be the shortest. Every move is assumed to cost the
+ * same, so movement penalties are ignored. The goal itself may be
+ * unwalkable. The field reads walkability when it is built and is not
+ * updated afterwards.
+ *
+ * @param <T>
+ */
+public class FlowField<T extends AbstractNode> {
+
+    private static final int UNREACHABLE = -1;
+
+    private Map<T> map;
+    private int goalX;
+    private int goalY;
+    private int minX;
+    private int minY;
+    private int maxX;
+    private int maxY;
+    private int rows;
+    /** steps to the goal from each node in the field, or UNREACHABLE. */
+    private int[] distances;
+
+    /**
+     * builds the field around the given goal.
+     *
+     * @param map
+     * @param goalX
+     * @param goalY
+     * @param radius how far the field reaches from the goal on either axis
+     */
+    public FlowField(Map<T> map, int goalX, int goalY, int radius) {
+        this.map = map;
+        this.goalX = goalX;
+        this.goalY = goalY;
+        minX = Math.max(goalX - radius, 0);
+        minY = Math.max(goalY - radius, 0);
+        maxX = Math.min(goalX + radius, map.width);
+        maxY = Math.min(goalY + radius, map.height);
+        rows = maxY - minY + 1;
+        distances = new int[(maxX - minX + 1) * rows];
+        Arrays.fill(distances, UNREACHABLE);
+        int[] queue = new int[distances.length];
+        int head = 0;
+        int tail = 0;
+        int goal = getCell(goalX, goalY);
+        distances[goal] = 0;
+        queue[tail++] = goal;
+        while (head < tail) {
+            int current = queue[head++];
+            int x = minX + current / rows;
+            int y = minY + current % rows;
+            int distance = distances[current] + 1;
+            if (x > minX && distances[current - rows] == UNREACHABLE && map.isWalkable(x - 1, y)) {
+                distances[current - rows] = distance;
+                queue[tail++] = current - rows;
+            }
+            if (x < maxX && distances[current + rows] == UNREACHABLE && map.isWalkable(x + 1, y)) {
+                distances[current + rows] = distance;
+                queue[tail++] = current + rows;
+            }
+            if (y > minY && distances[current - 1] == UNREACHABLE && map.isWalkable(x, y - 1)) {
+                distances[current - 1] = distance;
+                queue[tail++] = current - 1;
+            }
+            if (y < maxY && distances[current + 1] == UNREACHABLE && map.isWalkable(x, y + 1)) {
+                distances[current + 1] = distance;
+                queue[tail++] = current + 1;
+            }
+        }
+    }
+
+    private int getCell(int x, int y) {
+        return (x - minX) * rows + (y - minY);
+    }
+
+    public int getGoalX() {
+        return goalX;
+    }
+
+    public int getGoalY() {
+        return goalY;
+    }
+
+    /**
+     * returns the bounds of the field, which are inclusive.
+     *
+     * @return minimum x, minimum y, maximum x and maximum y
+     */
+    public int[] getBounds() {
+        return new int[] {minX, minY, maxX, maxY};
+    }
+
+    /**
+     * returns the number of steps to the goal from the given coordinates.
+     *
+     * @param x
+     * @param y
+     * @return distance, or -1 if the goal can't be reached from there within the field
+     */
+    public int getDistance(int x, int y) {
+        if (x < minX || y < minY || x > maxX || y > maxY) {
+            return UNREACHABLE;
+        }
+        return distances[getCell(x, y)];
+    }
+
+    /**
+     * returns a shortest path within the field from the given coordinates to
+     * the goal, not including the node at the given coordinates and ending
+     * with the goal.
+     *
+     * @param x
+     * @param y
+     * @return path, or null if the goal can't be reached from there within the field
+     */
+    public List<T> getPathFrom(int x, int y) {
+        int distance = getDistance(x, y);
+        if (distance == UNREACHABLE) {
+            return null;
+        }
+        List<T> path = new ArrayList<T>(distance);
+        while (distance > 0) {
+            distance--;
+            if (getDistance(x - 1, y) == distance) {
+                x--;
+            } else if (getDistance(x + 1, y) == distance) {
+                x++;
+            } else if (getDistance(x, y - 1) == distance) {
+                y--;
+            } else {
+                y++;
+            }
+            path.add(map.getNode(x, y));
+        }
+        return path;
+    }
+
+}
@@ -0,0 +1,31 @@
+package com.seventh_root.ld33.common.pathfinding;
+
+import static java.lang.Math.abs;
+
+/**
+ * Estimates the costs to get from one position on a <code>Map</code> to
+ * another without going through nodes.
+ * <p>
+ * An estimate must never be more than the real costs, or the path found
+ * may not be the shortest one.
+ *
+ * @see Map#setHeuristic(Heuristic)
+ */
+public interface Heuristic {
+
+    /** manhatten method, matching <code>NodeImpl</code>. */
+    Heuristic MANHATTAN = (x, y, endX, endY) -> (abs(x - endX) + abs(y - endY)) * AbstractNode.BASIC_MOVEMENT_COST;
+
+    /**
+     * estimates the costs to get from the given position to the given end
+     * position.
+     *
+     * @param x
+     * @param y
+     * @param endX
+     * @param endY
+     * @return hCosts
+     */
+    int estimateCosts(int x, int y, int endX, int endY);
+
+}
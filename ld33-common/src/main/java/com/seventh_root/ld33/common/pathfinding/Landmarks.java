@@ -0,0 +1,271 @@
+package com.seventh_root.ld33.common.pathfinding;
+
+import java.util.Arrays;
+
+import static java.lang.Math.abs;
+
+/**
+ * A heuristic estimating costs from the distances between every node and a
+ * few landmarks, also known as ALT.
+ * <p>
+ * The distance between two nodes is at least the difference between their
+ * distances to any landmark, which is a far tighter estimate than the
+ * manhattan method around long walls. The distances are found by a breadth
+ * first search from each landmark when the landmarks are built, and are not
+ * updated afterwards, so estimates stay admissible only while no node that
+ * was unwalkable then becomes walkable. Nodes becoming unwalkable just makes
+ * the estimates less tight.
+ * <p>
+ * Each landmark is the walkable node furthest from those chosen before it.
+ * Distances are stored per square region of nodes as offsets from the
+ * smallest distance in the region, in two bytes each, or in four for the
+ * few regions whose distances are too far apart for that, so that every
+ * node a landmark reaches has its distance kept.
+ * <p>
+ * A landmark that can't reach the goal, or the node being estimated, is
+ * left out of the estimate. A search only reaches nodes connected to where
+ * it started, which a landmark either reaches every one of or none, so each
+ * landmark is used for the whole of a search or not at all. That keeps the
+ * estimates consistent: they never drop by more than a step from one node
+ * to the next, so A* never has to visit a node twice.
+ *
+ * @see Map#setHeuristic(Heuristic)
+ */
+public class Landmarks implements Heuristic {
+
+    private static final int UNREACHABLE = -1;
+    private static final char UNKNOWN = Character.MAX_VALUE;
+
+    /** the map the distances were found on, which must not change. */
+    private Map<?> map;
+    private int rows;
+    private int regionShift;
+    private int regionMask;
+    private int regionsHigh;
+    /** node index of each landmark. */
+    private int[] landmarks;
+    /** smallest distance in each region, per landmark. */
+    private int[][] bases;
+    /** distance of each node in each region less the smallest, per landmark, or null if none are known. */
+    private char[][][] offsets;
+    /** distance of each node in regions whose offsets don't fit in two bytes, per landmark, or null. */
+    private int[][][] wideDistances;
+
+    /**
+     * chooses landmarks and finds the distance from each to every node.
+     *
+     * @param map the map to search, which must not change afterwards
+     * @param count the number of landmarks to choose
+     * @param regionSize the width and height of the regions distances are stored in, which must be a power of two
+     */
+    public Landmarks(Map<?> map, int count, int regionSize) {
+        if (Integer.bitCount(regionSize) != 1) {
+            throw new IllegalArgumentException("region size must be a power of two");
+        }
+        this.map = map;
+        this.rows = map.height + 1;
+        this.regionShift = Integer.numberOfTrailingZeros(regionSize);
+        this.regionMask = regionSize - 1;
+        this.regionsHigh = (rows + regionSize - 1) / regionSize;
+        int regions = ((map.width + regionSize) / regionSize) * regionsHigh;
+        int nodeCount = (map.width + 1) * rows;
+        int[] distances = new int[nodeCount];
+        int[] queue = new int[nodeCount];
+        int next = UNREACHABLE;
+        for (int index = 0; index < nodeCount && next == UNREACHABLE; index++) {
+            if (isWalkable(index)) next = index;
+        }
+        landmarks = new int[0];
+        bases = new int[count][regions];
+        offsets = new char[count][regions][];
+        wideDistances = new int[count][][];
+        if (next == UNREACHABLE) {
+            return;
+        }
+        // the node furthest from any other is on the edge of the map, which makes a good first landmark
+        search(next, distances, queue);
+        next = getFurthest(distances);
+        int[] nearest = new int[nodeCount];
+        Arrays.fill(nearest, Integer.MAX_VALUE);
+        while (landmarks.length < count) {
+            landmarks = Arrays.copyOf(landmarks, landmarks.length + 1);
+            landmarks[landmarks.length - 1] = next;
+            search(next, distances, queue);
+            store(landmarks.length - 1, distances);
+            for (int index = 0; index < nodeCount; index++) {
+                if (distances[index] == UNREACHABLE) {
+                    nearest[index] = UNREACHABLE;
+                } else if (distances[index] < nearest[index]) {
+                    nearest[index] = distances[index];
+                }
+            }
+            next = getFurthest(nearest);
+            if (next == UNREACHABLE || nearest[next] == 0) {
+                break; // every reachable node is a landmark
+            }
+        }
+    }
+
+    private boolean isWalkable(int index) {
+        return map.isWalkable(index / rows, index % rows);
+    }
+
+    /**
+     * finds the steps from the given node to every other. unwalkable nodes
+     * get the steps to enter them, but are not searched through.
+     */
+    private void search(int source, int[] distances, int[] queue) {
+        Arrays.fill(distances, UNREACHABLE);
+        distances[source] = 0;
+        queue[0] = source;
+        int head = 0;
+        int tail = 1;
+        while (head < tail) {
+            int current = queue[head++];
+            if (current != source && !isWalkable(current)) {
+                continue;
+            }
+            int x = current / rows;
+            int y = current - x * rows;
+            int distance = distances[current] + 1;
+            if (x > 0 && distances[current - rows] == UNREACHABLE) {
+                distances[current - rows] = distance;
+                queue[tail++] = current - rows;
+            }
+            if (x < map.width && distances[current + rows] == UNREACHABLE) {
+                distances[current + rows] = distance;
+                queue[tail++] = current + rows;
+            }
+            if (y > 0 && distances[current - 1] == UNREACHABLE) {
+                distances[current - 1] = distance;
+                queue[tail++] = current - 1;
+            }
+            if (y < map.height && distances[current + 1] == UNREACHABLE) {
+                distances[current + 1] = distance;
+                queue[tail++] = current + 1;
+            }
+        }
+    }
+
+    /**
+     * returns the walkable node with the highest of the given distances, or
+     * UNREACHABLE if none are known.
+     */
+    private int getFurthest(int[] distances) {
+        int furthest = UNREACHABLE;
+        for (int index = 0; index < distances.length; index++) {
+            if (distances[index] != UNREACHABLE && distances[index] != Integer.MAX_VALUE
+                    && (furthest == UNREACHABLE || distances[index] > distances[furthest]) && isWalkable(index)) {
+                furthest = index;
+            }
+        }
+        return furthest;
+    }
+
+    private void store(int landmark, int[] distances) {
+        int regionSize = regionMask + 1;
+        for (int regionX = 0; regionX * regionSize <= map.width; regionX++) {
+            for (int regionY = 0; regionY * regionSize < rows; regionY++) {
+                int region = regionX * regionsHigh + regionY;
+                int maxX = Math.min((regionX + 1) * regionSize, map.width + 1);
+                int maxY = Math.min((regionY + 1) * regionSize, rows);
+                int base = Integer.MAX_VALUE;
+                int furthest = UNREACHABLE;
+                for (int x = regionX * regionSize; x < maxX; x++) {
+                    for (int y = regionY * regionSize; y < maxY; y++) {
+                        int distance = distances[x * rows + y];
+                        if (distance != UNREACHABLE) {
+                            base = Math.min(base, distance);
+                            furthest = Math.max(furthest, distance);
+                        }
+                    }
+                }
+                if (base == Integer.MAX_VALUE) {
+                    continue;
+                }
+                if (furthest - base >= UNKNOWN) {
+                    storeWide(landmark, region, distances, regionX * regionSize, regionY * regionSize, maxX, maxY);
+                    continue;
+                }
+                char[] regionOffsets = new char[regionSize * regionSize];
+                Arrays.fill(regionOffsets, UNKNOWN);
+                for (int x = regionX * regionSize; x < maxX; x++) {
+                    for (int y = regionY * regionSize; y < maxY; y++) {
+                        int distance = distances[x * rows + y];
+                        if (distance != UNREACHABLE) {
+                            regionOffsets[((x & regionMask) << regionShift) + (y & regionMask)] = (char) (distance - base);
+                        }
+                    }
+                }
+                bases[landmark][region] = base;
+                offsets[landmark][region] = regionOffsets;
+            }
+        }
+    }
+
+    private void storeWide(int landmark, int region, int[] distances, int minX, int minY, int maxX, int maxY) {
+        if (wideDistances[landmark] == null) {
+            wideDistances[landmark] = new int[bases[landmark].length][];
+        }
+        int regionSize = regionMask + 1;
+        int[] regionDistances = new int[regionSize * regionSize];
+        Arrays.fill(regionDistances, UNREACHABLE);
+        for (int x = minX; x < maxX; x++) {
+            for (int y = minY; y < maxY; y++) {
+                regionDistances[((x & regionMask) << regionShift) + (y & regionMask)] = distances[x * rows + y];
+            }
+        }
+        wideDistances[landmark][region] = regionDistances;
+    }
+
+    /**
+     * returns the steps from the given landmark to the given position, or
+     * UNREACHABLE if not known.
+     */
+    private int getDistance(int landmark, int x, int y) {
+        int region = (x >> regionShift) * regionsHigh + (y >> regionShift);
+        char[] regionOffsets = offsets[landmark][region];
+        if (regionOffsets == null) {
+            int[][] landmarkWideDistances = wideDistances[landmark];
+            if (landmarkWideDistances == null || landmarkWideDistances[region] == null) {
+                return UNREACHABLE;
+            }
+            return landmarkWideDistances[region][((x & regionMask) << regionShift) + (y & regionMask)];
+        }
+        char offset = regionOffsets[((x & regionMask) << regionShift) + (y & regionMask)];
+        return offset == UNKNOWN ? UNREACHABLE : bases[landmark][region] + offset;
+    }
+
+    public int getLandmarkCount() {
+        return landmarks.length;
+    }
+
+    @Override
+    public int estimateCosts(int x, int y, int endX, int endY) {
+        int steps = abs(x - endX) + abs(y - endY);
+        // a path can only be carried on through a node that was walkable, so
+        // each direction of the inequality needs the node it passes through
+        boolean walkable = map.isWalkable(x, y);
+        boolean endWalkable = map.isWalkable(endX, endY);
+        for (int landmark = 0; landmark < landmarks.length; landmark++) {
+            // a landmark missing either distance is missing it for every
+            // node the search reaches, so it is left out of the whole search
+            int endDistance = getDistance(landmark, endX, endY);
+            if (endDistance == UNREACHABLE) {
+                continue;
+            }
+            int distance = getDistance(landmark, x, y);
+            if (distance == UNREACHABLE) {
+                continue;
+            }
+            if (walkable && endDistance - distance > steps) {
+                steps = endDistance - distance;
+            }
+            if (endWalkable && distance - endDistance > steps) {
+                steps = distance - endDistance;
+            }
+        }
+        return steps * AbstractNode.BASIC_MOVEMENT_COST;
+    }
+
+}
@@ -1,29 +1,8 @@
-/*
- * Copyright 2015 Ross Binden
- *
- * Licensed under the Apache License, Version 2.0 (the "License");
- * you may not use this file except in compliance with the License.
- * You may obtain a copy of the License at
- *
- *     http://www.apache.org/licenses/LICENSE-2.0
- *
- * Unless required by applicable law or agreed to in writing, software
- * distributed under the License is distributed on an "AS IS" BASIS,
- * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- * See the License for the specific language governing permissions and
- * limitations under the License.
- */
-
-/*
- * // TODO
- * possible optimizations:
- * - calculate f as soon as g or h are set, so it will not have to be
- *      calculated each time it is retrieved
- * - store nodes in openList sorted by their f value.
- */
-
 package com.seventh_root.ld33.common.pathfinding;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -42,6 +21,12 @@ import java.util.List;
  * Create a NodeFactory that implements the NodeFactory interface.
  * Create Map instance with those created classes.
  * <p>
+ * Walkability is held by the map rather than the nodes, and nodes are only
+ * created when they are first asked for, so a large map stays cheap until
+ * a path is found across it.
+ * Searches work on node indices and reuse the same buffers from one search
+ * to the next, so a map may only search on one thread at a time.
+ * <p>
  *
  * @see AbstractNode
  * @see NodeFactory
@@ -53,9 +38,12 @@ public class Map<T extends AbstractNode> {
     /** weather or not it is possible to walk diagonally on the map in general. */
     protected static boolean CANMOVEDIAGONALY = true;
 
-    /** holds nodes. first dim represents x-, second y-axis. */
+    /** holds nodes, created when first asked for. first dim represents x-, second y-axis. */
     private T[][] nodes;
 
+    /** one bit per node index, set if the node is not walkable. */
+    private long[] blocked;
+
     /** width + 1 is size of first dimension of nodes. */
     protected int width;
     /** height + 1 is size of second dimension of nodes. */
@@ -64,6 +52,12 @@ public class Map<T extends AbstractNode> {
     /** a Factory to create instances of specified nodes. */
     private NodeFactory nodeFactory;
 
+    /** estimates hCosts by position, or null to ask the nodes themselves. */
+    private Heuristic heuristic;
+
+    /** the algorithm used to find paths. */
+    private SearchAlgorithm searchAlgorithm = SearchAlgorithm.A_STAR;
+
     /**
      * constructs a squared map with given width and hight.
      * <p>
@@ -76,25 +70,41 @@ public class Map<T extends AbstractNode> {
     public Map(int width, int height, NodeFactory nodeFactory) {
         // TODO check parameters. width and height should be > 0.
         this.nodeFactory = nodeFactory;        
-        nodes = (T[][]) new AbstractNode[width][height];
+        nodes = (T[][]) new AbstractNode[width][];
         this.width = width - 1;
         this.height = height - 1;
-        initEmptyNodes();
+        blocked = new long[(width * height + 63) >>> 6];
     }
 
     /**
-     * initializes all nodes. Their coordinates will be set correctly.
+     * sets the heuristic used to estimate hCosts during a search.
+     * <p>
+     * If none is set, hCosts are calculated by the nodes' own
+     * <code>setHCosts</code>, which creates a node for every position the
+     * search reaches.
+     *
+     * @param heuristic
      */
-    private void initEmptyNodes() {
-        for (int i = 0; i <= width; i++) {
-            for (int j = 0; j <= height; j++) {
-                nodes[i][j] = (T) nodeFactory.createNode(i, j);
-            }
-        }
+    public void setHeuristic(Heuristic heuristic) {
+        this.heuristic = heuristic;
+    }
+
+    /**
+     * sets the algorithm used to find paths.
+     *
+     * @param searchAlgorithm
+     */
+    public void setSearchAlgorithm(SearchAlgorithm searchAlgorithm) {
+        this.searchAlgorithm = searchAlgorithm;
+    }
+
+    public SearchAlgorithm getSearchAlgorithm() {
+        return searchAlgorithm;
     }
 
     public boolean isWalkable(int x, int y) {
-        return nodes[x][y].isWalkable();
+        int index = getIndex(x, y);
+        return (blocked[index >>> 6] & (1L << index)) == 0;
     }
 
     /**
@@ -108,7 +118,52 @@ public class Map<T extends AbstractNode> {
      */
     public void setWalkable(int x, int y, boolean bool) {
         // TODO check parameter.
-        nodes[x][y].setWalkable(bool);
+        int index = getIndex(x, y);
+        if (bool) {
+            blocked[index >>> 6] &= ~(1L << index);
+        } else {
+            blocked[index >>> 6] |= 1L << index;
+        }
+        if (staleColumns != null) {
+            // a node changes the jumps through it, and whether the nodes beside it are forced
+            for (int column = Math.max(x - 1, 0); column <= Math.min(x + 1, width); column++) {
+                staleColumns[column] = true;
+            }
+        }
+    }
+
+    /**
+     * returns a copy of the walkability of every node.
+     * <p>
+     * The copy can be handed to another map of the same size with
+     * <code>setWalkability</code>, to search it on another thread.
+     *
+     * @return the copy
+     */
+    public long[] copyWalkability() {
+        return blocked.clone();
+    }
+
+    /**
+     * sets the walkability of every node from a copy taken from a map of the same size.
+     *
+     * @param walkability
+     */
+    public void setWalkability(long[] walkability) {
+        System.arraycopy(walkability, 0, blocked, 0, blocked.length);
+        if (staleColumns != null) {
+            Arrays.fill(staleColumns, true);
+        }
+    }
+
+    /**
+     * sets every node on the map walkable.
+     */
+    public void setAllWalkable() {
+        Arrays.fill(blocked, 0L);
+        if (staleColumns != null) {
+            Arrays.fill(staleColumns, true);
+        }
     }
 
     /**
@@ -122,7 +177,26 @@ public class Map<T extends AbstractNode> {
      */
     public final T getNode(int x, int y) {
         // TODO check parameter.
-        return nodes[x][y];
+        T[] column = nodes[x];
+        if (column == null) {
+            column = (T[]) new AbstractNode[height + 1];
+            nodes[x] = column;
+        }
+        T node = column[y];
+        if (node == null) {
+            node = (T) nodeFactory.createNode(x, y);
+            column[y] = node;
+        }
+        node.setWalkable(isWalkable(x, y));
+        return node;
+    }
+
+    /**
+     * returns the index of the node at given coordinates, as used by the
+     * search buffers.
+     */
+    int getIndex(int x, int y) {
+        return x * (height + 1) + y;
     }
 
     /**
@@ -140,7 +214,7 @@ public class Map<T extends AbstractNode> {
         for (int j = height; j >= 0; j--) {
             print("|"); // boarder of map
             for (int i = 0; i <= width; i++) {
-                if (nodes[i][j].isWalkable()) {
+                if (isWalkable(i, j)) {
                     print("  ");
                 } else {
                     print(" #"); // draw unwakable
@@ -167,22 +241,55 @@ public class Map<T extends AbstractNode> {
 
     // variables needed for path finding
 
-    /** list containing nodes not visited but adjacent to visited nodes. */
-    private List<T> openList;
-    /** list containing nodes already visited/taken care of. */
-    private List<T> closedList;
-    /** done finding path? */
-    private boolean done = false;
+    /** direction to the previous node on the path, stored per node index. */
+    private static final byte FROM_LEFT = 1;
+    private static final byte FROM_RIGHT = 2;
+    private static final byte FROM_BELOW = 3;
+    private static final byte FROM_ABOVE = 4;
+
+    /**
+     * steps from each node index to the next jump point with greater y if
+     * positive, or minus the steps to the last walkable node before an
+     * obstacle. worked out a column at a time, when first needed.
+     */
+    private int[] upJumps;
+    /** the same as upJumps, towards smaller y. */
+    private int[] downJumps;
+    /** columns whose jump steps need working out again. */
+    private boolean[] staleColumns;
+
+    /** the current search. nodes stamped with an older one have no gCosts yet. */
+    private int generation;
+    /** the search each node index was last reached by. */
+    private int[] reached;
+    /** calculated costs from start node, valid if reached this search. */
+    private int[] gCosts;
+    /** direction to the previous node, valid if reached this search. */
+    private byte[] previous;
+    /** index of the previous jump point, valid if reached this search. */
+    private int[] previousJumpPoints;
+    /** the search each node index was last visited by. */
+    private int[] closed;
+    /** the number of nodes visited by the last search. */
+    private int expansions;
+
+    /** binary heap of node indices not visited but adjacent to visited nodes. */
+    private int[] openNodes;
+    /** fCosts of the entries in openNodes at the time they were added. */
+    private int[] openFCosts;
+    private int openSize;
 
     /**
      * finds an allowed path from start to goal coordinates on this map.
      * <p>
-     * This method uses the A* algorithm. The hCosts value is calculated in
-     * the given Node implementation.
+     * This method uses the A* algorithm with a binary heap as the open list,
+     * or Jump Point Search if that is the search algorithm set.
+     * The hCosts value is calculated by the heuristic if one is set, or the
+     * given Node implementation otherwise.
      * <p>
-     * This method will return a LinkedList containing the start node at the
-     * beginning followed by the calculated shortest allowed path ending
-     * with the end node.
+     * This method will return a list containing the calculated shortest
+     * allowed path, not including the start node and ending with the end
+     * node.
      * <p>
      * If no allowed path exists, an empty list will be returned.
      * <p>
@@ -197,122 +304,446 @@ public class Map<T extends AbstractNode> {
      */
     public final List<T> findPath(int oldX, int oldY, int newX, int newY) {
         // TODO check input
-        openList = new LinkedList<T>();
-        closedList = new LinkedList<T>();
-        openList.add(nodes[oldX][oldY]); // add starting node to open list
-
-        done = false;
-        T current;
-        while (!done) {
-            current = lowestFInOpen(); // get node with lowest fCosts from openList
-            closedList.add(current); // add current node to closed list
-            openList.remove(current); // delete current node from open list
-
-            if ((current.getX() == newX)
-                    && (current.getY() == newY)) { // found goal
-                return calcPath(nodes[oldX][oldY], current);
+        if (searchAlgorithm == SearchAlgorithm.JUMP_POINT_SEARCH) {
+            return findJumpPointPath(oldX, oldY, newX, newY);
+        }
+        return findPath(oldX, oldY, newX, newY, 0, 0, width, height);
+    }
+
+    /**
+     * finds an allowed path from start to goal coordinates that stays
+     * within the given bounds, using A* whatever the search algorithm set.
+     * <p>
+     * Start and goal must be within the bounds, which are inclusive.
+     *
+     * @param oldX
+     * @param oldY
+     * @param newX
+     * @param newY
+     * @param minX
+     * @param minY
+     * @param maxX
+     * @param maxY
+     * @return
+     */
+    public final List<T> findPath(int oldX, int oldY, int newX, int newY, int minX, int minY, int maxX, int maxY) {
+        startSearch();
+        int rows = height + 1;
+        int start = getIndex(oldX, oldY);
+        int goal = getIndex(newX, newY);
+        reached[start] = generation;
+        gCosts[start] = 0;
+        previous[start] = 0; // the path ends here, even if start is the goal
+        addToOpen(start, estimateCosts(oldX, oldY, newX, newY));
+
+        while (openSize > 0) {
+            int current = pollOpen(); // get node with lowest fCosts from open list
+            if (closed[current] == generation) {
+                continue; // already visited through a cheaper entry
             }
+            closed[current] = generation;
+            expansions++;
 
-            // for all adjacent nodes:
-            List<T> adjacentNodes = getAdjacent(current);
-            for (T currentAdj : adjacentNodes) {
-                if (!openList.contains(currentAdj)) { // node is not in openList
-                    currentAdj.setPrevious(current); // set current node as previous for this node
-                    currentAdj.setHCosts(nodes[newX][newY]); // set h costs of this node (estimated costs to goal)
-                    currentAdj.setGCosts(current); // set g costs of this node (costs from start to this node)
-                    openList.add(currentAdj); // add node to openList
-                } else { // node is in openList
-                    if (currentAdj.getGCosts() > currentAdj.calculateGCosts(current)) { // costs from current node are cheaper than previous costs
-                        currentAdj.setPrevious(current); // set current node as previous for this node
-                        currentAdj.setGCosts(current); // set g costs of this node (costs from start to this node)
-                    }
-                }
+            if (current == goal) { // found goal
+                return calcPath(start, goal);
             }
 
-            if (openList.isEmpty()) { // no path exists
-                return new LinkedList<T>(); // return empty list
+            // for all adjacent nodes:
+            int x = current / rows;
+            int y = current - x * rows;
+            int costs = gCosts[current];
+            if (x > minX) {
+                visitAdjacent(current - rows, x - 1, y, costs, FROM_RIGHT, newX, newY);
+            }
+            if (x < maxX) {
+                visitAdjacent(current + rows, x + 1, y, costs, FROM_LEFT, newX, newY);
+            }
+            if (y > minY) {
+                visitAdjacent(current - 1, x, y - 1, costs, FROM_ABOVE, newX, newY);
             }
+            if (y < maxY) {
+                visitAdjacent(current + 1, x, y + 1, costs, FROM_BELOW, newX, newY);
+            }
+        }
+        return new LinkedList<T>(); // no path exists
+    }
+
+    /**
+     * starts an A* search from start to goal coordinates that can be carried
+     * on a few nodes at a time, using its own state rather than the map's
+     * search buffers.
+     * <p>
+     * x/y must be bigger or equal to 0 and smaller or equal to width/hight.
+     *
+     * @param oldX
+     * @param oldY
+     * @param newX
+     * @param newY
+     * @return the search, which has not expanded any nodes yet
+     */
+    public final ResumableSearch<T> startResumableSearch(int oldX, int oldY, int newX, int newY) {
+        return new ResumableSearch<T>(this, oldX, oldY, newX, newY);
+    }
+
+    /**
+     * starts a D* Lite search from start to goal coordinates, which can
+     * repair its path as nodes change walkability rather than searching
+     * again.
+     * <p>
+     * x/y must be bigger or equal to 0 and smaller or equal to width/hight.
+     *
+     * @param oldX
+     * @param oldY
+     * @param newX
+     * @param newY
+     * @return the search, which has not expanded any nodes yet
+     */
+    public final DStarLite<T> startDStarLite(int oldX, int oldY, int newX, int newY) {
+        return new DStarLite<T>(this, oldX, oldY, newX, newY);
+    }
+
+    /**
+     * stamps a new search, allocating the search buffers on the first one.
+     */
+    private void startSearch() {
+        if (reached == null) {
+            int size = (width + 1) * (height + 1);
+            reached = new int[size];
+            gCosts = new int[size];
+            previous = new byte[size];
+            closed = new int[size];
+            openNodes = new int[64];
+            openFCosts = new int[64];
+        }
+        if (++generation == Integer.MAX_VALUE) {
+            Arrays.fill(reached, 0);
+            Arrays.fill(closed, 0);
+            generation = 1;
+        }
+        openSize = 0;
+        expansions = 0;
+    }
+
+    /**
+     * returns the number of nodes the last search visited, which is the
+     * number taken off the open list.
+     *
+     * @return the number of nodes
+     */
+    public int getExpansions() {
+        return expansions;
+    }
+
+    /**
+     * adds an adjacent node to the open list if it is walkable, not yet
+     * visited, and cheaper to reach from the current node than it was
+     * before.
+     */
+    private void visitAdjacent(int index, int x, int y, int currentCosts, byte from, int newX, int newY) {
+        if ((blocked[index >>> 6] & (1L << index)) != 0 || closed[index] == generation) {
+            return;
+        }
+        int costs = currentCosts + AbstractNode.BASIC_MOVEMENT_COST + getMovementPenalty(x, y);
+        if (reached[index] == generation && gCosts[index] <= costs) {
+            return;
         }
-        return null; // unreachable
+        reached[index] = generation;
+        gCosts[index] = costs;
+        previous[index] = from;
+        // a node that is already open is simply added again; the dearer entry is skipped when polled
+        addToOpen(index, costs + estimateCosts(x, y, newX, newY));
+    }
+
+    int getMovementPenalty(int x, int y) {
+        T[] column = nodes[x];
+        if (column == null || column[y] == null) {
+            return 0;
+        }
+        return column[y].getMovementPenalty();
+    }
+
+    int estimateCosts(int x, int y, int endX, int endY) {
+        if (heuristic != null) {
+            return heuristic.estimateCosts(x, y, endX, endY);
+        }
+        T node = getNode(x, y);
+        node.setHCosts(getNode(endX, endY));
+        return node.gethCosts();
     }
 
     /**
-     * calculates the found path between two points according to
-     * their given <code>previousNode</code> field.
+     * calculates the found path between two node indices according to
+     * the direction each node was reached from.
      *
      * @param start
      * @param goal
      * @return
      */
-    private List<T> calcPath(T start, T goal) {
-     // TODO if invalid nodes are given (eg cannot find from
-     // goal to start, this method will result in an infinite loop!)
-        LinkedList<T> path = new LinkedList<T>();
-
-        T curr = goal;
-        boolean done = false;
-        while (!done) {
-            path.addFirst(curr);
-            curr = (T) curr.getPrevious();
-
-            if (curr.equals(start)) {
-                done = true;
+    private List<T> calcPath(int start, int goal) {
+        int rows = height + 1;
+        List<T> path = new ArrayList<T>();
+        int current = goal;
+        do {
+            path.add(getNode(current / rows, current % rows));
+            switch (previous[current]) {
+                case FROM_LEFT:
+                    current -= rows;
+                    break;
+                case FROM_RIGHT:
+                    current += rows;
+                    break;
+                case FROM_BELOW:
+                    current -= 1;
+                    break;
+                case FROM_ABOVE:
+                    current += 1;
+                    break;
             }
-        }
+        } while (current != start);
+        Collections.reverse(path);
         return path;
     }
 
     /**
-     * returns the node with the lowest fCosts.
-     *
-     * @return
+     * finds a path with Jump Point Search.
+     * <p>
+     * Among the shortest paths, only those that move horizontally before
+     * they move vertically are searched. A horizontal jump stops wherever a
+     * vertical jump from it would find something, and a vertical jump stops
+     * where an obstacle behind it to the side opens up, as that is the only
+     * place such a path could turn. Only those jump points are added to the
+     * open list.
      */
-    private T lowestFInOpen() {
-        // TODO currently, this is done by going through the whole openList!
-        T cheapest = openList.get(0);
-        for (T node : openList) {
-            if (node.getFCosts() < cheapest.getFCosts()) {
-                cheapest = node;
+    private List<T> findJumpPointPath(int oldX, int oldY, int newX, int newY) {
+        startSearch();
+        if (previousJumpPoints == null) {
+            previousJumpPoints = new int[reached.length];
+            upJumps = new int[reached.length];
+            downJumps = new int[reached.length];
+            staleColumns = new boolean[width + 1];
+            Arrays.fill(staleColumns, true);
+        }
+        int rows = height + 1;
+        int start = getIndex(oldX, oldY);
+        int goal = getIndex(newX, newY);
+        reached[start] = generation;
+        gCosts[start] = 0;
+        previousJumpPoints[start] = -1;
+        addToOpen(start, estimateCosts(oldX, oldY, newX, newY));
+
+        while (openSize > 0) {
+            int current = pollOpen();
+            if (closed[current] == generation) {
+                continue;
+            }
+            closed[current] = generation;
+            expansions++;
+
+            if (current == goal) {
+                return calcJumpPointPath(start, goal);
+            }
+
+            int x = current / rows;
+            int y = current - x * rows;
+            int previousJumpPoint = previousJumpPoints[current];
+            if (previousJumpPoint < 0) { // start node: search every direction
+                jumpFrom(current, x, y, 1, 0, newX, newY);
+                jumpFrom(current, x, y, -1, 0, newX, newY);
+                jumpFrom(current, x, y, 0, 1, newX, newY);
+                jumpFrom(current, x, y, 0, -1, newX, newY);
+            } else if (previousJumpPoint / rows != x) { // reached horizontally
+                int dx = x > previousJumpPoint / rows ? 1 : -1;
+                jumpFrom(current, x, y, dx, 0, newX, newY);
+                jumpFrom(current, x, y, 0, 1, newX, newY);
+                jumpFrom(current, x, y, 0, -1, newX, newY);
+            } else { // reached vertically
+                int dy = y > previousJumpPoint - x * rows ? 1 : -1;
+                jumpFrom(current, x, y, 0, dy, newX, newY);
+                if (isForced(x - 1, y, dy)) {
+                    jumpFrom(current, x, y, -1, 0, newX, newY);
+                }
+                if (isForced(x + 1, y, dy)) {
+                    jumpFrom(current, x, y, 1, 0, newX, newY);
+                }
             }
         }
-        return cheapest;
+        return new LinkedList<T>(); // no path exists
     }
 
     /**
-     * returns a LinkedList with nodes adjacent to the given node.
-     * if those exist, are walkable and are not already in the closedList!
+     * jumps from the given node in the given direction and adds the jump
+     * point found, if any, to the open list.
      */
-    private List<T> getAdjacent(T node) {
-        int x = node.getX();
-        int y = node.getY();
-        List<T> adj = new LinkedList<T>();
-        T temp;
-        if (x > 0) {
-            temp = this.getNode((x - 1), y);
-            if (temp.isWalkable() && !closedList.contains(temp)) {
-                adj.add(temp);
+    private void jumpFrom(int current, int x, int y, int dx, int dy, int newX, int newY) {
+        int jumpPoint = dx != 0 ? jumpHorizontally(x, y, dx, newX, newY) : jumpVertically(x, y, dy, newX, newY);
+        if (jumpPoint < 0 || closed[jumpPoint] == generation) {
+            return;
+        }
+        int rows = height + 1;
+        int jumpX = jumpPoint / rows;
+        int jumpY = jumpPoint - jumpX * rows;
+        int costs = gCosts[current] + (Math.abs(jumpX - x) + Math.abs(jumpY - y)) * AbstractNode.BASIC_MOVEMENT_COST;
+        if (reached[jumpPoint] == generation && gCosts[jumpPoint] <= costs) {
+            return;
+        }
+        reached[jumpPoint] = generation;
+        gCosts[jumpPoint] = costs;
+        previousJumpPoints[jumpPoint] = current;
+        addToOpen(jumpPoint, costs + estimateCosts(jumpX, jumpY, newX, newY));
+    }
+
+    /**
+     * returns the index of the next jump point horizontally from the given
+     * node, or -1 if there is none before an obstacle.
+     * <p>
+     * a node passed is a jump point if a vertical jump from it finds one,
+     * which is looked up from the jump steps of its column rather than
+     * scanned for, so a jump costs one step per node it passes.
+     */
+    private int jumpHorizontally(int x, int y, int dx, int newX, int newY) {
+        while (true) {
+            x += dx;
+            if (x < 0 || x > width || !isWalkable(x, y)) {
+                return -1;
+            }
+            if ((x == newX && y == newY)
+                    || jumpVertically(x, y, 1, newX, newY) != -1
+                    || jumpVertically(x, y, -1, newX, newY) != -1) {
+                return getIndex(x, y);
             }
         }
-        if (x < width) {
-            temp = this.getNode((x + 1), y);
-            if (temp.isWalkable() && !closedList.contains(temp)) {
-                adj.add(temp);
+    }
+
+    /**
+     * returns the index of the next jump point vertically from the given
+     * node, or -1 if there is none before an obstacle.
+     */
+    private int jumpVertically(int x, int y, int dy, int newX, int newY) {
+        if (staleColumns[x]) {
+            updateColumn(x);
+        }
+        int jump = (dy > 0 ? upJumps : downJumps)[getIndex(x, y)];
+        if (x == newX) {
+            int stepsToGoal = (newY - y) * dy;
+            if (stepsToGoal > 0 && stepsToGoal <= Math.abs(jump)) {
+                return getIndex(newX, newY);
             }
         }
+        return jump > 0 ? getIndex(x, y + jump * dy) : -1;
+    }
+
+    /**
+     * works out the jump steps of every node in the given column, walking
+     * back from each end so that each node's steps follow from the next.
+     */
+    private void updateColumn(int x) {
+        staleColumns[x] = false;
+        int base = getIndex(x, 0);
+        for (int y = height; y >= 0; y--) {
+            upJumps[base + y] = nextJump(upJumps, base, x, y, 1);
+        }
+        for (int y = 0; y <= height; y++) {
+            downJumps[base + y] = nextJump(downJumps, base, x, y, -1);
+        }
+    }
 
-        if (y > 0) {
-            temp = this.getNode(x, (y - 1));
-            if (temp.isWalkable() && !closedList.contains(temp)) {
-                adj.add(temp);
+    private int nextJump(int[] jumps, int base, int x, int y, int dy) {
+        int next = y + dy;
+        if (next < 0 || next > height || !isWalkable(x, next)) {
+            return 0;
+        }
+        if (isForced(x - 1, next, dy) || isForced(x + 1, next, dy)) {
+            return 1;
+        }
+        int after = jumps[base + next];
+        return after > 0 ? after + 1 : after - 1;
+    }
+
+    /**
+     * whether a path moving vertically would have to turn to reach the
+     * given side node, as the node before it on that side is blocked.
+     */
+    private boolean isForced(int sideX, int y, int dy) {
+        return sideX >= 0 && sideX <= width && isWalkable(sideX, y) && !isWalkable(sideX, y - dy);
+    }
+
+    /**
+     * calculates the found path between two node indices, filling in the
+     * nodes between each jump point and the previous one.
+     */
+    private List<T> calcJumpPointPath(int start, int goal) {
+        int rows = height + 1;
+        List<T> path = new ArrayList<T>();
+        int current = goal;
+        while (current != start) {
+            int previousJumpPoint = previousJumpPoints[current];
+            int step = previousJumpPoint / rows == current / rows
+                    ? (current > previousJumpPoint ? 1 : -1)
+                    : (current > previousJumpPoint ? rows : -rows);
+            for (int index = current; index != previousJumpPoint; index -= step) {
+                path.add(getNode(index / rows, index % rows));
             }
+            current = previousJumpPoint;
+        }
+        if (path.isEmpty()) {
+            path.add(getNode(goal / rows, goal % rows));
         }
-        if (y < height) {
-            temp = this.getNode(x, (y + 1));
-            if (temp.isWalkable() && !closedList.contains(temp)) {
-                adj.add(temp);
+        Collections.reverse(path);
+        return path;
+    }
+
+    private void addToOpen(int index, int fCosts) {
+        if (openSize == openNodes.length) {
+            openNodes = Arrays.copyOf(openNodes, openSize * 2);
+            openFCosts = Arrays.copyOf(openFCosts, openSize * 2);
+        }
+        int position = openSize++;
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            if (!isCheaper(index, fCosts, openNodes[parent], openFCosts[parent])) {
+                break;
             }
+            openNodes[position] = openNodes[parent];
+            openFCosts[position] = openFCosts[parent];
+            position = parent;
         }
-        return adj;
+        openNodes[position] = index;
+        openFCosts[position] = fCosts;
+    }
+
+    /**
+     * removes and returns the node index with the lowest fCosts.
+     */
+    private int pollOpen() {
+        int cheapest = openNodes[0];
+        int index = openNodes[--openSize];
+        int fCosts = openFCosts[openSize];
+        int position = 0;
+        int half = openSize >>> 1;
+        while (position < half) {
+            int child = (position << 1) + 1;
+            int right = child + 1;
+            if (right < openSize && isCheaper(openNodes[right], openFCosts[right], openNodes[child], openFCosts[child])) {
+                child = right;
+            }
+            if (!isCheaper(openNodes[child], openFCosts[child], index, fCosts)) {
+                break;
+            }
+            openNodes[position] = openNodes[child];
+            openFCosts[position] = openFCosts[child];
+            position = child;
+        }
+        openNodes[position] = index;
+        openFCosts[position] = fCosts;
+        return cheapest;
+    }
+
+    /**
+     * orders open nodes by fCosts, then by the furthest from the start, as
+     * that is likely the closest to the goal.
+     */
+    private boolean isCheaper(int index, int fCosts, int otherIndex, int otherFCosts) {
+        return fCosts < otherFCosts || (fCosts == otherFCosts && gCosts[index] > gCosts[otherIndex]);
     }
 
 }
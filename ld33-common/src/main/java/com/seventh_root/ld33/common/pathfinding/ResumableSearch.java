@@ -0,0 +1,421 @@
+package com.seventh_root.ld33.common.pathfinding;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An A* search on a <code>Map</code> that can be stopped after a number of
+ * node expansions and carried on later.
+ * <p>
+ * Unlike <code>Map.findPath</code>, a resumable search keeps its own state,
+ * in tables that only grow with the nodes it reaches, so any number of them
+ * can be in progress on one map at a time. Each step sees the walkability
+ * of the map at that time. The goal may be entered even if it is not
+ * walkable.
+ * <p>
+ * While the search is in progress, the best path so far leads to the
+ * visited node closest to the goal. Paths can be asked for from any node
+ * the search has reached, so something following the best path so far can
+ * switch to a later one from where it has got to.
+ *
+ * @see Map#startResumableSearch(int, int, int, int)
+ * @param <T>
+ */
+public class ResumableSearch<T extends AbstractNode> {
+
+    private static final int EMPTY = -1;
+
+    private Map<T> map;
+    private int rows;
+    private int goalX;
+    private int goalY;
+    private int goal;
+
+    /** open addressing table of reached node indices, EMPTY where unused. */
+    private int[] keys;
+    /** calculated costs from start node, per table slot. */
+    private int[] gCosts;
+    /** table slot of the previous node on the path, or EMPTY for the start. */
+    private int[] parents;
+    /** number of nodes between the start and this one, per table slot. */
+    private int[] depths;
+    /** whether the node has been visited, per table slot. */
+    private boolean[] closed;
+    private int size;
+
+    /** binary heap of table slots not visited but adjacent to visited nodes. */
+    private int[] openSlots;
+    /** fCosts of the entries in openSlots at the time they were added. */
+    private int[] openFCosts;
+    /** gCosts of the entries in openSlots at the time they were added. */
+    private int[] openGCosts;
+    private int openSize;
+
+    /** the visited slot with the lowest hCosts so far. */
+    private int best;
+    private int bestHCosts;
+    private int expansions;
+    private boolean finished;
+    private boolean found;
+
+    ResumableSearch(Map<T> map, int oldX, int oldY, int newX, int newY) {
+        this.map = map;
+        this.rows = map.height + 1;
+        this.goalX = newX;
+        this.goalY = newY;
+        this.goal = map.getIndex(newX, newY);
+        keys = new int[256];
+        Arrays.fill(keys, EMPTY);
+        gCosts = new int[256];
+        parents = new int[256];
+        depths = new int[256];
+        closed = new boolean[256];
+        openSlots = new int[64];
+        openFCosts = new int[64];
+        openGCosts = new int[64];
+        int start = getSlot(map.getIndex(oldX, oldY));
+        gCosts[start] = 0;
+        parents[start] = EMPTY;
+        depths[start] = 0;
+        best = start;
+        bestHCosts = map.estimateCosts(oldX, oldY, newX, newY);
+        addToOpen(start, bestHCosts, 0);
+    }
+
+    /**
+     * expands up to the given number of nodes, or until the search is
+     * finished.
+     *
+     * @param maxExpansions
+     * @return the number of nodes expanded
+     */
+    public int step(int maxExpansions) {
+        int stepExpansions = 0;
+        while (!finished && stepExpansions < maxExpansions) {
+            if (openSize == 0) { // no path exists
+                finished = true;
+                break;
+            }
+            int current = pollOpen();
+            if (closed[current]) {
+                continue; // already visited through a cheaper entry
+            }
+            closed[current] = true;
+            stepExpansions++;
+            int index = keys[current];
+            if (index == goal) {
+                best = current;
+                found = true;
+                finished = true;
+                break;
+            }
+            int x = index / rows;
+            int y = index - x * rows;
+            int hCosts = map.estimateCosts(x, y, goalX, goalY);
+            if (hCosts < bestHCosts) {
+                best = current;
+                bestHCosts = hCosts;
+            }
+            if ((size + 4) * 2 > keys.length) { // make room for every adjacent node, so current stays put
+                grow();
+                current = findSlot(index);
+            }
+            if (x > 0) {
+                visitAdjacent(current, index - rows, x - 1, y);
+            }
+            if (x < map.width) {
+                visitAdjacent(current, index + rows, x + 1, y);
+            }
+            if (y > 0) {
+                visitAdjacent(current, index - 1, x, y - 1);
+            }
+            if (y < map.height) {
+                visitAdjacent(current, index + 1, x, y + 1);
+            }
+        }
+        expansions += stepExpansions;
+        return stepExpansions;
+    }
+
+    private void visitAdjacent(int current, int index, int x, int y) {
+        if (index != goal && !map.isWalkable(x, y)) {
+            return;
+        }
+        int costs = gCosts[current] + AbstractNode.BASIC_MOVEMENT_COST + map.getMovementPenalty(x, y);
+        int slot = findSlot(index);
+        if (slot == EMPTY) {
+            slot = getSlot(index);
+        } else if (closed[slot] || gCosts[slot] <= costs) {
+            return;
+        }
+        gCosts[slot] = costs;
+        parents[slot] = current;
+        depths[slot] = depths[current] + 1;
+        // a node that is already open is simply added again; the dearer entry is skipped when polled
+        addToOpen(slot, costs + map.estimateCosts(x, y, goalX, goalY), costs);
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * returns whether the search has finished by reaching the goal.
+     *
+     * @return found
+     */
+    public boolean isFound() {
+        return found;
+    }
+
+    /**
+     * returns the index of the visited node closest to the goal, which the
+     * best path so far leads to. visited nodes keep the way they were
+     * reached, so the best path so far only changes when this does.
+     *
+     * @return best
+     */
+    public int getBest() {
+        return keys[best];
+    }
+
+    /**
+     * returns the number of nodes expanded so far.
+     *
+     * @return expansions
+     */
+    public int getExpansions() {
+        return expansions;
+    }
+
+    /**
+     * returns the path from the given coordinates to the goal if it has been
+     * found, or to the node closest to it otherwise, not including the node at
+     * the given coordinates.
+     * <p>
+     * The path leads back along the way the search reached the given node
+     * until it meets the way to the goal.
+     *
+     * @param x
+     * @param y
+     * @return path, or null if the search has not reached the given coordinates
+     */
+    public List<T> getPathFrom(int x, int y) {
+        int from = findSlot(map.getIndex(x, y));
+        if (from == EMPTY) {
+            return null;
+        }
+        List<T> back = new ArrayList<T>();
+        List<T> forward = new ArrayList<T>();
+        int up = from;
+        int down = best;
+        while (depths[down] > depths[up]) {
+            forward.add(getNode(down));
+            down = parents[down];
+        }
+        while (depths[up] > depths[down]) {
+            up = parents[up];
+            back.add(getNode(up));
+        }
+        while (up != down) {
+            forward.add(getNode(down));
+            down = parents[down];
+            up = parents[up];
+            back.add(getNode(up));
+        }
+        Collections.reverse(forward);
+        back.addAll(forward);
+        return back;
+    }
+
+    /**
+     * returns the rest of the path from the given coordinates once a path
+     * to an earlier best node has been followed, from the earlier best node
+     * to the node closest to the goal so far, not including the earlier one.
+     * this is only the same as the path from the given coordinates if the
+     * way the search reached the best node leads through the earlier one,
+     * and the given coordinates were not reached through it.
+     *
+     * @param earlierBest the index of the earlier best node, as returned by
+     * getBest
+     * @param x
+     * @param y
+     * @return path, or null if it is not the rest of the path from the given
+     * coordinates
+     */
+    public List<T> getPathAfter(int earlierBest, int x, int y) {
+        int from = findSlot(earlierBest);
+        int at = findSlot(map.getIndex(x, y));
+        if (from == EMPTY || at == EMPTY || depths[from] > depths[best]) {
+            return null;
+        }
+        int up = at;
+        while (depths[up] > depths[from]) {
+            up = parents[up];
+        }
+        if (up == from && at != from) {
+            return null; // the way back from the given coordinates meets the best node below the earlier one
+        }
+        List<T> forward = new ArrayList<T>(depths[best] - depths[from]);
+        int down = best;
+        while (depths[down] > depths[from]) {
+            forward.add(getNode(down));
+            down = parents[down];
+        }
+        if (down != from) {
+            return null;
+        }
+        Collections.reverse(forward);
+        return forward;
+    }
+
+    private T getNode(int slot) {
+        int index = keys[slot];
+        return map.getNode(index / rows, index % rows);
+    }
+
+    /**
+     * returns the table slot of the given node index, or EMPTY if it has not
+     * been reached.
+     */
+    private int findSlot(int index) {
+        int mask = keys.length - 1;
+        for (int slot = mix(index) & mask; ; slot = (slot + 1) & mask) {
+            if (keys[slot] == index) {
+                return slot;
+            }
+            if (keys[slot] == EMPTY) {
+                return EMPTY;
+            }
+        }
+    }
+
+    /**
+     * returns the table slot of the given node index, adding it if it has
+     * not been reached. the table must have room for it.
+     */
+    private int getSlot(int index) {
+        int mask = keys.length - 1;
+        int slot = mix(index) & mask;
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == index) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = index;
+        size++;
+        return slot;
+    }
+
+    /**
+     * doubles the table, moving every entry and rewriting the slots held in
+     * parents and the open list.
+     */
+    private void grow() {
+        int[] oldKeys = keys;
+        int[] oldGCosts = gCosts;
+        int[] oldParents = parents;
+        int[] oldDepths = depths;
+        boolean[] oldClosed = closed;
+        int capacity = oldKeys.length * 2;
+        keys = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+        gCosts = new int[capacity];
+        parents = new int[capacity];
+        depths = new int[capacity];
+        closed = new boolean[capacity];
+        int[] moved = new int[oldKeys.length];
+        int mask = capacity - 1;
+        for (int oldSlot = 0; oldSlot < oldKeys.length; oldSlot++) {
+            if (oldKeys[oldSlot] == EMPTY) {
+                continue;
+            }
+            int slot = mix(oldKeys[oldSlot]) & mask;
+            while (keys[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = oldKeys[oldSlot];
+            gCosts[slot] = oldGCosts[oldSlot];
+            depths[slot] = oldDepths[oldSlot];
+            closed[slot] = oldClosed[oldSlot];
+            moved[oldSlot] = slot;
+        }
+        for (int oldSlot = 0; oldSlot < oldKeys.length; oldSlot++) {
+            if (oldKeys[oldSlot] != EMPTY) {
+                parents[moved[oldSlot]] = oldParents[oldSlot] == EMPTY ? EMPTY : moved[oldParents[oldSlot]];
+            }
+        }
+        for (int i = 0; i < openSize; i++) {
+            openSlots[i] = moved[openSlots[i]];
+        }
+        best = moved[best];
+    }
+
+    private static int mix(int index) {
+        return index * 0x9E3779B9 >>> 7;
+    }
+
+    private void addToOpen(int slot, int fCosts, int gCosts) {
+        if (openSize == openSlots.length) {
+            openSlots = Arrays.copyOf(openSlots, openSize * 2);
+            openFCosts = Arrays.copyOf(openFCosts, openSize * 2);
+            openGCosts = Arrays.copyOf(openGCosts, openSize * 2);
+        }
+        int position = openSize++;
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            if (!isCheaper(fCosts, gCosts, openFCosts[parent], openGCosts[parent])) {
+                break;
+            }
+            openSlots[position] = openSlots[parent];
+            openFCosts[position] = openFCosts[parent];
+            openGCosts[position] = openGCosts[parent];
+            position = parent;
+        }
+        openSlots[position] = slot;
+        openFCosts[position] = fCosts;
+        openGCosts[position] = gCosts;
+    }
+
+    /**
+     * removes and returns the table slot with the lowest fCosts.
+     */
+    private int pollOpen() {
+        int cheapest = openSlots[0];
+        int slot = openSlots[--openSize];
+        int fCosts = openFCosts[openSize];
+        int gCosts = openGCosts[openSize];
+        int position = 0;
+        int half = openSize >>> 1;
+        while (position < half) {
+            int child = (position << 1) + 1;
+            int right = child + 1;
+            if (right < openSize && isCheaper(openFCosts[right], openGCosts[right], openFCosts[child], openGCosts[child])) {
+                child = right;
+            }
+            if (!isCheaper(openFCosts[child], openGCosts[child], fCosts, gCosts)) {
+                break;
+            }
+            openSlots[position] = openSlots[child];
+            openFCosts[position] = openFCosts[child];
+            openGCosts[position] = openGCosts[child];
+            position = child;
+        }
+        openSlots[position] = slot;
+        openFCosts[position] = fCosts;
+        openGCosts[position] = gCosts;
+        return cheapest;
+    }
+
+    /**
+     * orders open nodes by fCosts, then by the furthest from the start, as
+     * that is likely the closest to the goal.
+     */
+    private boolean isCheaper(int fCosts, int gCosts, int otherFCosts, int otherGCosts) {
+        return fCosts < otherFCosts || (fCosts == otherFCosts && gCosts > otherGCosts);
+    }
+
+}
@@ -0,0 +1,23 @@
+package com.seventh_root.ld33.common.pathfinding;
+
+/**
+ * The algorithms a <code>Map</code> can find paths with.
+ *
+ * @see Map#setSearchAlgorithm(SearchAlgorithm)
+ */
+public enum SearchAlgorithm {
+
+    /** A* over every node, honouring movement penalties. */
+    A_STAR,
+
+    /**
+     * Jump Point Search for 4-connected grids.
+     * <p>
+     * Runs A* over jump points only, skipping the runs of symmetric nodes
+     * in between, which makes it much faster on open maps. It finds paths
+     * of the same length as A*, but assumes every move costs the same, so
+     * movement penalties are ignored.
+     */
+    JUMP_POINT_SEARCH
+
+}
@@ -17,6 +17,7 @@
 package com.seventh_root.ld33.common.player;
 
 import com.seventh_root.ld33.common.database.DatabaseEntity;
+import com.seventh_root.ld33.common.util.UUIDMap;
 import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang.RandomStringUtils;
 
@@ -32,22 +33,27 @@ import static org.apache.commons.codec.digest.DigestUtils.sha256Hex;
 
 public class Player implements DatabaseEntity {
 
-    private static Map<String, Player> playersByUUID;
+    private static UUIDMap<Player> playersByUUID;
     private static Map<String, Player> playersByName;
 
     static {
-        playersByUUID = new HashMap<>();
+        playersByUUID = new UUIDMap<>();
         playersByName = new HashMap<>();
     }
 
+    // Players are looked up and signed up on network threads as well as the tick thread
     public static void cachePlayer(Player player) {
-        playersByUUID.put(player.getUUID().toString(), player);
-        playersByName.put(player.getName(), player);
+        synchronized (playersByUUID) {
+            playersByUUID.put(player.getUUID(), player);
+            playersByName.put(player.getName(), player);
+        }
     }
 
     public static void uncachePlayer(Player player) {
-        playersByUUID.remove(player.getUUID().toString());
-        playersByName.remove(player.getName());
+        synchronized (playersByUUID) {
+            playersByUUID.remove(player.getUUID());
+            playersByName.remove(player.getName());
+        }
     }
 
     private Connection databaseConnection;
@@ -75,6 +81,18 @@ public class Player implements DatabaseEntity {
         this.resources = resources;
     }
 
+    /**
+     * Creates a new player without writing it to the database, so that it can be inserted later from a
+     * {@link PlayerSnapshot}.
+     */
+    public Player(Connection databaseConnection, UUID uuid, String name, String password) throws SQLException {
+        this.databaseConnection = databaseConnection;
+        this.uuid = uuid;
+        this.name = name;
+        setPassword(password);
+        this.resources = 100;
+    }
+
     public Player(UUID uuid, String name, int resources) {
         this.uuid = uuid;
         this.name = name;
@@ -128,30 +146,14 @@ public class Player implements DatabaseEntity {
 
     @Override
     public void insert() throws SQLException {
-        PreparedStatement statement = getDatabaseConnection().prepareStatement(
-                "INSERT INTO player(uuid, name, password_hash, password_salt, resources) VALUES(?, ?, ?, ?, ?)"
-        );
         setUUID(UUID.randomUUID());
-        statement.setString(1, getUUID().toString());
-        statement.setString(2, getName());
-        statement.setString(3, getPasswordHash());
-        statement.setString(4, getPasswordSalt());
-        statement.setInt(5, getResources());
-        statement.executeUpdate();
+        new PlayerSnapshot(this).insert();
         cachePlayer(this);
     }
 
     @Override
     public void update() throws SQLException {
-        PreparedStatement statement = getDatabaseConnection().prepareStatement(
-                "UPDATE player SET name = ?, password_hash = ?, password_salt = ?, resources = ? WHERE uuid = ?"
-        );
-        statement.setString(1, getName());
-        statement.setString(2, getPasswordHash());
-        statement.setString(3, getPasswordSalt());
-        statement.setInt(4, getResources());
-        statement.setString(5, getUUID().toString());
-        statement.executeUpdate();
+        new PlayerSnapshot(this).update();
     }
 
     @Override
@@ -164,7 +166,11 @@ public class Player implements DatabaseEntity {
     }
 
     public static Player getByUUID(Connection databaseConnection, UUID uuid) throws SQLException {
-        if (playersByUUID.containsKey(uuid.toString())) return playersByUUID.get(uuid.toString());
+        Player cachedPlayer;
+        synchronized (playersByUUID) {
+            cachedPlayer = playersByUUID.get(uuid);
+        }
+        if (cachedPlayer != null) return cachedPlayer;
         if (databaseConnection != null) {
             PreparedStatement statement = databaseConnection.prepareStatement(
                     "SELECT uuid, name, password_hash, password_salt, resources FROM player WHERE uuid = ? LIMIT 1"
@@ -181,7 +187,10 @@ public class Player implements DatabaseEntity {
     }
 
     public static Player getByName(Connection databaseConnection, String playerName) throws SQLException {
-        if (playersByName.containsKey(playerName)) return playersByName.get(playerName);
+        synchronized (playersByUUID) {
+            Player cachedPlayer = playersByName.get(playerName);
+            if (cachedPlayer != null) return cachedPlayer;
+        }
         if (databaseConnection != null) {
             PreparedStatement statement = databaseConnection.prepareStatement(
                     "SELECT uuid, name, password_hash, password_salt, resources FROM player WHERE name = ? LIMIT 1"
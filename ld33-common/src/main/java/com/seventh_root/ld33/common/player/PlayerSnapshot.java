@@ -0,0 +1,70 @@
+/*
+ * Copyright 2015 Ross Binden
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seventh_root.ld33.common.player;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.UUID;
+
+/**
+ * The values of a player's row in the database at the time the snapshot was taken, so that the row can be written on
+ * another thread while the player carries on changing.
+ */
+public class PlayerSnapshot {
+
+    private Connection databaseConnection;
+    private UUID uuid;
+    private String name;
+    private String passwordHash;
+    private String passwordSalt;
+    private int resources;
+
+    public PlayerSnapshot(Player player) {
+        this.databaseConnection = player.getDatabaseConnection();
+        this.uuid = player.getUUID();
+        this.name = player.getName();
+        this.passwordHash = player.getPasswordHash();
+        this.passwordSalt = player.getPasswordSalt();
+        this.resources = player.getResources();
+    }
+
+    public void insert() throws SQLException {
+        PreparedStatement statement = databaseConnection.prepareStatement(
+                "INSERT INTO player(uuid, name, password_hash, password_salt, resources) VALUES(?, ?, ?, ?, ?)"
+        );
+        statement.setString(1, uuid.toString());
+        statement.setString(2, name);
+        statement.setString(3, passwordHash);
+        statement.setString(4, passwordSalt);
+        statement.setInt(5, resources);
+        statement.executeUpdate();
+    }
+
+    public void update() throws SQLException {
+        PreparedStatement statement = databaseConnection.prepareStatement(
+                "UPDATE player SET name = ?, password_hash = ?, password_salt = ?, resources = ? WHERE uuid = ?"
+        );
+        statement.setString(1, name);
+        statement.setString(2, passwordHash);
+        statement.setString(3, passwordSalt);
+        statement.setInt(4, resources);
+        statement.setString(5, uuid.toString());
+        statement.executeUpdate();
+    }
+
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2015 Ross Binden
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seventh_root.ld33.common.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * An open-addressing hash map keyed by the two longs of a {@link UUID}.
+ * <p>
+ * Lookups don't allocate: the key is hashed straight from its bits rather than from a string.
+ * Collisions are resolved by linear probing, and removal shifts the rest of the probe run back
+ * so no tombstones are needed. Null values are not supported.
+ *
+ * @param <V> the value type
+ */
+public class UUIDMap<V> {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private long[] mostSignificantBits;
+    private long[] leastSignificantBits;
+    private Object[] values;
+    private int size;
+    private int mask;
+
+    public UUIDMap() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    private void allocate(int capacity) {
+        mostSignificantBits = new long[capacity];
+        leastSignificantBits = new long[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public V get(UUID uuid) {
+        return get(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(long most, long least) {
+        int index = find(most, least);
+        return index >= 0 ? (V) values[index] : null;
+    }
+
+    public boolean containsKey(UUID uuid) {
+        return find(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits()) >= 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V put(UUID uuid, V value) {
+        if (value == null) throw new IllegalArgumentException("UUIDMap does not support null values");
+        long most = uuid.getMostSignificantBits();
+        long least = uuid.getLeastSignificantBits();
+        int index = hash(most, least) & mask;
+        while (values[index] != null) {
+            if (mostSignificantBits[index] == most && leastSignificantBits[index] == least) {
+                V previous = (V) values[index];
+                values[index] = value;
+                return previous;
+            }
+            index = (index + 1) & mask;
+        }
+        mostSignificantBits[index] = most;
+        leastSignificantBits[index] = least;
+        values[index] = value;
+        if (++size > values.length >> 1) resize();
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V remove(UUID uuid) {
+        int index = find(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+        if (index < 0) return null;
+        V previous = (V) values[index];
+        values[index] = null;
+        size--;
+        // shift back any entries in the same probe run that would no longer be reachable
+        int next = (index + 1) & mask;
+        while (values[next] != null) {
+            int home = hash(mostSignificantBits[next], leastSignificantBits[next]) & mask;
+            if (((next - home) & mask) >= ((next - index) & mask)) {
+                mostSignificantBits[index] = mostSignificantBits[next];
+                leastSignificantBits[index] = leastSignificantBits[next];
+                values[index] = values[next];
+                values[next] = null;
+                index = next;
+            }
+            next = (next + 1) & mask;
+        }
+        return previous;
+    }
+
+    @SuppressWarnings("unchecked")
+    public List<V> values() {
+        List<V> list = new ArrayList<>(size);
+        for (Object value : values) {
+            if (value != null) list.add((V) value);
+        }
+        return list;
+    }
+
+    private int find(long most, long least) {
+        int index = hash(most, least) & mask;
+        while (values[index] != null) {
+            if (mostSignificantBits[index] == most && leastSignificantBits[index] == least) return index;
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void resize() {
+        long[] oldMostSignificantBits = mostSignificantBits;
+        long[] oldLeastSignificantBits = leastSignificantBits;
+        Object[] oldValues = values;
+        allocate(oldValues.length << 1);
+        for (int oldIndex = 0; oldIndex < oldValues.length; oldIndex++) {
+            if (oldValues[oldIndex] == null) continue;
+            int index = hash(oldMostSignificantBits[oldIndex], oldLeastSignificantBits[oldIndex]) & mask;
+            while (values[index] != null) {
+                index = (index + 1) & mask;
+            }
+            mostSignificantBits[index] = oldMostSignificantBits[oldIndex];
+            leastSignificantBits[index] = oldLeastSignificantBits[oldIndex];
+            values[index] = oldValues[oldIndex];
+        }
+    }
+
+    static int hash(long most, long least) {
+        long hash = most * 0x9E3779B97F4A7C15L ^ least;
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        return (int) hash;
+    }
+
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2015 Ross Binden
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seventh_root.ld33.common.world;
+
+import com.seventh_root.ld33.common.pathfinding.Heuristic;
+import com.seventh_root.ld33.common.pathfinding.Map;
+import com.seventh_root.ld33.common.pathfinding.NodeFactoryImpl;
+import com.seventh_root.ld33.common.pathfinding.NodeImpl;
+import com.seventh_root.ld33.common.pathfinding.SearchAlgorithm;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.lang.System.nanoTime;
+
+/**
+ * Searches for paths on a pool of worker threads, so that one expensive search doesn't hold up the tick.
+ * <p>
+ * Each search runs over a snapshot of the walls and flags in the world taken when it was submitted, which is only
+ * copied again once one has been placed or removed, and each worker keeps its own map and search buffers. Dragons
+ * are left out, as they will have moved on by the time the path is followed. Finished paths are handed back to
+ * their units by {@link #applyFinished()}, which the world calls at the start of each tick. Paths found from a
+ * snapshot that has since changed are not cached, and requests cancelled before a worker gets to them are skipped.
+ */
+public class AsyncPathfinder {
+
+    private World world;
+    private ExecutorService pool;
+    private ThreadLocal<Searcher> searchers;
+    private long[] walkability;
+    private int walkabilityVersion;
+    private Queue<PathRequest> finished;
+
+    private AtomicInteger pending;
+    private AtomicLong searches;
+    private AtomicLong queueNanos;
+    private AtomicLong searchNanos;
+    private AtomicLong maxQueueNanos;
+    private AtomicLong maxSearchNanos;
+
+    AsyncPathfinder(World world, ExecutorService pool) {
+        this.world = world;
+        this.pool = pool;
+        this.searchers = ThreadLocal.withInitial(Searcher::new);
+        this.walkabilityVersion = -1;
+        this.finished = new ConcurrentLinkedQueue<>();
+        this.pending = new AtomicInteger();
+        this.searches = new AtomicLong();
+        this.queueNanos = new AtomicLong();
+        this.searchNanos = new AtomicLong();
+        this.maxQueueNanos = new AtomicLong();
+        this.maxSearchNanos = new AtomicLong();
+    }
+
+    PathRequest submit(Tile start, Tile end) {
+        if (walkabilityVersion != world.getImmovableVersion()) {
+            walkabilityVersion = world.getImmovableVersion();
+            walkability = world.copyImmovableWalkability();
+        }
+        PathRequest request = new PathRequest(start, end);
+        request.submit(nanoTime(), walkability, walkabilityVersion);
+        SearchAlgorithm searchAlgorithm = world.getSearchAlgorithm();
+        Heuristic heuristic = world.getHeuristic();
+        pending.incrementAndGet();
+        pool.execute(() -> search(request, searchAlgorithm, heuristic));
+        return request;
+    }
+
+    private void search(PathRequest request, SearchAlgorithm searchAlgorithm, Heuristic heuristic) {
+        if (request.isCancelled()) {
+            finished.add(request);
+            return;
+        }
+        long startTime = nanoTime();
+        Searcher searcher = searchers.get();
+        if (searcher.walkability != request.getWalkability()) {
+            searcher.walkability = request.getWalkability();
+            searcher.map.setWalkability(searcher.walkability);
+        }
+        searcher.map.setSearchAlgorithm(searchAlgorithm);
+        searcher.map.setHeuristic(heuristic);
+        try {
+            request.setResult(world.findPath(searcher.map, request.getStart().getX(), request.getStart().getY(), request.getEnd().getX(), request.getEnd().getY(), null));
+        } finally {
+            long endTime = nanoTime();
+            record(startTime - request.getSubmitTime(), queueNanos, maxQueueNanos);
+            record(endTime - startTime, searchNanos, maxSearchNanos);
+            searches.incrementAndGet();
+            finished.add(request);
+        }
+    }
+
+    private void record(long nanos, AtomicLong total, AtomicLong max) {
+        total.addAndGet(nanos);
+        long currentMax;
+        while (nanos > (currentMax = max.get()) && !max.compareAndSet(currentMax, nanos));
+    }
+
+    void applyFinished() {
+        PathRequest request;
+        while ((request = finished.poll()) != null) {
+            request.complete();
+            pending.decrementAndGet();
+            if (!request.isCancelled() && request.getWalkabilityVersion() == world.getImmovableVersion()) {
+                world.getPathCache().putTiles(request.getStart(), request.getEnd(), request.getPath());
+            }
+        }
+    }
+
+    /**
+     * Gets the number of paths that have been submitted and not yet handed back.
+     *
+     * @return the number of pending searches
+     */
+    public int getPending() {
+        return pending.get();
+    }
+
+    public long getSearches() {
+        return searches.get();
+    }
+
+    /**
+     * Gets the total time searches have spent waiting for a worker.
+     *
+     * @return the total queue latency, in nanoseconds
+     */
+    public long getQueueNanos() {
+        return queueNanos.get();
+    }
+
+    /**
+     * Gets the total time workers have spent searching.
+     *
+     * @return the total search time, in nanoseconds
+     */
+    public long getSearchNanos() {
+        return searchNanos.get();
+    }
+
+    public long getMaxQueueNanos() {
+        return maxQueueNanos.get();
+    }
+
+    public long getMaxSearchNanos() {
+        return maxSearchNanos.get();
+    }
+
+    /**
+     * Resets the longest queue latency and search time, to start measuring a new interval.
+     */
+    public void resetMaxima() {
+        maxQueueNanos.set(0L);
+        maxSearchNanos.set(0L);
+    }
+
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    private class Searcher {
+
+        private Map<NodeImpl> map;
+        private long[] walkability;
+
+        private Searcher() {
+            map = new Map<>(world.getWidth(), world.getHeight(), new NodeFactoryImpl());
+        }
+
+    }
+
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2015 Ross Binden
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seventh_root.ld33.common.world;
+
+/**
+ * A square block of unit slots in a {@link World}.
+ * Chunks that have never held a unit all share {@link #EMPTY}, which can't be modified.
+ */
+class Chunk {
+
+    static final int SIZE = 32;
+    static final int SHIFT = 5;
+    static final int MASK = SIZE - 1;
+
+    static final Chunk EMPTY = new Chunk();
+
+    private Unit[] units;
+
+    Chunk() {
+        units = new Unit[SIZE * SIZE];
+    }
+
+    Unit getUnit(int x, int y) {
+        return units[((x & MASK) << SHIFT) | (y & MASK)];
+    }
+
+    void setUnit(int x, int y, Unit unit) {
+        if (this == EMPTY) throw new UnsupportedOperationException("The empty chunk can't hold units");
+        units[((x & MASK) << SHIFT) | (y & MASK)] = unit;
+    }
+
+}
@@ -0,0 +1,280 @@
+/*
+ * Copyright 2015 Ross Binden
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seventh_root.ld33.common.world;
+
+import java.util.Arrays;
+
+/**
+ * Labels the connected areas of tiles that are not blocked by immovable units, so that whether one tile can be reached
+ * from another is known without searching. Moving units are ignored, since they only block a tile for a while.
+ * <p>
+ * Unblocking a tile joins the areas around it straight away. Blocking a tile can only split an area if the open tiles
+ * around it are not connected to each other through their neighbours, so only then is each of them searched from, a
+ * tile at a time in turn, until the searches meet. Any search that runs out of tiles first has found a new area and
+ * labels it, so the largest piece of a split area is never searched through.
+ */
+class ComponentLabels {
+
+    private static final int BLOCKED = 0;
+    private static final int[] RING_X = {0, 1, 1, 1, 0, -1, -1, -1};
+    private static final int[] RING_Y = {-1, -1, 0, 1, 1, 1, 0, -1};
+    private static final int[] STEP_X = {-1, 1, 0, 0};
+    private static final int[] STEP_Y = {0, 0, -1, 1};
+
+    private int width;
+    private int height;
+    /** label of each tile, indexed by <code>x * height + y</code>, or BLOCKED. */
+    private int[] labels;
+    /** parent of each label, so that the labels of joined areas lead to the same root. */
+    private int[] parents;
+    private int labelCount;
+    private long relabels;
+    /** the pass and search each tile was last reached by, as <code>pass * 4 + search</code>. */
+    private int[] marks;
+    private int pass;
+    /** the tiles reached by each search, in the order they were reached. */
+    private int[][] queues;
+    private int[] heads;
+    private int[] tails;
+    /** which search each search has met, so that searches that meet are treated as one. */
+    private int[] groups;
+
+    ComponentLabels(int width, int height) {
+        this.width = width;
+        this.height = height;
+        labels = new int[width * height];
+        parents = new int[64];
+        marks = new int[width * height];
+        queues = new int[STEP_X.length][16];
+        heads = new int[STEP_X.length];
+        tails = new int[STEP_X.length];
+        groups = new int[STEP_X.length];
+        labelCount = 1;
+        int label = newLabel();
+        // There are no tiles along the first row and column, so everything else starts out as one area
+        for (int x = 1; x < width; x++) {
+            Arrays.fill(labels, x * height + 1, (x + 1) * height, label);
+        }
+    }
+
+    synchronized boolean isBlocked(int x, int y) {
+        return x < 0 || y < 0 || x >= width || y >= height || labels[x * height + y] == BLOCKED;
+    }
+
+    synchronized void setBlocked(int x, int y, boolean blocked) {
+        if (blocked == isBlocked(x, y)) return;
+        int index = x * height + y;
+        if (blocked) {
+            labels[index] = BLOCKED;
+            if (mightSplit(x, y)) split(x, y);
+        } else {
+            int label = BLOCKED;
+            label = join(label, x - 1, y);
+            label = join(label, x + 1, y);
+            label = join(label, x, y - 1);
+            label = join(label, x, y + 1);
+            labels[index] = label != BLOCKED ? label : newLabel();
+        }
+    }
+
+    /**
+     * Joins the area of the tile at the given position, if it is open, to the area with the given root label.
+     *
+     * @return the root label of the joined area
+     */
+    private int join(int label, int x, int y) {
+        if (isBlocked(x, y)) return label;
+        int root = find(labels[x * height + y]);
+        if (label != BLOCKED && root != label) parents[root] = label;
+        return label != BLOCKED ? label : root;
+    }
+
+    /**
+     * Whether blocking the tile at the given position might have split the area it was in, which is the case unless
+     * the open tiles beside it are all in one run around the ring of tiles surrounding it.
+     */
+    private boolean mightSplit(int x, int y) {
+        int start = -1;
+        for (int i = 0; i < RING_X.length; i++) {
+            if (isBlocked(x + RING_X[i], y + RING_Y[i])) {
+                start = i;
+                break;
+            }
+        }
+        if (start == -1) return false;
+        int runs = 0;
+        boolean besideRun = false;
+        for (int i = 1; i <= RING_X.length; i++) {
+            int ring = (start + i) % RING_X.length;
+            if (!isBlocked(x + RING_X[ring], y + RING_Y[ring])) {
+                // Even ring positions are directly beside the tile, odd ones are diagonal to it
+                if (ring % 2 == 0) besideRun = true;
+            } else if (besideRun) {
+                runs++;
+                besideRun = false;
+            }
+        }
+        return runs > 1;
+    }
+
+    /**
+     * Searches from each open tile beside the newly blocked tile at the given position, a tile at a time in turn, and
+     * gives each group of searches that runs out of tiles before meeting the rest an area of its own.
+     */
+    private void split(int x, int y) {
+        relabels++;
+        if (++pass == Integer.MAX_VALUE / STEP_X.length) {
+            Arrays.fill(marks, 0);
+            pass = 1;
+        }
+        int alive = 0;
+        for (int search = 0; search < STEP_X.length; search++) {
+            heads[search] = 0;
+            tails[search] = 0;
+            groups[search] = search;
+            int neighbourX = x + STEP_X[search];
+            int neighbourY = y + STEP_Y[search];
+            if (isBlocked(neighbourX, neighbourY)) continue;
+            int neighbour = neighbourX * height + neighbourY;
+            marks[neighbour] = pass * STEP_X.length + search;
+            queues[search][tails[search]++] = neighbour;
+            alive++;
+        }
+        while (alive > 1) {
+            for (int search = 0; search < STEP_X.length && alive > 1; search++) {
+                if (groups[search] != search || tails[search] == 0) continue;
+                // a group moves on through whichever of its searches still has tiles to look at
+                int member = search;
+                while (member < STEP_X.length && (findGroup(member) != search || heads[member] == tails[member])) {
+                    member++;
+                }
+                if (member == STEP_X.length) {
+                    relabel(search);
+                    tails[search] = 0;
+                    alive--;
+                    continue;
+                }
+                int index = queues[member][heads[member]++];
+                int tileX = index / height;
+                int tileY = index % height;
+                for (int step = 0; step < STEP_X.length; step++) {
+                    int nextX = tileX + STEP_X[step];
+                    int nextY = tileY + STEP_Y[step];
+                    if (isBlocked(nextX, nextY)) continue;
+                    int next = nextX * height + nextY;
+                    int mark = marks[next];
+                    if (mark / STEP_X.length == pass) {
+                        int group = findGroup(search);
+                        int other = findGroup(mark % STEP_X.length);
+                        if (other != group) {
+                            groups[Math.max(other, group)] = Math.min(other, group);
+                            alive--;
+                        }
+                        continue;
+                    }
+                    marks[next] = pass * STEP_X.length + member;
+                    if (tails[member] == queues[member].length) {
+                        queues[member] = Arrays.copyOf(queues[member], tails[member] * 2);
+                    }
+                    queues[member][tails[member]++] = next;
+                }
+            }
+        }
+    }
+
+    /**
+     * Gives every tile reached by the given group of searches a new label of its own.
+     */
+    private void relabel(int group) {
+        int label = newLabel();
+        for (int search = 0; search < STEP_X.length; search++) {
+            if (findGroup(search) != group) continue;
+            for (int i = 0; i < tails[search]; i++) {
+                labels[queues[search][i]] = label;
+            }
+        }
+    }
+
+    private int findGroup(int search) {
+        while (groups[search] != search) {
+            search = groups[search];
+        }
+        return search;
+    }
+
+    /**
+     * Whether the tiles at the given positions are both open and in the same area.
+     *
+     * @return whether they are connected
+     */
+    synchronized boolean isConnected(int x, int y, int otherX, int otherY) {
+        if (isBlocked(x, y) || isBlocked(otherX, otherY)) return false;
+        return find(labels[x * height + y]) == find(labels[otherX * height + otherY]);
+    }
+
+    /**
+     * Gets the number of times the tiles around a newly blocked tile have been searched from to see whether it split
+     * their area.
+     *
+     * @return the number of relabels
+     */
+    synchronized long getRelabels() {
+        return relabels;
+    }
+
+    /**
+     * Works out the labels of every tile from scratch, so that labels left behind by areas that have since been joined
+     * or split can be used again.
+     */
+    private void compact() {
+        labelCount = 1;
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                int index = x * height + y;
+                if (labels[index] == BLOCKED) continue;
+                int left = x > 0 ? labels[index - height] : BLOCKED;
+                int up = y > 0 ? labels[index - 1] : BLOCKED;
+                if (left != BLOCKED) {
+                    labels[index] = left;
+                    if (up != BLOCKED) {
+                        int leftRoot = find(left);
+                        int upRoot = find(up);
+                        if (leftRoot != upRoot) parents[upRoot] = leftRoot;
+                    }
+                } else {
+                    labels[index] = up != BLOCKED ? up : newLabel();
+                }
+            }
+        }
+    }
+
+    private int newLabel() {
+        if (labelCount == parents.length && parents.length >= labels.length) compact();
+        if (labelCount == parents.length) parents = Arrays.copyOf(parents, parents.length * 2);
+        parents[labelCount] = labelCount;
+        return labelCount++;
+    }
+
+    private int find(int label) {
+        while (parents[label] != label) {
+            parents[label] = parents[parents[label]];
+            label = parents[label];
+        }
+        return label;
+    }
+
+}
@@ -0,0 +1,331 @@
+/*
+ * Copyright 2015 Ross Binden
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seventh_root.ld33.common.world;
+
+import java.util.Arrays;
+
+import static java.lang.Math.abs;
+
+/**
+ * Plans the next few steps of every moving unit in space and time, so that units moving at the same time never walk
+ * onto the same tile, in the style of windowed hierarchical cooperative A* (WHCA*).
+ * <p>
+ * A unit's path is still found as usual, ignoring where other units are headed. Every few steps, the planner searches
+ * for a way to the tile a window's worth of steps along that path, stepping or waiting a tile at a time and keeping
+ * clear of the tiles other units have reserved for those times, then reserves the tiles it found for the unit. A unit
+ * that runs into a crowd waits or steps aside rather than walking onto another unit or searching for its path again,
+ * and each plan only searches the square of tiles the window can reach, however large the crowd.
+ * <p>
+ * The tile a plan ends on is reserved for as long as the unit has the plan, so the rest of its last plan is always
+ * open to a unit when it plans again. Units with no plan, such as walls, units that have arrived and units that are
+ * boxed in, are kept clear of for as long as they are there. Plans are only made and released between ticks, in the
+ * order units are ticked, so they don't depend on how the tick is split between threads.
+ */
+public class CooperativePlanner {
+
+    private World world;
+    private int window;
+    private int side;
+    private ReservationTable reservations;
+    /** search marks, per step of the window and tile of the square around the unit being planned for. */
+    private int[] stamps;
+    private int stamp;
+    /** the node each node was reached from, or -1 for the start. */
+    private int[] parents;
+    /** binary heap of open nodes, each packed with its fCosts and step so that the heap is ordered by them. */
+    private long[] open;
+    private int openSize;
+    private Unit unit;
+    private int startX;
+    private int startY;
+    private int waypointX;
+    private int waypointY;
+    private int stepTicks;
+    private long plans;
+
+    CooperativePlanner(World world, int window) {
+        this.world = world;
+        this.window = window;
+        this.side = window * 2 + 1;
+        this.reservations = new ReservationTable();
+        this.stamps = new int[side * side * (window + 1)];
+        this.parents = new int[stamps.length];
+        this.open = new long[64];
+    }
+
+    /**
+     * Plans the unit's next steps if it is due a plan, which is when it is between steps and has either no plan, one
+     * that is half done, or one that has been overtaken by a new order or a unit that has stopped in its way.
+     *
+     * @param unit the unit
+     * @param now the current tick
+     */
+    void update(Unit unit, long now) {
+        Plan plan = unit.getPlan();
+        if (plan != null) {
+            if (!plan.isStepStart(now)) return;
+            if (plan.getTarget().equals(unit.getTarget())
+                    && plan.getRemainingSteps(now) > window / 2
+                    && plan.getCell(now) == getCell(unit.getTile().getX(), unit.getTile().getY())
+                    && !isHeld(plan.getNextCell(now), unit)) return;
+            release(unit);
+        }
+        if (unit.getSpeed() <= 0) return;
+        TilePath path = unit.getPathAhead(window * 2);
+        if (path == null || path.isEmpty()) return;
+        plan(unit, path, now);
+    }
+
+    /**
+     * Releases the unit's reservations, leaving it with no plan.
+     *
+     * @param unit the unit
+     */
+    void release(Unit unit) {
+        Plan plan = unit.getPlan();
+        if (plan == null) return;
+        reservations.release(plan.cells, plan.steps + 1, unit, world.getTicks());
+        unit.setPlan(null);
+    }
+
+    private void plan(Unit unit, TilePath path, long now) {
+        this.unit = unit;
+        stepTicks = (64 + unit.getSpeed() - 1) / unit.getSpeed() + 1;
+        startX = unit.getTile().getX();
+        startY = unit.getTile().getY();
+        int waypoint = 0;
+        while (waypoint < window - 1 && path.hasAhead(waypoint + 2)) waypoint++;
+        waypointX = path.getX(waypoint);
+        waypointY = path.getY(waypoint);
+        if (++stamp == 0) {
+            Arrays.fill(stamps, 0);
+            stamp = 1;
+        }
+        openSize = 0;
+        int start = getNode(0, startX, startY);
+        stamps[start] = stamp;
+        parents[start] = -1;
+        addToOpen(start, 0, abs(waypointX - startX) + abs(waypointY - startY));
+        int end = -1;
+        while (openSize > 0) {
+            int node = pollOpen();
+            int step = getStep(node);
+            int x = getX(node);
+            int y = getY(node);
+            long from = now + (long) step * stepTicks;
+            if ((step == window || (x == waypointX && y == waypointY)) && reservations.isFree(getCell(x, y), from, Long.MAX_VALUE, unit)) {
+                end = node;
+                break;
+            }
+            if (step == window) continue;
+            // the unit is on this tile for the step whether it waits or moves off it
+            if (step > 0 && !reservations.isFree(getCell(x, y), from, from + stepTicks, unit)) continue;
+            visit(node, step + 1, x, y, false, from);
+            visit(node, step + 1, x - 1, y, true, from);
+            visit(node, step + 1, x + 1, y, true, from);
+            visit(node, step + 1, x, y - 1, true, from);
+            visit(node, step + 1, x, y + 1, true, from);
+        }
+        this.unit = null;
+        // boxed in by a unit that stopped, so stand still with no plan, which others keep clear of, and try again
+        if (end < 0) return;
+        int steps = getStep(end);
+        int[] cells = new int[steps + 1];
+        for (int node = end; node >= 0; node = parents[node]) {
+            cells[getStep(node)] = getCell(getX(node), getY(node));
+        }
+        for (int step = 0; step < steps; step++) {
+            long from = now + (long) step * stepTicks;
+            reservations.reserve(cells[step], from, from + stepTicks, unit, now);
+            if (cells[step + 1] != cells[step]) reservations.reserve(cells[step + 1], from, from + stepTicks, unit, now);
+        }
+        long arrival = now + (long) steps * stepTicks;
+        reservations.reserve(cells[steps], arrival, Long.MAX_VALUE, unit, now);
+        unit.setPlan(new Plan(world, unit.getTarget(), cells, steps, now, stepTicks));
+        plans++;
+    }
+
+    /**
+     * Opens the tile at the given position for the given step, if the unit can be on it for the step before. Whether
+     * the unit can wait where it is is only checked when the tile is expanded.
+     */
+    private void visit(int parent, int step, int x, int y, boolean move, long from) {
+        if (abs(x - startX) > window || abs(y - startY) > window) return;
+        int node = getNode(step, x, y);
+        if (stamps[node] == stamp) return;
+        if (move) {
+            if (x <= 0 || y <= 0 || x >= world.getWidth() || y >= world.getHeight() || isHeld(getCell(x, y), unit)) return;
+            if (!reservations.isFree(getCell(x, y), from, from + stepTicks, unit)) return;
+        }
+        stamps[node] = stamp;
+        parents[node] = parent;
+        addToOpen(node, step, step + abs(waypointX - x) + abs(waypointY - y));
+    }
+
+    /**
+     * Whether a solid unit with no plan is on the tile, so it can't be walked onto at any time.
+     */
+    private boolean isHeld(int cell, Unit unit) {
+        int x = cell / world.getHeight();
+        int y = cell % world.getHeight();
+        if (world.isWalkable(x, y)) return false;
+        Unit occupant = world.getUnitAt(x, y);
+        return occupant == null || (occupant != unit && occupant.getPlan() == null);
+    }
+
+    private int getNode(int step, int x, int y) {
+        return (step * side + x - startX + window) * side + y - startY + window;
+    }
+
+    private int getStep(int node) {
+        return node / (side * side);
+    }
+
+    private int getX(int node) {
+        return startX + (node / side) % side - window;
+    }
+
+    private int getY(int node) {
+        return startY + node % side - window;
+    }
+
+    private int getCell(int x, int y) {
+        return x * world.getHeight() + y;
+    }
+
+    private void addToOpen(int node, int step, int fCosts) {
+        if (openSize == open.length) open = Arrays.copyOf(open, openSize * 2);
+        // lower fCosts first, then later steps, as they are likely closer to the waypoint
+        long entry = ((long) fCosts << 40) | ((long) (window - step) << 32) | node;
+        int position = openSize++;
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            if (open[parent] <= entry) break;
+            open[position] = open[parent];
+            position = parent;
+        }
+        open[position] = entry;
+    }
+
+    private int pollOpen() {
+        long cheapest = open[0];
+        long entry = open[--openSize];
+        int position = 0;
+        int half = openSize >>> 1;
+        while (position < half) {
+            int child = (position << 1) + 1;
+            if (child + 1 < openSize && open[child + 1] < open[child]) child++;
+            if (open[child] >= entry) break;
+            open[position] = open[child];
+            position = child;
+        }
+        open[position] = entry;
+        return (int) cheapest;
+    }
+
+    /**
+     * The number of steps every plan looks ahead.
+     *
+     * @return the window
+     */
+    public int getWindow() {
+        return window;
+    }
+
+    /**
+     * The number of plans made so far.
+     *
+     * @return the number of plans
+     */
+    public long getPlans() {
+        return plans;
+    }
+
+    /**
+     * The number of tile reservations held.
+     *
+     * @return the number of reservations
+     */
+    public int getReservations() {
+        return reservations.size();
+    }
+
+    /**
+     * The tiles a unit is to be on for each of its next few steps, starting from the tile it was on when it was
+     * planned.
+     */
+    static class Plan {
+
+        private World world;
+        private Tile target;
+        private int[] cells;
+        private int steps;
+        private long start;
+        private int stepTicks;
+
+        Plan(World world, Tile target, int[] cells, int steps, long start, int stepTicks) {
+            this.world = world;
+            this.target = target;
+            this.cells = cells;
+            this.steps = steps;
+            this.start = start;
+            this.stepTicks = stepTicks;
+        }
+
+        Tile getTarget() {
+            return target;
+        }
+
+        private int getStep(long tick) {
+            return (int) ((tick - start) / stepTicks);
+        }
+
+        boolean isStepStart(long tick) {
+            return (tick - start) % stepTicks == 0;
+        }
+
+        int getTicksLeftInStep(long tick) {
+            return stepTicks - 1 - (int) ((tick - start) % stepTicks);
+        }
+
+        int getRemainingSteps(long tick) {
+            return Math.max(steps - getStep(tick), 0);
+        }
+
+        int getCell(long tick) {
+            return cells[Math.min(getStep(tick), steps)];
+        }
+
+        int getNextCell(long tick) {
+            return cells[Math.min(getStep(tick) + 1, steps)];
+        }
+
+        /**
+         * The tile to be heading for at the given tick.
+         *
+         * @param tick the tick
+         * @return the tile, or null if the unit is to wait where it is
+         */
+        Tile getTile(long tick) {
+            int cell = getNextCell(tick);
+            if (cell == getCell(tick)) return null;
+            return world.getTileAt(cell / world.getHeight(), cell % world.getHeight());
+        }
+
+    }
+
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2015 Ross Binden
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seventh_root.ld33.common.world;
+
+import com.seventh_root.ld33.common.pathfinding.FlowField;
+import com.seventh_root.ld33.common.pathfinding.NodeImpl;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The {@link FlowField}s around the tiles units in a {@link World} are most often headed for.
+ * <p>
+ * Every goal asked for is counted, and once one has been asked for often enough a field is built around it, after
+ * which paths to it from anywhere in the field are read from the field rather than searched for. Fields are built
+ * over the walls and flags alone, so the unit asking, and the dragons around it, don't cut themselves off from
+ * the field and don't make it stale by moving. A field is only used while no chunk it overlaps has had a wall or
+ * flag placed or removed, and is rebuilt the next time it is needed otherwise. The least recently used goal is
+ * forgotten once the cache is full.
+ */
+public class FlowFieldCache {
+
+    private static final int CAPACITY = 64;
+
+    private World world;
+    private int radius;
+    private int threshold;
+    private LinkedHashMap<Integer, Entry> entries;
+    private long fieldsBuilt;
+    private long paths;
+
+    FlowFieldCache(World world, int radius, int threshold) {
+        this.world = world;
+        this.radius = radius;
+        this.threshold = threshold;
+        this.entries = new LinkedHashMap<Integer, Entry>(16, 0.75F, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Entry> eldest) {
+                return size() > CAPACITY;
+            }
+        };
+    }
+
+    /**
+     * Gets a path from a flow field around the end tile, building the field if the end tile has become popular.
+     *
+     * @param start the tile to start from
+     * @param end the tile to find a path to
+     * @return the tiles along the path, not including the start tile, or null if there is no field to read it from
+     */
+    TilePath getPath(Tile start, Tile end) {
+        if (threshold == 0) return null;
+        int goal = end.getX() * world.getHeight() + end.getY();
+        Entry entry = entries.get(goal);
+        if (entry == null) {
+            entry = new Entry();
+            entries.put(goal, entry);
+        }
+        if (++entry.requests < threshold) return null;
+        if (entry.field == null || !entry.isValid()) {
+            entry.build(end);
+            fieldsBuilt++;
+        }
+        List<NodeImpl> nodes = entry.field.getPathFrom(start.getX(), start.getY());
+        if (nodes == null) return null;
+        paths++;
+        return world.getTiles(nodes, end.getX(), end.getY());
+    }
+
+    void clear() {
+        entries.clear();
+    }
+
+    public int getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * Sets how many times a tile has to be asked for before a flow field is built around it. Passing zero disables
+     * flow fields.
+     *
+     * @param threshold the number of requests
+     */
+    public void setThreshold(int threshold) {
+        this.threshold = threshold;
+    }
+
+    public long getFieldsBuilt() {
+        return fieldsBuilt;
+    }
+
+    /**
+     * Gets the number of paths that have been read from flow fields.
+     *
+     * @return the number of paths
+     */
+    public long getPaths() {
+        return paths;
+    }
+
+    private class Entry {
+
+        private int requests;
+        private FlowField<NodeImpl> field;
+        private int[] chunks;
+        private int[] versions;
+
+        private void build(Tile end) {
+            field = world.buildFlowField(end.getX(), end.getY(), radius);
+            int[] bounds = field.getBounds();
+            int chunksWide = (bounds[2] >> Chunk.SHIFT) - (bounds[0] >> Chunk.SHIFT) + 1;
+            int chunksHigh = (bounds[3] >> Chunk.SHIFT) - (bounds[1] >> Chunk.SHIFT) + 1;
+            chunks = new int[chunksWide * chunksHigh];
+            versions = new int[chunks.length];
+            int i = 0;
+            for (int x = bounds[0] >> Chunk.SHIFT; x <= bounds[2] >> Chunk.SHIFT; x++) {
+                for (int y = bounds[1] >> Chunk.SHIFT; y <= bounds[3] >> Chunk.SHIFT; y++) {
+                    chunks[i] = world.getChunkIndex(x << Chunk.SHIFT, y << Chunk.SHIFT);
+                    versions[i] = world.getChunkVersion(chunks[i]);
+                    i++;
+                }
+            }
+        }
+
+        private boolean isValid() {
+            for (int i = 0; i < chunks.length; i++) {
+                if (world.getChunkVersion(chunks[i]) != versions[i]) return false;
+            }
+            return true;
+        }
+
+    }
+
+}
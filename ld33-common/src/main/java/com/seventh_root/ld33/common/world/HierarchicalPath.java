@@ -0,0 +1,160 @@
+/*
+ * Copyright 2015 Ross Binden
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seventh_root.ld33.common.world;
+
+import static java.lang.Math.abs;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+/**
+ * A long path found over the entrances between chunks, whose tiles are searched for one chunk at a time as it is
+ * followed.
+ * <p>
+ * Reading the path only searches as far ahead as the tiles read, and removing from the front is cheap, which is all
+ * a unit following it does. Asking for the size searches the rest of the path. Dragons in the way of an entrance are
+ * searched through, as they will have moved on by the time they are reached. If a wall or flag has cut an entrance
+ * off since the path was found, the path is searched on to the entrance after it within the chunk it is in and the
+ * next, and failing that the rest of the path is found over entrances again. Only if there is no longer any path does
+ * the path end early, and the unit following it will search for a new one once it gets there.
+ */
+class HierarchicalPath extends TilePath {
+
+    /** tiles that must be searched ahead for a unit to follow the path without searching in its next tick. */
+    private static final int LOOKAHEAD = 3;
+    /** times the rest of the path may be found over entrances again before it is given up on. */
+    private static final int MAX_REPLANS = 2;
+
+    private World world;
+    private int[] entrances;
+    private int nextEntrance;
+    private int lastX;
+    private int lastY;
+    private int replans;
+
+    HierarchicalPath(World world, Tile start, int[] entrances) {
+        super(world, 64);
+        this.world = world;
+        this.entrances = entrances;
+        this.lastX = start.getX();
+        this.lastY = start.getY();
+    }
+
+    /**
+     * Whether enough of the path has been searched that following it this tick won't have to search any more.
+     *
+     * @return whether the path is searched ahead
+     */
+    boolean isSearchedAhead() {
+        return nextEntrance == entrances.length || super.hasAhead(LOOKAHEAD);
+    }
+
+    private boolean searchNextEntrance() {
+        if (nextEntrance == entrances.length) return false;
+        int x = entrances[nextEntrance] / world.getHeight();
+        int y = entrances[nextEntrance] % world.getHeight();
+        boolean end = ++nextEntrance == entrances.length;
+        if (x == lastX && y == lastY) {
+            // starting on an entrance
+        } else if (abs(x - lastX) + abs(y - lastY) == 1) {
+            // crossing into the next chunk
+            if (world.isImmovableWalkable(x, y)) {
+                add(x, y);
+            } else if (!end) {
+                return searchAround();
+            }
+        } else {
+            int[] bounds = world.getChunkBounds(x, y);
+            TilePath segment = world.findPath(lastX, lastY, x, y, bounds);
+            if (segment == null || segment.isEmpty() || !endsAt(segment, x, y)) {
+                TilePath immovableSegment = world.findImmovablePath(lastX, lastY, x, y, bounds);
+                if (immovableSegment != null && !immovableSegment.isEmpty()) segment = immovableSegment;
+            }
+            if (segment == null || segment.isEmpty()) return end ? replan() : searchAround();
+            addAll(segment);
+            // the search stops short of an entrance that has become solid
+            if (!end && !endsAt(segment, x, y)) {
+                lastX = segment.getX(segment.size() - 1);
+                lastY = segment.getY(segment.size() - 1);
+                searchAround();
+                return true;
+            }
+        }
+        lastX = x;
+        lastY = y;
+        return true;
+    }
+
+    /**
+     * Searches on from the end of the path so far to the entrance after the one that can no longer be reached, within
+     * the chunk the path has got to and the chunk that entrance is in. If there is no way round within them, the rest
+     * of the path is found over entrances again.
+     *
+     * @return whether any of the path was found
+     */
+    private boolean searchAround() {
+        int x = entrances[nextEntrance] / world.getHeight();
+        int y = entrances[nextEntrance] % world.getHeight();
+        int[] bounds = world.getChunkBounds(lastX, lastY);
+        int[] nextBounds = world.getChunkBounds(x, y);
+        bounds[0] = min(bounds[0], nextBounds[0]);
+        bounds[1] = min(bounds[1], nextBounds[1]);
+        bounds[2] = max(bounds[2], nextBounds[2]);
+        bounds[3] = max(bounds[3], nextBounds[3]);
+        TilePath detour = world.findImmovablePath(lastX, lastY, x, y, bounds);
+        if (detour != null && !detour.isEmpty() && endsAt(detour, x, y)) {
+            addAll(detour);
+            lastX = x;
+            lastY = y;
+            nextEntrance++;
+            return true;
+        }
+        return replan();
+    }
+
+    private boolean replan() {
+        int goal = entrances[entrances.length - 1];
+        int[] replanned = replans < MAX_REPLANS ? world.findEntrances(lastX, lastY, goal / world.getHeight(), goal % world.getHeight()) : null;
+        if (replanned == null) {
+            nextEntrance = entrances.length;
+            return false;
+        }
+        replans++;
+        entrances = replanned;
+        nextEntrance = 0;
+        return searchNextEntrance();
+    }
+
+    private boolean endsAt(TilePath segment, int x, int y) {
+        int last = segment.size() - 1;
+        return segment.getX(last) == x && segment.getY(last) == y;
+    }
+
+    @Override
+    boolean hasAhead(int count) {
+        while (!super.hasAhead(count)) {
+            if (!searchNextEntrance()) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int size() {
+        while (searchNextEntrance());
+        return super.size();
+    }
+
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2015 Ross Binden
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seventh_root.ld33.common.world;
+
+import com.seventh_root.ld33.common.pathfinding.Heuristic;
+import com.seventh_root.ld33.common.pathfinding.Landmarks;
+import com.seventh_root.ld33.common.pathfinding.Map;
+import com.seventh_root.ld33.common.pathfinding.NodeFactoryImpl;
+import com.seventh_root.ld33.common.pathfinding.NodeImpl;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Keeps a {@link Landmarks} heuristic for a world's searches, built on a background thread over the tiles that walls
+ * and flags block. Moving units are left out, as they only ever make a path longer than the landmarks estimate.
+ * <p>
+ * Placing a wall or flag only makes the landmarks less tight, so they are kept while new ones are built. Removing one
+ * could make them overestimate, so searches go back to the manhattan heuristic straight away, and landmarks that were
+ * being built from before the removal are thrown away when they finish. Only one set of landmarks is built at a time.
+ * <p>
+ * A build that fails leaves searches on whatever heuristic they were using, and is only tried again once walls or flags
+ * change. Failures are counted rather than thrown, so that they don't stop the world ticking.
+ */
+public class LandmarkTables {
+
+    private World world;
+    private int count;
+    private ExecutorService pool;
+    private Heuristic heuristic;
+    private int version;
+    private int removalVersion;
+    private int builtVersion;
+    private Future<Landmarks> pending;
+    private int pendingVersion;
+    private long builds;
+    private long failures;
+    private Throwable lastFailure;
+
+    LandmarkTables(World world, int count, ExecutorService pool) {
+        this.world = world;
+        this.count = count;
+        this.pool = pool;
+        this.heuristic = Heuristic.MANHATTAN;
+        this.builtVersion = -1;
+    }
+
+    /**
+     * Notes that a wall or flag has been placed or removed.
+     *
+     * @param blocked whether the tile is now blocked
+     */
+    void onChange(boolean blocked) {
+        version++;
+        if (!blocked) {
+            removalVersion = version;
+            setHeuristic(Heuristic.MANHATTAN);
+        }
+    }
+
+    /**
+     * Puts landmarks that have finished building to use, and starts building new ones if walls or flags have
+     * changed since the last were started. The world calls this at the start of each tick.
+     */
+    void update() {
+        if (pending != null) {
+            if (!pending.isDone()) return;
+            try {
+                Landmarks landmarks = pending.get();
+                if (pendingVersion >= removalVersion) setHeuristic(landmarks);
+                builds++;
+            } catch (InterruptedException | ExecutionException exception) {
+                fail(exception instanceof ExecutionException ? exception.getCause() : exception);
+            } finally {
+                pending = null;
+            }
+        }
+        if (builtVersion != version) {
+            builtVersion = version;
+            pendingVersion = version;
+            long[] walkability = world.copyImmovableWalkability();
+            try {
+                pending = pool.submit(() -> {
+                    Map<NodeImpl> map = new Map<>(world.getWidth(), world.getHeight(), new NodeFactoryImpl());
+                    map.setWalkability(walkability);
+                    return new Landmarks(map, count, Chunk.SIZE);
+                });
+            } catch (RejectedExecutionException exception) {
+                fail(exception);
+            }
+        }
+    }
+
+    private void fail(Throwable failure) {
+        failures++;
+        lastFailure = failure;
+    }
+
+    private void setHeuristic(Heuristic heuristic) {
+        this.heuristic = heuristic;
+        world.setHeuristic(heuristic);
+    }
+
+    /**
+     * Gets the heuristic searches should use, which is the manhattan heuristic until landmarks have been built.
+     *
+     * @return the heuristic
+     */
+    public Heuristic getHeuristic() {
+        return heuristic;
+    }
+
+    /**
+     * Whether searches are using landmarks, which they aren't until the first are built or after a wall or flag is
+     * removed until new ones are.
+     *
+     * @return whether landmarks are in use
+     */
+    public boolean isInUse() {
+        return heuristic instanceof Landmarks;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Gets the number of times landmarks have been built.
+     *
+     * @return the number of builds
+     */
+    public long getBuilds() {
+        return builds;
+    }
+
+    /**
+     * Gets the number of times building landmarks has failed.
+     *
+     * @return the number of failures
+     */
+    public long getFailures() {
+        return failures;
+    }
+
+    /**
+     * Gets why building landmarks last failed.
+     *
+     * @return the cause of the last failure, or null if no build has failed
+     */
+    public Throwable getLastFailure() {
+        return lastFailure;
+    }
+
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2015 Ross Binden
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seventh_root.ld33.common.world;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded cache of the paths found in a {@link World}, keyed by their start and end tiles.
+ * <p>
+ * Each entry remembers the walkability version of every chunk its path passes through, and is only used while none
+ * of them have had a wall or flag placed or removed, so doing so doesn't throw away paths elsewhere in the world.
+ * The least recently used entry is evicted once the cache is full. Failed searches aren't cached, since whether a
+ * tile can be reached at all depends on the whole world.
+ */
+public class PathCache {
+
+    private World world;
+    private int capacity;
+    private LinkedHashMap<Long, Entry> entries;
+    private long hits;
+    private long misses;
+
+    PathCache(World world, int capacity) {
+        this.world = world;
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<Long, Entry>(16, 0.75F, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+                return size() > PathCache.this.capacity;
+            }
+        };
+    }
+
+    TilePath get(Tile start, Tile end) {
+        if (capacity == 0) return null;
+        long key = getKey(start, end);
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            if (entry.isValid()) {
+                hits++;
+                return entry.entrances != null
+                        ? new HierarchicalPath(world, start, entry.entrances)
+                        : new TilePath(entry.tiles);
+            }
+            entries.remove(key);
+        }
+        misses++;
+        return null;
+    }
+
+    void putTiles(Tile start, Tile end, TilePath tiles) {
+        if (capacity == 0 || tiles == null || tiles.isEmpty()) return;
+        int[] chunks = new int[8];
+        int chunkCount = addChunk(chunks, 0, start.getX(), start.getY());
+        chunkCount = addChunk(chunks, chunkCount, end.getX(), end.getY());
+        for (int i = 0; i < tiles.size(); i++) {
+            if (chunkCount == chunks.length) chunks = Arrays.copyOf(chunks, chunkCount * 2);
+            chunkCount = addChunk(chunks, chunkCount, tiles.getX(i), tiles.getY(i));
+        }
+        entries.put(getKey(start, end), new Entry(new TilePath(tiles), null, Arrays.copyOf(chunks, chunkCount)));
+    }
+
+    void putEntrances(Tile start, Tile end, int[] entrances) {
+        if (capacity == 0 || entrances == null) return;
+        int[] chunks = new int[entrances.length + 2];
+        int chunkCount = addChunk(chunks, 0, start.getX(), start.getY());
+        for (int entrance : entrances) {
+            chunkCount = addChunk(chunks, chunkCount, entrance / world.getHeight(), entrance % world.getHeight());
+        }
+        chunkCount = addChunk(chunks, chunkCount, end.getX(), end.getY());
+        entries.put(getKey(start, end), new Entry(null, entrances, Arrays.copyOf(chunks, chunkCount)));
+    }
+
+    private int addChunk(int[] chunks, int chunkCount, int x, int y) {
+        int chunk = world.getChunkIndex(x, y);
+        // paths cross few chunks and usually return to the last one, so a linear scan from the end is enough
+        for (int i = chunkCount - 1; i >= 0; i--) {
+            if (chunks[i] == chunk) return chunkCount;
+        }
+        chunks[chunkCount] = chunk;
+        return chunkCount + 1;
+    }
+
+    private long getKey(Tile start, Tile end) {
+        return ((long) (start.getX() * world.getHeight() + start.getY()) << 32) | (end.getX() * world.getHeight() + end.getY());
+    }
+
+    void clear() {
+        entries.clear();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Sets how many paths may be cached at once. Passing zero disables the cache.
+     *
+     * @param capacity the number of paths
+     */
+    public void setCapacity(int capacity) {
+        this.capacity = capacity;
+        if (entries.size() > capacity) clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Gets the fraction of path searches that have been answered from the cache.
+     *
+     * @return the hit rate, between 0 and 1, or 0 if no paths have been searched for
+     */
+    public double getHitRate() {
+        long lookups = hits + misses;
+        return lookups > 0 ? hits / (double) lookups : 0D;
+    }
+
+    private class Entry {
+
+        private TilePath tiles;
+        private int[] entrances;
+        private int[] chunks;
+        private int[] versions;
+
+        private Entry(TilePath tiles, int[] entrances, int[] chunks) {
+            this.tiles = tiles;
+            this.entrances = entrances;
+            this.chunks = chunks;
+            this.versions = new int[chunks.length];
+            for (int i = 0; i < chunks.length; i++) {
+                versions[i] = world.getChunkVersion(chunks[i]);
+            }
+        }
+
+        private boolean isValid() {
+            for (int i = 0; i < chunks.length; i++) {
+                if (world.getChunkVersion(chunks[i]) != versions[i]) return false;
+            }
+            return true;
+        }
+
+    }
+
+}
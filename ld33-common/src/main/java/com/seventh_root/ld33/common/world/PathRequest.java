@@ -0,0 +1,185 @@
+/*
+ * Copyright 2015 Ross Binden
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seventh_root.ld33.common.world;
+
+import com.seventh_root.ld33.common.pathfinding.NodeImpl;
+import com.seventh_root.ld33.common.pathfinding.ResumableSearch;
+
+import java.util.List;
+
+/**
+ * A path a unit has asked its {@link World} for, which may still be being searched for by an
+ * {@link AsyncPathfinder} or a {@link SlicedPathfinder}.
+ * <p>
+ * A request that isn't done straight away only becomes done at a tick boundary, so whether a unit has its path
+ * never changes part way through a tick. While a sliced search is in progress, the unit can follow the best path
+ * found so far.
+ */
+class PathRequest {
+
+    private Tile start;
+    private Tile end;
+    private long submitTime;
+    private long[] walkability;
+    private int walkabilityVersion;
+    private TilePath result;
+    private TilePath path;
+    private boolean done;
+    private ResumableSearch<NodeImpl> search;
+    /** the best path so far last handed out, and the node it leads to. */
+    private TilePath partialPath;
+    private int partialBest;
+    private volatile boolean cancelled;
+
+    PathRequest(Tile start, Tile end) {
+        this.start = start;
+        this.end = end;
+    }
+
+    PathRequest(Tile start, Tile end, TilePath path) {
+        this(start, end);
+        this.path = path;
+        this.done = true;
+    }
+
+    PathRequest(Tile start, Tile end, ResumableSearch<NodeImpl> search, int walkabilityVersion) {
+        this(start, end);
+        this.search = search;
+        this.walkabilityVersion = walkabilityVersion;
+    }
+
+    Tile getStart() {
+        return start;
+    }
+
+    Tile getEnd() {
+        return end;
+    }
+
+    long getSubmitTime() {
+        return submitTime;
+    }
+
+    long[] getWalkability() {
+        return walkability;
+    }
+
+    int getWalkabilityVersion() {
+        return walkabilityVersion;
+    }
+
+    void submit(long submitTime, long[] walkability, int walkabilityVersion) {
+        this.submitTime = submitTime;
+        this.walkability = walkability;
+        this.walkabilityVersion = walkabilityVersion;
+    }
+
+    void setResult(TilePath result) {
+        this.result = result;
+    }
+
+    ResumableSearch<NodeImpl> getSearch() {
+        return search;
+    }
+
+    /**
+     * Stops searching for the path, as the unit that asked for it no longer needs it.
+     * A search on a path search pool that hasn't started yet is skipped.
+     */
+    void cancel() {
+        cancelled = true;
+    }
+
+    boolean isCancelled() {
+        return cancelled;
+    }
+
+    void complete() {
+        path = result;
+        walkability = null;
+        done = true;
+    }
+
+    boolean isDone() {
+        return done;
+    }
+
+    /**
+     * Gets the path that was found, once the request is done.
+     *
+     * @return the tiles along the path, not including the start tile, which is empty or null if there is no path
+     */
+    TilePath getPath() {
+        return path;
+    }
+
+    /**
+     * Gets the path that was found from the tile a unit has got to since asking for it, once the request is done.
+     * Only a sliced search lets a unit move before it is done, so any other request returns the path from its start.
+     *
+     * @param tile the tile the unit is on
+     * @return the tiles along the path, not including the given tile, which is empty or null if there is no path
+     */
+    TilePath getPathFrom(Tile tile) {
+        if (search == null) return path;
+        if (!search.isFound()) return new TilePath(end.getWorld(), 0);
+        return end.getWorld().getTiles(search.getPathFrom(tile.getX(), tile.getY()), end.getX(), end.getY());
+    }
+
+    /**
+     * Gets the best path found so far from the tile a unit is on, while a sliced search is in progress.
+     * <p>
+     * The path handed out last time is handed out again as long as the unit is still following it, as what is left of
+     * it is the path from the tile the unit has got to. If the search has found a better path since that carries on
+     * from where the last one led, only the tiles beyond it are added. Otherwise the path is found again from the
+     * unit's tile.
+     *
+     * @param tile the tile the unit is on
+     * @return the tiles along the path, not including the given tile, or null to stand still
+     */
+    TilePath getPartialPathFrom(Tile tile) {
+        if (search == null) return null;
+        World world = end.getWorld();
+        int best = search.getBest();
+        if (partialPath != null) {
+            if (!partialPath.isEmpty() && partialPath.get(0).equals(tile)) partialPath.remove(0);
+            if (partialPath.isLastRemoved(tile.getX(), tile.getY())) {
+                if (partialBest != best) {
+                    List<NodeImpl> after = search.getPathAfter(partialBest, tile.getX(), tile.getY());
+                    TilePath further = world.getTiles(after, end.getX(), end.getY());
+                    if (further != null) {
+                        partialPath.addAll(further);
+                        partialBest = best;
+                    }
+                }
+                if (partialBest == best) return partialPath.isEmpty() ? null : partialPath;
+            }
+        }
+        partialPath = null;
+        TilePath tiles = world.getTiles(search.getPathFrom(tile.getX(), tile.getY()), end.getX(), end.getY());
+        if (tiles == null) return null;
+        // the path starts off as if it had been followed from the unit's tile, so it is still being followed while
+        // the unit is on the tile last removed from it
+        partialPath = new TilePath(world, tiles.size() + 1);
+        partialPath.add(tile.getX(), tile.getY());
+        partialPath.addAll(tiles);
+        partialPath.remove(0);
+        partialBest = best;
+        return partialPath.isEmpty() ? null : partialPath;
+    }
+
+}
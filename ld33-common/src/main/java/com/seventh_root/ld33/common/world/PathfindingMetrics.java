@@ -0,0 +1,228 @@
+/*
+ * Copyright 2015 Ross Binden
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seventh_root.ld33.common.world;
+
+/**
+ * A snapshot of how a {@link World}'s path searches have gone, taken with
+ * {@link World#snapshotPathfindingMetrics()}.
+ * <p>
+ * Counts and times are totals since the world was created, so the difference between two snapshots covers the time
+ * between them. Maxima are since the previous snapshot. Metrics of features the world isn't using are zero.
+ */
+public class PathfindingMetrics {
+
+    private long pathCacheHits;
+    private long pathCacheMisses;
+    private int pathCacheSize;
+    private int pathCacheCapacity;
+    private long flowFieldPaths;
+    private long flowFieldsBuilt;
+    private long pathRepairs;
+    private boolean asyncSearching;
+    private long backgroundSearches;
+    private long queueNanos;
+    private long searchNanos;
+    private long maxQueueNanos;
+    private long maxSearchNanos;
+    private int pendingSearches;
+    private boolean slicedSearching;
+    private long expansions;
+    private int expansionsPerTick;
+    private int activeSearches;
+    private int landmarks;
+    private boolean landmarksInUse;
+    private long landmarkBuilds;
+    private long landmarkFailures;
+    private Throwable lastLandmarkFailure;
+    private boolean planning;
+    private long plans;
+    private int planWindow;
+    private int reservations;
+
+    PathfindingMetrics(World world) {
+        PathCache pathCache = world.getPathCache();
+        pathCacheHits = pathCache.getHits();
+        pathCacheMisses = pathCache.getMisses();
+        pathCacheSize = pathCache.size();
+        pathCacheCapacity = pathCache.getCapacity();
+        flowFieldPaths = world.getFlowFieldCache().getPaths();
+        flowFieldsBuilt = world.getFlowFieldCache().getFieldsBuilt();
+        pathRepairs = world.getPathRepairs();
+        AsyncPathfinder asyncPathfinder = world.getAsyncPathfinder();
+        if (asyncPathfinder != null) {
+            asyncSearching = true;
+            backgroundSearches = asyncPathfinder.getSearches();
+            queueNanos = asyncPathfinder.getQueueNanos();
+            searchNanos = asyncPathfinder.getSearchNanos();
+            maxQueueNanos = asyncPathfinder.getMaxQueueNanos();
+            maxSearchNanos = asyncPathfinder.getMaxSearchNanos();
+            pendingSearches = asyncPathfinder.getPending();
+            asyncPathfinder.resetMaxima();
+        }
+        SlicedPathfinder slicedPathfinder = world.getSlicedPathfinder();
+        if (slicedPathfinder != null) {
+            slicedSearching = true;
+            expansions = slicedPathfinder.getExpansions();
+            expansionsPerTick = slicedPathfinder.getExpansionsPerTick();
+            activeSearches = slicedPathfinder.getActive();
+        }
+        LandmarkTables landmarkTables = world.getLandmarkTables();
+        if (landmarkTables != null) {
+            landmarks = landmarkTables.getCount();
+            landmarksInUse = landmarkTables.isInUse();
+            landmarkBuilds = landmarkTables.getBuilds();
+            landmarkFailures = landmarkTables.getFailures();
+            lastLandmarkFailure = landmarkTables.getLastFailure();
+        }
+        CooperativePlanner planner = world.getCooperativePlanner();
+        if (planner != null) {
+            planning = true;
+            plans = planner.getPlans();
+            planWindow = planner.getWindow();
+            reservations = planner.getReservations();
+        }
+    }
+
+    public long getPathCacheHits() {
+        return pathCacheHits;
+    }
+
+    public long getPathCacheMisses() {
+        return pathCacheMisses;
+    }
+
+    public int getPathCacheSize() {
+        return pathCacheSize;
+    }
+
+    public int getPathCacheCapacity() {
+        return pathCacheCapacity;
+    }
+
+    public long getFlowFieldPaths() {
+        return flowFieldPaths;
+    }
+
+    public long getFlowFieldsBuilt() {
+        return flowFieldsBuilt;
+    }
+
+    public long getPathRepairs() {
+        return pathRepairs;
+    }
+
+    /**
+     * Whether paths are searched for on a pool of background threads.
+     *
+     * @return whether background searches are in use
+     */
+    public boolean isAsyncSearching() {
+        return asyncSearching;
+    }
+
+    public long getBackgroundSearches() {
+        return backgroundSearches;
+    }
+
+    public long getQueueNanos() {
+        return queueNanos;
+    }
+
+    public long getSearchNanos() {
+        return searchNanos;
+    }
+
+    public long getMaxQueueNanos() {
+        return maxQueueNanos;
+    }
+
+    public long getMaxSearchNanos() {
+        return maxSearchNanos;
+    }
+
+    public int getPendingSearches() {
+        return pendingSearches;
+    }
+
+    /**
+     * Whether paths are searched for a slice at a time within a per-tick budget.
+     *
+     * @return whether sliced searches are in use
+     */
+    public boolean isSlicedSearching() {
+        return slicedSearching;
+    }
+
+    public long getExpansions() {
+        return expansions;
+    }
+
+    public int getExpansionsPerTick() {
+        return expansionsPerTick;
+    }
+
+    public int getActiveSearches() {
+        return activeSearches;
+    }
+
+    /**
+     * Gets the number of landmarks path costs are estimated with.
+     *
+     * @return the number of landmarks, or zero if landmarks aren't used
+     */
+    public int getLandmarks() {
+        return landmarks;
+    }
+
+    public boolean isLandmarksInUse() {
+        return landmarksInUse;
+    }
+
+    public long getLandmarkBuilds() {
+        return landmarkBuilds;
+    }
+
+    public long getLandmarkFailures() {
+        return landmarkFailures;
+    }
+
+    public Throwable getLastLandmarkFailure() {
+        return lastLandmarkFailure;
+    }
+
+    /**
+     * Whether units plan their moves around each other's reservations.
+     *
+     * @return whether cooperative planning is in use
+     */
+    public boolean isPlanning() {
+        return planning;
+    }
+
+    public long getPlans() {
+        return plans;
+    }
+
+    public int getPlanWindow() {
+        return planWindow;
+    }
+
+    public int getReservations() {
+        return reservations;
+    }
+
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2015 Ross Binden
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seventh_root.ld33.common.world;
+
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import static java.lang.Math.max;
+
+/**
+ * Ticks units in parallel, one fork/join task per square region of the world.
+ * <p>
+ * A unit is local to its region if everything its tick can touch is inside that region:
+ * it is following a path, already searched, whose next tile is in the region, and any attack target
+ * is in the region and can't die this tick. Consecutive local units are grouped into an
+ * epoch and each region of the epoch is ticked in parallel, keeping the units' relative
+ * order. Any other unit (one that needs or is waiting on a path search, crosses a region
+ * border, attacks across one or may kill its target) ends the epoch and is ticked on its own
+ * afterwards.
+ * <p>
+ * Units in different regions of an epoch can't observe each other, and every pair of units
+ * that can is ticked in the same order as a serial tick, so the result is identical.
+ * Database writes, dormancy and removals are applied once the epoch's regions have joined.
+ */
+class RegionTicker {
+
+    private World world;
+    private ForkJoinPool pool;
+    private int regionSize;
+    private int regionsHigh;
+
+    RegionTicker(World world, ForkJoinPool pool, int regionSize) {
+        this.world = world;
+        this.pool = pool;
+        // regions are whole chunks so that two regions never allocate the same chunk
+        this.regionSize = max(Chunk.SIZE, (regionSize + Chunk.MASK) & ~Chunk.MASK);
+        this.regionsHigh = (world.getHeight() + this.regionSize - 1) / this.regionSize;
+    }
+
+    void tick(int[] slots, int count) throws SQLException {
+        UnitStore store = world.getUnitStore();
+        List<Unit> units = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            units.add(store.units[slots[i]]);
+        }
+        Map<Unit, Integer> attackers = new HashMap<>();
+        for (Unit unit : units) {
+            if (unit.getAttackTarget() != null) attackers.merge(unit.getAttackTarget(), 1, Integer::sum);
+        }
+        List<Unit> epoch = new ArrayList<>();
+        Map<Integer, List<Unit>> regions = new LinkedHashMap<>();
+        for (Unit unit : units) {
+            int region = getLocalRegion(unit, attackers);
+            if (region >= 0) {
+                epoch.add(unit);
+                regions.computeIfAbsent(region, key -> new ArrayList<>()).add(unit);
+            } else {
+                tickEpoch(epoch, regions);
+                world.tickUnit(unit);
+            }
+        }
+        tickEpoch(epoch, regions);
+    }
+
+    private void tickEpoch(List<Unit> epoch, Map<Integer, List<Unit>> regions) throws SQLException {
+        if (epoch.isEmpty()) return;
+        if (regions.size() < 2) {
+            for (Unit unit : epoch) {
+                world.tickUnit(unit);
+            }
+        } else {
+            List<RegionTask> tasks = new ArrayList<>(regions.size());
+            regions.values().forEach(regionUnits -> tasks.add(new RegionTask(regionUnits)));
+            world.beginParallelTick();
+            try {
+                pool.invoke(new RecursiveAction() {
+                    @Override
+                    protected void compute() {
+                        invokeAll(tasks);
+                    }
+                });
+            } finally {
+                world.endParallelTick();
+            }
+            for (Unit unit : epoch) {
+                world.finishTick(unit);
+            }
+        }
+        epoch.clear();
+        regions.clear();
+    }
+
+    private int getLocalRegion(Unit unit, Map<Unit, Integer> attackers) {
+        UnitStore store = world.getUnitStore();
+        Tile tile = unit.getTile();
+        if (unit.getStore() != store || tile == null) return -1;
+        int region = getRegion(store.x[unit.getSlot()], store.y[unit.getSlot()]);
+        if (unit.getTarget() != null && !unit.getTarget().equals(tile)) {
+            if (!unit.hasPath() || unit.isPathPending() || !unit.isPathSearchedAhead()) return -1;
+            Tile nextTile = unit.getNextTile();
+            if (nextTile != null && getRegion(nextTile.getX(), nextTile.getY()) != region) return -1;
+        }
+        Unit attackTarget = unit.getAttackTarget();
+        if (attackTarget != null) {
+            // every attacker deals at most one damage per tick
+            if (attackTarget.getHealth() <= attackers.get(attackTarget)) return -1;
+            if (attackTarget.getStore() != store || getRegion(store.x[attackTarget.getSlot()], store.y[attackTarget.getSlot()]) != region) return -1;
+        }
+        return region;
+    }
+
+    private int getRegion(int x, int y) {
+        return (x / regionSize) * regionsHigh + (y / regionSize);
+    }
+
+    private class RegionTask extends RecursiveAction {
+
+        private List<Unit> units;
+
+        RegionTask(List<Unit> units) {
+            this.units = units;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                UnitStore store = world.getUnitStore();
+                for (Unit unit : units) {
+                    if (world.isTicking(unit) && !store.advance(unit.getSlot())) unit.onTick();
+                }
+            } catch (SQLException exception) {
+                // local units never reach the database, this is only here for the signature
+                throw new IllegalStateException(exception);
+            }
+        }
+
+    }
+
+}
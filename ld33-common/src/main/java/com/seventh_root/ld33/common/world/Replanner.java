@@ -0,0 +1,115 @@
+/*
+ * Copyright 2015 Ross Binden
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seventh_root.ld33.common.world;
+
+import com.seventh_root.ld33.common.pathfinding.DStarLite;
+import com.seventh_root.ld33.common.pathfinding.Heuristic;
+import com.seventh_root.ld33.common.pathfinding.NodeImpl;
+
+import java.util.Arrays;
+
+/**
+ * Keeps a unit's path to its target up to date with a {@link DStarLite} search, so that a path blocked by a new wall
+ * is repaired around it rather than searched for again.
+ * <p>
+ * The replanner searches over the walls and flags alone, leaving other units to be stepped around, and follows the
+ * world's log of changes to them, passing on each tile changed since it last looked in order of position so that the
+ * repair doesn't depend on the order the changes were made in. If it falls so far behind that the log no longer holds
+ * every change, it has to be replaced.
+ * <p>
+ * A new replanner has to search out from the target before it can repair anything, so it is warmed up a few nodes a
+ * tick by the world, and the unit's path is found again in the usual way in the meantime.
+ */
+class Replanner {
+
+    private World world;
+    private Tile end;
+    private DStarLite<NodeImpl> search;
+    private int immovableVersion;
+    private Heuristic heuristic;
+    private boolean ready;
+
+    Replanner(World world, Tile start, Tile end) {
+        this.world = world;
+        this.end = end;
+        this.heuristic = world.getHeuristic();
+        this.search = world.startDStarLite(start, end);
+        this.immovableVersion = world.getImmovableVersion();
+    }
+
+    /**
+     * Passes on the tiles changed since the replanner last looked.
+     *
+     * @return whether every change could be passed on, which if not means the replanner must be replaced
+     */
+    boolean sync() {
+        // the search's queue is ordered by estimates, which would no longer agree with new ones
+        if (world.getHeuristic() != heuristic) return false;
+        int currentVersion = world.getImmovableVersion();
+        if (currentVersion == immovableVersion) return true;
+        if (!world.isImmovableLogged(immovableVersion)) return false;
+        int[] changes = new int[currentVersion - immovableVersion];
+        for (int i = 0; i < changes.length; i++) {
+            changes[i] = world.getImmovableChange(immovableVersion + i);
+        }
+        Arrays.sort(changes);
+        for (int i = 0; i < changes.length; i++) {
+            if (i == 0 || changes[i] != changes[i - 1]) {
+                search.updateNode(changes[i] / world.getHeight(), changes[i] % world.getHeight());
+            }
+        }
+        immovableVersion = currentVersion;
+        return true;
+    }
+
+    /**
+     * Carries on the replanner's first search towards the given tile, within the given number of expansions.
+     *
+     * @param start the tile the unit is on
+     * @param maxExpansions the most nodes to expand
+     * @return the number of nodes expanded
+     */
+    int warmUp(Tile start, int maxExpansions) {
+        search.moveStart(start.getX(), start.getY());
+        int expansions = search.step(maxExpansions);
+        if (search.isFinished()) ready = true;
+        return expansions;
+    }
+
+    /**
+     * Whether the replanner's first search has reached the unit, so that repairing its path only has to search around
+     * what has changed since.
+     *
+     * @return whether the replanner is ready
+     */
+    boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Finds the path from the given tile, repairing the search around any changes passed on since the last one.
+     *
+     * @param start the tile the unit is on
+     * @return the tiles along the path, not including the start tile, or null if there is no path
+     */
+    TilePath findPathFrom(Tile start) {
+        search.moveStart(start.getX(), start.getY());
+        ready = true;
+        return world.getTiles(search.findPath(), end.getX(), end.getY());
+    }
+
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2015 Ross Binden
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seventh_root.ld33.common.world;
+
+/**
+ * Which units have claimed which tiles for which ticks, so that units moving at the same time can plan around each
+ * other rather than walk onto the same tile.
+ * <p>
+ * Each tile has a short list of reservations, each for a span of ticks, which are dropped once they have run out.
+ * Reservations are made and released between ticks, so the table is not safe to use from several threads at once.
+ * <p>
+ * The lists are kept in an open-addressing table keyed by tile, the same way as {@link
+ * com.seventh_root.ld33.common.util.UUIDMap}, so that checking a tile doesn't box its key.
+ */
+class ReservationTable {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private int[] cells;
+    private Reservation[] firsts;
+    private int tiles;
+    private int mask;
+    private int size;
+
+    ReservationTable() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    private void allocate(int capacity) {
+        cells = new int[capacity];
+        firsts = new Reservation[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * Whether no unit other than the one given has reserved the tile for any tick in the given span.
+     *
+     * @param cell the tile, as <code>x * height + y</code>
+     * @param from the first tick of the span
+     * @param to the tick after the span
+     * @param unit the unit asking, whose own reservations don't count
+     * @return whether the tile is free
+     */
+    boolean isFree(int cell, long from, long to, Unit unit) {
+        for (Reservation reservation = get(cell); reservation != null; reservation = reservation.next) {
+            if (reservation.unit != unit && reservation.from < to && from < reservation.to) return false;
+        }
+        return true;
+    }
+
+    void reserve(int cell, long from, long to, Unit unit, long now) {
+        Reservation first = prune(cell, now);
+        setFirst(cell, new Reservation(unit, from, to, first));
+        size++;
+    }
+
+    /**
+     * Releases every reservation the unit has made for the given tiles, along with any on them that have run out.
+     *
+     * @param cells the tiles the unit reserved
+     * @param count how many of the tiles to release
+     * @param unit the unit
+     * @param now the current tick
+     */
+    void release(int[] cells, int count, Unit unit, long now) {
+        for (int i = 0; i < count; i++) {
+            Reservation previous = null;
+            for (Reservation reservation = prune(cells[i], now); reservation != null; reservation = reservation.next) {
+                if (reservation.unit == unit) {
+                    if (previous == null) {
+                        setFirst(cells[i], reservation.next);
+                    } else {
+                        previous.next = reservation.next;
+                    }
+                    size--;
+                } else {
+                    previous = reservation;
+                }
+            }
+        }
+    }
+
+    private Reservation prune(int cell, long now) {
+        Reservation first = get(cell);
+        while (first != null && first.to <= now) {
+            first = first.next;
+            size--;
+        }
+        Reservation previous = first;
+        while (previous != null && previous.next != null) {
+            if (previous.next.to <= now) {
+                previous.next = previous.next.next;
+                size--;
+            } else {
+                previous = previous.next;
+            }
+        }
+        setFirst(cell, first);
+        return first;
+    }
+
+    private Reservation get(int cell) {
+        int index = find(cell);
+        return index >= 0 ? firsts[index] : null;
+    }
+
+    private int find(int cell) {
+        int index = hash(cell) & mask;
+        while (firsts[index] != null) {
+            if (cells[index] == cell) return index;
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void setFirst(int cell, Reservation first) {
+        if (first == null) {
+            remove(cell);
+            return;
+        }
+        int index = hash(cell) & mask;
+        while (firsts[index] != null) {
+            if (cells[index] == cell) {
+                firsts[index] = first;
+                return;
+            }
+            index = (index + 1) & mask;
+        }
+        cells[index] = cell;
+        firsts[index] = first;
+        if (++tiles > firsts.length >> 1) resize();
+    }
+
+    private void remove(int cell) {
+        int index = find(cell);
+        if (index < 0) return;
+        firsts[index] = null;
+        tiles--;
+        // shift back any entries in the same probe run that would no longer be reachable
+        int next = (index + 1) & mask;
+        while (firsts[next] != null) {
+            int home = hash(cells[next]) & mask;
+            if (((next - home) & mask) >= ((next - index) & mask)) {
+                cells[index] = cells[next];
+                firsts[index] = firsts[next];
+                firsts[next] = null;
+                index = next;
+            }
+            next = (next + 1) & mask;
+        }
+    }
+
+    private void resize() {
+        int[] oldCells = cells;
+        Reservation[] oldFirsts = firsts;
+        allocate(oldFirsts.length << 1);
+        for (int oldIndex = 0; oldIndex < oldFirsts.length; oldIndex++) {
+            if (oldFirsts[oldIndex] == null) continue;
+            int index = hash(oldCells[oldIndex]) & mask;
+            while (firsts[index] != null) {
+                index = (index + 1) & mask;
+            }
+            cells[index] = oldCells[oldIndex];
+            firsts[index] = oldFirsts[oldIndex];
+        }
+    }
+
+    private static int hash(int cell) {
+        int hash = cell * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * The number of reservations held, some of which may have run out but not yet been dropped.
+     *
+     * @return the number of reservations
+     */
+    int size() {
+        return size;
+    }
+
+    private static class Reservation {
+
+        private Unit unit;
+        private long from;
+        private long to;
+        private Reservation next;
+
+        Reservation(Unit unit, long from, long to, Reservation next) {
+            this.unit = unit;
+            this.from = from;
+            this.to = to;
+            this.next = next;
+        }
+
+    }
+
+}
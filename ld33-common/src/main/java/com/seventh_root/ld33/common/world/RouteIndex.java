@@ -0,0 +1,135 @@
+/*
+ * Copyright 2015 Ross Binden
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seventh_root.ld33.common.world;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * The chunks each unit's path runs through, so that when a wall or flag is placed only the units whose paths cross
+ * its chunk have to check whether they are blocked.
+ * <p>
+ * Paths change while regions tick in parallel, so units only note that their route has changed, and the index moves
+ * them to the chunks of their new route just before the routes are next looked up. A route may still list chunks the
+ * unit has since walked out of, which only costs a check. Units following paths found over chunks are left out, as
+ * they are not repaired.
+ */
+class RouteIndex {
+
+    private World world;
+    private Unit[][] chunks;
+    private int[] counts;
+    private Queue<Unit> changed;
+    private int[] routeChunks;
+
+    RouteIndex(World world, int chunkCount) {
+        this.world = world;
+        this.chunks = new Unit[chunkCount][];
+        this.counts = new int[chunkCount];
+        this.changed = new ConcurrentLinkedQueue<>();
+        this.routeChunks = new int[16];
+    }
+
+    /**
+     * Notes that a unit's path has changed. This may be called while regions tick in parallel, as each unit's route
+     * is only changed by the thread ticking it.
+     *
+     * @param unit the unit
+     */
+    void onRouteChanged(Unit unit) {
+        if (!unit.routeChanged) {
+            unit.routeChanged = true;
+            changed.add(unit);
+        }
+    }
+
+    /**
+     * Moves every unit whose path has changed to the chunks of its new route.
+     */
+    void update() {
+        Unit unit;
+        while ((unit = changed.poll()) != null) {
+            unit.routeChanged = false;
+            remove(unit);
+            TilePath path = unit.getRepairablePath();
+            if (path == null || unit.getStore() != world.getUnitStore()) continue;
+            int count = 0;
+            int lastChunk = -1;
+            for (int i = 0; i < path.size(); i++) {
+                int chunk = world.getChunkIndex(path.getX(i), path.getY(i));
+                if (chunk == lastChunk) continue;
+                if (count == routeChunks.length) routeChunks = Arrays.copyOf(routeChunks, count * 2);
+                routeChunks[count++] = chunk;
+                lastChunk = chunk;
+            }
+            Arrays.sort(routeChunks, 0, count);
+            int distinct = 0;
+            for (int i = 0; i < count; i++) {
+                if (distinct == 0 || routeChunks[i] != routeChunks[distinct - 1]) routeChunks[distinct++] = routeChunks[i];
+            }
+            unit.routeChunks = Arrays.copyOf(routeChunks, distinct);
+            for (int i = 0; i < distinct; i++) {
+                add(unit, routeChunks[i]);
+            }
+        }
+    }
+
+    /**
+     * Takes a unit out of the chunks of its route, such as when it leaves the world.
+     *
+     * @param unit the unit
+     */
+    void remove(Unit unit) {
+        if (unit.routeChunks == null) return;
+        for (int chunk : unit.routeChunks) {
+            Unit[] bucket = chunks[chunk];
+            for (int i = 0; i < counts[chunk]; i++) {
+                if (bucket[i] == unit) {
+                    bucket[i] = bucket[--counts[chunk]];
+                    bucket[counts[chunk]] = null;
+                    break;
+                }
+            }
+        }
+        unit.routeChunks = null;
+    }
+
+    /**
+     * Adds the units whose routes run through a chunk to a list. The order is not kept, so callers that need one
+     * should sort the list.
+     *
+     * @param chunk the index of the chunk
+     * @param units the list to add the units to
+     */
+    void getUnits(int chunk, List<Unit> units) {
+        for (int i = 0; i < counts[chunk]; i++) {
+            units.add(chunks[chunk][i]);
+        }
+    }
+
+    private void add(Unit unit, int chunk) {
+        if (chunks[chunk] == null) {
+            chunks[chunk] = new Unit[4];
+        } else if (counts[chunk] == chunks[chunk].length) {
+            chunks[chunk] = Arrays.copyOf(chunks[chunk], counts[chunk] * 2);
+        }
+        chunks[chunk][counts[chunk]++] = unit;
+    }
+
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2015 Ross Binden
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seventh_root.ld33.common.world;
+
+import com.seventh_root.ld33.common.pathfinding.ResumableSearch;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.UUID;
+
+import static java.lang.Math.min;
+
+/**
+ * Searches for paths in the tick a few nodes at a time, so that a search that can't be sent to another thread
+ * still can't hold up the tick, however far it has to look.
+ * <p>
+ * Each tick has a budget of node expansions, shared evenly between the players with searches in progress and then
+ * between each player's searches, and no search may take more than its own per-tick limit. Expansions a player
+ * doesn't use are passed on to the next, and the order players and searches are served in turns over each tick, so
+ * none are starved. A new search is started as soon as it is asked for, using whatever is left of the tick's budget,
+ * so short searches still finish straight away.
+ */
+public class SlicedPathfinder {
+
+    private World world;
+    private int expansionsPerTick;
+    private int expansionsPerSearch;
+    private LinkedHashMap<UUID, ArrayDeque<PathRequest>> requests;
+    private int remaining;
+    private int active;
+    private long expansions;
+
+    SlicedPathfinder(World world, int expansionsPerTick, int expansionsPerSearch) {
+        this.world = world;
+        this.expansionsPerTick = expansionsPerTick;
+        this.expansionsPerSearch = expansionsPerSearch;
+        this.requests = new LinkedHashMap<>();
+        this.remaining = expansionsPerTick;
+    }
+
+    PathRequest submit(UUID owner, Tile start, Tile end) {
+        PathRequest request = world.startResumableSearch(start, end);
+        remaining -= step(request, min(expansionsPerSearch, remaining));
+        if (!request.isDone()) {
+            requests.computeIfAbsent(owner, key -> new ArrayDeque<>()).add(request);
+            active++;
+        }
+        return request;
+    }
+
+    void run() {
+        remaining = expansionsPerTick;
+        List<UUID> owners = new ArrayList<>(requests.keySet());
+        int ownersLeft = owners.size();
+        for (UUID owner : owners) {
+            ArrayDeque<PathRequest> ownerRequests = requests.get(owner);
+            int ownerRemaining = remaining / ownersLeft--;
+            remaining -= ownerRemaining;
+            for (int requestsLeft = ownerRequests.size(); requestsLeft > 0; requestsLeft--) {
+                PathRequest request = ownerRequests.poll();
+                if (request.isCancelled()) {
+                    active--;
+                    continue;
+                }
+                ownerRemaining -= step(request, min(expansionsPerSearch, ownerRemaining / requestsLeft));
+                if (request.isDone()) {
+                    active--;
+                } else {
+                    ownerRequests.add(request);
+                }
+            }
+            remaining += ownerRemaining;
+            if (ownerRequests.isEmpty()) requests.remove(owner);
+        }
+        // Serve whoever went first this tick last next tick
+        if (!owners.isEmpty()) {
+            ArrayDeque<PathRequest> first = requests.remove(owners.get(0));
+            if (first != null) requests.put(owners.get(0), first);
+        }
+    }
+
+    private int step(PathRequest request, int maxExpansions) {
+        ResumableSearch<?> search = request.getSearch();
+        int stepExpansions = search.step(maxExpansions);
+        expansions += stepExpansions;
+        if (search.isFinished()) {
+            request.complete();
+            if (search.isFound() && request.getWalkabilityVersion() == world.getImmovableVersion()) {
+                world.getPathCache().putTiles(request.getStart(), request.getEnd(), request.getPathFrom(request.getStart()));
+            }
+        }
+        return stepExpansions;
+    }
+
+    /**
+     * Gets the number of searches that have been started and not yet finished.
+     *
+     * @return the number of searches in progress
+     */
+    public int getActive() {
+        return active;
+    }
+
+    /**
+     * Gets the total number of nodes expanded by sliced searches.
+     *
+     * @return the number of expansions
+     */
+    public long getExpansions() {
+        return expansions;
+    }
+
+    public int getExpansionsPerTick() {
+        return expansionsPerTick;
+    }
+
+    public int getExpansionsPerSearch() {
+        return expansionsPerSearch;
+    }
+
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2015 Ross Binden
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seventh_root.ld33.common.world;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+import static java.lang.Math.abs;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+/**
+ * A uniform grid of buckets over the units in a {@link World}, for proximity queries.
+ * <p>
+ * Buckets are allocated the first time a unit enters them and kept in step by the world as
+ * units are added, moved and removed. Distances are Manhattan distances in tiles, matching
+ * 4-way movement. Queries write into a caller-supplied array and don't allocate, so they are
+ * not safe to run from several threads at once.
+ */
+public class SpatialIndex {
+
+    static final int CELL_SHIFT = 4;
+    static final int CELL_SIZE = 1 << CELL_SHIFT;
+
+    private UnitStore store;
+    private int cellsWide;
+    private int cellsHigh;
+    private Unit[][] cells;
+    private int[] counts;
+    private int[] distances;
+
+    SpatialIndex(UnitStore store, int width, int height) {
+        this.store = store;
+        this.cellsWide = (width + CELL_SIZE - 1) >> CELL_SHIFT;
+        this.cellsHigh = (height + CELL_SIZE - 1) >> CELL_SHIFT;
+        this.cells = new Unit[cellsWide * cellsHigh][];
+        this.counts = new int[cellsWide * cellsHigh];
+        this.distances = new int[16];
+    }
+
+    void add(Unit unit, int x, int y) {
+        int cell = getCell(x, y);
+        if (cells[cell] == null) {
+            cells[cell] = new Unit[4];
+        } else if (counts[cell] == cells[cell].length) {
+            cells[cell] = Arrays.copyOf(cells[cell], counts[cell] * 2);
+        }
+        cells[cell][counts[cell]++] = unit;
+    }
+
+    void remove(Unit unit, int x, int y) {
+        int cell = getCell(x, y);
+        Unit[] bucket = cells[cell];
+        if (bucket == null) return;
+        for (int i = 0; i < counts[cell]; i++) {
+            if (bucket[i] == unit) {
+                // keep buckets in insertion order so queries are deterministic
+                System.arraycopy(bucket, i + 1, bucket, i, counts[cell] - i - 1);
+                bucket[--counts[cell]] = null;
+                return;
+            }
+        }
+    }
+
+    void move(Unit unit, int oldX, int oldY, int x, int y) {
+        if (getCell(oldX, oldY) == getCell(x, y)) return;
+        remove(unit, oldX, oldY);
+        add(unit, x, y);
+    }
+
+    /**
+     * Finds the units within the given distance of a tile.
+     *
+     * @param x the x coordinate of the tile
+     * @param y the y coordinate of the tile
+     * @param range the maximum distance, in tiles
+     * @param excludedPlayerUUID units belonging to this player are skipped, may be null
+     * @param results the array to write matching units into
+     * @return the number of units written, at most the length of <code>results</code>
+     */
+    public int findInRange(int x, int y, int range, UUID excludedPlayerUUID, Unit[] results) {
+        int found = 0;
+        int minCellX = max(x - range, 0) >> CELL_SHIFT;
+        int maxCellX = min((x + range) >> CELL_SHIFT, cellsWide - 1);
+        int minCellY = max(y - range, 0) >> CELL_SHIFT;
+        int maxCellY = min((y + range) >> CELL_SHIFT, cellsHigh - 1);
+        for (int cellX = minCellX; cellX <= maxCellX; cellX++) {
+            for (int cellY = minCellY; cellY <= maxCellY; cellY++) {
+                int cell = cellX * cellsHigh + cellY;
+                Unit[] bucket = cells[cell];
+                for (int i = 0; i < counts[cell]; i++) {
+                    Unit unit = bucket[i];
+                    if (getDistance(unit, x, y) <= range && !isExcluded(unit, excludedPlayerUUID)) {
+                        results[found++] = unit;
+                        if (found == results.length) return found;
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Finds the nearest units to a tile, closest first.
+     * Up to <code>results.length</code> units are returned.
+     *
+     * @param x the x coordinate of the tile
+     * @param y the y coordinate of the tile
+     * @param maxRange the maximum distance to search, in tiles
+     * @param excludedPlayerUUID units belonging to this player are skipped, may be null
+     * @param results the array to write the nearest units into
+     * @return the number of units written
+     */
+    public int findNearest(int x, int y, int maxRange, UUID excludedPlayerUUID, Unit[] results) {
+        int k = results.length;
+        if (k == 0) return 0;
+        if (distances.length < k) distances = new int[k];
+        int found = 0;
+        int centreCellX = x >> CELL_SHIFT;
+        int centreCellY = y >> CELL_SHIFT;
+        int maxRing = (maxRange >> CELL_SHIFT) + 1;
+        for (int ring = 0; ring <= maxRing; ring++) {
+            // every tile in a cell on this ring is at least this far away
+            int ringDistance = (ring - 1) * CELL_SIZE + 1;
+            if (found == k && ringDistance > distances[k - 1]) break;
+            if (ringDistance > maxRange) break;
+            for (int cellX = centreCellX - ring; cellX <= centreCellX + ring; cellX++) {
+                if (cellX < 0 || cellX >= cellsWide) continue;
+                int step = (cellX == centreCellX - ring || cellX == centreCellX + ring) ? 1 : max(ring * 2, 1);
+                for (int cellY = centreCellY - ring; cellY <= centreCellY + ring; cellY += step) {
+                    if (cellY < 0 || cellY >= cellsHigh) continue;
+                    int cell = cellX * cellsHigh + cellY;
+                    Unit[] bucket = cells[cell];
+                    for (int i = 0; i < counts[cell]; i++) {
+                        Unit unit = bucket[i];
+                        int distance = getDistance(unit, x, y);
+                        if (distance > maxRange || isExcluded(unit, excludedPlayerUUID)) continue;
+                        if (found == k && distance >= distances[k - 1]) continue;
+                        int position = found < k ? found++ : k - 1;
+                        while (position > 0 && distances[position - 1] > distance) {
+                            results[position] = results[position - 1];
+                            distances[position] = distances[position - 1];
+                            position--;
+                        }
+                        results[position] = unit;
+                        distances[position] = distance;
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Gets the distance between two units, going by the tiles the index has them on.
+     * Units outside the index are measured from their tiles.
+     *
+     * @param unit the first unit
+     * @param other the second unit
+     * @return the distance, in tiles
+     */
+    public int getDistance(Unit unit, Unit other) {
+        if (other.getStore() != store) return getDistance(unit, other.getTile().getX(), other.getTile().getY());
+        return getDistance(unit, store.x[other.getSlot()], store.y[other.getSlot()]);
+    }
+
+    private int getDistance(Unit unit, int x, int y) {
+        if (unit.getStore() != store) return abs(unit.getTile().getX() - x) + abs(unit.getTile().getY() - y);
+        int slot = unit.getSlot();
+        return abs(store.x[slot] - x) + abs(store.y[slot] - y);
+    }
+
+    private boolean isExcluded(Unit unit, UUID excludedPlayerUUID) {
+        return excludedPlayerUUID != null && excludedPlayerUUID.equals(unit.getPlayerUUID());
+    }
+
+    private int getCell(int x, int y) {
+        return (x >> CELL_SHIFT) * cellsHigh + (y >> CELL_SHIFT);
+    }
+
+}
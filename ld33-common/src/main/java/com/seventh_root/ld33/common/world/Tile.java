@@ -16,22 +16,22 @@
 
 package com.seventh_root.ld33.common.world;
 
+/**
+ * A position in a {@link World}.
+ * Tiles don't hold any state of their own, units are stored in the world's chunks, so two tiles
+ * at the same position are equal. {@link World#getTileAt(int, int)} hands out the same one for
+ * a position every time.
+ */
 public class Tile {
 
-    private World world;
-    private int x;
-    private int y;
-    private Unit unit;
+    private final World world;
+    private final int x;
+    private final int y;
 
-    public Tile(World world, int x, int y, Unit unit) {
+    public Tile(World world, int x, int y) {
         this.world = world;
         this.x = x;
         this.y = y;
-        this.unit = unit;
-    }
-
-    public Tile(World world, int x, int y) {
-        this(world, x, y, null);
     }
 
     public World getWorld() {
@@ -47,15 +47,35 @@ public class Tile {
     }
 
     public Unit getUnit() {
-        return unit;
+        return world.getUnitAt(x, y);
     }
 
     public void setUnit(Unit unit) {
-        this.unit = unit;
+        Unit previousUnit = getUnit();
+        if (previousUnit != null && previousUnit != unit) getWorld().removeUnit(previousUnit);
+        placeUnit(unit);
+        if (unit != null) getWorld().addUnit(unit);
+    }
+
+    void placeUnit(Unit unit) {
+        world.placeUnitAt(x, y, unit);
     }
 
     public Tile getAdjacent(int hor, int ver) {
         return getWorld().getTileAt(getX() + hor, getY() + ver);
     }
 
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (!(obj instanceof Tile)) return false;
+        Tile other = (Tile) obj;
+        return world == other.world && x == other.x && y == other.y;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * x + y;
+    }
+
 }
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2015 Ross Binden
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seventh_root.ld33.common.world;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * The tiles along a path, packed as positions rather than held as tiles, which are only made when read.
+ * <p>
+ * A unit following the path reads the tile at the front and removes it once it gets there, which only moves a cursor
+ * along, so stepping along the path costs the same however long it is. The front tile is kept while it is read, so
+ * reading it every tick doesn't make a new one each time.
+ */
+class TilePath extends AbstractList<Tile> {
+
+    private World world;
+    /** positions of the tiles along the path, as <code>x * height + y</code>, from head to tail. */
+    private int[] positions;
+    private int head;
+    private int tail;
+    private Tile headTile;
+
+    TilePath(World world, int capacity) {
+        this.world = world;
+        this.positions = new int[Math.max(capacity, 1)];
+    }
+
+    /**
+     * Copies the tiles left along another path, so that the copy can be followed without changing the original.
+     *
+     * @param path the path to copy
+     */
+    TilePath(TilePath path) {
+        this.world = path.world;
+        this.positions = Arrays.copyOfRange(path.positions, path.head, Math.max(path.tail, path.head + 1));
+        this.tail = path.tail - path.head;
+    }
+
+    void add(int x, int y) {
+        if (tail == positions.length) {
+            // the tile last removed is kept, so it can still be told where the path has been followed to
+            int from = Math.max(head - 1, 0);
+            if ((tail - from) * 2 < positions.length) {
+                // most of the array has been followed already, so make room by moving the rest to the front
+                System.arraycopy(positions, from, positions, 0, tail - from);
+            } else {
+                positions = Arrays.copyOfRange(positions, from, positions.length * 2 + from);
+            }
+            tail -= from;
+            head -= from;
+        }
+        positions[tail++] = x * world.getHeight() + y;
+    }
+
+    void addAll(TilePath path) {
+        for (int i = path.head; i < path.tail; i++) {
+            add(path.positions[i] / world.getHeight(), path.positions[i] % world.getHeight());
+        }
+    }
+
+    /**
+     * Whether at least the given number of tiles are left along the path. Paths that are found as they are followed
+     * find as many as they need to.
+     *
+     * @param count the number of tiles
+     * @return whether there are enough tiles
+     */
+    boolean hasAhead(int count) {
+        return tail - head >= count;
+    }
+
+    /**
+     * Whether the given position is the tile most recently removed from the front of the path, which is the tile a
+     * unit following the path has got to.
+     *
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @return whether the tile was the last removed
+     */
+    boolean isLastRemoved(int x, int y) {
+        return head > 0 && positions[head - 1] == x * world.getHeight() + y;
+    }
+
+    /**
+     * Gets the x coordinate of a tile along the path without making the tile.
+     *
+     * @param index the index of the tile
+     * @return the x coordinate
+     */
+    int getX(int index) {
+        return positions[getPositionIndex(index)] / world.getHeight();
+    }
+
+    /**
+     * Gets the y coordinate of a tile along the path without making the tile.
+     *
+     * @param index the index of the tile
+     * @return the y coordinate
+     */
+    int getY(int index) {
+        return positions[getPositionIndex(index)] % world.getHeight();
+    }
+
+    private int getPositionIndex(int index) {
+        if (index < 0 || !hasAhead(index + 1)) throw new IndexOutOfBoundsException("Index: " + index);
+        return head + index;
+    }
+
+    @Override
+    public Tile get(int index) {
+        if (index == 0 && headTile != null) return headTile;
+        Tile tile = world.getTileAt(getX(index), getY(index));
+        if (index == 0) headTile = tile;
+        return tile;
+    }
+
+    @Override
+    public int size() {
+        return tail - head;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return !hasAhead(1);
+    }
+
+    @Override
+    public Tile remove(int index) {
+        Tile tile = get(index);
+        if (index == 0) {
+            head++;
+            headTile = null;
+        } else {
+            int positionIndex = head + index;
+            System.arraycopy(positions, positionIndex + 1, positions, positionIndex, tail - positionIndex - 1);
+            tail--;
+        }
+        modCount++;
+        return tile;
+    }
+
+    @Override
+    public Iterator<Tile> iterator() {
+        return new Iterator<Tile>() {
+
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                return hasAhead(index + 1);
+            }
+
+            @Override
+            public Tile next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                return get(index++);
+            }
+
+        };
+    }
+
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2015 Ross Binden
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seventh_root.ld33.common.world;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static java.lang.Math.max;
+
+/**
+ * A hierarchical hashed timer wheel of units waiting for their completion time.
+ * <p>
+ * Each level has 64 slots; a slot on level 0 spans one resolution step and a slot on each
+ * level above spans a whole turn of the level below. Units are hashed into the lowest level
+ * that can hold their deadline and cascade down as the wheel turns, so scheduling is O(1)
+ * and advancing costs one slot per step plus the units that fire or cascade. Deadlines
+ * further out than the top level can hold wait in its furthest slot and are re-hashed
+ * when it comes round.
+ */
+class TimerWheel {
+
+    private static final int LEVELS = 4;
+    private static final int SLOT_SHIFT = 6;
+    private static final int SLOTS = 1 << SLOT_SHIFT;
+    private static final int SLOT_MASK = SLOTS - 1;
+
+    private long resolution;
+    private long currentStep;
+    private List<Unit>[][] slots;
+
+    @SuppressWarnings("unchecked")
+    TimerWheel(long resolution, long now) {
+        this.resolution = resolution;
+        this.currentStep = now / resolution;
+        this.slots = new List[LEVELS][SLOTS];
+    }
+
+    /**
+     * Schedules a unit to fire once its completion time has passed.
+     *
+     * @param unit the unit
+     * @return false if the completion time has already passed, in which case nothing is scheduled
+     */
+    boolean schedule(Unit unit) {
+        long step = (unit.getCompletionTime() + resolution - 1) / resolution;
+        if (step <= currentStep) return false;
+        insert(unit, step);
+        return true;
+    }
+
+    private void insert(Unit unit, long step) {
+        long delta = step - currentStep;
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= 1L << (SLOT_SHIFT * (level + 1))) {
+            level++;
+        }
+        int slot;
+        if (delta >= 1L << (SLOT_SHIFT * LEVELS)) {
+            // too far out for the wheel, park it in the slot furthest from now on the top level
+            slot = (int) ((currentStep >>> (SLOT_SHIFT * level)) - 1) & SLOT_MASK;
+        } else {
+            slot = (int) (step >>> (SLOT_SHIFT * level)) & SLOT_MASK;
+        }
+        List<Unit> units = slots[level][slot];
+        if (units == null) {
+            units = new ArrayList<>();
+            slots[level][slot] = units;
+        }
+        units.add(unit);
+    }
+
+    /**
+     * Turns the wheel up to the given time, passing every unit whose completion time has
+     * passed to the given consumer in deadline order.
+     *
+     * @param now the current time, in milliseconds
+     * @param fire the consumer to pass completed units to
+     */
+    void advance(long now, Consumer<Unit> fire) {
+        long targetStep = now / resolution;
+        while (currentStep < targetStep) {
+            currentStep++;
+            cascade(1);
+            List<Unit> due = slots[0][(int) currentStep & SLOT_MASK];
+            if (due != null && !due.isEmpty()) {
+                slots[0][(int) currentStep & SLOT_MASK] = null;
+                due.forEach(fire);
+            }
+        }
+    }
+
+    private void cascade(int level) {
+        if (level >= LEVELS) return;
+        long levelStep = currentStep >>> (SLOT_SHIFT * (level - 1));
+        if ((levelStep & SLOT_MASK) != 0) return;
+        cascade(level + 1);
+        int slot = (int) (currentStep >>> (SLOT_SHIFT * level)) & SLOT_MASK;
+        List<Unit> units = slots[level][slot];
+        if (units == null || units.isEmpty()) return;
+        slots[level][slot] = null;
+        for (Unit unit : units) {
+            // anything due this step lands in the level 0 slot that is about to fire
+            insert(unit, max((unit.getCompletionTime() + resolution - 1) / resolution, currentStep));
+        }
+    }
+
+}
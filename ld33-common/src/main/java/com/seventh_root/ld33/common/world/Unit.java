@@ -18,6 +18,7 @@ package com.seventh_root.ld33.common.world;
 
 import com.seventh_root.ld33.common.database.DatabaseEntity;
 import com.seventh_root.ld33.common.player.Player;
+import com.seventh_root.ld33.common.util.UUIDMap;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -27,21 +28,27 @@ import java.util.*;
 
 import static java.lang.Math.abs;
 import static java.lang.Math.max;
+import static java.lang.Math.min;
 
 public abstract class Unit implements DatabaseEntity {
 
-    private static Map<String, Unit> unitsByUUID;
+    private static UUIDMap<Unit> unitsByUUID;
 
     static {
-        unitsByUUID = new HashMap<>();
+        unitsByUUID = new UUIDMap<>();
     }
 
+    // Units are looked up and written to the database from network threads as well as the tick thread
     public static void cacheUnit(Unit unit) {
-        unitsByUUID.put(unit.getUUID().toString(), unit);
+        synchronized (unitsByUUID) {
+            unitsByUUID.put(unit.getUUID(), unit);
+        }
     }
 
     public static void uncacheUnit(Unit unit) {
-        unitsByUUID.remove(unit.getUUID().toString());
+        synchronized (unitsByUUID) {
+            unitsByUUID.remove(unit.getUUID());
+        }
     }
 
     private Connection databaseConnection;
@@ -57,9 +64,18 @@ public abstract class Unit implements DatabaseEntity {
     private int xOffset;
     private int yOffset;
     private Tile target;
-    private List<Tile> path;
+    private TilePath path;
+    private PathRequest pathRequest;
+    private Replanner replanner;
+    private CooperativePlanner.Plan plan;
     private long completionTime;
     private Unit attackTarget;
+    private boolean dirty;
+    private UnitStore store;
+    private int slot;
+    // kept by the world's route index
+    int[] routeChunks;
+    boolean routeChanged;
 
     public Unit(Connection databaseConnection, Player player, int health, int maxHealth, boolean solid, Tile tile, long completionTime) {
         this(databaseConnection, player.getUUID(), health, maxHealth, solid, tile, completionTime);
@@ -82,6 +98,7 @@ public abstract class Unit implements DatabaseEntity {
         this.xOffset = 0;
         this.yOffset = 0;
         this.completionTime = completionTime;
+        this.slot = -1;
     }
 
     public Unit(Connection databaseConnection, UUID playerUUID, int health, int maxHealth, boolean solid, Tile tile, long completionTime) {
@@ -92,6 +109,64 @@ public abstract class Unit implements DatabaseEntity {
         this(null, playerUUID, health, maxHealth, solid, tile, completionTime);
     }
 
+    /**
+     * Moves this unit's state into a slot of the given store.
+     * From then on, the store is the only copy of the state until the unit is detached.
+     *
+     * @param store the store to attach to
+     */
+    void attach(UnitStore store) {
+        int slot = store.add(this);
+        store.type[slot] = getTypeId();
+        store.health[slot] = health;
+        store.maxHealth[slot] = maxHealth;
+        store.x[slot] = tile != null ? tile.getX() : -1;
+        store.y[slot] = tile != null ? tile.getY() : -1;
+        store.dx[slot] = dx;
+        store.dy[slot] = dy;
+        store.xOffset[slot] = xOffset;
+        store.yOffset[slot] = yOffset;
+        store.completionTime[slot] = completionTime;
+        store.complete[slot] = false;
+        store.cruise[slot] = 0;
+        store.attackTarget[slot] = getAttackTargetSlot(store);
+        store.persistent[slot] = databaseConnection != null;
+        this.store = store;
+        this.slot = slot;
+    }
+
+    /**
+     * Copies this unit's state back out of its store and frees its slot.
+     */
+    void detach() {
+        health = store.health[slot];
+        maxHealth = store.maxHealth[slot];
+        dx = store.dx[slot];
+        dy = store.dy[slot];
+        xOffset = store.xOffset[slot];
+        yOffset = store.yOffset[slot];
+        completionTime = store.completionTime[slot];
+        UnitStore store = this.store;
+        int slot = this.slot;
+        this.store = null;
+        this.slot = -1;
+        store.remove(slot);
+    }
+
+    UnitStore getStore() {
+        return store;
+    }
+
+    int getSlot() {
+        return slot;
+    }
+
+    void setSlot(int slot) {
+        this.slot = slot;
+    }
+
+    public abstract int getTypeId();
+
     public Connection getDatabaseConnection() {
         return databaseConnection;
     }
@@ -121,19 +196,19 @@ public abstract class Unit implements DatabaseEntity {
     }
 
     public int getHealth() {
-        return health;
+        return store != null ? store.health[slot] : health;
     }
 
     public void setHealth(int health) {
-        this.health = health;
+        if (store != null) store.health[slot] = health; else this.health = health;
     }
 
     public int getMaxHealth() {
-        return maxHealth;
+        return store != null ? store.maxHealth[slot] : maxHealth;
     }
 
     public void setMaxHealth(int maxHealth) {
-        this.maxHealth = maxHealth;
+        if (store != null) store.maxHealth[slot] = maxHealth; else this.maxHealth = maxHealth;
     }
 
     public boolean isSolid() {
@@ -149,41 +224,53 @@ public abstract class Unit implements DatabaseEntity {
     }
 
     public void setTile(Tile tile) {
-        this.tile.setUnit(null);
+        Unit displaced = tile.getUnit();
+        if (this.tile.getUnit() == this) this.tile.placeUnit(null);
         this.tile = tile;
-        tile.setUnit(this);
+        tile.placeUnit(this);
+        if (store != null) {
+            store.cruise[slot] = 0;
+            if (store.x[slot] >= 0) {
+                tile.getWorld().getSpatialIndex().move(this, store.x[slot], store.y[slot], tile.getX(), tile.getY());
+            } else {
+                tile.getWorld().getSpatialIndex().add(this, tile.getX(), tile.getY());
+            }
+            store.x[slot] = tile.getX();
+            store.y[slot] = tile.getY();
+        }
+        if (displaced != null && displaced != this) tile.getWorld().removeUnit(displaced);
     }
 
     public int getDX() {
-        return dx;
+        return store != null ? store.dx[slot] : dx;
     }
 
     public void setDX(int dx) {
-        this.dx = dx;
+        if (store != null) store.dx[slot] = dx; else this.dx = dx;
     }
 
     public int getDY() {
-        return dy;
+        return store != null ? store.dy[slot] : dy;
     }
 
     public void setDY(int dy) {
-        this.dy = dy;
+        if (store != null) store.dy[slot] = dy; else this.dy = dy;
     }
 
     public int getXOffset() {
-        return xOffset;
+        return store != null ? store.xOffset[slot] : xOffset;
     }
 
     public void setXOffset(int xOffset) {
-        this.xOffset = xOffset;
+        if (store != null) store.xOffset[slot] = xOffset; else this.xOffset = xOffset;
     }
 
     public int getYOffset() {
-        return yOffset;
+        return store != null ? store.yOffset[slot] : yOffset;
     }
 
     public void setYOffset(int yOffset) {
-        this.yOffset = yOffset;
+        if (store != null) store.yOffset[slot] = yOffset; else this.yOffset = yOffset;
     }
 
     public Tile getTarget() {
@@ -192,19 +279,30 @@ public abstract class Unit implements DatabaseEntity {
 
     public void setTarget(Tile target) {
         this.target = target;
-        this.path = null;
+        setPath(null);
+        this.replanner = null;
+        cancelPathRequest();
+        setCruise(0);
+        if (target != null) wake();
     }
 
     public long getCompletionTime() {
-        return completionTime;
+        return store != null ? store.completionTime[slot] : completionTime;
     }
 
     public long getTimeToComplete() {
         return max(getCompletionTime() - System.currentTimeMillis(), 0);
     }
 
+    /**
+     * Whether this unit has finished construction.
+     * While the unit is in a world this is the flag set when the world's timer wheel fires,
+     * so it doesn't read the clock; otherwise it falls back to comparing against the clock.
+     *
+     * @return whether this unit is complete
+     */
     public boolean isComplete() {
-        return getTimeToComplete() == 0;
+        return store != null ? store.complete[slot] : getTimeToComplete() == 0;
     }
 
     public Unit getAttackTarget() {
@@ -213,100 +311,347 @@ public abstract class Unit implements DatabaseEntity {
 
     public void setAttackTarget(Unit attackTarget) {
         this.attackTarget = attackTarget;
+        if (store != null) store.attackTarget[slot] = getAttackTargetSlot(store);
+        if (attackTarget != null) wake();
+    }
+
+    private int getAttackTargetSlot(UnitStore store) {
+        if (attackTarget == null) return UnitStore.NO_TARGET;
+        return attackTarget.store == store ? attackTarget.slot : UnitStore.DETACHED_TARGET;
+    }
+
+    private void setCruise(int cruise) {
+        if (store != null) store.cruise[slot] = cruise;
+    }
+
+    /**
+     * The number of ticks the unit can carry on in a straight line at the end of a tick, before it reaches the tile it
+     * is moving to or its plan may have it head for another.
+     *
+     * @return the number of ticks
+     */
+    private int getCruise() {
+        // a partial path may be swapped for a better one in any tick
+        if (pathRequest != null) return 0;
+        int offset, speed;
+        if (getYOffset() == 0 && getDY() == 0) {
+            offset = getXOffset();
+            speed = getDX();
+        } else if (getXOffset() == 0 && getDX() == 0) {
+            offset = getYOffset();
+            speed = getDY();
+        } else {
+            return 0;
+        }
+        if (speed == 0 || (offset > 0) != (speed > 0)) return 0;
+        int distance = 64 - abs(offset);
+        if (distance <= 0 || distance % abs(speed) != 0) return 0;
+        int ticks = distance / abs(speed);
+        if (plan != null) ticks = min(ticks, plan.getTicksLeftInStep(getTile().getWorld().getTicks()));
+        return ticks;
+    }
+
+    public boolean isIdle() {
+        return (getTarget() == null || getTarget().equals(getTile())) && getAttackTarget() == null;
+    }
+
+    private void wake() {
+        if (getTile() != null) getTile().getWorld().wakeUnit(this);
+    }
+
+    boolean hasPath() {
+        return path != null;
+    }
+
+    TilePath getPath() {
+        return path;
+    }
+
+    boolean isPathPending() {
+        return pathRequest != null;
+    }
+
+    void cancelPathRequest() {
+        if (pathRequest != null) {
+            pathRequest.cancel();
+            pathRequest = null;
+        }
+    }
+
+    /**
+     * Checks whether a unit that can't move, such as a wall, has been placed along the unit's path since it was
+     * found, and if so repairs the path around it. Units that can move are expected to get out of the way, and long
+     * paths found over chunks are left alone, as they are searched a chunk at a time as they are followed anyway.
+     *
+     * @return whether the path was repaired
+     */
+    boolean repairPath() {
+        if (getRepairablePath() == null) return false;
+        Tile tile = getTile();
+        World world = tile.getWorld();
+        boolean blocked = false;
+        for (int i = 0; i < path.size(); i++) {
+            int x = path.getX(i);
+            int y = path.getY(i);
+            if (!world.isWalkable(x, y) && (x != tile.getX() || y != tile.getY())) {
+                Unit blocker = world.getUnitAt(x, y);
+                if (blocker != null && blocker.getSpeed() == 0) {
+                    blocked = true;
+                    break;
+                }
+            }
+        }
+        if (!blocked) return false;
+        if (replanner != null && !replanner.sync()) replanner = null;
+        if (replanner != null && replanner.isReady()) {
+            TilePath repairedPath = replanner.findPathFrom(tile);
+            setPath(repairedPath != null && !repairedPath.isEmpty() ? repairedPath : null);
+        } else {
+            // The replanner's first search could cover the whole map, so it is left to be warmed up by the world, and
+            // the path is found again as any other would be in the meantime
+            setPath(null);
+            pathRequest = world.requestPath(getPlayerUUID(), tile, getTarget());
+            if (replanner == null) {
+                replanner = new Replanner(world, tile, getTarget());
+                world.warmUpReplanner(this);
+            }
+        }
+        setCruise(0);
+        return true;
+    }
+
+    /**
+     * Carries on the first search of the unit's replanner, if it has one that hasn't yet reached the unit.
+     *
+     * @param maxExpansions the most nodes to expand
+     * @return the number of nodes expanded, or -1 if the replanner no longer needs warming up
+     */
+    int warmUpReplanner(int maxExpansions) {
+        if (replanner == null || replanner.isReady()) return -1;
+        if (!replanner.sync()) {
+            replanner = null;
+            return -1;
+        }
+        return replanner.warmUp(getTile(), maxExpansions);
+    }
+
+    /**
+     * The path the unit is following, if it is one that would be repaired around walls and flags placed along it.
+     *
+     * @return the path, or null if the unit has none, is still searching for one, or is following one found over
+     * chunks
+     */
+    TilePath getRepairablePath() {
+        if (path == null || pathRequest != null || path instanceof HierarchicalPath || getTarget() == null) return null;
+        return path;
+    }
+
+    private void setPath(TilePath path) {
+        this.path = path;
+        if (getTile() != null && (routeChunks != null || getRepairablePath() != null)) {
+            getTile().getWorld().getRouteIndex().onRouteChanged(this);
+        }
+    }
+
+    CooperativePlanner.Plan getPlan() {
+        return plan;
+    }
+
+    void setPlan(CooperativePlanner.Plan plan) {
+        this.plan = plan;
+        setCruise(0);
     }
 
-    public void moveTo(Tile tile) {
+    /**
+     * The unit's path, for planning its next few steps along, with the tiles up to the one the unit is on dropped if
+     * it is on it. It may not be, if it stepped aside to make way for other units.
+     *
+     * @param lookahead how far along the path to look for the tile the unit is on
+     * @return the path, or null if the unit is between tiles or has no path to follow
+     */
+    TilePath getPathAhead(int lookahead) {
+        if (getTarget() == null || getTarget().equals(getTile()) || path == null || getXOffset() != 0 || getYOffset() != 0) return null;
+        int x = getTile().getX();
+        int y = getTile().getY();
+        for (int i = 0; i < lookahead && path.hasAhead(i + 1); i++) {
+            if (path.getX(i) == x && path.getY(i) == y) {
+                for (int j = 0; j <= i; j++) {
+                    path.remove(0);
+                }
+                break;
+            }
+        }
+        return path;
+    }
+
+    boolean isPathSearchedAhead() {
+        return !(path instanceof HierarchicalPath) || ((HierarchicalPath) path).isSearchedAhead();
+    }
+
+    Tile getNextTile() {
+        if (plan != null) return plan.getTile(getTile().getWorld().getTicks());
+        if (path != null) {
+            for (Tile pathTile : path) {
+                if (!getTile().equals(pathTile)) return pathTile;
+            }
+        }
+        return null;
+    }
+
+    void markDirty() {
+        if (getDatabaseConnection() != null) dirty = true;
+    }
+
+    /**
+     * Writes any changes made during the tick to the database, through the world's database writer if it has one.
+     * Ticks only mark units as dirty so that they can run off the database thread.
+     *
+     * @throws SQLException if the update fails
+     */
+    public void flush() throws SQLException {
+        if (dirty) {
+            dirty = false;
+            getTile().getWorld().write(new UnitSnapshot(this)::update);
+        }
+    }
+
+    /**
+     * Orders this unit to a tile, attacking the unit on it if it belongs to another player. If walls or flags cut the
+     * tile off from this unit, it heads for the closest tile to it that it can reach instead.
+     *
+     * @param tile the tile to move to
+     * @return whether the order was taken, which it is not if no tile near the one given can be reached
+     */
+    public boolean moveTo(Tile tile) {
         if (tile != null) {
-            setTarget(tile);
-            if (tile.getUnit() != null && !tile.getUnit().getPlayerUUID().toString().equals(getPlayerUUID().toString())) {
+            Tile target = getTile().getWorld().getNearestReachableTile(getTile(), tile);
+            if (target == null) return false;
+            setTarget(target);
+            if (target.equals(tile) && tile.getUnit() != null && !tile.getUnit().getPlayerUUID().toString().equals(getPlayerUUID().toString())) {
                 setAttackTarget(tile.getUnit());
             }
+            return true;
         }
+        return false;
     }
 
     public abstract int getSpeed();
 
+    private boolean isAdjacentTo(Unit unit) {
+        return getTile().getWorld().getSpatialIndex().getDistance(this, unit) == 1;
+    }
+
+    private void moveTowards(Tile nextTile) {
+        if (abs(getXOffset()) == 64 || abs(getYOffset()) == 64) {
+            setTile(nextTile);
+            setXOffset(0);
+            setYOffset(0);
+            markDirty();
+        } else {
+            if (nextTile.getX() > getTile().getX()) {
+                setDX(getSpeed());
+            } else if (nextTile.getX() < getTile().getX()) {
+                setDX(-getSpeed());
+            } else {
+                setDX(0);
+            }
+            if (nextTile.getY() > getTile().getY()) {
+                setDY(getSpeed());
+            } else if (nextTile.getY() < getTile().getY()) {
+                setDY(-getSpeed());
+            } else {
+                setDY(0);
+            }
+            if (abs(getDX()) > 0) {
+                setXOffset(getXOffset() + getDX());
+            }
+            if (abs(getDY()) > 0) {
+                setYOffset(getYOffset() + getDY());
+            }
+            setCruise(getCruise());
+        }
+    }
+
     public void onTick() throws SQLException {
+        setCruise(0);
         if (getTarget() != null) {
-            if (getTarget() != getTile()) {
-                if (path == null) path = getTile().getWorld().findPath(getTile(), getTarget());
-                if (path != null) {
+            if (!getTarget().equals(getTile())) {
+                if (path == null && pathRequest == null) pathRequest = getTile().getWorld().requestPath(getPlayerUUID(), getTile(), getTarget());
+                if (pathRequest != null) {
+                    if (pathRequest.isDone()) {
+                        TilePath foundPath = pathRequest.getPathFrom(getTile());
+                        pathRequest = null;
+                        setPath(foundPath);
+                    } else {
+                        // Follow the best path found so far, or stand still if there isn't one
+                        setPath(pathRequest.getPartialPathFrom(getTile()));
+                    }
+                }
+                if (plan != null) {
+                    // The plan has the unit wait wherever another unit is to be in its way
+                    Tile nextTile = plan.getTile(getTile().getWorld().getTicks());
+                    if (nextTile != null) moveTowards(nextTile);
+                } else if (path != null) {
                     Tile nextTile;
                     if (!path.isEmpty()) {
                         nextTile = path.get(0);
                     } else {
                         nextTile = null;
-                        path = null;
+                        setPath(null);
                     }
                     if (path != null) {
-                        while (nextTile == getTile()) {
+                        while (getTile().equals(nextTile)) {
                             path.remove(0);
                             if (!path.isEmpty()) {
                                 nextTile = path.get(0);
                             } else {
                                 nextTile = null;
-                                path = null;
+                                setPath(null);
                                 break;
                             }
                         }
                     }
-                    if (nextTile != null) {
-                        if (abs(getXOffset()) == 64 || abs(getYOffset()) == 64) {
-                            setTile(nextTile);
-                            setXOffset(0);
-                            setYOffset(0);
-                            if (getDatabaseConnection() != null) {
-                                update();
-                            }
-                        } else {
-                            if (nextTile.getX() > getTile().getX()) {
-                                setDX(getSpeed());
-                            } else if (nextTile.getX() < getTile().getX()) {
-                                setDX(-getSpeed());
-                            } else {
-                                setDX(0);
-                            }
-                            if (nextTile.getY() > getTile().getY()) {
-                                setDY(getSpeed());
-                            } else if (nextTile.getY() < getTile().getY()) {
-                                setDY(-getSpeed());
-                            } else {
-                                setDY(0);
-                            }
-                            if (abs(getDX()) > 0) {
-                                setXOffset(getXOffset() + getDX());
-                            }
-                            if (abs(getDY()) > 0) {
-                                setYOffset(getYOffset() + getDY());
-                            }
-                        }
+                    if (getTile().getWorld().getCooperativePlanner() != null) {
+                        // Only planned steps are taken, so wait on the tile for a plan
+                        setXOffset(0);
+                        setYOffset(0);
+                    } else if (nextTile != null) {
+                        moveTowards(nextTile);
                     }
-                } else {
+                } else if (pathRequest == null) {
                     setTarget(null);
                 }
             }
         }
         if (getAttackTarget() != null) {
             if (getAttackTarget().getHealth() > 0) {
-                if ((abs(getAttackTarget().getTile().getX() - getTile().getX()) == 1 && getAttackTarget().getTile().getY() == getTile().getY()) || (abs(getAttackTarget().getTile().getY() - getTile().getY()) == 1 && getAttackTarget().getTile().getX() == getTile().getX())) {
+                if (isAdjacentTo(getAttackTarget())) {
                     getAttackTarget().setHealth(getAttackTarget().getHealth() - 1);
-                    if (getAttackTarget().getDatabaseConnection() != null) getAttackTarget().update();
+                    getAttackTarget().markDirty();
                 }
             } else {
                 if (getAttackTarget() instanceof Wall)
                     getPlayer().setResources(getPlayer().getResources() + 15);
                 else if (getAttackTarget() instanceof Flag)
                     getPlayer().setResources(getPlayer().getResources() + 150);
+                World world = getTile().getWorld();
+                getAttackTarget().dirty = false;
+                if (getAttackTarget().getDatabaseConnection() != null) world.write(new UnitSnapshot(getAttackTarget())::delete);
                 getAttackTarget().getTile().setUnit(null);
-                if (getDatabaseConnection() != null) getAttackTarget().delete();
+                uncacheUnit(getAttackTarget());
                 setAttackTarget(null);
-                if (getPlayer().getDatabaseConnection() != null) getPlayer().update();
+                world.markDirty(getPlayer());
             }
         }
+        if (getTarget() == null || getTarget().equals(getTile())) setCruise(UnitStore.STILL);
     }
 
     public static Unit getByUUID(Connection databaseConnection, World world, UUID uuid) throws SQLException {
-        if (unitsByUUID.containsKey(uuid.toString())) return unitsByUUID.get(uuid.toString());
+        Unit cachedUnit;
+        synchronized (unitsByUUID) {
+            cachedUnit = unitsByUUID.get(uuid);
+        }
+        if (cachedUnit != null) return cachedUnit;
         if (databaseConnection != null) {
             PreparedStatement statement = databaseConnection.prepareStatement(
                     "SELECT uuid, player_uuid, health, max_health, solid, x, y, type, completion_time FROM unit WHERE uuid = ? LIMIT 1"
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2015 Ross Binden
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seventh_root.ld33.common.world;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.UUID;
+
+/**
+ * The values of a unit's row in the database at the time the snapshot was taken, so that the row can be written on
+ * another thread while the unit carries on changing.
+ */
+public class UnitSnapshot {
+
+    private Connection databaseConnection;
+    private UUID uuid;
+    private UUID playerUUID;
+    private int health;
+    private int maxHealth;
+    private boolean solid;
+    private int x;
+    private int y;
+    private String type;
+    private long completionTime;
+
+    public UnitSnapshot(Unit unit) {
+        this.databaseConnection = unit.getDatabaseConnection();
+        this.uuid = unit.getUUID();
+        this.playerUUID = unit.getPlayerUUID();
+        this.health = unit.getHealth();
+        this.maxHealth = unit.getMaxHealth();
+        this.solid = unit.isSolid();
+        this.x = unit.getTile().getX();
+        this.y = unit.getTile().getY();
+        this.type = getTypeName(unit.getTypeId());
+        this.completionTime = unit.getCompletionTime();
+    }
+
+    public void insert() throws SQLException {
+        PreparedStatement statement = databaseConnection.prepareStatement(
+                "INSERT INTO unit(uuid, player_uuid, health, max_health, solid, x, y, type, completion_time) VALUES(?, ?, ?, ?, ?, ?, ?, ?, ?)"
+        );
+        statement.setString(1, uuid.toString());
+        statement.setString(2, playerUUID.toString());
+        statement.setInt(3, health);
+        statement.setInt(4, maxHealth);
+        statement.setBoolean(5, solid);
+        statement.setInt(6, x);
+        statement.setInt(7, y);
+        statement.setString(8, type);
+        statement.setLong(9, completionTime);
+        statement.executeUpdate();
+    }
+
+    public void update() throws SQLException {
+        PreparedStatement statement = databaseConnection.prepareStatement(
+                "UPDATE unit SET player_uuid = ?, health = ?, max_health = ?, solid = ?, x = ?, y = ?, type = ?, completion_time = ? WHERE uuid = ?"
+        );
+        statement.setString(1, playerUUID.toString());
+        statement.setInt(2, health);
+        statement.setInt(3, maxHealth);
+        statement.setBoolean(4, solid);
+        statement.setInt(5, x);
+        statement.setInt(6, y);
+        statement.setString(7, type);
+        statement.setLong(8, completionTime);
+        statement.setString(9, uuid.toString());
+        statement.executeUpdate();
+    }
+
+    public void delete() throws SQLException {
+        PreparedStatement statement = databaseConnection.prepareStatement(
+                "DELETE FROM unit WHERE uuid = ?"
+        );
+        statement.setString(1, uuid.toString());
+        statement.executeUpdate();
+    }
+
+    private static String getTypeName(int typeId) {
+        switch (typeId) {
+            case UnitStore.WALL: return "wall";
+            case UnitStore.DRAGON: return "dragon";
+            case UnitStore.FLAG: return "flag";
+            default: throw new IllegalArgumentException("Unknown unit type " + typeId);
+        }
+    }
+
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright 2015 Ross Binden
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seventh_root.ld33.common.world;
+
+import java.util.Arrays;
+
+/**
+ * Struct-of-arrays storage for the units in a {@link World}.
+ * <p>
+ * Every unit in the world owns a slot, and its simulation state lives in primitive arrays
+ * indexed by that slot. {@link Unit} is a view onto its slot while it is in the world, and
+ * keeps its own copy of the state while it isn't. Removing a unit leaves an empty slot behind
+ * until the next {@link #compact()}, which closes the gaps while keeping units in the order
+ * they were added, however the removals were ordered.
+ */
+public class UnitStore {
+
+    public static final int WALL = 0;
+    public static final int DRAGON = 1;
+    public static final int FLAG = 2;
+
+    /**
+     * The cruise of a unit with nowhere to move to.
+     */
+    static final int STILL = -1;
+    /**
+     * The attack target of a unit attacking nothing.
+     */
+    static final int NO_TARGET = -1;
+    /**
+     * The attack target of a unit attacking a unit with no slot in the store.
+     */
+    static final int DETACHED_TARGET = -2;
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    int size;
+    private int removed;
+    Unit[] units;
+    boolean[] active;
+    int[] type;
+    int[] health;
+    int[] maxHealth;
+    int[] x;
+    int[] y;
+    int[] dx;
+    int[] dy;
+    int[] xOffset;
+    int[] yOffset;
+    long[] completionTime;
+    boolean[] complete;
+    int[] cruise;
+    int[] attackTarget;
+    boolean[] persistent;
+
+    public UnitStore() {
+        units = new Unit[INITIAL_CAPACITY];
+        active = new boolean[INITIAL_CAPACITY];
+        type = new int[INITIAL_CAPACITY];
+        health = new int[INITIAL_CAPACITY];
+        maxHealth = new int[INITIAL_CAPACITY];
+        x = new int[INITIAL_CAPACITY];
+        y = new int[INITIAL_CAPACITY];
+        dx = new int[INITIAL_CAPACITY];
+        dy = new int[INITIAL_CAPACITY];
+        xOffset = new int[INITIAL_CAPACITY];
+        yOffset = new int[INITIAL_CAPACITY];
+        completionTime = new long[INITIAL_CAPACITY];
+        complete = new boolean[INITIAL_CAPACITY];
+        cruise = new int[INITIAL_CAPACITY];
+        attackTarget = new int[INITIAL_CAPACITY];
+        persistent = new boolean[INITIAL_CAPACITY];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the unit in the given slot, which is null if the unit was removed since the
+     * last compaction.
+     *
+     * @param slot the slot
+     * @return the unit
+     */
+    public Unit getUnit(int slot) {
+        return units[slot];
+    }
+
+    public boolean isActive(int slot) {
+        return active[slot];
+    }
+
+    public boolean isComplete(int slot) {
+        return complete[slot];
+    }
+
+    int add(Unit unit) {
+        if (size == units.length) grow();
+        int slot = size++;
+        units[slot] = unit;
+        active[slot] = true;
+        return slot;
+    }
+
+    void remove(int slot) {
+        units[slot] = null;
+        active[slot] = false;
+        removed++;
+    }
+
+    /**
+     * Moves the unit in the given slot along for a tick without going through its {@link Unit#onTick()}, which it can
+     * be while it is part way through a step it is set on finishing, or it is standing still, and any unit it is
+     * attacking will outlive the hit.
+     * <p>
+     * The cruise of a unit counts down the ticks it has left before it reaches the next tile, and is set by the unit
+     * whenever it ticks, and cleared whenever anything that could change where it is heading changes.
+     *
+     * @param slot the slot
+     * @return whether the unit was moved along, or has to be ticked
+     */
+    boolean advance(int slot) {
+        int cruise = this.cruise[slot];
+        if (cruise == 0) return false;
+        int target = attackTarget[slot];
+        if (target == NO_TARGET) {
+            // a unit standing still with nothing to attack is about to go dormant
+            if (cruise == STILL) return false;
+        } else if (target < 0 || units[target] == null || health[target] <= 0) {
+            return false;
+        }
+        if (cruise > 0) {
+            xOffset[slot] += dx[slot];
+            yOffset[slot] += dy[slot];
+            this.cruise[slot] = cruise - 1;
+        }
+        if (target >= 0 && isAdjacent(slot, target)) {
+            health[target]--;
+            if (persistent[target]) units[target].markDirty();
+        }
+        return true;
+    }
+
+    private boolean isAdjacent(int slot, int other) {
+        int xDistance = Math.abs(x[other] - x[slot]);
+        int yDistance = Math.abs(y[other] - y[slot]);
+        return xDistance + yDistance == 1;
+    }
+
+    /**
+     * Moves units down into the slots freed since the last compaction.
+     */
+    void compact() {
+        if (removed == 0) return;
+        int[] slots = new int[size];
+        int to = 0;
+        for (int from = 0; from < size; from++) {
+            slots[from] = to;
+            if (units[from] == null) {
+                slots[from] = DETACHED_TARGET;
+                continue;
+            }
+            if (from != to) {
+                units[to] = units[from];
+                active[to] = active[from];
+                type[to] = type[from];
+                health[to] = health[from];
+                maxHealth[to] = maxHealth[from];
+                x[to] = x[from];
+                y[to] = y[from];
+                dx[to] = dx[from];
+                dy[to] = dy[from];
+                xOffset[to] = xOffset[from];
+                yOffset[to] = yOffset[from];
+                completionTime[to] = completionTime[from];
+                complete[to] = complete[from];
+                cruise[to] = cruise[from];
+                attackTarget[to] = attackTarget[from];
+                persistent[to] = persistent[from];
+                units[to].setSlot(to);
+            }
+            to++;
+        }
+        for (int slot = 0; slot < to; slot++) {
+            if (attackTarget[slot] >= 0) attackTarget[slot] = slots[attackTarget[slot]];
+        }
+        Arrays.fill(units, to, size, null);
+        size = to;
+        removed = 0;
+    }
+
+    private void grow() {
+        int capacity = units.length * 2;
+        units = Arrays.copyOf(units, capacity);
+        active = Arrays.copyOf(active, capacity);
+        type = Arrays.copyOf(type, capacity);
+        health = Arrays.copyOf(health, capacity);
+        maxHealth = Arrays.copyOf(maxHealth, capacity);
+        x = Arrays.copyOf(x, capacity);
+        y = Arrays.copyOf(y, capacity);
+        dx = Arrays.copyOf(dx, capacity);
+        dy = Arrays.copyOf(dy, capacity);
+        xOffset = Arrays.copyOf(xOffset, capacity);
+        yOffset = Arrays.copyOf(yOffset, capacity);
+        completionTime = Arrays.copyOf(completionTime, capacity);
+        complete = Arrays.copyOf(complete, capacity);
+        cruise = Arrays.copyOf(cruise, capacity);
+        attackTarget = Arrays.copyOf(attackTarget, capacity);
+        persistent = Arrays.copyOf(persistent, capacity);
+    }
+
+}
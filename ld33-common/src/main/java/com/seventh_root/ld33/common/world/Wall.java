@@ -19,7 +19,6 @@ package com.seventh_root.ld33.common.world;
 import com.seventh_root.ld33.common.player.Player;
 
 import java.sql.Connection;
-import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.util.UUID;
 
@@ -55,50 +54,27 @@ public class Wall extends Unit {
 
     @Override
     public void insert() throws SQLException {
-        PreparedStatement statement = getDatabaseConnection().prepareStatement(
-                "INSERT INTO unit(uuid, player_uuid, health, max_health, solid, x, y, type, completion_time) VALUES(?, ?, ?, ?, ?, ?, ?, ?, ?)"
-        );
-        setUUID(UUID.randomUUID());
-        statement.setString(1, getUUID().toString());
-        statement.setString(2, getPlayer().getUUID().toString());
-        statement.setInt(3, getHealth());
-        statement.setInt(4, getMaxHealth());
-        statement.setBoolean(5, isSolid());
-        statement.setInt(6, getTile().getX());
-        statement.setInt(7, getTile().getY());
-        statement.setString(8, "wall");
-        statement.setLong(9, getCompletionTime());
-        statement.executeUpdate();
+        if (getUUID() == null) setUUID(UUID.randomUUID());
+        new UnitSnapshot(this).insert();
         cacheUnit(this);
     }
 
     @Override
     public void update() throws SQLException {
-        PreparedStatement statement = getDatabaseConnection().prepareStatement(
-                "UPDATE unit SET player_uuid = ?, health = ?, max_health = ?, solid = ?, x = ?, y = ?, type = ?, completion_time = ? WHERE uuid = ?"
-        );
-        statement.setString(1, getPlayer().getUUID().toString());
-        statement.setInt(2, getHealth());
-        statement.setInt(3, getMaxHealth());
-        statement.setBoolean(4, isSolid());
-        statement.setInt(5, getTile().getX());
-        statement.setInt(6, getTile().getY());
-        statement.setString(7, "wall");
-        statement.setLong(8, getCompletionTime());
-        statement.setString(9, getUUID().toString());
-        statement.executeUpdate();
+        new UnitSnapshot(this).update();
     }
 
     @Override
     public void delete() throws SQLException {
-        PreparedStatement statement = getDatabaseConnection().prepareStatement(
-                "DELETE FROM unit WHERE uuid = ?"
-        );
-        statement.setString(1, getUUID().toString());
-        statement.executeUpdate();
+        new UnitSnapshot(this).delete();
         uncacheUnit(this);
     }
 
+    @Override
+    public int getTypeId() {
+        return UnitStore.WALL;
+    }
+
     @Override
     public int getSpeed() {
         return 0;
@@ -16,75 +16,865 @@
 
 package com.seventh_root.ld33.common.world;
 
+import com.seventh_root.ld33.common.database.DatabaseWrite;
+import com.seventh_root.ld33.common.database.DatabaseWriter;
+import com.seventh_root.ld33.common.pathfinding.ClusterGraph;
+import com.seventh_root.ld33.common.pathfinding.DStarLite;
+import com.seventh_root.ld33.common.pathfinding.FlowField;
+import com.seventh_root.ld33.common.pathfinding.Heuristic;
 import com.seventh_root.ld33.common.pathfinding.Map;
 import com.seventh_root.ld33.common.pathfinding.NodeFactoryImpl;
 import com.seventh_root.ld33.common.pathfinding.NodeImpl;
+import com.seventh_root.ld33.common.pathfinding.SearchAlgorithm;
+import com.seventh_root.ld33.common.player.Player;
+import com.seventh_root.ld33.common.player.PlayerSnapshot;
 
 import java.sql.SQLException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+
+import static java.lang.Math.abs;
 
 public class World {
 
+    private static final long COMPLETION_RESOLUTION = 50L;
+    private static final int PATH_CACHE_CAPACITY = 1024;
+    private static final int FLOW_FIELD_RADIUS = Chunk.SIZE * 2;
+    private static final int FLOW_FIELD_THRESHOLD = 3;
+    private static final int IMMOVABLE_LOG_SIZE = 4096;
+    private static final int RETARGET_DISTANCE = Chunk.SIZE;
+    private static final int REPLANNER_EXPANSIONS_PER_TICK = 4096;
+
+    private Chunk[] chunks;
     private Tile[][] tiles;
+    private int[] chunkVersions;
+    private int chunksHigh;
     private int width;
     private int height;
+    private UnitStore unitStore;
+    private SpatialIndex spatialIndex;
+    private Set<Unit> pendingRemovals;
+    private RegionTicker regionTicker;
+    private TimerWheel completionWheel;
+    private List<UnitCompletionListener> completionListeners;
+    private Map<NodeImpl> pathfindingMap;
+    private Map<NodeImpl> immovableMap;
+    private int immovableVersion;
+    private int[] immovableLog;
+    private int repairedImmovableVersion;
+    private long pathRepairs;
+    private RouteIndex routeIndex;
+    private List<Unit> blockedRoutes;
+    private ArrayDeque<Unit> warmingReplanners;
+    private ComponentLabels componentLabels;
+    private LandmarkTables landmarkTables;
+    private CooperativePlanner cooperativePlanner;
+    private long ticks;
+    private ClusterGraph clusterGraph;
+    private int hierarchicalDistance;
+    private PathCache pathCache;
+    private FlowFieldCache flowFieldCache;
+    private AsyncPathfinder asyncPathfinder;
+    private SlicedPathfinder slicedPathfinder;
+    private int[] tickingSlots;
+    private DatabaseWriter databaseWriter;
+    private Set<Player> dirtyPlayers;
 
     public World(int width, int height) {
         this.width = width;
         this.height = height;
-        tiles = new Tile[width][height];
+        unitStore = new UnitStore();
+        dirtyPlayers = ConcurrentHashMap.newKeySet();
+        tickingSlots = new int[0];
+        spatialIndex = new SpatialIndex(unitStore, width, height);
+        chunksHigh = (height + Chunk.MASK) >> Chunk.SHIFT;
+        chunks = new Chunk[((width + Chunk.MASK) >> Chunk.SHIFT) * chunksHigh];
+        Arrays.fill(chunks, Chunk.EMPTY);
+        tiles = new Tile[chunks.length][];
+        chunkVersions = new int[chunks.length];
+        routeIndex = new RouteIndex(this, chunks.length);
+        blockedRoutes = new ArrayList<>();
+        warmingReplanners = new ArrayDeque<>();
+        completionWheel = new TimerWheel(COMPLETION_RESOLUTION, System.currentTimeMillis());
+        completionListeners = new CopyOnWriteArrayList<>();
+        pathfindingMap = new Map<>(width, height, new NodeFactoryImpl());
+        immovableLog = new int[IMMOVABLE_LOG_SIZE];
+        pathfindingMap.setHeuristic(Heuristic.MANHATTAN);
+        // Walls and flags alone, for whatever only changes when they do
+        immovableMap = new Map<>(width, height, new NodeFactoryImpl());
+        // getTileAt has no tiles along the first row and column, so paths must not lead through them
         for (int x = 0; x < width; x++) {
-            for (int y = 0; y < height; y++) {
-                tiles[x][y] = new Tile(this, x, y);
-            }
+            pathfindingMap.setWalkable(x, 0, false);
+            immovableMap.setWalkable(x, 0, false);
         }
+        for (int y = 0; y < height; y++) {
+            pathfindingMap.setWalkable(0, y, false);
+            immovableMap.setWalkable(0, y, false);
+        }
+        componentLabels = new ComponentLabels(width, height);
+        clusterGraph = new ClusterGraph(immovableMap, width, height, Chunk.SIZE);
+        hierarchicalDistance = Chunk.SIZE * 2;
+        pathCache = new PathCache(this, PATH_CACHE_CAPACITY);
+        flowFieldCache = new FlowFieldCache(this, FLOW_FIELD_RADIUS, FLOW_FIELD_THRESHOLD);
     }
 
+    /**
+     * The tile at the given position. The same tile is handed out for a position every time, so that following paths
+     * and looking around units doesn't allocate. Tiles are created as they are first asked for, so a large world
+     * only holds tiles where units have been.
+     *
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @return the tile, or null if there is none at the position
+     */
     public Tile getTileAt(int x, int y) {
-        if (x > 0 && y > 0 && x < getWidth() && y < getHeight())
-            return tiles[x][y];
-        else
-            return null;
+        if (x <= 0 || y <= 0 || x >= getWidth() || y >= getHeight()) return null;
+        // Regions ticking in parallel may both create a chunk's tiles, in which case either set will do as tiles at the
+        // same position are equal, and tiles are immutable so they are safe to hand between threads
+        int index = getChunkIndex(x, y);
+        Tile[] chunkTiles = tiles[index];
+        if (chunkTiles == null) {
+            chunkTiles = new Tile[Chunk.SIZE * Chunk.SIZE];
+            tiles[index] = chunkTiles;
+        }
+        int offset = ((x & Chunk.MASK) << Chunk.SHIFT) | (y & Chunk.MASK);
+        Tile tile = chunkTiles[offset];
+        if (tile == null) {
+            tile = new Tile(this, x, y);
+            chunkTiles[offset] = tile;
+        }
+        return tile;
+    }
+
+    Unit getUnitAt(int x, int y) {
+        return chunks[getChunkIndex(x, y)].getUnit(x, y);
+    }
+
+    void placeUnitAt(int x, int y, Unit unit) {
+        int index = getChunkIndex(x, y);
+        Chunk chunk = chunks[index];
+        if (chunk == Chunk.EMPTY) {
+            if (unit == null) return;
+            chunk = new Chunk();
+            chunks[index] = chunk;
+        }
+        chunk.setUnit(x, y, unit);
+        // Regions ticking in parallel may share a word of the bitmap, so updates to it are serialised
+        synchronized (pathfindingMap) {
+            boolean walkable = unit == null || !unit.isSolid();
+            if (pathfindingMap.isWalkable(x, y) != walkable) {
+                pathfindingMap.setWalkable(x, y, walkable);
+            }
+            // Units that move are left for tile searches to step around, so only walls and flags change the clusters,
+            // chunk versions and the paths units are following
+            boolean immovable = !walkable && unit.getSpeed() == 0;
+            if (componentLabels.isBlocked(x, y) != immovable) {
+                immovableMap.setWalkable(x, y, !immovable);
+                clusterGraph.invalidate(x, y);
+                chunkVersions[index]++;
+                immovableLog[immovableVersion & (IMMOVABLE_LOG_SIZE - 1)] = x * height + y;
+                immovableVersion++;
+                componentLabels.setBlocked(x, y, immovable);
+                if (landmarkTables != null) landmarkTables.onChange(immovable);
+            }
+        }
+    }
+
+    /**
+     * Whether a unit could walk onto the tile at the given position, which is the case unless a solid unit is on it.
+     * This is kept up to date as units are placed, so it costs no more than a bit lookup.
+     *
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @return whether the tile is walkable
+     */
+    public boolean isWalkable(int x, int y) {
+        return pathfindingMap.isWalkable(x, y);
+    }
+
+    /**
+     * Whether a unit could ever walk from one tile to another, going by the immovable units in the way. If the end
+     * tile is solid itself, it is reachable if a tile next to it is. Moving units are not taken into account, so a
+     * tile that is reachable may still have no path to it for now, but one that is not will never have a path to it
+     * unless a wall or flag is removed.
+     *
+     * @param start the tile to start from
+     * @param end the tile to reach
+     * @return whether the end tile is reachable
+     */
+    public boolean isReachable(Tile start, Tile end) {
+        int x = end.getX();
+        int y = end.getY();
+        if (!componentLabels.isBlocked(x, y)) return componentLabels.isConnected(start.getX(), start.getY(), x, y);
+        return componentLabels.isConnected(start.getX(), start.getY(), x - 1, y)
+                || componentLabels.isConnected(start.getX(), start.getY(), x + 1, y)
+                || componentLabels.isConnected(start.getX(), start.getY(), x, y - 1)
+                || componentLabels.isConnected(start.getX(), start.getY(), x, y + 1);
+    }
+
+    /**
+     * Gets the tile to head for when ordered to a tile that may not be reachable, which is the tile itself if it is,
+     * or otherwise the closest reachable tile to it, by steps along the grid.
+     *
+     * @param start the tile to start from
+     * @param end the tile ordered to
+     * @return the tile to head for, or null if no tile near the end tile is reachable
+     */
+    public Tile getNearestReachableTile(Tile start, Tile end) {
+        if (isReachable(start, end)) return end;
+        int x = end.getX();
+        int y = end.getY();
+        for (int distance = 1; distance <= RETARGET_DISTANCE; distance++) {
+            for (int i = 0; i < distance; i++) {
+                Tile tile = getReachableTileAt(start, x + i, y - distance + i);
+                if (tile == null) tile = getReachableTileAt(start, x + distance - i, y + i);
+                if (tile == null) tile = getReachableTileAt(start, x - i, y + distance - i);
+                if (tile == null) tile = getReachableTileAt(start, x - distance + i, y - i);
+                if (tile != null) return tile;
+            }
+        }
+        return null;
+    }
+
+    private Tile getReachableTileAt(Tile start, int x, int y) {
+        return componentLabels.isConnected(start.getX(), start.getY(), x, y) ? getTileAt(x, y) : null;
+    }
+
+    long[] copyImmovableWalkability() {
+        synchronized (pathfindingMap) {
+            return immovableMap.copyWalkability();
+        }
+    }
+
+    /**
+     * Gets the number of times the areas reachable from each other have been worked out again after a wall or flag
+     * was placed that might have divided one.
+     *
+     * @return the number of relabels
+     */
+    public long getReachabilityRelabels() {
+        return componentLabels.getRelabels();
+    }
+
+    /**
+     * Gets the number of times a wall or flag has been placed or removed.
+     *
+     * @return the version
+     */
+    int getImmovableVersion() {
+        return immovableVersion;
+    }
+
+    /**
+     * Whether the walls and flags placed or removed since the given version can still be read from the log of recent
+     * changes.
+     *
+     * @param version the immovable version
+     * @return whether the changes since are logged
+     */
+    boolean isImmovableLogged(int version) {
+        return immovableVersion - version <= IMMOVABLE_LOG_SIZE;
+    }
+
+    /**
+     * Gets the position of the tile whose wall or flag took the immovable version past the given one.
+     *
+     * @param version the immovable version before the change
+     * @return the position, as <code>x * height + y</code>
+     */
+    int getImmovableChange(int version) {
+        return immovableLog[version & (IMMOVABLE_LOG_SIZE - 1)];
+    }
+
+    int getChunkIndex(int x, int y) {
+        return (x >> Chunk.SHIFT) * chunksHigh + (y >> Chunk.SHIFT);
+    }
+
+    /**
+     * Gets the walkability version of a chunk, which changes whenever a wall or flag in it is placed or removed.
+     * Units that move come and go too often for anything kept by chunk version to be worth keeping.
+     *
+     * @param chunkIndex the index of the chunk
+     * @return the version
+     */
+    int getChunkVersion(int chunkIndex) {
+        return chunkVersions[chunkIndex];
+    }
+
+    public UnitStore getUnitStore() {
+        return unitStore;
+    }
+
+    public SpatialIndex getSpatialIndex() {
+        return spatialIndex;
+    }
+
+    public void addUnit(Unit unit) {
+        if (unit.getStore() == null) {
+            unit.attach(unitStore);
+            if (unit.getTile() != null) spatialIndex.add(unit, unit.getTile().getX(), unit.getTile().getY());
+            if (!completionWheel.schedule(unit)) unitStore.complete[unit.getSlot()] = true;
+        }
+    }
+
+    public void removeUnit(Unit unit) {
+        if (pendingRemovals != null) {
+            pendingRemovals.add(unit);
+            return;
+        }
+        if (unit.getStore() == unitStore) {
+            int slot = unit.getSlot();
+            if (unitStore.x[slot] >= 0) spatialIndex.remove(unit, unitStore.x[slot], unitStore.y[slot]);
+            unit.cancelPathRequest();
+            routeIndex.remove(unit);
+            if (cooperativePlanner != null) cooperativePlanner.release(unit);
+            unit.detach();
+        }
+    }
+
+    public void wakeUnit(Unit unit) {
+        if (unit.getStore() == unitStore) unitStore.active[unit.getSlot()] = true;
+    }
+
+    public void sleepUnit(Unit unit) {
+        if (unit.getStore() == unitStore) unitStore.active[unit.getSlot()] = false;
+    }
+
+    public boolean isActive(Unit unit) {
+        return unit.getStore() == unitStore && unitStore.active[unit.getSlot()];
+    }
+
+    public void addCompletionListener(UnitCompletionListener listener) {
+        completionListeners.add(listener);
+    }
+
+    public void removeCompletionListener(UnitCompletionListener listener) {
+        completionListeners.remove(listener);
+    }
+
+    public List<Unit> getUnits() {
+        List<Unit> units = new ArrayList<>(unitStore.size);
+        for (int slot = 0; slot < unitStore.size; slot++) {
+            if (unitStore.units[slot] != null) units.add(unitStore.units[slot]);
+        }
+        return units;
+    }
+
+    /**
+     * Ticks units in parallel on the given pool, split into square regions of the given size.
+     * Passing a null pool goes back to ticking every unit on the calling thread.
+     *
+     * @param pool the pool to tick regions on
+     * @param regionSize the width and height of a region, in tiles
+     */
+    public void setTickPool(ForkJoinPool pool, int regionSize) {
+        regionTicker = pool != null ? new RegionTicker(this, pool, regionSize) : null;
+    }
+
+    /**
+     * Sets the pool to search for paths on. Units asking for a path that has to be searched for over tiles then
+     * stand still until it is found, rather than holding up the tick.
+     *
+     * @param pool the pool to search for paths on, or null to search for them in the tick
+     */
+    public void setPathSearchPool(ExecutorService pool) {
+        if (asyncPathfinder != null) asyncPathfinder.shutdown();
+        asyncPathfinder = pool != null ? new AsyncPathfinder(this, pool) : null;
+    }
+
+    public AsyncPathfinder getAsyncPathfinder() {
+        return asyncPathfinder;
+    }
+
+    /**
+     * Sets how many nodes paths searched for in the tick may expand. Searches that run out are carried on in later
+     * ticks, and units follow the best path found so far in the meantime. The budget is only used while there is no
+     * path search pool, as searches go to the pool whenever there is one, and aren't limited there.
+     *
+     * @param expansionsPerTick the number of nodes all searches may expand each tick, or zero for no limit
+     * @param expansionsPerSearch the number of nodes any one search may expand each tick
+     */
+    public void setPathSearchBudget(int expansionsPerTick, int expansionsPerSearch) {
+        slicedPathfinder = expansionsPerTick > 0 ? new SlicedPathfinder(this, expansionsPerTick, expansionsPerSearch) : null;
+    }
+
+    public SlicedPathfinder getSlicedPathfinder() {
+        return slicedPathfinder;
     }
 
     public void onTick() throws SQLException {
-        for (int x = 0; x < width; x++) {
-            for (int y = 0; y < height; y++) {
-                Tile tile = getTileAt(x, y);
-                if (tile != null) {
-                    Unit unit = tile.getUnit();
-                    if (unit != null) {
-                        unit.onTick();
-                    }
-                }
+        long now = System.currentTimeMillis();
+        ticks++;
+        if (asyncPathfinder != null) asyncPathfinder.applyFinished();
+        if (slicedPathfinder != null) slicedPathfinder.run();
+        if (landmarkTables != null) landmarkTables.update();
+        completionWheel.advance(now, unit -> completeUnit(unit, now));
+        // Units may move, die or wake others while ticking, so only tick the slots active at the start
+        if (tickingSlots.length < unitStore.size) tickingSlots = new int[unitStore.units.length];
+        int tickingCount = 0;
+        for (int slot = 0; slot < unitStore.size; slot++) {
+            if (unitStore.active[slot]) tickingSlots[tickingCount++] = slot;
+        }
+        // Dragons stepping about don't block anyone for long, so paths are only checked when a wall or flag changes
+        if (repairedImmovableVersion != immovableVersion) {
+            repairBlockedRoutes(tickingCount);
+            repairedImmovableVersion = immovableVersion;
+        }
+        warmUpReplanners();
+        if (cooperativePlanner != null) {
+            for (int i = 0; i < tickingCount; i++) {
+                // units part way through a step can't be at the start of one
+                if (unitStore.cruise[tickingSlots[i]] <= 0) cooperativePlanner.update(unitStore.units[tickingSlots[i]], ticks);
+            }
+        }
+        if (regionTicker != null) {
+            regionTicker.tick(tickingSlots, tickingCount);
+        } else {
+            for (int i = 0; i < tickingCount; i++) {
+                tickSlot(tickingSlots[i]);
             }
         }
+        // Players rewarded by several units in a tick are written once, with where they ended up
+        for (Player player : dirtyPlayers) {
+            write(new PlayerSnapshot(player)::update);
+        }
+        dirtyPlayers.clear();
+        unitStore.compact();
     }
 
-    public List<Tile> findPath(Tile start, Tile end) {
-        Map<NodeImpl> map = new Map<>(width, height, new NodeFactoryImpl());
-        for (int x = 0; x < width; x++) {
-            for (int y = 0; y < height; y++) {
-                Unit unit = tiles[x][y].getUnit();
-                map.setWalkable(x, y, unit == null || !unit.isSolid());
+    /**
+     * Sets where writes to the database made by ticks go. Without a writer, they are made straight away on the
+     * thread ticking.
+     *
+     * @param databaseWriter the writer, or null to write straight away
+     */
+    public void setDatabaseWriter(DatabaseWriter databaseWriter) {
+        this.databaseWriter = databaseWriter;
+    }
+
+    void write(DatabaseWrite write) throws SQLException {
+        if (databaseWriter != null) {
+            databaseWriter.submit(write);
+        } else {
+            write.execute();
+        }
+    }
+
+    /**
+     * Notes that a player's row needs writing to the database at the end of the tick.
+     *
+     * @param player the player
+     */
+    public void markDirty(Player player) {
+        if (player.getDatabaseConnection() != null) dirtyPlayers.add(player);
+    }
+
+    /**
+     * Repairs the paths of the units whose routes run through a chunk where a wall or flag has been placed since the
+     * last repair, in slot order. If so many have been placed that the log no longer holds them all, every unit
+     * ticking is checked instead.
+     *
+     * @param tickingCount the number of slots ticking this tick
+     */
+    private void repairBlockedRoutes(int tickingCount) {
+        if (!isImmovableLogged(repairedImmovableVersion)) {
+            for (int i = 0; i < tickingCount; i++) {
+                if (unitStore.units[tickingSlots[i]].repairPath()) pathRepairs++;
+            }
+            return;
+        }
+        routeIndex.update();
+        int lastChunk = -1;
+        for (int version = repairedImmovableVersion; version != immovableVersion; version++) {
+            int position = getImmovableChange(version);
+            int x = position / height;
+            int y = position % height;
+            // Removing a wall or flag never blocks a path
+            if (immovableMap.isWalkable(x, y)) continue;
+            int chunk = getChunkIndex(x, y);
+            if (chunk != lastChunk) routeIndex.getUnits(chunk, blockedRoutes);
+            lastChunk = chunk;
+        }
+        blockedRoutes.sort(Comparator.comparingInt(Unit::getSlot));
+        Unit lastUnit = null;
+        for (Unit unit : blockedRoutes) {
+            if (unit != lastUnit && isActive(unit) && unit.repairPath()) pathRepairs++;
+            lastUnit = unit;
+        }
+        blockedRoutes.clear();
+    }
+
+    void warmUpReplanner(Unit unit) {
+        warmingReplanners.add(unit);
+    }
+
+    /**
+     * Carries on the first searches of new replanners, within a budget of expansions shared between them in the
+     * order they were started.
+     */
+    private void warmUpReplanners() {
+        int remaining = REPLANNER_EXPANSIONS_PER_TICK;
+        for (int i = warmingReplanners.size(); i > 0 && remaining > 0; i--) {
+            Unit unit = warmingReplanners.poll();
+            if (unit.getStore() != unitStore) continue;
+            int expansions = unit.warmUpReplanner(remaining);
+            if (expansions < 0) continue;
+            remaining -= expansions;
+            warmingReplanners.add(unit);
+        }
+    }
+
+    RouteIndex getRouteIndex() {
+        return routeIndex;
+    }
+
+    private void completeUnit(Unit unit, long now) {
+        // The wheel is never told about removals, so skip units that have since left the world
+        if (unit.getStore() != unitStore || unitStore.complete[unit.getSlot()] || unit.getCompletionTime() > now) return;
+        unitStore.complete[unit.getSlot()] = true;
+        completionListeners.forEach(listener -> listener.onUnitComplete(unit));
+    }
+
+    private void tickSlot(int slot) throws SQLException {
+        Unit unit = unitStore.units[slot];
+        if (unit == null || !unitStore.active[slot]) return;
+        if (unitStore.advance(slot)) {
+            int target = unitStore.attackTarget[slot];
+            if (target >= 0 && unitStore.persistent[target]) unitStore.units[target].flush();
+        } else {
+            unit.onTick();
+            finishTick(unit);
+        }
+    }
+
+    void tickUnit(Unit unit) throws SQLException {
+        if (isTicking(unit)) {
+            unit.onTick();
+            finishTick(unit);
+        }
+    }
+
+    boolean isTicking(Unit unit) {
+        return isActive(unit) && (pendingRemovals == null || !pendingRemovals.contains(unit));
+    }
+
+    void finishTick(Unit unit) throws SQLException {
+        unit.flush();
+        if (unit.getAttackTarget() != null) unit.getAttackTarget().flush();
+        if (unit.isIdle()) {
+            if (cooperativePlanner != null) cooperativePlanner.release(unit);
+            sleepUnit(unit);
+        }
+    }
+
+    void beginParallelTick() {
+        pendingRemovals = ConcurrentHashMap.newKeySet();
+    }
+
+    void endParallelTick() {
+        Set<Unit> removals = pendingRemovals;
+        pendingRemovals = null;
+        removals.forEach(this::removeUnit);
+    }
+
+    /**
+     * Sets how many landmarks to estimate path costs with, building them on the given pool whenever walls or flags
+     * change. With no landmarks, costs are estimated with the manhattan heuristic.
+     *
+     * @param count the number of landmarks, or zero for none
+     * @param pool the pool to build landmarks on
+     */
+    public void setLandmarks(int count, ExecutorService pool) {
+        if (landmarkTables != null) landmarkTables.shutdown();
+        landmarkTables = count > 0 && pool != null ? new LandmarkTables(this, count, pool) : null;
+        setHeuristic(Heuristic.MANHATTAN);
+    }
+
+    public LandmarkTables getLandmarkTables() {
+        return landmarkTables;
+    }
+
+    /**
+     * Sets how many steps ahead moving units reserve the tiles they will be on, so that they wait or step aside for
+     * each other rather than walk onto the same tile. With no steps, units follow their paths without reserving tiles.
+     *
+     * @param window the number of steps, or zero for none
+     */
+    public void setReservationWindow(int window) {
+        if (cooperativePlanner != null) {
+            for (int slot = 0; slot < unitStore.size; slot++) {
+                if (unitStore.units[slot] != null) cooperativePlanner.release(unitStore.units[slot]);
             }
         }
+        cooperativePlanner = window > 0 ? new CooperativePlanner(this, window) : null;
+        // units without plans only step while there is no planner
+        Arrays.fill(unitStore.cruise, 0);
+    }
+
+    public CooperativePlanner getCooperativePlanner() {
+        return cooperativePlanner;
+    }
+
+    /**
+     * The number of times the world has ticked.
+     *
+     * @return the number of ticks
+     */
+    long getTicks() {
+        return ticks;
+    }
+
+    Heuristic getHeuristic() {
+        return landmarkTables != null ? landmarkTables.getHeuristic() : Heuristic.MANHATTAN;
+    }
+
+    void setHeuristic(Heuristic heuristic) {
+        pathfindingMap.setHeuristic(heuristic);
+    }
+
+    public SearchAlgorithm getSearchAlgorithm() {
+        return pathfindingMap.getSearchAlgorithm();
+    }
+
+    public void setSearchAlgorithm(SearchAlgorithm searchAlgorithm) {
+        pathfindingMap.setSearchAlgorithm(searchAlgorithm);
+        pathCache.clear();
+    }
+
+    public int getHierarchicalDistance() {
+        return hierarchicalDistance;
+    }
+
+    /**
+     * Sets how far apart, in tiles, the ends of a path have to be for it to be found over chunks rather than tiles.
+     * Passing zero finds every path over tiles.
+     *
+     * @param hierarchicalDistance the distance, in tiles
+     */
+    public void setHierarchicalDistance(int hierarchicalDistance) {
+        this.hierarchicalDistance = hierarchicalDistance;
+        pathCache.clear();
+    }
+
+    public PathCache getPathCache() {
+        return pathCache;
+    }
+
+    public FlowFieldCache getFlowFieldCache() {
+        return flowFieldCache;
+    }
+
+    /**
+     * Finds a path between two tiles around solid units. If the end tile is solid itself, the path stops next to it.
+     * The search reuses the world's walkability bitmap and buffers, so only one path may be searched for at a time.
+     * <p>
+     * Long paths are found over the entrances between chunks, and the tiles between each entrance are only searched
+     * for as the path is followed, so they may not be the shortest.
+     * <p>
+     * Paths are cached until a chunk they pass through changes, so asking for the same path again is cheap, and
+     * paths to tiles many units are headed for are read from a shared flow field rather than searched for. Tiles
+     * walled off from the start tile are known to have no path without searching.
+     *
+     * @param start the tile to start from
+     * @param end the tile to find a path to
+     * @return the tiles along the path, not including the start tile, which is empty if there is no path
+     */
+    public List<Tile> findPath(Tile start, Tile end) {
+        return findTilePath(start, end);
+    }
+
+    private TilePath findTilePath(Tile start, Tile end) {
+        if (!isReachable(start, end)) return new TilePath(this, 0);
+        TilePath cached = pathCache.get(start, end);
+        if (cached != null) return cached;
+        TilePath flowFieldPath = flowFieldCache.getPath(start, end);
+        if (flowFieldPath != null) return flowFieldPath;
+        if (isHierarchical(start, end)) return findHierarchicalPath(start, end);
+        TilePath path = findPath(start.getX(), start.getY(), end.getX(), end.getY(), null);
+        pathCache.putTiles(start, end, path);
+        return path;
+    }
+
+    /**
+     * Asks for a path between two tiles. If the path is cached or long enough to be found over chunks, or there is
+     * neither a path search pool nor a search budget, the request is done straight away. Otherwise the path is
+     * searched for on the pool, or within the budget, and the request may not be done until the start of a later
+     * tick.
+     *
+     * @param owner the player whose unit is asking, so that search budget is shared fairly between players
+     * @param start the tile to start from
+     * @param end the tile to find a path to
+     * @return the request
+     */
+    PathRequest requestPath(UUID owner, Tile start, Tile end) {
+        if (!isReachable(start, end)) return new PathRequest(start, end, new TilePath(this, 0));
+        if (asyncPathfinder == null && slicedPathfinder == null) return new PathRequest(start, end, findTilePath(start, end));
+        TilePath cached = pathCache.get(start, end);
+        if (cached != null) return new PathRequest(start, end, cached);
+        TilePath flowFieldPath = flowFieldCache.getPath(start, end);
+        if (flowFieldPath != null) return new PathRequest(start, end, flowFieldPath);
+        if (isHierarchical(start, end)) return new PathRequest(start, end, findHierarchicalPath(start, end));
+        if (asyncPathfinder != null) return asyncPathfinder.submit(start, end);
+        return slicedPathfinder.submit(owner, start, end);
+    }
+
+    FlowField<NodeImpl> buildFlowField(int goalX, int goalY, int radius) {
+        return new FlowField<>(immovableMap, goalX, goalY, radius);
+    }
+
+    DStarLite<NodeImpl> startDStarLite(Tile start, Tile end) {
+        return immovableMap.startDStarLite(start.getX(), start.getY(), end.getX(), end.getY());
+    }
+
+    /**
+     * Takes a snapshot of how path searches have gone, resetting the maxima it records.
+     *
+     * @return the snapshot
+     */
+    public PathfindingMetrics snapshotPathfindingMetrics() {
+        return new PathfindingMetrics(this);
+    }
+
+    /**
+     * Gets the number of paths that have been repaired around tiles that became solid after they were found.
+     *
+     * @return the number of repairs
+     */
+    public long getPathRepairs() {
+        return pathRepairs;
+    }
+
+    PathRequest startResumableSearch(Tile start, Tile end) {
+        return new PathRequest(start, end, pathfindingMap.startResumableSearch(start.getX(), start.getY(), end.getX(), end.getY()), immovableVersion);
+    }
+
+    private boolean isHierarchical(Tile start, Tile end) {
+        return hierarchicalDistance > 0 && abs(end.getX() - start.getX()) + abs(end.getY() - start.getY()) > hierarchicalDistance;
+    }
+
+    private TilePath findHierarchicalPath(Tile start, Tile end) {
+        int[] entrances = findEntrances(start.getX(), start.getY(), end.getX(), end.getY());
+        if (entrances == null) return new TilePath(this, 0);
+        pathCache.putEntrances(start, end, entrances);
+        return new HierarchicalPath(this, start, entrances);
+    }
+
+    /**
+     * Finds a path between two positions over tiles, optionally without leaving the given bounds.
+     *
+     * @param startX the x coordinate to start from
+     * @param startY the y coordinate to start from
+     * @param endX the x coordinate to find a path to
+     * @param endY the y coordinate to find a path to
+     * @param bounds the minimum x, minimum y, maximum x and maximum y the path must stay within, or null for none
+     * @return the tiles along the path, not including the start tile, which is empty if there is no path
+     */
+    TilePath findPath(int startX, int startY, int endX, int endY, int[] bounds) {
+        return findPath(pathfindingMap, startX, startY, endX, endY, bounds);
+    }
+
+    /**
+     * Finds a path between two positions over tiles, stepping through units that can move as if they weren't there.
+     *
+     * @param startX the x coordinate to start from
+     * @param startY the y coordinate to start from
+     * @param endX the x coordinate to find a path to
+     * @param endY the y coordinate to find a path to
+     * @param bounds the minimum x, minimum y, maximum x and maximum y the path must stay within, or null for none
+     * @return the tiles along the path, not including the start tile, which is empty if there is no path
+     */
+    TilePath findImmovablePath(int startX, int startY, int endX, int endY, int[] bounds) {
+        return findPath(immovableMap, startX, startY, endX, endY, bounds);
+    }
+
+    /**
+     * Whether a unit could walk onto the tile at the given position once any units that can move have moved off it.
+     *
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @return whether no wall or flag is on the tile
+     */
+    boolean isImmovableWalkable(int x, int y) {
+        return immovableMap.isWalkable(x, y);
+    }
+
+    /**
+     * Finds the entrances between chunks a path between two positions goes through.
+     *
+     * @param startX the x coordinate to start from
+     * @param startY the y coordinate to start from
+     * @param endX the x coordinate to find a path to
+     * @param endY the y coordinate to find a path to
+     * @return the positions of the entrances, as <code>x * height + y</code>, ending with the end, or null if there is
+     * no path
+     */
+    int[] findEntrances(int startX, int startY, int endX, int endY) {
+        return clusterGraph.findPath(startX, startY, endX, endY);
+    }
+
+    /**
+     * Finds a path between two positions over the given map, which may be a copy being searched on another thread.
+     *
+     * @param map the map to search
+     * @param startX the x coordinate to start from
+     * @param startY the y coordinate to start from
+     * @param endX the x coordinate to find a path to
+     * @param endY the y coordinate to find a path to
+     * @param bounds the minimum x, minimum y, maximum x and maximum y the path must stay within, or null for none
+     * @return the tiles along the path, not including the start tile, which is empty if there is no path
+     */
+    TilePath findPath(Map<NodeImpl> map, int startX, int startY, int endX, int endY, int[] bounds) {
         boolean removeEndTile = false;
-        if (!map.isWalkable(end.getX(), end.getY())) {
-            map.setWalkable(end.getX(), end.getY(), true);
+        if (!map.isWalkable(endX, endY)) {
+            map.setWalkable(endX, endY, true);
             removeEndTile = true;
         }
-        List<NodeImpl> path = map.findPath(start.getX(), start.getY(), end.getX(), end.getY());
+        List<NodeImpl> path = bounds != null
+                ? map.findPath(startX, startY, endX, endY, bounds[0], bounds[1], bounds[2], bounds[3])
+                : map.findPath(startX, startY, endX, endY);
+        if (removeEndTile) map.setWalkable(endX, endY, false);
         if (path != null) {
-            if (removeEndTile) path.remove(path.size() - 1);
-            List<Tile> tiles = new ArrayList<>();
-            path.forEach(node -> tiles.add(getTileAt(node.getX(), node.getY())));
-            return tiles;
+            if (removeEndTile && !path.isEmpty()) path.remove(path.size() - 1);
+            return getTiles(path, -1, -1);
         }
         return null;
     }
 
+    /**
+     * Gets the tiles along a path of nodes. A path that ends on a solid tile stops next to it instead.
+     *
+     * @param path the nodes along the path
+     * @param endX the x coordinate of the end of the path, which may be solid
+     * @param endY the y coordinate of the end of the path, which may be solid
+     * @return the tiles along the path, or null if there are no nodes
+     */
+    TilePath getTiles(List<NodeImpl> path, int endX, int endY) {
+        if (path == null) return null;
+        int size = path.size();
+        if (size > 0) {
+            NodeImpl last = path.get(size - 1);
+            if (last.getX() == endX && last.getY() == endY && !isWalkable(endX, endY)) size--;
+        }
+        TilePath tiles = new TilePath(this, size);
+        for (int i = 0; i < size; i++) {
+            tiles.add(path.get(i).getX(), path.get(i).getY());
+        }
+        return tiles;
+    }
+
+    int[] getChunkBounds(int x, int y) {
+        return clusterGraph.getClusterBounds(x, y);
+    }
+
     public int getWidth() {
         return width;
     }
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2015 Ross Binden
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seventh_root.ld33.common.network;
+
+import com.seventh_root.ld33.common.network.packet.Packet;
+import com.seventh_root.ld33.common.network.packet.clientbound.*;
+import com.seventh_root.ld33.common.network.packet.serverbound.*;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Test;
+
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class BinaryProtocolTest {
+
+    private static final UUID UNIT_UUID = UUID.fromString("0b5f3f9e-7a55-4b7e-9d37-5d1b8e0a2c41");
+    private static final UUID PLAYER_UUID = UUID.fromString("c3a1d0e2-44f6-4f0b-8f7e-1e2d3c4b5a69");
+    private static final String AWKWARD = "nul \0 in the middle, é中🐉 and a long tail " + new String(new char[200]).replace('\0', 'x');
+
+    private static List<Packet> clientBoundPackets() {
+        return Arrays.asList(
+                new PublicKeyClientBoundPacket(new byte[] {1, 2, 3, 0, -1}),
+                new PlayerLoginClientBoundPacket(),
+                new PlayerJoinClientBoundPacket(PLAYER_UUID, "dragon\0lord", 100),
+                new PlayerQuitClientBoundPacket(PLAYER_UUID, "dragon\0lord"),
+                new PlayerLoginResponseClientBoundPacket(AWKWARD, true),
+                new UnitSpawnClientBoundPacket(UNIT_UUID, PLAYER_UUID, 12, 34, "wall", 1439683200000L),
+                new UnitMoveClientBoundPacket(UNIT_UUID, 1, 2, 1999, 0),
+                new ChatMessageClientBoundPacket(AWKWARD),
+                new UnitPurchaseClientBoundPacket(PLAYER_UUID, 5, 6, "flag"),
+                new PlayerInformationClientBoundPacket(PLAYER_UUID, "", -15),
+                new WorldInformationClientBoundPacket(2000, 2000),
+                new UnitDamageClientBoundPacket(UNIT_UUID.toString(), 42)
+        );
+    }
+
+    private static List<Packet> serverBoundPackets() {
+        return Arrays.asList(
+                new PublicKeyServerBoundPacket(new byte[0]),
+                new PlayerLoginServerBoundPacket("dragon\0lord", new byte[] {9, 8, 7}, true),
+                new PlayerJoinServerBoundPacket(),
+                new PlayerQuitServerBoundPacket(),
+                new PlayerLoginResponseServerBoundPacket(AWKWARD, false),
+                new UnitSpawnServerBoundPacket(UNIT_UUID, PLAYER_UUID, 0, 0, "dragon", 0),
+                new UnitMoveServerBoundPacket(UNIT_UUID, 7, 8),
+                new ChatMessageServerBoundPacket(AWKWARD),
+                new UnitPurchaseServerBoundPacket(3, 4, "wall"),
+                new PlayerInformationServerBoundPacket(PLAYER_UUID),
+                new WorldInformationServerBoundPacket(),
+                new UnitDamageServerBoundPacket(UNIT_UUID.toString(), -1)
+        );
+    }
+
+    @Test
+    public void coversEveryPacketId() {
+        for (List<Packet> packets : Arrays.asList(clientBoundPackets(), serverBoundPackets())) {
+            for (int id = 0; id < packets.size(); id++) {
+                assertEquals(id, packets.get(id).getId());
+            }
+        }
+    }
+
+    @Test
+    public void roundTripsClientBoundPackets() throws UnsupportedEncodingException {
+        for (Packet packet : clientBoundPackets()) {
+            assertRoundTrips(packet, decode(new ClientBoundPacketDecoder(), encode(packet), 0));
+        }
+    }
+
+    @Test
+    public void roundTripsServerBoundPackets() throws UnsupportedEncodingException {
+        for (Packet packet : serverBoundPackets()) {
+            assertRoundTrips(packet, decode(new ServerBoundPacketDecoder(), encode(packet), 0));
+        }
+    }
+
+    @Test
+    public void decodesFramesSplitAcrossReads() throws UnsupportedEncodingException {
+        List<Packet> packets = clientBoundPackets();
+        byte[] bytes = encode(packets.toArray(new Packet[packets.size()]));
+        for (int chunkSize : new int[] {1, 2, 3, 7, 64}) {
+            List<Object> decoded = decodeAll(new ClientBoundPacketDecoder(), bytes, chunkSize);
+            assertEquals(packets.size(), decoded.size());
+            for (int i = 0; i < packets.size(); i++) {
+                assertRoundTrips(packets.get(i), (Packet) decoded.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void keepsNulsInChatMessages() throws UnsupportedEncodingException {
+        Packet decoded = decode(new ServerBoundPacketDecoder(), encode(new ChatMessageServerBoundPacket("a\0b")), 1);
+        assertEquals("a\0b", ((ChatMessageServerBoundPacket) decoded).getMessage());
+    }
+
+    @Test
+    public void roundTripsVarInts() {
+        for (int value : new int[] {0, 1, 127, 128, 255, 16383, 16384, Integer.MAX_VALUE, -1, Integer.MIN_VALUE}) {
+            ByteBuf buf = Unpooled.buffer();
+            Packet.writeVarInt(buf, value);
+            assertEquals(value, Packet.readVarInt(buf));
+            assertEquals(0, buf.readableBytes());
+        }
+    }
+
+    private static void assertRoundTrips(Packet expected, Packet actual) throws UnsupportedEncodingException {
+        assertEquals(expected.getClass(), actual.getClass());
+        assertArrayEquals(write(expected), write(actual));
+    }
+
+    private static byte[] write(Packet packet) throws UnsupportedEncodingException {
+        ByteBuf buf = Unpooled.buffer();
+        packet.write(buf);
+        byte[] bytes = new byte[buf.readableBytes()];
+        buf.readBytes(bytes);
+        return bytes;
+    }
+
+    /**
+     * Encodes packets through the binary protocol's pipeline, giving the bytes that would be sent.
+     */
+    private static byte[] encode(Packet... packets) {
+        EmbeddedChannel channel = newChannel(new ServerBoundPacketDecoder());
+        channel.writeOutbound((Object[]) packets);
+        ByteBuf bytes = Unpooled.buffer();
+        ByteBuf buf;
+        while ((buf = channel.readOutbound()) != null) {
+            bytes.writeBytes(buf);
+            buf.release();
+        }
+        byte[] array = new byte[bytes.readableBytes()];
+        bytes.readBytes(array);
+        return array;
+    }
+
+    /**
+     * Creates a channel with the binary protocol's codec. It is added by an initializer so that it goes ahead of the
+     * handler the embedded channel collects inbound messages with.
+     */
+    private static EmbeddedChannel newChannel(ChannelHandler decoder) {
+        return new EmbeddedChannel(new ChannelInitializer<Channel>() {
+            @Override
+            protected void initChannel(Channel channel) throws Exception {
+                Protocol.BINARY.addCodec(channel.pipeline(), decoder);
+            }
+        });
+    }
+
+    private static Packet decode(ChannelHandler decoder, byte[] bytes, int chunkSize) {
+        List<Object> decoded = decodeAll(decoder, bytes, chunkSize);
+        assertEquals(1, decoded.size());
+        return (Packet) decoded.get(0);
+    }
+
+    /**
+     * Decodes bytes through the binary protocol's pipeline, arriving chunkSize bytes at a time, or all at once if
+     * chunkSize is 0.
+     */
+    private static List<Object> decodeAll(ChannelHandler decoder, byte[] bytes, int chunkSize) {
+        EmbeddedChannel channel = newChannel(decoder);
+        if (chunkSize == 0) chunkSize = bytes.length;
+        for (int i = 0; i < bytes.length; i += chunkSize) {
+            channel.writeInbound(Unpooled.copiedBuffer(bytes, i, Math.min(chunkSize, bytes.length - i)));
+        }
+        List<Object> decoded = new ArrayList<>();
+        Object packet;
+        while ((packet = channel.readInbound()) != null) {
+            decoded.add(packet);
+        }
+        channel.checkException();
+        assertNull(channel.readInbound());
+        return decoded;
+    }
+
+}
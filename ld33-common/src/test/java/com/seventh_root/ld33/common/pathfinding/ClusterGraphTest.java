@@ -0,0 +1,130 @@
+/*
+ * Copyright 2015 Ross Binden
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seventh_root.ld33.common.pathfinding;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ClusterGraphTest {
+
+    private static final long SEED = 14L;
+    private static final int LAYOUTS = 150;
+    private static final int SEARCHES_PER_LAYOUT = 8;
+    private static final int CHANGES_PER_LAYOUT = 40;
+    private static final int CLUSTER_SIZE = 8;
+    /** how much longer than the shortest path a path over entrances may be, over the whole run. */
+    private static final double MAX_TOTAL_STRETCH = 1.1;
+
+    @Test
+    public void findsPathsCloseToFlatAStar() {
+        Random random = new Random(SEED);
+        long abstractCosts = 0;
+        long flatCosts = 0;
+        for (int i = 0; i < LAYOUTS; i++) {
+            int width = CLUSTER_SIZE + random.nextInt(CLUSTER_SIZE * 5);
+            int height = CLUSTER_SIZE + random.nextInt(CLUSTER_SIZE * 5);
+            boolean[][] blocked = createChunkedLayout(random, width, height);
+            Map<NodeImpl> map = new Map<>(width, height, new NodeFactoryImpl());
+            map.setHeuristic(Heuristic.MANHATTAN);
+            for (int x = 0; x < width; x++) {
+                for (int y = 0; y < height; y++) {
+                    map.setWalkable(x, y, !blocked[x][y]);
+                }
+            }
+            ClusterGraph graph = new ClusterGraph(map, width, height, CLUSTER_SIZE);
+            for (int round = 0; round < 2; round++) {
+                for (int j = 0; j < SEARCHES_PER_LAYOUT; j++) {
+                    int startX = random.nextInt(width);
+                    int startY = random.nextInt(height);
+                    int goalX = random.nextInt(width);
+                    int goalY = random.nextInt(height);
+                    if (blocked[startX][startY] || blocked[goalX][goalY] || (startX == goalX && startY == goalY)) continue;
+                    String search = width + "x" + height + " layout " + i + " round " + round + ", " + startX + "," + startY + " to " + goalX + "," + goalY;
+                    List<NodeImpl> flatPath = map.findPath(startX, startY, goalX, goalY);
+                    int[] entrances = graph.findPath(startX, startY, goalX, goalY);
+                    if (flatPath.isEmpty()) {
+                        assertNull(search, entrances);
+                        continue;
+                    }
+                    assertNotNull(search, entrances);
+                    int cost = getRefinedCost(search, map, graph, height, startX * height + startY, entrances);
+                    assertTrue(search + ": " + cost + " against " + flatPath.size(), cost >= flatPath.size());
+                    abstractCosts += cost;
+                    flatCosts += flatPath.size();
+                }
+                // change walls and flags about the map, and check again with the clusters they touch rebuilt
+                for (int j = 0; j < CHANGES_PER_LAYOUT; j++) {
+                    int x = random.nextInt(width);
+                    int y = random.nextInt(height);
+                    blocked[x][y] = !blocked[x][y];
+                    map.setWalkable(x, y, !blocked[x][y]);
+                    graph.invalidate(x, y);
+                }
+            }
+        }
+        assertTrue(abstractCosts + " against " + flatCosts, abstractCosts <= flatCosts * MAX_TOTAL_STRETCH);
+    }
+
+    /**
+     * Works out the length of the path over tiles through the given entrances, searching between each within the
+     * cluster they share, and failing if any two can't be joined that way.
+     */
+    private int getRefinedCost(String search, Map<NodeImpl> map, ClusterGraph graph, int height, int start, int[] entrances) {
+        int cost = 0;
+        int from = start;
+        for (int entrance : entrances) {
+            int fromX = from / height;
+            int fromY = from % height;
+            int x = entrance / height;
+            int y = entrance % height;
+            if (Math.abs(x - fromX) + Math.abs(y - fromY) == 1) {
+                cost++;
+            } else if (entrance != from) {
+                int[] bounds = graph.getClusterBounds(x, y);
+                List<NodeImpl> segment = map.findPath(fromX, fromY, x, y, bounds[0], bounds[1], bounds[2], bounds[3]);
+                assertTrue(search + ": no segment from " + fromX + "," + fromY + " to " + x + "," + y, !segment.isEmpty());
+                cost += segment.size();
+            }
+            from = entrance;
+        }
+        return cost;
+    }
+
+    /**
+     * Lays out rooms the size of a cluster or so, with walls along some of their edges broken by doorways, and a
+     * scattering of single walls.
+     */
+    private boolean[][] createChunkedLayout(Random random, int width, int height) {
+        boolean[][] blocked = new boolean[width][height];
+        int roomSize = CLUSTER_SIZE - 2 + random.nextInt(5);
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                boolean onWall = (x % roomSize == roomSize - 1 && random.nextInt(4) != 0) || (y % roomSize == roomSize - 1 && random.nextInt(4) != 0);
+                blocked[x][y] = onWall || random.nextDouble() < 0.08;
+            }
+        }
+        return blocked;
+    }
+
+}
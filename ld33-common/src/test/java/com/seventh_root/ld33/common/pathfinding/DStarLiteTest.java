@@ -0,0 +1,121 @@
+/*
+ * Copyright 2015 Ross Binden
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seventh_root.ld33.common.pathfinding;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DStarLiteTest {
+
+    private static final long SEED = 19L;
+    private static final int MAPS = 300;
+    private static final int CHANGES_PER_MAP = 25;
+
+    @Test
+    public void repairsPathsAsShortAsAFreshAStarSearch() {
+        Random random = new Random(SEED);
+        for (int i = 0; i < MAPS; i++) {
+            int width = 2 + random.nextInt(40);
+            int height = 2 + random.nextInt(40);
+            boolean[][] blocked = new boolean[width][height];
+            Map<NodeImpl> map = new Map<>(width, height, new NodeFactoryImpl());
+            map.setHeuristic(Heuristic.MANHATTAN);
+            double density = random.nextDouble() * 0.35;
+            for (int x = 0; x < width; x++) {
+                for (int y = 0; y < height; y++) {
+                    blocked[x][y] = random.nextDouble() < density;
+                    map.setWalkable(x, y, !blocked[x][y]);
+                }
+            }
+            int goalX = random.nextInt(width);
+            int goalY = random.nextInt(height);
+            int startX = random.nextInt(width);
+            int startY = random.nextInt(height);
+            setBlocked(map, blocked, goalX, goalY, false);
+            setBlocked(map, blocked, startX, startY, false);
+            DStarLite<NodeImpl> search = map.startDStarLite(startX, startY, goalX, goalY);
+            // warm up a few nodes at a time before the first path is asked for
+            int warmUpSteps = 0;
+            while (!search.isFinished()) {
+                assertTrue(search.step(8) <= 8);
+                assertTrue("warm up never finished on map " + i, ++warmUpSteps < width * height);
+            }
+            // a unit that reaches the goal has nothing left to repair
+            for (int j = 0; j < CHANGES_PER_MAP && (startX != goalX || startY != goalY); j++) {
+                String repair = width + "x" + height + " map " + i + ", change " + j + ", " + startX + "," + startY + " to " + goalX + "," + goalY;
+                List<NodeImpl> repairedPath = search.findPath();
+                List<NodeImpl> aStarPath = map.findPath(startX, startY, goalX, goalY);
+                if (repairedPath == null) {
+                    assertTrue(repair, aStarPath.isEmpty());
+                } else {
+                    assertEquals(repair, aStarPath.size(), repairedPath.size());
+                    assertConnected(repair, blocked, startX, startY, goalX, goalY, repairedPath);
+                    // walk a little way along the path, as a unit would between changes
+                    int steps = Math.min(random.nextInt(4), repairedPath.size());
+                    if (steps > 0) {
+                        startX = repairedPath.get(steps - 1).getX();
+                        startY = repairedPath.get(steps - 1).getY();
+                        search.moveStart(startX, startY);
+                    }
+                }
+                // place or remove a few walls, mostly along the path
+                int changes = 1 + random.nextInt(3);
+                for (int k = 0; k < changes; k++) {
+                    int x;
+                    int y;
+                    if (repairedPath != null && !repairedPath.isEmpty() && random.nextBoolean()) {
+                        NodeImpl node = repairedPath.get(random.nextInt(repairedPath.size()));
+                        x = node.getX();
+                        y = node.getY();
+                    } else {
+                        x = random.nextInt(width);
+                        y = random.nextInt(height);
+                    }
+                    if ((x == goalX && y == goalY) || (x == startX && y == startY)) continue;
+                    setBlocked(map, blocked, x, y, !blocked[x][y]);
+                    search.updateNode(x, y);
+                }
+            }
+        }
+    }
+
+    private void setBlocked(Map<NodeImpl> map, boolean[][] blocked, int x, int y, boolean block) {
+        blocked[x][y] = block;
+        map.setWalkable(x, y, !block);
+    }
+
+    private void assertConnected(String repair, boolean[][] blocked, int startX, int startY, int endX, int endY, List<NodeImpl> path) {
+        int x = startX;
+        int y = startY;
+        for (NodeImpl node : path) {
+            assertEquals(repair, 1, Math.abs(node.getX() - x) + Math.abs(node.getY() - y));
+            assertTrue(repair, !blocked[node.getX()][node.getY()]);
+            x = node.getX();
+            y = node.getY();
+        }
+        if (!path.isEmpty()) {
+            assertEquals(repair, endX, x);
+            assertEquals(repair, endY, y);
+        }
+    }
+
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2015 Ross Binden
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seventh_root.ld33.common.pathfinding;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class JumpPointSearchTest {
+
+    private static final long SEED = 7L;
+    private static final int MAPS = 2000;
+    private static final int SEARCHES_PER_MAP = 6;
+    private static final int OPEN_MAP_SIZE = 400;
+
+    @Test
+    public void findsPathsAsShortAsAStar() {
+        Random random = new Random(SEED);
+        long aStarExpansions = 0;
+        long jumpPointExpansions = 0;
+        for (int i = 0; i < MAPS; i++) {
+            int width = 1 + random.nextInt(50);
+            int height = 1 + random.nextInt(50);
+            boolean[][] blocked = createObstacles(random, width, height);
+            Map<NodeImpl> map = new Map<>(width, height, new NodeFactoryImpl());
+            map.setHeuristic(Heuristic.MANHATTAN);
+            for (int x = 0; x < width; x++) {
+                for (int y = 0; y < height; y++) {
+                    map.setWalkable(x, y, !blocked[x][y]);
+                }
+            }
+            for (int j = 0; j < SEARCHES_PER_MAP; j++) {
+                // change a node between searches, so that jumps through it have to be worked out again
+                int changedX = random.nextInt(width);
+                int changedY = random.nextInt(height);
+                blocked[changedX][changedY] = !blocked[changedX][changedY];
+                map.setWalkable(changedX, changedY, !blocked[changedX][changedY]);
+                int startX = random.nextInt(width);
+                int startY = random.nextInt(height);
+                int endX = random.nextInt(width);
+                int endY = random.nextInt(height);
+                if (blocked[endX][endY] || (startX == endX && startY == endY)) continue;
+                String search = width + "x" + height + " map " + i + ", " + startX + "," + startY + " to " + endX + "," + endY;
+                map.setSearchAlgorithm(SearchAlgorithm.A_STAR);
+                List<NodeImpl> aStarPath = map.findPath(startX, startY, endX, endY);
+                aStarExpansions += map.getExpansions();
+                map.setSearchAlgorithm(SearchAlgorithm.JUMP_POINT_SEARCH);
+                List<NodeImpl> jumpPointPath = map.findPath(startX, startY, endX, endY);
+                jumpPointExpansions += map.getExpansions();
+                assertEquals(search, aStarPath.size(), jumpPointPath.size());
+                assertConnected(search, blocked, startX, startY, endX, endY, jumpPointPath);
+            }
+        }
+        assertTrue(jumpPointExpansions + " jump points against " + aStarExpansions, jumpPointExpansions < aStarExpansions);
+    }
+
+    @Test
+    public void crossesOpenGroundInAFewJumps() {
+        Map<NodeImpl> map = new Map<>(OPEN_MAP_SIZE, OPEN_MAP_SIZE, new NodeFactoryImpl());
+        map.setHeuristic(Heuristic.MANHATTAN);
+        map.setSearchAlgorithm(SearchAlgorithm.JUMP_POINT_SEARCH);
+        List<NodeImpl> path = map.findPath(0, 0, OPEN_MAP_SIZE - 1, OPEN_MAP_SIZE - 1);
+        assertEquals((OPEN_MAP_SIZE - 1) * 2, path.size());
+        assertTrue(map.getExpansions() + " jump points", map.getExpansions() <= 4);
+    }
+
+    private boolean[][] createObstacles(Random random, int width, int height) {
+        boolean[][] blocked = new boolean[width][height];
+        // scattered obstacles, straight walls, or both
+        int layout = random.nextInt(3);
+        if (layout != 1) {
+            double density = random.nextDouble() * 0.45;
+            for (int x = 0; x < width; x++) {
+                for (int y = 0; y < height; y++) {
+                    blocked[x][y] = random.nextDouble() < density;
+                }
+            }
+        }
+        if (layout != 0) {
+            int walls = random.nextInt(12);
+            for (int i = 0; i < walls; i++) {
+                boolean horizontal = random.nextBoolean();
+                int x = random.nextInt(width);
+                int y = random.nextInt(height);
+                int length = random.nextInt(30);
+                for (int j = 0; j < length && x < width && y < height; j++) {
+                    blocked[x][y] = true;
+                    if (horizontal) x++; else y++;
+                }
+            }
+        }
+        return blocked;
+    }
+
+    private void assertConnected(String search, boolean[][] blocked, int startX, int startY, int endX, int endY, List<NodeImpl> path) {
+        int x = startX;
+        int y = startY;
+        for (NodeImpl node : path) {
+            assertEquals(search, 1, Math.abs(node.getX() - x) + Math.abs(node.getY() - y));
+            assertTrue(search, !blocked[node.getX()][node.getY()]);
+            x = node.getX();
+            y = node.getY();
+        }
+        if (!path.isEmpty()) {
+            assertEquals(search, endX, x);
+            assertEquals(search, endY, y);
+        }
+    }
+
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2015 Ross Binden
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seventh_root.ld33.common.pathfinding;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LandmarksTest {
+
+    private static final long SEED = 23L;
+    private static final int MAPS = 300;
+    private static final int SEARCHES_PER_MAP = 10;
+    private static final int CORRIDOR_LENGTH = 4400;
+    private static final int CORRIDORS = 16;
+
+    @Test
+    public void findsPathsAsShortAsManhattanOnRandomWalls() {
+        Random random = new Random(SEED);
+        for (int i = 0; i < MAPS; i++) {
+            int width = 2 + random.nextInt(60);
+            int height = 2 + random.nextInt(60);
+            Map<NodeImpl> built = new Map<>(width, height, new NodeFactoryImpl());
+            Map<NodeImpl> map = new Map<>(width, height, new NodeFactoryImpl());
+            double density = random.nextDouble() * 0.4;
+            for (int x = 0; x < width; x++) {
+                for (int y = 0; y < height; y++) {
+                    boolean walkable = random.nextDouble() >= density;
+                    built.setWalkable(x, y, walkable);
+                    map.setWalkable(x, y, walkable);
+                }
+            }
+            Landmarks landmarks = new Landmarks(built, 1 + random.nextInt(6), 1 << random.nextInt(5));
+            // walls placed since the landmarks were built only make their estimates less tight
+            if (random.nextBoolean()) {
+                for (int j = random.nextInt(width * height / 8 + 1); j > 0; j--) {
+                    map.setWalkable(random.nextInt(width), random.nextInt(height), false);
+                }
+            }
+            for (int j = 0; j < SEARCHES_PER_MAP; j++) {
+                assertSameCosts("map " + i + ", search " + j, map, landmarks,
+                        random.nextInt(width), random.nextInt(height), random.nextInt(width), random.nextInt(height));
+            }
+            assertConsistent("map " + i, map, landmarks, random.nextInt(width), random.nextInt(height));
+        }
+    }
+
+    @Test
+    public void findsPathsAsShortAsManhattanAlongCorridorsTooLongForTwoBytes() {
+        // one corridor winding back and forth, so that a region of 32 rows spans more steps than two bytes can hold
+        int width = CORRIDOR_LENGTH;
+        int height = CORRIDORS * 2;
+        Map<NodeImpl> map = new Map<>(width, height, new NodeFactoryImpl());
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                boolean wall = y % 2 == 0 && x != ((y / 2) % 2 == 1 ? width - 1 : 0);
+                map.setWalkable(x, y, !wall);
+            }
+        }
+        map.setWalkable(0, 0, false);
+        Landmarks landmarks = new Landmarks(map, 2, 32);
+        assertSameCosts("along", map, landmarks, 0, 1, 0, height - 1);
+        assertSameCosts("across", map, landmarks, width / 2, height - 1, width / 2, 1);
+        assertConsistent("from the far end", map, landmarks, 0, height - 1);
+        assertConsistent("from half way", map, landmarks, width / 2, CORRIDORS + 1);
+    }
+
+    private void assertSameCosts(String search, Map<NodeImpl> map, Landmarks landmarks, int startX, int startY, int endX, int endY) {
+        map.setHeuristic(Heuristic.MANHATTAN);
+        int manhattanCosts = map.findPath(startX, startY, endX, endY).size();
+        map.setHeuristic(landmarks);
+        int landmarkCosts = map.findPath(startX, startY, endX, endY).size();
+        assertEquals(search + ", " + startX + "," + startY + " to " + endX + "," + endY, manhattanCosts, landmarkCosts);
+    }
+
+    /**
+     * Checks that no estimate to the given goal drops by more than a step between walkable neighbours, which is what
+     * lets A* close each node the first time it visits it.
+     */
+    private void assertConsistent(String goal, Map<NodeImpl> map, Landmarks landmarks, int endX, int endY) {
+        for (int x = 0; x <= map.width; x++) {
+            for (int y = 0; y <= map.height; y++) {
+                if (!map.isWalkable(x, y)) continue;
+                int estimate = landmarks.estimateCosts(x, y, endX, endY);
+                if (x < map.width && map.isWalkable(x + 1, y)) {
+                    assertStep(goal, x, y, estimate, landmarks.estimateCosts(x + 1, y, endX, endY));
+                }
+                if (y < map.height && map.isWalkable(x, y + 1)) {
+                    assertStep(goal, x, y, estimate, landmarks.estimateCosts(x, y + 1, endX, endY));
+                }
+            }
+        }
+    }
+
+    private void assertStep(String goal, int x, int y, int estimate, int adjacentEstimate) {
+        assertTrue(goal + ", at " + x + "," + y + ": " + estimate + " then " + adjacentEstimate,
+                Math.abs(estimate - adjacentEstimate) <= AbstractNode.BASIC_MOVEMENT_COST);
+    }
+
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2015 Ross Binden
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seventh_root.ld33.common.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+
+public class UUIDMapTest {
+
+    private static final long SEED = 7L;
+    private static final int OPERATIONS = 200000;
+
+    @Test
+    public void matchesAHashMap() {
+        Random random = new Random(SEED);
+        List<UUID> keys = new ArrayList<>();
+        // keys that all fall into the same slot of a table of up to 1024, so they form long probe runs
+        while (keys.size() < 400) {
+            UUID uuid = new UUID(random.nextLong(), random.nextLong());
+            if ((UUIDMap.hash(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits()) & 1023) == 0) keys.add(uuid);
+        }
+        // and as many that fall anywhere, so the colliding ones have others to shift past
+        for (int i = 0; i < 400; i++) {
+            keys.add(new UUID(random.nextLong(), random.nextLong()));
+        }
+        UUIDMap<Integer> map = new UUIDMap<>();
+        HashMap<UUID, Integer> expected = new HashMap<>();
+        for (int operation = 0; operation < OPERATIONS; operation++) {
+            // favour adding while the map is small and removing while it is large, so it fills up and empties out repeatedly
+            boolean growing = (operation / 5000) % 2 == 0;
+            UUID uuid = keys.get(random.nextInt(keys.size()));
+            // a copy, so keys are matched by their bits rather than by identity
+            UUID key = new UUID(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+            String at = "operation " + operation;
+            int choice = random.nextInt(10);
+            if (choice < (growing ? 5 : 2)) {
+                assertEquals(at, expected.put(key, operation), map.put(key, operation));
+            } else if (choice < 6) {
+                assertEquals(at, expected.remove(key), map.remove(key));
+            } else {
+                assertEquals(at, expected.get(key), map.get(key));
+                assertEquals(at, expected.containsKey(key), map.containsKey(key));
+            }
+            assertEquals(at, expected.size(), map.size());
+        }
+        for (UUID uuid : keys) {
+            assertEquals(expected.get(uuid), map.get(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits()));
+        }
+        List<Integer> values = map.values();
+        List<Integer> expectedValues = new ArrayList<>(expected.values());
+        Collections.sort(values);
+        Collections.sort(expectedValues);
+        assertEquals(expectedValues, values);
+    }
+
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2015 Ross Binden
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seventh_root.ld33.common.world;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class ComponentLabelsTest {
+
+    private static final long SEED = 11L;
+    private static final int GRIDS = 200;
+    private static final int CHANGES_PER_GRID = 300;
+
+    @Test
+    public void agreesWithFloodFill() {
+        Random random = new Random(SEED);
+        for (int i = 0; i < GRIDS; i++) {
+            int width = 2 + random.nextInt(16);
+            int height = 2 + random.nextInt(16);
+            ComponentLabels labels = new ComponentLabels(width, height);
+            boolean[][] blocked = new boolean[width][height];
+            for (int x = 0; x < width; x++) {
+                blocked[x][0] = true;
+            }
+            for (int y = 0; y < height; y++) {
+                blocked[0][y] = true;
+            }
+            for (int j = 0; j < CHANGES_PER_GRID; j++) {
+                int x = 1 + random.nextInt(width - 1);
+                int y = 1 + random.nextInt(height - 1);
+                // mostly block, so that areas are split as well as joined
+                blocked[x][y] = random.nextInt(3) != 0;
+                labels.setBlocked(x, y, blocked[x][y]);
+                int[][] areas = floodFill(blocked);
+                for (int k = 0; k < 4; k++) {
+                    int fromX = 1 + random.nextInt(width - 1);
+                    int fromY = 1 + random.nextInt(height - 1);
+                    int toX = 1 + random.nextInt(width - 1);
+                    int toY = 1 + random.nextInt(height - 1);
+                    boolean connected = areas[fromX][fromY] != 0 && areas[fromX][fromY] == areas[toX][toY];
+                    assertEquals(connected, labels.isConnected(fromX, fromY, toX, toY));
+                }
+            }
+        }
+    }
+
+    private int[][] floodFill(boolean[][] blocked) {
+        int width = blocked.length;
+        int height = blocked[0].length;
+        int[][] areas = new int[width][height];
+        int area = 0;
+        Deque<int[]> open = new ArrayDeque<>();
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                if (blocked[x][y] || areas[x][y] != 0) continue;
+                areas[x][y] = ++area;
+                open.add(new int[] {x, y});
+                while (!open.isEmpty()) {
+                    int[] tile = open.poll();
+                    int[][] neighbours = {
+                            {tile[0] - 1, tile[1]}, {tile[0] + 1, tile[1]}, {tile[0], tile[1] - 1}, {tile[0], tile[1] + 1}
+                    };
+                    for (int[] neighbour : neighbours) {
+                        int neighbourX = neighbour[0];
+                        int neighbourY = neighbour[1];
+                        if (neighbourX < 0 || neighbourY < 0 || neighbourX >= width || neighbourY >= height) continue;
+                        if (blocked[neighbourX][neighbourY] || areas[neighbourX][neighbourY] != 0) continue;
+                        areas[neighbourX][neighbourY] = area;
+                        open.add(neighbour);
+                    }
+                }
+            }
+        }
+        return areas;
+    }
+
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2015 Ross Binden
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seventh_root.ld33.common.world;
+
+import com.seventh_root.ld33.common.player.Player;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CooperativePlannerTest {
+
+    private static final int SIZE = 24;
+    private static final int TICKS = 400;
+
+    private World world;
+    private UUID player;
+
+    @Before
+    public void setUp() {
+        world = new World(SIZE, SIZE);
+        world.setHierarchicalDistance(0);
+        world.setReservationWindow(8);
+        player = new UUID(0, 0);
+        Player.cachePlayer(new Player(player, "player", 0));
+    }
+
+    @Test
+    public void swappingUnitsNeverShareATile() throws SQLException {
+        Unit first = addDragon(1, 10, 12);
+        Unit second = addDragon(2, 13, 12);
+        first.moveTo(world.getTileAt(13, 12));
+        second.moveTo(world.getTileAt(10, 12));
+        tickApart(first, second);
+        assertEquals(world.getTileAt(13, 12), first.getTile());
+        assertEquals(world.getTileAt(10, 12), second.getTile());
+    }
+
+    @Test
+    public void crossingUnitsNeverShareATile() throws SQLException {
+        Unit first = addDragon(1, 6, 12);
+        Unit second = addDragon(2, 12, 6);
+        first.moveTo(world.getTileAt(18, 12));
+        second.moveTo(world.getTileAt(12, 18));
+        tickApart(first, second);
+        assertEquals(world.getTileAt(18, 12), first.getTile());
+        assertEquals(world.getTileAt(12, 18), second.getTile());
+    }
+
+    @Test
+    public void releasesTheTilesOfADeadUnit() throws SQLException {
+        Unit victim = addDragon(1, 4, 12);
+        Unit attacker = addDragon(2, 4, 4);
+        victim.moveTo(world.getTileAt(20, 12));
+        for (int tick = 0; tick < 10; tick++) {
+            world.onTick();
+        }
+        assertTrue(world.getCooperativePlanner().getReservations() > 0);
+        victim.setHealth(0);
+        attacker.setAttackTarget(victim);
+        world.onTick();
+        assertNull(victim.getStore());
+        assertEquals(0, world.getCooperativePlanner().getReservations());
+        // the tiles the dead unit had claimed are open to the next unit along
+        Unit follower = addDragon(3, 4, 12);
+        follower.moveTo(world.getTileAt(20, 12));
+        for (int tick = 0; tick < TICKS && !follower.getTile().equals(follower.getTarget()); tick++) {
+            world.onTick();
+        }
+        assertEquals(world.getTileAt(20, 12), follower.getTile());
+    }
+
+    private Unit addDragon(long id, int x, int y) {
+        Tile tile = world.getTileAt(x, y);
+        Unit unit = new Dragon(new UUID(0, id), player, tile, 0);
+        tile.setUnit(unit);
+        return unit;
+    }
+
+    /**
+     * Ticks until both units have arrived, checking after every tick that no tile is claimed by both of them for the
+     * step they are on, whether as the tile they are leaving or the one they are heading for.
+     */
+    private void tickApart(Unit first, Unit second) throws SQLException {
+        for (int tick = 0; tick < TICKS && (first.getTarget() != null || second.getTarget() != null); tick++) {
+            world.onTick();
+            assertNotEquals("tick " + tick, first.getTile(), second.getTile());
+            Map<Integer, Unit> claims = new HashMap<>();
+            claim(claims, first, tick);
+            claim(claims, second, tick);
+        }
+    }
+
+    private void claim(Map<Integer, Unit> claims, Unit unit, int tick) {
+        CooperativePlanner.Plan plan = unit.getPlan();
+        int here = unit.getTile().getX() * SIZE + unit.getTile().getY();
+        long now = world.getTicks();
+        int[] cells = plan != null ? new int[] {plan.getCell(now), plan.getNextCell(now)} : new int[] {here};
+        for (int cell : cells) {
+            Unit other = claims.put(cell, unit);
+            assertTrue("tick " + tick + ", cell " + cell, other == null || other == unit);
+        }
+    }
+
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2015 Ross Binden
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seventh_root.ld33.common.world;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.UUID;
+
+import static java.lang.Math.abs;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class FlowFieldCacheTest {
+
+    private static final int REQUESTS = 6;
+
+    @Test
+    public void servesPathsFromUnderTheUnitAsking() {
+        World world = new World(64, 64);
+        world.getPathCache().setCapacity(0);
+        for (int y = 10; y < 30; y++) {
+            placeWall(world, 20, y);
+        }
+        Tile start = world.getTileAt(10, 20);
+        Tile end = world.getTileAt(30, 20);
+        start.setUnit(new Dragon(UUID.randomUUID(), UUID.randomUUID(), start, 0));
+        for (int i = 0; i < REQUESTS; i++) {
+            // dragons coming and going next to the path shouldn't make the field stale
+            Tile passing = world.getTileAt(25, 10 + i);
+            passing.setUnit(new Dragon(UUID.randomUUID(), UUID.randomUUID(), passing, 0));
+            List<Tile> path = world.findPath(start, end);
+            passing.setUnit(null);
+            assertNotNull(path);
+            assertPathBetween(start, end, path);
+        }
+        FlowFieldCache cache = world.getFlowFieldCache();
+        assertEquals(1, cache.getFieldsBuilt());
+        assertEquals(REQUESTS - cache.getThreshold() + 1, cache.getPaths());
+    }
+
+    @Test
+    public void rebuildsFieldsWhenWallsChange() {
+        World world = new World(64, 64);
+        world.getPathCache().setCapacity(0);
+        Tile start = world.getTileAt(10, 20);
+        Tile end = world.getTileAt(30, 20);
+        FlowFieldCache cache = world.getFlowFieldCache();
+        for (int i = 0; i < cache.getThreshold(); i++) {
+            world.findPath(start, end);
+        }
+        placeWall(world, 20, 20);
+        List<Tile> path = world.findPath(start, end);
+        assertPathBetween(start, end, path);
+        assertEquals(2, cache.getFieldsBuilt());
+        for (Tile tile : path) {
+            assertTrue(tile.getX() != 20 || tile.getY() != 20);
+        }
+    }
+
+    private void placeWall(World world, int x, int y) {
+        Tile tile = world.getTileAt(x, y);
+        tile.setUnit(new Wall(UUID.randomUUID(), UUID.randomUUID(), tile, 0));
+    }
+
+    private void assertPathBetween(Tile start, Tile end, List<Tile> path) {
+        assertTrue(!path.isEmpty());
+        int x = start.getX();
+        int y = start.getY();
+        for (Tile tile : path) {
+            assertEquals(1, abs(tile.getX() - x) + abs(tile.getY() - y));
+            x = tile.getX();
+            y = tile.getY();
+        }
+        assertEquals(end, path.get(path.size() - 1));
+    }
+
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2015 Ross Binden
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seventh_root.ld33.common.world;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HierarchicalPathTest {
+
+    @Test
+    public void detoursAroundABlockedEntranceWithinTheNextChunk() {
+        World world = createWorld();
+        Tile start = world.getTileAt(10, 50);
+        Tile end = world.getTileAt(140, 50);
+        List<Tile> path = world.findPath(start, end);
+        assertTrue(path instanceof HierarchicalPath);
+        // wall off a short stretch of every chunk border the path crosses
+        for (int border = Chunk.SIZE; border < world.getWidth(); border += Chunk.SIZE) {
+            for (int y = 40; y < 60; y++) {
+                placeWall(world, border, y);
+            }
+        }
+        assertFollowable(world, start, end, path);
+    }
+
+    @Test
+    public void findsEntrancesAgainWhenABorderIsWalledOff() {
+        World world = createWorld();
+        Tile start = world.getTileAt(10, 50);
+        Tile end = world.getTileAt(140, 50);
+        List<Tile> path = world.findPath(start, end);
+        assertTrue(path instanceof HierarchicalPath);
+        for (int y = 1; y < world.getHeight(); y++) {
+            if (y != 120) placeWall(world, Chunk.SIZE * 2, y);
+        }
+        assertFollowable(world, start, end, path);
+    }
+
+    private World createWorld() {
+        World world = new World(160, 160);
+        world.setHierarchicalDistance(Chunk.SIZE);
+        world.getPathCache().setCapacity(0);
+        return world;
+    }
+
+    private void placeWall(World world, int x, int y) {
+        Tile tile = world.getTileAt(x, y);
+        tile.setUnit(new Wall(UUID.randomUUID(), UUID.randomUUID(), tile, 0));
+    }
+
+    private void assertFollowable(World world, Tile start, Tile end, List<Tile> path) {
+        Tile previous = start;
+        for (Tile tile : path) {
+            assertEquals(1, Math.abs(tile.getX() - previous.getX()) + Math.abs(tile.getY() - previous.getY()));
+            assertTrue(tile.getX() + "," + tile.getY() + " is walled", world.isWalkable(tile.getX(), tile.getY()));
+            previous = tile;
+        }
+        assertEquals(end, previous);
+    }
+
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2015 Ross Binden
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seventh_root.ld33.common.world;
+
+import com.seventh_root.ld33.common.pathfinding.Heuristic;
+import org.junit.Test;
+
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class LandmarkTablesTest {
+
+    @Test
+    public void keepsTickingWhenBuildsFail() throws SQLException {
+        World world = new World(64, 64);
+        IllegalStateException failure = new IllegalStateException("out of memory");
+        world.setLandmarks(4, new FailingExecutorService(failure));
+        Tile tile = world.getTileAt(10, 10);
+        tile.setUnit(new Wall(UUID.randomUUID(), UUID.randomUUID(), tile, 0));
+        world.onTick();
+        world.onTick();
+        LandmarkTables landmarkTables = world.getLandmarkTables();
+        assertEquals(1, landmarkTables.getFailures());
+        assertSame(failure, landmarkTables.getLastFailure());
+        assertTrue(!landmarkTables.isInUse());
+        assertSame(Heuristic.MANHATTAN, world.getHeuristic());
+        world.onTick();
+        assertEquals(1, landmarkTables.getFailures());
+    }
+
+    /**
+     * Runs tasks straight away, failing every one with the given exception.
+     */
+    private static class FailingExecutorService extends AbstractExecutorService {
+
+        private RuntimeException failure;
+
+        private FailingExecutorService(RuntimeException failure) {
+            this.failure = failure;
+        }
+
+        @Override
+        protected <T> RunnableFuture<T> newTaskFor(Callable<T> callable) {
+            return new FutureTask<>(() -> {
+                throw failure;
+            });
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+
+        @Override
+        public void shutdown() {
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return false;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return false;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return true;
+        }
+
+    }
+
+}
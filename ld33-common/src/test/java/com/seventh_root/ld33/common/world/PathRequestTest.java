@@ -0,0 +1,94 @@
+/*
+ * Copyright 2015 Ross Binden
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seventh_root.ld33.common.world;
+
+import com.seventh_root.ld33.common.pathfinding.NodeImpl;
+import com.seventh_root.ld33.common.pathfinding.ResumableSearch;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PathRequestTest {
+
+    private static final long SEED = 17L;
+    private static final int WORLDS = 2000;
+
+    @Test
+    public void followsTheSamePartialPathsAsFindingThemAgainEveryTick() {
+        Random random = new Random(SEED);
+        int handedOutAgain = 0;
+        for (int i = 0; i < WORLDS; i++) {
+            int width = 4 + random.nextInt(40);
+            int height = 4 + random.nextInt(40);
+            World world = new World(width, height);
+            double density = random.nextDouble() * 0.3;
+            for (int x = 1; x < width; x++) {
+                for (int y = 1; y < height; y++) {
+                    if (random.nextDouble() < density) {
+                        Tile tile = world.getTileAt(x, y);
+                        tile.setUnit(new Wall(new UUID(i, x * height + y), new UUID(i, 0), tile, 0));
+                    }
+                }
+            }
+            Tile tile = getOpenTile(world, random);
+            Tile end = getOpenTile(world, random);
+            PathRequest request = world.startResumableSearch(tile, end);
+            ResumableSearch<NodeImpl> search = request.getSearch();
+            TilePath previous = null;
+            for (int tick = 0; !search.isFinished(); tick++) {
+                search.step(1 + random.nextInt(8));
+                TilePath partial = request.getPartialPathFrom(tile);
+                TilePath expected = world.getTiles(search.getPathFrom(tile.getX(), tile.getY()), end.getX(), end.getY());
+                String at = "world " + i + ", tick " + tick + ", at " + tile.getX() + "," + tile.getY();
+                if (expected == null || expected.isEmpty()) {
+                    assertNull(at, partial);
+                } else {
+                    assertEquals(at, expected, partial);
+                }
+                if (partial != null && partial == previous) handedOutAgain++;
+                previous = partial;
+                // wait, step along the path as a unit would, or step aside
+                int move = random.nextInt(4);
+                if (move == 1 && partial != null) {
+                    tile = partial.get(0);
+                    if (random.nextBoolean()) partial.remove(0);
+                } else if (move == 2) {
+                    Tile aside = tile.getAdjacent(random.nextInt(3) - 1, random.nextInt(3) - 1);
+                    if (aside != null && world.isWalkable(aside.getX(), aside.getY())
+                            && search.getPathFrom(aside.getX(), aside.getY()) != null) {
+                        tile = aside;
+                    }
+                }
+            }
+        }
+        // the comparison is only worth anything if paths were carried on rather than found again
+        assertTrue(handedOutAgain > 0);
+    }
+
+    private Tile getOpenTile(World world, Random random) {
+        while (true) {
+            Tile tile = world.getTileAt(1 + random.nextInt(world.getWidth() - 1), 1 + random.nextInt(world.getHeight() - 1));
+            if (tile.getUnit() == null) return tile;
+        }
+    }
+
+}
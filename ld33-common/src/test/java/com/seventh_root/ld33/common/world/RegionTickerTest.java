@@ -0,0 +1,149 @@
+/*
+ * Copyright 2015 Ross Binden
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seventh_root.ld33.common.world;
+
+import com.seventh_root.ld33.common.player.Player;
+import org.junit.Test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RegionTickerTest {
+
+    private static final int SIZE = 64;
+    private static final int UNITS = 500;
+    private static final int PLAYERS = 4;
+    private static final int TICKS = 300;
+    private static final int MOVE_RANGE = 8;
+
+    @Test
+    public void ticksCrowdedWorldsTheSameInParallel() throws SQLException {
+        for (long seed = 1; seed <= 3; seed++) {
+            assertSameTicks(seed, 0, false);
+        }
+    }
+
+    @Test
+    public void ticksPlannedMovesAroundNewWallsTheSameInParallel() throws SQLException {
+        for (long seed = 1; seed <= 3; seed++) {
+            assertSameTicks(seed, 8, true);
+        }
+    }
+
+    private void assertSameTicks(long seed, int reservationWindow, boolean placeWalls) throws SQLException {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            List<String> serial = run(seed, null, reservationWindow, placeWalls);
+            List<String> parallel = run(seed, pool, reservationWindow, placeWalls);
+            for (int tick = 0; tick < TICKS; tick++) {
+                assertEquals("seed " + seed + ", tick " + tick, serial.get(tick), parallel.get(tick));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Ticks a crowded world, ordering some of its dragons to move or attack every few ticks, and describes every unit
+     * after each tick.
+     */
+    private List<String> run(long seed, ForkJoinPool pool, int reservationWindow, boolean placeWalls) throws SQLException {
+        Random random = new Random(seed);
+        World world = new World(SIZE, SIZE);
+        world.setHierarchicalDistance(0);
+        if (pool != null) world.setTickPool(pool, 16);
+        if (reservationWindow > 0) world.setReservationWindow(reservationWindow);
+        UUID[] players = new UUID[PLAYERS];
+        for (int i = 0; i < PLAYERS; i++) {
+            players[i] = new UUID(seed, i);
+            Player.cachePlayer(new Player(players[i], "player" + i, 0));
+        }
+        List<Unit> units = new ArrayList<>();
+        for (int i = 0; i < UNITS; i++) {
+            Tile tile = world.getTileAt(1 + random.nextInt(SIZE - 2), 1 + random.nextInt(SIZE - 2));
+            if (tile.getUnit() != null) continue;
+            UUID player = players[random.nextInt(PLAYERS)];
+            UUID uuid = new UUID(seed, PLAYERS + i);
+            Unit unit = random.nextInt(3) == 0 ? new Wall(uuid, player, tile, 0) : new Dragon(uuid, player, tile, 0);
+            tile.setUnit(unit);
+            units.add(unit);
+        }
+        List<String> ticks = new ArrayList<>();
+        for (int tick = 0; tick < TICKS; tick++) {
+            if (tick % 20 == 0) {
+                for (Unit unit : units) {
+                    if (unit instanceof Dragon && unit.getHealth() > 0 && random.nextInt(3) == 0) {
+                        Tile tile = unit.getTile();
+                        int x = clamp(tile.getX() - MOVE_RANGE + random.nextInt(MOVE_RANGE * 2 + 1));
+                        int y = clamp(tile.getY() - MOVE_RANGE + random.nextInt(MOVE_RANGE * 2 + 1));
+                        unit.moveTo(world.getTileAt(x, y));
+                    }
+                }
+            }
+            if (placeWalls && tick % 5 == 0) {
+                Tile tile = world.getTileAt(1 + random.nextInt(SIZE - 2), 1 + random.nextInt(SIZE - 2));
+                if (tile.getUnit() == null) {
+                    Wall wall = new Wall(new UUID(seed, PLAYERS + UNITS + tick), players[random.nextInt(PLAYERS)], tile, 0);
+                    tile.setUnit(wall);
+                    units.add(wall);
+                }
+            }
+            world.onTick();
+            ticks.add(describe(units));
+        }
+        // the comparison is only worth anything if units fought as well as moved
+        assertTrue(units.stream().anyMatch(unit -> unit.getHealth() < unit.getMaxHealth()));
+        return ticks;
+    }
+
+    private String describe(List<Unit> units) {
+        StringBuilder description = new StringBuilder();
+        for (Unit unit : units) {
+            description.append(unit.getUUID().getLeastSignificantBits())
+                    .append(" at ").append(unit.getTile().getX()).append(',').append(unit.getTile().getY())
+                    .append(" +").append(unit.getXOffset()).append(',').append(unit.getYOffset())
+                    .append(" health ").append(unit.getHealth());
+            if (unit.getTarget() != null) {
+                description.append(" to ").append(unit.getTarget().getX()).append(',').append(unit.getTarget().getY());
+            }
+            if (unit.getAttackTarget() != null) {
+                description.append(" attacking ").append(unit.getAttackTarget().getUUID().getLeastSignificantBits());
+            }
+            TilePath path = unit.getPath();
+            if (path != null) {
+                description.append(" via");
+                for (int i = 0; i < path.size(); i++) {
+                    description.append(' ').append(path.getX(i)).append(',').append(path.getY(i));
+                }
+            }
+            description.append('\n');
+        }
+        return description.toString();
+    }
+
+    private int clamp(int coordinate) {
+        return Math.max(1, Math.min(SIZE - 2, coordinate));
+    }
+
+}
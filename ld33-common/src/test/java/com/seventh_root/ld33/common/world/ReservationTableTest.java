@@ -0,0 +1,83 @@
+/*
+ * Copyright 2015 Ross Binden
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seventh_root.ld33.common.world;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+
+public class ReservationTableTest {
+
+    private static final int UNITS = 8;
+
+    @Test
+    public void matchesAListOfEveryReservation() {
+        for (long seed = 1; seed <= 5; seed++) {
+            Random random = new Random(seed);
+            // few enough tiles that lists share buckets, many enough that the table grows and shrinks
+            int tiles = 16 + random.nextInt(512);
+            Unit[] units = new Unit[UNITS];
+            for (int i = 0; i < UNITS; i++) {
+                units[i] = new Dragon(new UUID(seed, i), new UUID(seed, 0), null, 0);
+            }
+            ReservationTable table = new ReservationTable();
+            List<long[]> expected = new ArrayList<>();
+            long now = 0;
+            for (int operation = 0; operation < 20000; operation++) {
+                if (random.nextInt(16) == 0) now++;
+                int cell = random.nextInt(tiles) * 97;
+                int unit = random.nextInt(UNITS);
+                long from = now + random.nextInt(8);
+                long to = random.nextInt(8) == 0 ? Long.MAX_VALUE : from + 1 + random.nextInt(8);
+                switch (random.nextInt(3)) {
+                    case 0:
+                        table.reserve(cell, from, to, units[unit], now);
+                        expected.add(new long[] {cell, from, to, unit});
+                        break;
+                    case 1:
+                        int[] cells = new int[] {cell, random.nextInt(tiles) * 97};
+                        table.release(cells, cells.length, units[unit], now);
+                        for (Iterator<long[]> iterator = expected.iterator(); iterator.hasNext(); ) {
+                            long[] reservation = iterator.next();
+                            if (reservation[3] == unit && (reservation[0] == cells[0] || reservation[0] == cells[1])) {
+                                iterator.remove();
+                            }
+                        }
+                        break;
+                    default:
+                        assertEquals("seed " + seed + ", operation " + operation,
+                                isFree(expected, cell, from, to, unit, now), table.isFree(cell, from, to, units[unit]));
+                }
+            }
+        }
+    }
+
+    private boolean isFree(List<long[]> reservations, int cell, long from, long to, int unit, long now) {
+        for (long[] reservation : reservations) {
+            if (reservation[0] == cell && reservation[3] != unit && reservation[2] > now
+                    && reservation[1] < to && from < reservation[2]) return false;
+        }
+        return true;
+    }
+
+}
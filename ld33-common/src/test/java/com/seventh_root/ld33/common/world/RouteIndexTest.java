@@ -0,0 +1,101 @@
+/*
+ * Copyright 2015 Ross Binden
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seventh_root.ld33.common.world;
+
+import org.junit.Test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class RouteIndexTest {
+
+    @Test
+    public void onlyRepairsRoutesThroughChangedChunks() throws SQLException {
+        World world = new World(96, 96);
+        world.setHierarchicalDistance(0);
+        Dragon blocked = placeDragon(world, 5, 10);
+        Dragon elsewhere = placeDragon(world, 5, 80);
+        assertTrue(blocked.moveTo(world.getTileAt(60, 10)));
+        assertTrue(elsewhere.moveTo(world.getTileAt(60, 80)));
+        world.onTick();
+        placeWall(world, 30, 10);
+        world.onTick();
+        assertEquals(1, world.getPathRepairs());
+        List<Unit> units = new ArrayList<>();
+        world.getRouteIndex().getUnits(world.getChunkIndex(30, 10), units);
+        assertEquals(Collections.singletonList(blocked), units);
+        assertAvoids(blocked, 30, 10);
+        // once the replanner has warmed up, the next wall is repaired around from its search
+        for (int i = 0; i < 4; i++) {
+            world.onTick();
+        }
+        TilePath path = blocked.getRepairablePath();
+        assertNotNull(path);
+        int x = path.getX(path.size() / 2);
+        int y = path.getY(path.size() / 2);
+        placeWall(world, x, y);
+        world.onTick();
+        assertEquals(2, world.getPathRepairs());
+        assertAvoids(blocked, 30, 10);
+        assertAvoids(blocked, x, y);
+    }
+
+    @Test
+    public void forgetsRoutesOfUnitsThatLeave() throws SQLException {
+        World world = new World(64, 64);
+        world.setHierarchicalDistance(0);
+        Dragon dragon = placeDragon(world, 5, 10);
+        assertTrue(dragon.moveTo(world.getTileAt(40, 10)));
+        world.onTick();
+        placeWall(world, 30, 30);
+        world.onTick();
+        dragon.getTile().setUnit(null);
+        placeWall(world, 20, 30);
+        world.onTick();
+        List<Unit> units = new ArrayList<>();
+        world.getRouteIndex().getUnits(world.getChunkIndex(20, 10), units);
+        assertTrue(units.isEmpty());
+    }
+
+    private Dragon placeDragon(World world, int x, int y) {
+        Tile tile = world.getTileAt(x, y);
+        Dragon dragon = new Dragon(UUID.randomUUID(), UUID.randomUUID(), tile, 0);
+        tile.setUnit(dragon);
+        return dragon;
+    }
+
+    private void placeWall(World world, int x, int y) {
+        Tile tile = world.getTileAt(x, y);
+        tile.setUnit(new Wall(UUID.randomUUID(), UUID.randomUUID(), tile, 0));
+    }
+
+    private void assertAvoids(Unit unit, int x, int y) {
+        TilePath path = unit.getRepairablePath();
+        assertNotNull(path);
+        for (int i = 0; i < path.size(); i++) {
+            assertTrue(path.getX(i) != x || path.getY(i) != y);
+        }
+    }
+
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2015 Ross Binden
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seventh_root.ld33.common.world;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+
+import static java.lang.Math.abs;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SpatialIndexTest {
+
+    private static final long SEED = 8L;
+    private static final int WIDTH = 75;
+    private static final int HEIGHT = 53;
+    private static final int PLAYERS = 3;
+    private static final int ROUNDS = 3000;
+
+    @Test
+    public void findsTheSameUnitsAsScanningThemAll() {
+        Random random = new Random(SEED);
+        World world = new World(WIDTH, HEIGHT);
+        SpatialIndex index = world.getSpatialIndex();
+        UUID[] players = new UUID[PLAYERS];
+        for (int i = 0; i < PLAYERS; i++) {
+            players[i] = new UUID(SEED, i);
+        }
+        List<Unit> units = new ArrayList<>();
+        long nextUUID = PLAYERS;
+        for (int round = 0; round < ROUNDS; round++) {
+            // add, move and remove a few units, mostly across cell boundaries
+            for (int change = 0; change < 4; change++) {
+                int choice = random.nextInt(10);
+                if (choice < 3 || units.isEmpty()) {
+                    Tile tile = getEmptyTile(world, random);
+                    Unit unit = new Dragon(new UUID(SEED, nextUUID++), players[random.nextInt(PLAYERS)], tile, 0);
+                    tile.setUnit(unit);
+                    units.add(unit);
+                } else if (choice < 9) {
+                    units.get(random.nextInt(units.size())).setTile(getEmptyTile(world, random));
+                } else {
+                    Unit unit = units.remove(random.nextInt(units.size()));
+                    unit.getTile().setUnit(null);
+                }
+            }
+            int x = getCoordinate(random, WIDTH);
+            int y = getCoordinate(random, HEIGHT);
+            int range = random.nextInt(4) == 0 ? random.nextInt(3) : random.nextInt(48);
+            UUID excluded = random.nextBoolean() ? null : players[random.nextInt(PLAYERS)];
+            String query = "round " + round + ", " + range + " of " + x + "," + y;
+            assertInRange(query, index, units, x, y, range, excluded);
+            assertNearest(query, index, units, x, y, range, excluded, 1 + random.nextInt(8));
+        }
+    }
+
+    private void assertInRange(String query, SpatialIndex index, List<Unit> units, int x, int y, int range, UUID excluded) {
+        Set<Unit> expected = new HashSet<>();
+        for (Unit unit : units) {
+            if (getDistance(unit, x, y) <= range && !unit.getPlayerUUID().equals(excluded)) expected.add(unit);
+        }
+        Unit[] results = new Unit[units.size() + 1];
+        int found = index.findInRange(x, y, range, excluded, results);
+        assertEquals(query, expected, new HashSet<>(Arrays.asList(results).subList(0, found)));
+        assertEquals(query, expected.size(), found);
+        // a full results array stops the search early with only units that are in range
+        Unit[] fewer = new Unit[2];
+        int foundFewer = index.findInRange(x, y, range, excluded, fewer);
+        assertEquals(query, Math.min(expected.size(), fewer.length), foundFewer);
+        for (int i = 0; i < foundFewer; i++) {
+            assertTrue(query, expected.contains(fewer[i]));
+        }
+    }
+
+    private void assertNearest(String query, SpatialIndex index, List<Unit> units, int x, int y, int range, UUID excluded, int count) {
+        List<Integer> expected = new ArrayList<>();
+        for (Unit unit : units) {
+            int distance = getDistance(unit, x, y);
+            if (distance <= range && !unit.getPlayerUUID().equals(excluded)) expected.add(distance);
+        }
+        expected.sort(null);
+        expected = expected.subList(0, Math.min(count, expected.size()));
+        Unit[] results = new Unit[count];
+        int found = index.findNearest(x, y, range, excluded, results);
+        // units as far away as one another may come in either order, so only their distances are compared
+        List<Integer> distances = new ArrayList<>();
+        Set<Unit> distinct = new HashSet<>();
+        for (int i = 0; i < found; i++) {
+            assertTrue(query, units.contains(results[i]));
+            assertTrue(query, !results[i].getPlayerUUID().equals(excluded));
+            distinct.add(results[i]);
+            distances.add(getDistance(results[i], x, y));
+        }
+        assertEquals(query, found, distinct.size());
+        assertEquals(query, expected, distances);
+    }
+
+    private int getDistance(Unit unit, int x, int y) {
+        return abs(unit.getTile().getX() - x) + abs(unit.getTile().getY() - y);
+    }
+
+    /**
+     * A coordinate on the world, half the time on one side or the other of the edge of a cell of the index.
+     */
+    private int getCoordinate(Random random, int size) {
+        if (random.nextBoolean()) return 1 + random.nextInt(size - 1);
+        int edge = SpatialIndex.CELL_SIZE * (1 + random.nextInt((size - 1) / SpatialIndex.CELL_SIZE));
+        return Math.max(1, Math.min(size - 1, edge - 1 + random.nextInt(2)));
+    }
+
+    private Tile getEmptyTile(World world, Random random) {
+        while (true) {
+            Tile tile = world.getTileAt(getCoordinate(random, WIDTH), getCoordinate(random, HEIGHT));
+            if (tile.getUnit() == null) return tile;
+        }
+    }
+
+}
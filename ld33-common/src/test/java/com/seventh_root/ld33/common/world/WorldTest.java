@@ -0,0 +1,51 @@
+/*
+ * Copyright 2015 Ross Binden
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seventh_root.ld33.common.world;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class WorldTest {
+
+    @Test
+    public void handsOutTheSameTileForAPosition() {
+        World world = new World(100, 70);
+        for (int x = 2; x < 100; x += 7) {
+            for (int y = 1; y < 70; y += 5) {
+                Tile tile = world.getTileAt(x, y);
+                assertEquals(x, tile.getX());
+                assertEquals(y, tile.getY());
+                assertSame(tile, world.getTileAt(x, y));
+                assertSame(tile, world.getTileAt(x - 1, y).getAdjacent(1, 0));
+            }
+        }
+    }
+
+    @Test
+    public void hasNoTilesOffTheMapOrAlongItsFirstRowAndColumn() {
+        World world = new World(100, 70);
+        assertNull(world.getTileAt(0, 5));
+        assertNull(world.getTileAt(5, 0));
+        assertNull(world.getTileAt(100, 5));
+        assertNull(world.getTileAt(5, 70));
+        assertNull(world.getTileAt(-1, -1));
+    }
+
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2015 Ross Binden
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seventh_root.ld33.loadtest;
+
+import com.seventh_root.ld33.common.network.packet.clientbound.*;
+import com.seventh_root.ld33.common.network.packet.serverbound.PlayerLoginServerBoundPacket;
+import com.seventh_root.ld33.common.network.packet.serverbound.PublicKeyServerBoundPacket;
+import com.seventh_root.ld33.common.network.packet.serverbound.UnitMoveServerBoundPacket;
+import com.seventh_root.ld33.common.network.packet.serverbound.UnitPurchaseServerBoundPacket;
+import com.seventh_root.ld33.common.world.Dragon;
+import com.seventh_root.ld33.common.world.Flag;
+import com.seventh_root.ld33.common.world.Unit;
+import com.seventh_root.ld33.common.world.Wall;
+import io.netty.channel.ChannelHandlerAdapter;
+import io.netty.channel.ChannelHandlerContext;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ScheduledFuture;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.logging.Level.WARNING;
+
+/**
+ * A headless player. It goes through the same key exchange and sign up as the Swing client, then
+ * keeps ordering its dragon around and buying walls and flags next to where it spawned.
+ * <p>
+ * Each bot belongs to a single channel, so all of its state is only ever touched from that
+ * channel's event loop. Latencies are measured from the write of a request to the read of the
+ * matching response, which the server always sends back in request order on the same channel.
+ */
+public class Bot extends ChannelHandlerAdapter {
+
+    private static final int WANDER_RADIUS = 8;
+
+    private final LD33LoadTest loadTest;
+    private final String name;
+    private final String password;
+    private final Random random;
+
+    private int worldWidth;
+    private int worldHeight;
+    private UUID playerUUID;
+    private Unit dragon;
+    private int homeX;
+    private int homeY;
+
+    private long loginSentTime;
+    private final Queue<Long> moveSentTimes;
+    private final Queue<Long> purchaseSentTimes;
+    private ScheduledFuture<?> moveTask;
+    private ScheduledFuture<?> purchaseTask;
+
+    public Bot(LD33LoadTest loadTest, String name, String password, long seed) {
+        this.loadTest = loadTest;
+        this.name = name;
+        this.password = password;
+        this.random = new Random(seed);
+        moveSentTimes = new ArrayDeque<>();
+        purchaseSentTimes = new ArrayDeque<>();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        if (moveTask != null) moveTask.cancel(false);
+        if (purchaseTask != null) purchaseTask.cancel(false);
+        loadTest.onBotDisconnected(this);
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        long now = System.nanoTime();
+        if (msg instanceof PublicKeyClientBoundPacket) {
+            PublicKeyClientBoundPacket packet = (PublicKeyClientBoundPacket) msg;
+            ctx.write(new PublicKeyServerBoundPacket(loadTest.getEncryptionManager().getKeyPair().getPublic().getEncoded()));
+            byte[] encryptedPassword = loadTest.getEncryptionManager().encrypt(password, packet.getEncodedPublicKey());
+            loginSentTime = System.nanoTime();
+            ctx.writeAndFlush(new PlayerLoginServerBoundPacket(name, encryptedPassword, true));
+        } else if (msg instanceof PlayerLoginResponseClientBoundPacket) {
+            PlayerLoginResponseClientBoundPacket packet = (PlayerLoginResponseClientBoundPacket) msg;
+            if (packet.isSuccess()) {
+                loadTest.getLoginLatency().record(now - loginSentTime);
+            } else {
+                loadTest.getLoginLatency().recordFailure();
+                loadTest.getLogger().log(WARNING, name + " failed to log in: " + packet.getMessage());
+                ctx.close();
+            }
+        } else if (msg instanceof PlayerJoinClientBoundPacket) {
+            PlayerJoinClientBoundPacket packet = (PlayerJoinClientBoundPacket) msg;
+            if (packet.getPlayerName().equals(name)) playerUUID = packet.getPlayerUUID();
+        } else if (msg instanceof WorldInformationClientBoundPacket) {
+            WorldInformationClientBoundPacket packet = (WorldInformationClientBoundPacket) msg;
+            worldWidth = packet.getWidth();
+            worldHeight = packet.getHeight();
+        } else if (msg instanceof UnitSpawnClientBoundPacket) {
+            UnitSpawnClientBoundPacket packet = (UnitSpawnClientBoundPacket) msg;
+            Unit unit = packet.getUnit(loadTest.getWorld(worldWidth, worldHeight));
+            if (unit != null && playerUUID != null && unit.getPlayerUUID().equals(playerUUID)) {
+                if (unit instanceof Dragon) {
+                    if (dragon == null) {
+                        dragon = unit;
+                        homeX = unit.getTile().getX();
+                        homeY = unit.getTile().getY();
+                        startPlaying(ctx);
+                    }
+                } else if (unit instanceof Wall || unit instanceof Flag) {
+                    Long sentTime = purchaseSentTimes.poll();
+                    if (sentTime != null) loadTest.getSpawnLatency().record(now - sentTime);
+                }
+            }
+        } else if (msg instanceof UnitMoveClientBoundPacket) {
+            UnitMoveClientBoundPacket packet = (UnitMoveClientBoundPacket) msg;
+            if (dragon != null && packet.getUnitUUID().equals(dragon.getUUID())) {
+                Long sentTime = moveSentTimes.poll();
+                if (sentTime != null) loadTest.getMoveLatency().record(now - sentTime);
+            }
+        } else if (msg instanceof ChatMessageClientBoundPacket) {
+            ChatMessageClientBoundPacket packet = (ChatMessageClientBoundPacket) msg;
+            // The only replies to a purchase that doesn't go through are chat messages
+            if (packet.getMessage().equals("You can't build there.") || packet.getMessage().equals("You do not have the resources to build that.")) {
+                if (purchaseSentTimes.poll() != null) loadTest.getSpawnLatency().recordFailure();
+            }
+        }
+    }
+
+    private void startPlaying(ChannelHandlerContext ctx) {
+        long moveInterval = loadTest.getMoveInterval();
+        long purchaseInterval = loadTest.getPurchaseInterval();
+        // Stagger the first orders so that bots which joined together don't stay in lock step
+        moveTask = ctx.executor().scheduleAtFixedRate(() -> move(ctx), moveInterval + random.nextInt((int) moveInterval), moveInterval, MILLISECONDS);
+        purchaseTask = ctx.executor().scheduleAtFixedRate(() -> purchase(ctx), purchaseInterval + random.nextInt((int) purchaseInterval), purchaseInterval, MILLISECONDS);
+    }
+
+    private void move(ChannelHandlerContext ctx) {
+        moveSentTimes.add(System.nanoTime());
+        ctx.writeAndFlush(new UnitMoveServerBoundPacket(dragon, randomX(), randomY()));
+    }
+
+    private void purchase(ChannelHandlerContext ctx) {
+        purchaseSentTimes.add(System.nanoTime());
+        ctx.writeAndFlush(new UnitPurchaseServerBoundPacket(randomX(), randomY(), random.nextBoolean() ? "wall" : "flag"));
+    }
+
+    private int randomX() {
+        return clamp(homeX + random.nextInt(WANDER_RADIUS * 2 + 1) - WANDER_RADIUS, worldWidth);
+    }
+
+    private int randomY() {
+        return clamp(homeY + random.nextInt(WANDER_RADIUS * 2 + 1) - WANDER_RADIUS, worldHeight);
+    }
+
+    private int clamp(int coordinate, int size) {
+        return Math.max(1, Math.min(coordinate, size - 1));
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+        loadTest.getLogger().log(WARNING, name + " hit a network exception", cause);
+        ctx.close();
+    }
+
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright 2015 Ross Binden
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seventh_root.ld33.loadtest;
+
+import com.seventh_root.ld33.common.encrypt.EncryptionManager;
+import com.seventh_root.ld33.common.network.ClientBoundPacketDecoder;
+import com.seventh_root.ld33.common.network.Protocol;
+import com.seventh_root.ld33.common.world.World;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static java.util.logging.Level.INFO;
+import static java.util.logging.Level.WARNING;
+
+/**
+ * Connects a swarm of headless {@link Bot}s to a server and reports how long it takes to answer them.
+ * <p>
+ * Usage: {@code java -jar ld33-loadtest.jar [host] [port] [bots] [threads] [duration] [ramp-up] [move-interval] [purchase-interval] [protocol]}
+ * where the duration and ramp-up are in seconds, the intervals are in milliseconds and the protocol is "binary" or
+ * "serialization", which must match the server's.
+ * The bots are spread across the given number of event loops and connect evenly over the ramp-up period.
+ * Every bot signs up as a new player, so the server's database grows with every run.
+ */
+public class LD33LoadTest {
+
+    private final Logger logger;
+    private final String host;
+    private final int port;
+    private final int botCount;
+    private final int threads;
+    private final int duration;
+    private final int rampUp;
+    private final long moveInterval;
+    private final long purchaseInterval;
+    private final Protocol protocol;
+
+    private final EncryptionManager encryptionManager;
+    private World world;
+    private final LatencyHistogram loginLatency;
+    private final LatencyHistogram moveLatency;
+    private final LatencyHistogram spawnLatency;
+    private final AtomicInteger connectedBots;
+
+    public static void main(String[] args) throws Exception {
+        new LD33LoadTest(
+                args.length > 0 ? args[0] : "localhost",
+                args.length > 1 ? Integer.parseInt(args[1]) : 37896,
+                args.length > 2 ? Integer.parseInt(args[2]) : 1000,
+                args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors(),
+                args.length > 4 ? Integer.parseInt(args[4]) : 120,
+                args.length > 5 ? Integer.parseInt(args[5]) : 30,
+                args.length > 6 ? Long.parseLong(args[6]) : 1000L,
+                args.length > 7 ? Long.parseLong(args[7]) : 10000L,
+                Protocol.getByName(args.length > 8 ? args[8] : "binary")
+        ).run();
+    }
+
+    public LD33LoadTest(String host, int port, int botCount, int threads, int duration, int rampUp, long moveInterval, long purchaseInterval, Protocol protocol) throws NoSuchAlgorithmException {
+        logger = Logger.getLogger(getClass().getCanonicalName());
+        this.host = host;
+        this.port = port;
+        this.botCount = botCount;
+        this.threads = threads;
+        this.duration = duration;
+        this.rampUp = rampUp;
+        this.moveInterval = moveInterval;
+        this.purchaseInterval = purchaseInterval;
+        this.protocol = protocol;
+        // Only the server's key is used to encrypt passwords, so every bot can share one key pair
+        encryptionManager = new EncryptionManager();
+        encryptionManager.getKeyPair();
+        loginLatency = new LatencyHistogram("login");
+        moveLatency = new LatencyHistogram("move echo");
+        spawnLatency = new LatencyHistogram("spawn broadcast");
+        connectedBots = new AtomicInteger();
+    }
+
+    public Logger getLogger() {
+        return logger;
+    }
+
+    public EncryptionManager getEncryptionManager() {
+        return encryptionManager;
+    }
+
+    /**
+     * Returns the world that bots build the units they are sent in.
+     * Those units are only ever read, never added to it, so every bot can share the one world.
+     *
+     * @param width the width of the server's world
+     * @param height the height of the server's world
+     * @return the world
+     */
+    public synchronized World getWorld(int width, int height) {
+        if (world == null || world.getWidth() != width || world.getHeight() != height) world = new World(width, height);
+        return world;
+    }
+
+    public LatencyHistogram getLoginLatency() {
+        return loginLatency;
+    }
+
+    public LatencyHistogram getMoveLatency() {
+        return moveLatency;
+    }
+
+    public LatencyHistogram getSpawnLatency() {
+        return spawnLatency;
+    }
+
+    public long getMoveInterval() {
+        return moveInterval;
+    }
+
+    public long getPurchaseInterval() {
+        return purchaseInterval;
+    }
+
+    public void run() throws InterruptedException {
+        EventLoopGroup group = new NioEventLoopGroup(threads);
+        try {
+            Bootstrap bootstrap = new Bootstrap();
+            bootstrap.group(group)
+                    .channel(NioSocketChannel.class)
+                    .option(ChannelOption.TCP_NODELAY, true);
+            group.scheduleAtFixedRate(this::report, 10, 10, SECONDS);
+            String runId = Long.toString(System.currentTimeMillis(), 36);
+            long connectDelay = botCount > 0 ? MILLISECONDS.convert(rampUp, SECONDS) / botCount : 0;
+            for (int i = 0; i < botCount; i++) {
+                Bot bot = new Bot(this, "bot-" + runId + "-" + i, "bot-" + runId + "-" + i, i);
+                ChannelFuture future = bootstrap.clone().handler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    public void initChannel(SocketChannel channel) throws Exception {
+                        protocol.addCodec(channel.pipeline(), new ClientBoundPacketDecoder());
+                        channel.pipeline().addLast(bot);
+                    }
+                }).connect(host, port);
+                future.addListener(connectFuture -> {
+                    if (connectFuture.isSuccess()) {
+                        connectedBots.incrementAndGet();
+                    } else {
+                        getLogger().log(WARNING, bot.getName() + " failed to connect", connectFuture.cause());
+                    }
+                });
+                if (connectDelay > 0) Thread.sleep(connectDelay);
+            }
+            Thread.sleep(MILLISECONDS.convert(Math.max(duration - rampUp, 0), SECONDS));
+            report();
+        } finally {
+            group.shutdownGracefully();
+        }
+    }
+
+    public void onBotDisconnected(Bot bot) {
+        connectedBots.decrementAndGet();
+    }
+
+    private void report() {
+        getLogger().log(INFO, connectedBots.get() + " bots connected");
+        getLogger().log(INFO, loginLatency.toString());
+        getLogger().log(INFO, moveLatency.toString());
+        getLogger().log(INFO, spawnLatency.toString());
+    }
+
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2015 Ross Binden
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seventh_root.ld33.loadtest;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static java.lang.Long.numberOfLeadingZeros;
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * A fixed-size histogram of latencies that any number of event loops can record into at once.
+ * Buckets are powers of two in microseconds, so recording never allocates or locks.
+ */
+public class LatencyHistogram {
+
+    private static final int BUCKETS = 40;
+
+    private final String name;
+    private final AtomicLongArray counts;
+    private final AtomicLong count;
+    private final AtomicLong total;
+    private final AtomicLong max;
+    private final AtomicLong failures;
+
+    public LatencyHistogram(String name) {
+        this.name = name;
+        counts = new AtomicLongArray(BUCKETS);
+        count = new AtomicLong();
+        total = new AtomicLong();
+        max = new AtomicLong();
+        failures = new AtomicLong();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void record(long nanos) {
+        long micros = NANOSECONDS.toMicros(nanos);
+        int bucket = micros <= 0 ? 0 : Math.min(64 - numberOfLeadingZeros(micros), BUCKETS - 1);
+        counts.incrementAndGet(bucket);
+        count.incrementAndGet();
+        total.addAndGet(nanos);
+        max.accumulateAndGet(nanos, Math::max);
+    }
+
+    public void recordFailure() {
+        failures.incrementAndGet();
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getFailures() {
+        return failures.get();
+    }
+
+    public long getMeanNanos() {
+        long count = getCount();
+        return count == 0 ? 0 : total.get() / count;
+    }
+
+    public long getMaxNanos() {
+        return max.get();
+    }
+
+    /**
+     * Returns the upper bound of the bucket containing the given percentile.
+     *
+     * @param percentile the percentile, from 0 to 100
+     * @return an upper bound for the percentile, in nanoseconds
+     */
+    public long getPercentileNanos(double percentile) {
+        long count = getCount();
+        if (count == 0) return 0;
+        long threshold = (long) Math.ceil(count * percentile / 100D);
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += counts.get(bucket);
+            if (seen >= threshold) {
+                return Math.min(MICROSECONDS.toNanos(1L << bucket), getMaxNanos());
+            }
+        }
+        return getMaxNanos();
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "%s: %d samples, %d failed, mean %.2fms, p50 %.2fms, p90 %.2fms, p99 %.2fms, p99.9 %.2fms, max %.2fms",
+                getName(),
+                getCount(),
+                getFailures(),
+                getMeanNanos() / 1e6,
+                getPercentileNanos(50) / 1e6,
+                getPercentileNanos(90) / 1e6,
+                getPercentileNanos(99) / 1e6,
+                getPercentileNanos(99.9) / 1e6,
+                getMaxNanos() / 1e6
+        );
+    }
+
+}
@@ -18,10 +18,17 @@ package com.seventh_root.ld33.server;
 
 import com.seventh_root.ld33.common.economy.EconomyManager;
 import com.seventh_root.ld33.common.encrypt.EncryptionManager;
+import com.seventh_root.ld33.common.network.Protocol;
+import com.seventh_root.ld33.common.network.ServerBoundPacketDecoder;
+import com.seventh_root.ld33.common.pathfinding.SearchAlgorithm;
 import com.seventh_root.ld33.common.world.Unit;
 import com.seventh_root.ld33.common.world.World;
 import com.seventh_root.ld33.server.config.Config;
+import com.seventh_root.ld33.server.database.SerialDatabaseWriter;
 import com.seventh_root.ld33.server.network.LD33ServerHandler;
+import com.seventh_root.ld33.server.tick.CommandQueue;
+import com.seventh_root.ld33.server.tick.PathfindingReporter;
+import com.seventh_root.ld33.server.tick.TickScheduler;
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelInitializer;
@@ -29,9 +36,6 @@ import io.netty.channel.EventLoopGroup;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
-import io.netty.handler.codec.serialization.ClassResolvers;
-import io.netty.handler.codec.serialization.ObjectDecoder;
-import io.netty.handler.codec.serialization.ObjectEncoder;
 
 import java.io.File;
 import java.io.IOException;
@@ -41,10 +45,12 @@ import java.sql.SQLException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 import java.util.logging.Logger;
 
-import static java.lang.System.currentTimeMillis;
 import static java.util.logging.Level.SEVERE;
+import static java.util.logging.Level.WARNING;
 
 public class LD33Server {
 
@@ -55,8 +61,12 @@ public class LD33Server {
     private EncryptionManager encryptionManager;
     private EconomyManager economyManager;
     private World world;
-    private boolean running;
-    private static final long DELAY = 25L;
+    private SerialDatabaseWriter databaseWriter;
+    private CommandQueue commandQueue;
+    private PathfindingReporter pathfindingReporter;
+    private TickScheduler tickScheduler;
+    private Protocol protocol;
+    private volatile boolean running;
 
     public static void main(String[] args) {
         new Thread(() -> new LD33Server().start()).start();
@@ -77,6 +87,17 @@ public class LD33Server {
         encryptionManager = new EncryptionManager();
         economyManager = new EconomyManager();
         world = new World((int) ((double) getConfig().getMap("world").get("width")), (int) ((double) getConfig().getMap("world").get("height")));
+        int tickThreads = getTickSetting("threads", Runtime.getRuntime().availableProcessors());
+        if (tickThreads > 1) {
+            world.setTickPool(new ForkJoinPool(tickThreads), getTickSetting("region-size", 32));
+        }
+        databaseWriter = new SerialDatabaseWriter(this);
+        world.setDatabaseWriter(databaseWriter);
+        loadPathfindingSettings();
+        loadProtocol();
+        commandQueue = new CommandQueue(this);
+        pathfindingReporter = new PathfindingReporter(this);
+        tickScheduler = new TickScheduler(this, this::doTick, getTickSetting("rate", 40), getTickSetting("max-catch-up", 5), getTickSetting("report-interval", 60));
         loadUnits();
     }
 
@@ -104,6 +125,22 @@ public class LD33Server {
         return world;
     }
 
+    public SerialDatabaseWriter getDatabaseWriter() {
+        return databaseWriter;
+    }
+
+    public CommandQueue getCommandQueue() {
+        return commandQueue;
+    }
+
+    public PathfindingReporter getPathfindingReporter() {
+        return pathfindingReporter;
+    }
+
+    public TickScheduler getTickScheduler() {
+        return tickScheduler;
+    }
+
     public boolean isRunning() {
         return running;
     }
@@ -123,42 +160,25 @@ public class LD33Server {
                     .childHandler(new ChannelInitializer<SocketChannel>() {
                         @Override
                         public void initChannel(SocketChannel channel) throws Exception {
-                            channel.pipeline().addLast(
-                                    new ObjectEncoder(),
-                                    new ObjectDecoder(ClassResolvers.cacheDisabled(null)),
-                                    //new LD33ClientBoundPacketEncoder(),
-                                    //new LD33ServerBoundPacketDecoder(LD33Server.this),
-                                    handler
-                            );
+                            protocol.addCodec(channel.pipeline(), new ServerBoundPacketDecoder());
+                            channel.pipeline().addLast(handler);
                         }
                     });
             Channel channel = bootstrap.bind(getConfig().getInt("port", 37896)).sync().channel();
             setRunning(true);
-            long beforeTime, timeDiff, sleep;
-            beforeTime = currentTimeMillis();
-            while (isRunning()) {
-                doTick();
-                timeDiff = currentTimeMillis() - beforeTime;
-                sleep = DELAY - timeDiff;
-                if (sleep > 0) {
-                    try {
-                        Thread.sleep(sleep);
-                    } catch (InterruptedException exception) {
-                        getLogger().log(SEVERE, "Thread interrupted", exception);
-                    }
-                }
-                beforeTime = currentTimeMillis();
-            }
+            tickScheduler.run();
             channel.closeFuture().sync();
         } catch (InterruptedException exception) {
             getLogger().log(SEVERE, "Event loop group interrupted", exception);
         } finally {
             bossGroup.shutdownGracefully();
             workerGroup.shutdownGracefully();
+            databaseWriter.shutdown();
         }
     }
 
     private void doTick() {
+        commandQueue.drain();
         try {
             world.onTick();
         } catch (SQLException exception) {
@@ -184,6 +204,7 @@ public class LD33Server {
         if (!configFile.exists()) {
             Config defaultConfig = new Config();
             defaultConfig.set("port", 37896);
+            defaultConfig.set("protocol", "binary");
             Map<String, Object> databaseSettings = new HashMap<>();
             databaseSettings.put("url", "localhost");
             databaseSettings.put("database", "ld33");
@@ -194,10 +215,96 @@ public class LD33Server {
             worldSettings.put("width", 2000);
             worldSettings.put("height", 2000);
             defaultConfig.set("world", worldSettings);
+            Map<String, Object> tickSettings = new HashMap<>();
+            tickSettings.put("rate", 40);
+            tickSettings.put("max-catch-up", 5);
+            tickSettings.put("report-interval", 60);
+            tickSettings.put("threads", Runtime.getRuntime().availableProcessors());
+            tickSettings.put("region-size", 32);
+            defaultConfig.set("tick", tickSettings);
+            Map<String, Object> pathfindingSettings = new HashMap<>();
+            pathfindingSettings.put("algorithm", "a-star");
+            pathfindingSettings.put("hierarchical-distance", 64);
+            pathfindingSettings.put("cache-size", 1024);
+            pathfindingSettings.put("flow-field-threshold", 3);
+            pathfindingSettings.put("threads", 2);
+            pathfindingSettings.put("landmarks", 8);
+            pathfindingSettings.put("reservation-window", 8);
+            defaultConfig.set("pathfinding", pathfindingSettings);
             defaultConfig.save(configFile);
         }
     }
 
+    private int getTickSetting(String key, int defaultValue) {
+        Map<String, Object> tickSettings = getConfig().getMap("tick");
+        if (tickSettings != null && tickSettings.containsKey(key)) {
+            return (int) ((double) tickSettings.get(key));
+        }
+        return defaultValue;
+    }
+
+    private void loadPathfindingSettings() {
+        Map<String, Object> pathfindingSettings = getConfig().getMap("pathfinding");
+        if (pathfindingSettings == null) return;
+        if (pathfindingSettings.containsKey("hierarchical-distance")) {
+            world.setHierarchicalDistance((int) ((double) pathfindingSettings.get("hierarchical-distance")));
+        }
+        int pathfindingThreads = 0;
+        if (pathfindingSettings.containsKey("threads")) {
+            pathfindingThreads = (int) ((double) pathfindingSettings.get("threads"));
+            if (pathfindingThreads > 0) {
+                world.setPathSearchPool(Executors.newFixedThreadPool(pathfindingThreads, task -> {
+                    Thread thread = new Thread(task, "Pathfinding");
+                    thread.setDaemon(true);
+                    return thread;
+                }));
+            }
+        }
+        if (pathfindingSettings.containsKey("expansions-per-tick") && pathfindingThreads > 0) {
+            // Searches that aren't done straight away all go to the pool, so a budget would never be used
+            getLogger().log(WARNING, "Ignoring pathfinding expansions-per-tick, as paths are searched for on " + pathfindingThreads + " pathfinding threads. Set threads to 0 to search within the budget instead");
+        } else if (pathfindingSettings.containsKey("expansions-per-tick")) {
+            world.setPathSearchBudget(
+                    (int) ((double) pathfindingSettings.get("expansions-per-tick")),
+                    (int) ((double) pathfindingSettings.getOrDefault("expansions-per-search", pathfindingSettings.get("expansions-per-tick")))
+            );
+        }
+        if (pathfindingSettings.containsKey("landmarks")) {
+            world.setLandmarks((int) ((double) pathfindingSettings.get("landmarks")), Executors.newSingleThreadExecutor(task -> {
+                Thread thread = new Thread(task, "Landmarks");
+                thread.setDaemon(true);
+                return thread;
+            }));
+        }
+        if (pathfindingSettings.containsKey("reservation-window")) {
+            world.setReservationWindow((int) ((double) pathfindingSettings.get("reservation-window")));
+        }
+        if (pathfindingSettings.containsKey("flow-field-threshold")) {
+            world.getFlowFieldCache().setThreshold((int) ((double) pathfindingSettings.get("flow-field-threshold")));
+        }
+        if (pathfindingSettings.containsKey("cache-size")) {
+            world.getPathCache().setCapacity((int) ((double) pathfindingSettings.get("cache-size")));
+        }
+        if (pathfindingSettings.containsKey("algorithm")) {
+            String algorithm = (String) pathfindingSettings.get("algorithm");
+            try {
+                world.setSearchAlgorithm(SearchAlgorithm.valueOf(algorithm.toUpperCase().replace('-', '_')));
+            } catch (IllegalArgumentException exception) {
+                getLogger().log(WARNING, "Unknown pathfinding algorithm \"" + algorithm + "\", expected \"a-star\" or \"jump-point-search\"");
+            }
+        }
+    }
+
+    private void loadProtocol() {
+        protocol = Protocol.BINARY;
+        String protocolName = getConfig().getString("protocol", "binary");
+        try {
+            protocol = Protocol.getByName(protocolName);
+        } catch (IllegalArgumentException exception) {
+            getLogger().log(WARNING, "Unknown protocol \"" + protocolName + "\", expected \"binary\" or \"serialization\"");
+        }
+    }
+
     public void saveDefaultConfig() throws IOException {
         saveDefaultConfig(new File("./config.json"));
     }
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2015 Ross Binden
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seventh_root.ld33.server.database;
+
+import com.seventh_root.ld33.common.database.DatabaseWrite;
+import com.seventh_root.ld33.common.database.DatabaseWriter;
+import com.seventh_root.ld33.server.LD33Server;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.logging.Level.SEVERE;
+import static java.util.logging.Level.WARNING;
+
+/**
+ * Makes writes to the database one at a time on a single database thread, in the order they
+ * were submitted.
+ * <p>
+ * Writes are built from snapshots taken on the tick thread, so the database thread never
+ * reads game state, and an insert always reaches the database before the updates and delete
+ * that follow it.
+ */
+public class SerialDatabaseWriter implements DatabaseWriter {
+
+    private LD33Server server;
+    private ExecutorService executor;
+
+    public SerialDatabaseWriter(LD33Server server) {
+        this.server = server;
+        this.executor = Executors.newSingleThreadExecutor(task -> new Thread(task, "Database"));
+    }
+
+    @Override
+    public void submit(DatabaseWrite write) {
+        executor.execute(() -> {
+            try {
+                write.execute();
+            } catch (Exception exception) {
+                server.getLogger().log(SEVERE, "Failed to write to the database", exception);
+            }
+        });
+    }
+
+    /**
+     * Stops taking writes and waits for the ones already submitted to be made.
+     */
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                server.getLogger().log(WARNING, "Timed out waiting for database writes to finish");
+            }
+        } catch (InterruptedException exception) {
+            server.getLogger().log(SEVERE, "Interrupted waiting for database writes to finish", exception);
+        }
+    }
+
+}
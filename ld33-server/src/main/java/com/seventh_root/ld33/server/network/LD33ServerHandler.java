@@ -19,6 +19,7 @@ package com.seventh_root.ld33.server.network;
 import com.seventh_root.ld33.common.network.packet.clientbound.*;
 import com.seventh_root.ld33.common.network.packet.serverbound.*;
 import com.seventh_root.ld33.common.player.Player;
+import com.seventh_root.ld33.common.player.PlayerSnapshot;
 import com.seventh_root.ld33.common.world.*;
 import com.seventh_root.ld33.server.LD33Server;
 import io.netty.channel.ChannelHandler.Sharable;
@@ -31,6 +32,7 @@ import io.netty.util.concurrent.GlobalEventExecutor;
 
 import java.sql.SQLException;
 import java.util.Random;
+import java.util.UUID;
 import java.util.stream.Collectors;
 
 import static java.util.logging.Level.SEVERE;
@@ -61,6 +63,12 @@ public class LD33ServerHandler extends ChannelHandlerAdapter {
 
     }
 
+    /**
+     * Handles a packet on the channel's network thread. Decryption, authentication and database queries are done
+     * here, and anything that reads or changes the world, the unit cache or a player's resources is submitted to the
+     * command queue to be done on the tick thread. Writes to the database are snapshotted where the change is made
+     * and handed to the server's database writer, which makes them in order on the database thread.
+     */
     @Override
     public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
         if (msg instanceof PublicKeyServerBoundPacket) {
@@ -72,34 +80,13 @@ public class LD33ServerHandler extends ChannelHandlerAdapter {
                 if (Player.getByName(server.getDatabaseConnection(), packet.getPlayerName()) == null) {
                     String playerName = packet.getPlayerName();
                     String password = server.getEncryptionManager().decrypt(packet.getEncryptedPassword());
-                    Player player = new Player(server.getDatabaseConnection(), playerName, password);
+                    Player player = new Player(server.getDatabaseConnection(), UUID.randomUUID(), playerName, password);
+                    Player.cachePlayer(player);
+                    server.getDatabaseWriter().submit(new PlayerSnapshot(player)::insert);
                     ctx.channel().attr(PLAYER).set(player);
                     ctx.writeAndFlush(new PlayerLoginResponseClientBoundPacket("Sign up successful. Entering the game world...", true));
                     channels.writeAndFlush(new PlayerJoinClientBoundPacket(player.getUUID(), player.getName(), player.getResources()));
-                    Random random = new Random();
-                    int startX = random.nextInt(server.getWorld().getWidth() - 1) + 1;
-                    int startY = random.nextInt(server.getWorld().getHeight() - 1) + 1;
-                    Tile startTile = server.getWorld().getTileAt(startX, startY);
-                    while (startTile.getUnit() != null) {
-                        startX = random.nextInt(server.getWorld().getWidth() - 1) + 1;
-                        startY = random.nextInt(server.getWorld().getHeight() - 1) + 1;
-                        startTile = server.getWorld().getTileAt(startX, startY);
-                    }
-                    Dragon dragon = new Dragon(server.getDatabaseConnection(), player, startTile, System.currentTimeMillis());
-                    startTile.setUnit(dragon);
-                    Flag flag = new Flag(server.getDatabaseConnection(), player, startTile.getAdjacent(0, -1), System.currentTimeMillis());
-                    startTile.getAdjacent(0, -1).setUnit(flag);
-                    sendWorldInfo(ctx);
-                    sendUnits(ctx);
-                    channels.stream().filter(channel -> channel != ctx.channel()).forEach(channel -> {
-                        try {
-                            channel.writeAndFlush(new UnitSpawnClientBoundPacket(dragon));
-                            channel.writeAndFlush(new UnitSpawnClientBoundPacket(flag));
-                        } catch (SQLException exception) {
-                            server.getLogger().log(SEVERE, "Failed to send unit spawn packet", exception);
-                        }
-                    });
-                    channels.writeAndFlush(new ChatMessageClientBoundPacket(player.getName() + " joined the game for the first time!"));
+                    server.getCommandQueue().submit(() -> spawnStartingUnits(ctx, player));
                 } else {
                     ctx.writeAndFlush(new PlayerLoginResponseClientBoundPacket("Sign up unsuccessful: that username is already in use", false));
                 }
@@ -111,9 +98,11 @@ public class LD33ServerHandler extends ChannelHandlerAdapter {
                             ctx.channel().attr(PLAYER).set(player);
                             ctx.writeAndFlush(new PlayerLoginResponseClientBoundPacket("Login successful. Entering the game world...", true));
                             channels.writeAndFlush(new PlayerJoinClientBoundPacket(player.getUUID(), player.getName(), player.getResources()));
-                            sendWorldInfo(ctx);
-                            sendUnits(ctx);
-                            channels.writeAndFlush(new ChatMessageClientBoundPacket(player.getName() + " joined the game. Welcome back!"));
+                            server.getCommandQueue().submit(() -> {
+                                sendWorldInfo(ctx);
+                                sendUnits(ctx);
+                                channels.writeAndFlush(new ChatMessageClientBoundPacket(player.getName() + " joined the game. Welcome back!"));
+                            });
                         } else {
                             ctx.writeAndFlush(new PlayerLoginResponseClientBoundPacket("Login unsuccessful: already logged in", false));
                         }
@@ -133,56 +122,105 @@ public class LD33ServerHandler extends ChannelHandlerAdapter {
             channels.writeAndFlush(new ChatMessageClientBoundPacket(ctx.channel().attr(PLAYER).get().getName() + " left the game"));
         } else if (msg instanceof UnitSpawnServerBoundPacket) {
             UnitSpawnServerBoundPacket packet = (UnitSpawnServerBoundPacket) msg;
-            Unit unit = packet.getUnit(server.getWorld());
-            unit.getTile().setUnit(unit);
+            server.getCommandQueue().submit(() -> {
+                Unit unit = packet.getUnit(server.getWorld());
+                unit.getTile().setUnit(unit);
+            });
         } else if (msg instanceof UnitMoveServerBoundPacket) {
             UnitMoveServerBoundPacket packet = (UnitMoveServerBoundPacket) msg;
-            Unit unit = Unit.getByUUID(server.getDatabaseConnection(), server.getWorld(), packet.getUnitUUID());
-            if (unit != null) {
-                Tile tile = server.getWorld().getTileAt(packet.getTargetX(), packet.getTargetY());
-                if (tile != null) {
-                    unit.moveTo(tile);
-                    if (tile.getUnit() != null) {
-                        if (tile.getUnit().getPlayerUUID().toString().equals(ctx.channel().attr(PLAYER).get().getUUID().toString())) {
-                            ctx.writeAndFlush(new ChatMessageClientBoundPacket("You cannot destroy your own buildings!"));
-                        }
-                    }
-                    channels.writeAndFlush(new UnitMoveClientBoundPacket(unit, unit.getTile().getX(), unit.getTile().getY(), packet.getTargetX(), packet.getTargetY()));
-                }
-            }
+            server.getCommandQueue().submit(() -> moveUnit(ctx, packet.getUnitUUID(), packet.getTargetX(), packet.getTargetY()));
         } else if (msg instanceof ChatMessageServerBoundPacket) {
             ChatMessageServerBoundPacket packet = (ChatMessageServerBoundPacket) msg;
             channels.writeAndFlush(new ChatMessageClientBoundPacket(ctx.channel().attr(PLAYER).get().getName() + ": " + packet.getMessage()));
         } else if (msg instanceof UnitPurchaseServerBoundPacket) {
             UnitPurchaseServerBoundPacket packet = (UnitPurchaseServerBoundPacket) msg;
-            Player player = ctx.channel().attr(PLAYER).get();
-            int cost = server.getEconomyManager().getResourceCost(packet.getUnitType());
-            Tile tile = server.getWorld().getTileAt(packet.getX(), packet.getY());
-            if (tile.getUnit() == null) {
-                if (player.getResources() >= cost) {
-                    player.setResources(player.getResources() - cost);
-                    player.update();
-                    switch (packet.getUnitType()) {
-                        case "wall":
-                            Wall wall = new Wall(server.getDatabaseConnection(), player, tile, System.currentTimeMillis() + (server.getEconomyManager().getTimeCost(packet.getUnitType()) * 60000));
-                            wall.getTile().setUnit(wall);
-                            channels.writeAndFlush(new UnitSpawnClientBoundPacket(wall));
-                            break;
-                        case "flag":
-                            Flag flag = new Flag(server.getDatabaseConnection(), player, tile, System.currentTimeMillis() + (server.getEconomyManager().getTimeCost(packet.getUnitType()) * 60000));
-                            flag.getTile().setUnit(flag);
-                            channels.writeAndFlush(new UnitSpawnClientBoundPacket(flag));
-                            break;
+            server.getCommandQueue().submit(() -> purchaseUnit(ctx, packet));
+        } else if (msg instanceof PlayerInformationServerBoundPacket) {
+            PlayerInformationServerBoundPacket packet = (PlayerInformationServerBoundPacket) msg;
+            ctx.writeAndFlush(new PlayerInformationClientBoundPacket(Player.getByUUID(server.getDatabaseConnection(), packet.getPlayerUUID())));
+        }
+    }
+
+    private void spawnStartingUnits(ChannelHandlerContext ctx, Player player) throws SQLException {
+        Random random = new Random();
+        int startX = random.nextInt(server.getWorld().getWidth() - 1) + 1;
+        int startY = random.nextInt(server.getWorld().getHeight() - 1) + 1;
+        Tile startTile = server.getWorld().getTileAt(startX, startY);
+        while (startTile.getUnit() != null) {
+            startX = random.nextInt(server.getWorld().getWidth() - 1) + 1;
+            startY = random.nextInt(server.getWorld().getHeight() - 1) + 1;
+            startTile = server.getWorld().getTileAt(startX, startY);
+        }
+        Dragon dragon = new Dragon(server.getDatabaseConnection(), UUID.randomUUID(), player.getUUID(), startTile, System.currentTimeMillis());
+        Unit.cacheUnit(dragon);
+        startTile.setUnit(dragon);
+        Flag flag = new Flag(server.getDatabaseConnection(), UUID.randomUUID(), player.getUUID(), startTile.getAdjacent(0, -1), System.currentTimeMillis());
+        Unit.cacheUnit(flag);
+        startTile.getAdjacent(0, -1).setUnit(flag);
+        sendWorldInfo(ctx);
+        sendUnits(ctx);
+        UnitSpawnClientBoundPacket dragonSpawn = new UnitSpawnClientBoundPacket(dragon);
+        UnitSpawnClientBoundPacket flagSpawn = new UnitSpawnClientBoundPacket(flag);
+        channels.stream().filter(channel -> channel != ctx.channel()).forEach(channel -> {
+            channel.writeAndFlush(dragonSpawn);
+            channel.writeAndFlush(flagSpawn);
+        });
+        channels.writeAndFlush(new ChatMessageClientBoundPacket(player.getName() + " joined the game for the first time!"));
+        server.getDatabaseWriter().submit(new UnitSnapshot(dragon)::insert);
+        server.getDatabaseWriter().submit(new UnitSnapshot(flag)::insert);
+    }
+
+    private void moveUnit(ChannelHandlerContext ctx, UUID unitUUID, int targetX, int targetY) throws SQLException {
+        // units in the world are all cached, so there is no need to go to the database for one
+        Unit unit = Unit.getByUUID(null, server.getWorld(), unitUUID);
+        if (unit == null || unit.getTile() == null || unit.getTile().getUnit() != unit) return;
+        Tile tile = server.getWorld().getTileAt(targetX, targetY);
+        if (tile != null) {
+            if (unit.moveTo(tile)) {
+                if (tile.getUnit() != null) {
+                    if (tile.getUnit().getPlayerUUID().toString().equals(ctx.channel().attr(PLAYER).get().getUUID().toString())) {
+                        ctx.writeAndFlush(new ChatMessageClientBoundPacket("You cannot destroy your own buildings!"));
                     }
-                } else {
-                    ctx.writeAndFlush(new ChatMessageClientBoundPacket("You do not have the resources to build that."));
                 }
+                channels.writeAndFlush(new UnitMoveClientBoundPacket(unit, unit.getTile().getX(), unit.getTile().getY(), unit.getTarget().getX(), unit.getTarget().getY()));
             } else {
-                ctx.writeAndFlush(new ChatMessageClientBoundPacket("You can't build there."));
+                ctx.writeAndFlush(new ChatMessageClientBoundPacket("That tile can't be reached!"));
             }
-        } else if (msg instanceof PlayerInformationServerBoundPacket) {
-            PlayerInformationServerBoundPacket packet = (PlayerInformationServerBoundPacket) msg;
-            ctx.writeAndFlush(new PlayerInformationClientBoundPacket(Player.getByUUID(server.getDatabaseConnection(), packet.getPlayerUUID())));
+        }
+    }
+
+    private void purchaseUnit(ChannelHandlerContext ctx, UnitPurchaseServerBoundPacket packet) throws SQLException {
+        Player player = ctx.channel().attr(PLAYER).get();
+        int cost = server.getEconomyManager().getResourceCost(packet.getUnitType());
+        Tile tile = server.getWorld().getTileAt(packet.getX(), packet.getY());
+        if (tile.getUnit() == null) {
+            if (player.getResources() >= cost) {
+                player.setResources(player.getResources() - cost);
+                long completionTime = System.currentTimeMillis() + (server.getEconomyManager().getTimeCost(packet.getUnitType()) * 60000);
+                Unit unit;
+                switch (packet.getUnitType()) {
+                    case "wall":
+                        unit = new Wall(server.getDatabaseConnection(), UUID.randomUUID(), player.getUUID(), tile, completionTime);
+                        break;
+                    case "flag":
+                        unit = new Flag(server.getDatabaseConnection(), UUID.randomUUID(), player.getUUID(), tile, completionTime);
+                        break;
+                    default:
+                        unit = null;
+                        break;
+                }
+                if (unit != null) {
+                    Unit.cacheUnit(unit);
+                    tile.setUnit(unit);
+                    server.getDatabaseWriter().submit(new UnitSnapshot(unit)::insert);
+                    channels.writeAndFlush(new UnitSpawnClientBoundPacket(unit));
+                }
+                server.getWorld().markDirty(player);
+            } else {
+                ctx.writeAndFlush(new ChatMessageClientBoundPacket("You do not have the resources to build that."));
+            }
+        } else {
+            ctx.writeAndFlush(new ChatMessageClientBoundPacket("You can't build there."));
         }
     }
 
@@ -191,19 +229,11 @@ public class LD33ServerHandler extends ChannelHandlerAdapter {
     }
 
     private void sendUnits(ChannelHandlerContext ctx) {
-        for (int x = 0; x < server.getWorld().getWidth(); x++) {
-            for (int y = 0; y < server.getWorld().getHeight(); y++) {
-                Tile tile = server.getWorld().getTileAt(x, y);
-                if (tile != null) {
-                    Unit unit = tile.getUnit();
-                    if (unit != null) {
-                        try {
-                            ctx.writeAndFlush(new UnitSpawnClientBoundPacket(unit));
-                        } catch (SQLException exception) {
-                            server.getLogger().log(SEVERE, "Failed to send unit " + unit.getUUID().toString() + " to " + ctx.attr(PLAYER).get().getName(), exception);
-                        }
-                    }
-                }
+        for (Unit unit : server.getWorld().getUnits()) {
+            try {
+                ctx.writeAndFlush(new UnitSpawnClientBoundPacket(unit));
+            } catch (SQLException exception) {
+                server.getLogger().log(SEVERE, "Failed to send unit " + unit.getUUID().toString() + " to " + ctx.attr(PLAYER).get().getName(), exception);
             }
         }
     }
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2015 Ross Binden
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seventh_root.ld33.server.tick;
+
+import com.seventh_root.ld33.server.LD33Server;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.lang.System.nanoTime;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.logging.Level.INFO;
+import static java.util.logging.Level.SEVERE;
+
+/**
+ * A lock-free queue of commands submitted from network threads and executed on the tick thread.
+ * <p>
+ * Anything that reads or mutates the world or a player's resources is submitted here, so the
+ * tick thread is the only writer of game state. Decryption and database queries stay on the
+ * network threads, so they don't hold up the tick. Each drain only runs the commands that
+ * were queued when it started; commands submitted during the drain wait for the next tick.
+ */
+public class CommandQueue {
+
+    private LD33Server server;
+    private Queue<Command> commands;
+    private AtomicInteger depth;
+    private AtomicInteger maxDepth;
+    private TickHistogram drainHistogram;
+    private long executed;
+    private long intervalExecuted;
+
+    public CommandQueue(LD33Server server) {
+        this.server = server;
+        this.commands = new ConcurrentLinkedQueue<>();
+        this.depth = new AtomicInteger();
+        this.maxDepth = new AtomicInteger();
+        this.drainHistogram = new TickHistogram();
+    }
+
+    public void submit(Command command) {
+        commands.add(command);
+        maxDepth.accumulateAndGet(depth.incrementAndGet(), Math::max);
+    }
+
+    public void drain() {
+        long startTime = nanoTime();
+        int remaining = depth.get();
+        Command command;
+        while (remaining-- > 0 && (command = commands.poll()) != null) {
+            depth.decrementAndGet();
+            try {
+                command.execute();
+            } catch (Exception exception) {
+                server.getLogger().log(SEVERE, "Failed to execute command", exception);
+            }
+            executed++;
+            intervalExecuted++;
+        }
+        drainHistogram.record(nanoTime() - startTime);
+    }
+
+    public int getDepth() {
+        return depth.get();
+    }
+
+    public int getMaxDepth() {
+        return maxDepth.get();
+    }
+
+    public long getExecuted() {
+        return executed;
+    }
+
+    public TickHistogram getDrainHistogram() {
+        return drainHistogram;
+    }
+
+    public void report() {
+        server.getLogger().log(
+                INFO,
+                String.format(
+                        "%d commands: depth %d (max %d), drain p50 %.2fms, p99 %.2fms, max %.2fms",
+                        intervalExecuted,
+                        getDepth(),
+                        maxDepth.getAndSet(getDepth()),
+                        toMillis(drainHistogram.getPercentileNanos(50)),
+                        toMillis(drainHistogram.getPercentileNanos(99)),
+                        toMillis(drainHistogram.getMaxNanos())
+                )
+        );
+        drainHistogram.reset();
+        intervalExecuted = 0;
+    }
+
+    private double toMillis(long nanos) {
+        return nanos / (double) MILLISECONDS.toNanos(1);
+    }
+
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2015 Ross Binden
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seventh_root.ld33.server.tick;
+
+import com.seventh_root.ld33.common.world.PathfindingMetrics;
+import com.seventh_root.ld33.server.LD33Server;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.logging.Level.INFO;
+import static java.util.logging.Level.WARNING;
+
+/**
+ * Reports how the world's path searches have gone through the server logger.
+ * <p>
+ * Each report covers the time since the last, going by the difference between the world's
+ * {@link PathfindingMetrics} snapshots.
+ */
+public class PathfindingReporter {
+
+    private LD33Server server;
+    private PathfindingMetrics reported;
+
+    public PathfindingReporter(LD33Server server) {
+        this.server = server;
+        this.reported = server.getWorld().snapshotPathfindingMetrics();
+    }
+
+    /**
+     * Logs the path searches since the last report.
+     *
+     * @param ticks the number of ticks since the last report
+     */
+    public void report(long ticks) {
+        PathfindingMetrics metrics = server.getWorld().snapshotPathfindingMetrics();
+        reportPathCache(metrics, reported);
+        if (metrics.isAsyncSearching()) reportAsyncSearches(metrics, reported);
+        else if (metrics.isSlicedSearching()) reportSlicedSearches(metrics, reported, ticks);
+        if (metrics.getLandmarks() > 0) reportLandmarks(metrics, reported);
+        if (metrics.isPlanning()) reportPlanning(metrics, reported);
+        reported = metrics;
+    }
+
+    private void reportPathCache(PathfindingMetrics metrics, PathfindingMetrics previous) {
+        long hits = metrics.getPathCacheHits() - previous.getPathCacheHits();
+        long misses = metrics.getPathCacheMisses() - previous.getPathCacheMisses();
+        server.getLogger().log(
+                INFO,
+                String.format(
+                        "%d path searches: %d cached (%.1f%%), %d searched, %d of %d cache entries used",
+                        hits + misses,
+                        hits,
+                        hits + misses > 0 ? hits * 100D / (hits + misses) : 0D,
+                        misses,
+                        metrics.getPathCacheSize(),
+                        metrics.getPathCacheCapacity()
+                )
+        );
+        server.getLogger().log(
+                INFO,
+                String.format(
+                        "%d paths read from flow fields, %d fields built, %d paths repaired",
+                        metrics.getFlowFieldPaths() - previous.getFlowFieldPaths(),
+                        metrics.getFlowFieldsBuilt() - previous.getFlowFieldsBuilt(),
+                        metrics.getPathRepairs() - previous.getPathRepairs()
+                )
+        );
+    }
+
+    private void reportAsyncSearches(PathfindingMetrics metrics, PathfindingMetrics previous) {
+        long searches = metrics.getBackgroundSearches() - previous.getBackgroundSearches();
+        long queueNanos = metrics.getQueueNanos() - previous.getQueueNanos();
+        long searchNanos = metrics.getSearchNanos() - previous.getSearchNanos();
+        server.getLogger().log(
+                INFO,
+                String.format(
+                        "%d background path searches: queued mean %.2fms, max %.2fms, searched mean %.2fms, max %.2fms, %d pending",
+                        searches,
+                        searches > 0 ? toMillis(queueNanos / searches) : 0D,
+                        toMillis(metrics.getMaxQueueNanos()),
+                        searches > 0 ? toMillis(searchNanos / searches) : 0D,
+                        toMillis(metrics.getMaxSearchNanos()),
+                        metrics.getPendingSearches()
+                )
+        );
+    }
+
+    private void reportSlicedSearches(PathfindingMetrics metrics, PathfindingMetrics previous, long ticks) {
+        long expansions = metrics.getExpansions() - previous.getExpansions();
+        server.getLogger().log(
+                INFO,
+                String.format(
+                        "%d path search nodes expanded (%.0f per tick of %d), %d searches in progress",
+                        expansions,
+                        ticks > 0 ? expansions / (double) ticks : 0D,
+                        metrics.getExpansionsPerTick(),
+                        metrics.getActiveSearches()
+                )
+        );
+    }
+
+    private void reportLandmarks(PathfindingMetrics metrics, PathfindingMetrics previous) {
+        long builds = metrics.getLandmarkBuilds() - previous.getLandmarkBuilds();
+        server.getLogger().log(INFO, String.format("%d landmarks %s, %d builds", metrics.getLandmarks(), metrics.isLandmarksInUse() ? "in use" : "not in use", builds));
+        long failures = metrics.getLandmarkFailures() - previous.getLandmarkFailures();
+        if (failures > 0) server.getLogger().log(WARNING, String.format("%d landmark builds failed", failures), metrics.getLastLandmarkFailure());
+    }
+
+    private void reportPlanning(PathfindingMetrics metrics, PathfindingMetrics previous) {
+        long plans = metrics.getPlans() - previous.getPlans();
+        server.getLogger().log(INFO, String.format("%d movement plans %d steps ahead, %d tiles reserved", plans, metrics.getPlanWindow(), metrics.getReservations()));
+    }
+
+    private double toMillis(long nanos) {
+        return nanos / (double) MILLISECONDS.toNanos(1);
+    }
+
+}
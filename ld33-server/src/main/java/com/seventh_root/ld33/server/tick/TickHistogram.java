@@ -0,0 +1,89 @@
+/*
+ * Copyright 2015 Ross Binden
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seventh_root.ld33.server.tick;
+
+import static java.lang.Long.numberOfLeadingZeros;
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * A fixed-size histogram of durations.
+ * Buckets are powers of two in microseconds, so recording never allocates.
+ */
+public class TickHistogram {
+
+    private static final int BUCKETS = 32;
+
+    private long[] counts;
+    private long count;
+    private long total;
+    private long max;
+
+    public TickHistogram() {
+        counts = new long[BUCKETS];
+    }
+
+    public void record(long nanos) {
+        long micros = NANOSECONDS.toMicros(nanos);
+        int bucket = micros <= 0 ? 0 : Math.min(64 - numberOfLeadingZeros(micros), BUCKETS - 1);
+        counts[bucket]++;
+        count++;
+        total += nanos;
+        if (nanos > max) max = nanos;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getMeanNanos() {
+        return count == 0 ? 0 : total / count;
+    }
+
+    public long getMaxNanos() {
+        return max;
+    }
+
+    /**
+     * Returns the upper bound of the bucket containing the given percentile.
+     *
+     * @param percentile the percentile, from 0 to 100
+     * @return an upper bound for the percentile, in nanoseconds
+     */
+    public long getPercentileNanos(double percentile) {
+        if (count == 0) return 0;
+        long threshold = (long) Math.ceil(count * percentile / 100D);
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += counts[bucket];
+            if (seen >= threshold) {
+                return Math.min(MICROSECONDS.toNanos(1L << bucket), max);
+            }
+        }
+        return max;
+    }
+
+    public void reset() {
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            counts[bucket] = 0;
+        }
+        count = 0;
+        total = 0;
+        max = 0;
+    }
+
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2015 Ross Binden
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.seventh_root.ld33.server.tick;
+
+import com.seventh_root.ld33.server.LD33Server;
+
+import java.util.concurrent.locks.LockSupport;
+
+import static java.lang.System.nanoTime;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static java.util.logging.Level.INFO;
+import static java.util.logging.Level.WARNING;
+
+/**
+ * Runs a task at a fixed rate on the calling thread.
+ * <p>
+ * Deadlines are scheduled from {@link System#nanoTime()} so the loop doesn't drift.
+ * After a slow tick the scheduler runs back-to-back ticks to catch up, but never falls
+ * more than <code>maxCatchUpTicks</code> behind; anything beyond that is dropped and
+ * counted as skipped. Tick durations are recorded and reported through the server logger.
+ */
+public class TickScheduler {
+
+    private LD33Server server;
+    private Runnable task;
+    private long tickNanos;
+    private int maxCatchUpTicks;
+    private long reportIntervalNanos;
+
+    private TickHistogram histogram;
+    private long ticks;
+    private long overruns;
+    private long skippedTicks;
+    private long intervalOverruns;
+    private long intervalSkippedTicks;
+
+    public TickScheduler(LD33Server server, Runnable task, int ticksPerSecond, int maxCatchUpTicks, int reportIntervalSeconds) {
+        this.server = server;
+        this.task = task;
+        this.tickNanos = SECONDS.toNanos(1) / ticksPerSecond;
+        this.maxCatchUpTicks = maxCatchUpTicks;
+        this.reportIntervalNanos = SECONDS.toNanos(reportIntervalSeconds);
+        this.histogram = new TickHistogram();
+    }
+
+    public void run() {
+        long nextTick = nanoTime();
+        long lastReport = nextTick;
+        while (server.isRunning()) {
+            long startTime = nanoTime();
+            task.run();
+            long endTime = nanoTime();
+            long duration = endTime - startTime;
+            histogram.record(duration);
+            ticks++;
+            if (duration > tickNanos) {
+                overruns++;
+                intervalOverruns++;
+            }
+            nextTick += tickNanos;
+            long behind = endTime - nextTick;
+            if (behind > maxCatchUpTicks * tickNanos) {
+                long skipped = behind / tickNanos - maxCatchUpTicks;
+                skippedTicks += skipped;
+                intervalSkippedTicks += skipped;
+                nextTick += skipped * tickNanos;
+            }
+            if (endTime - lastReport >= reportIntervalNanos) {
+                report();
+                lastReport = endTime;
+            }
+            long sleep;
+            while ((sleep = nextTick - nanoTime()) > 0) {
+                LockSupport.parkNanos(sleep);
+            }
+        }
+    }
+
+    private void report() {
+        server.getLogger().log(
+                intervalOverruns > 0 ? WARNING : INFO,
+                String.format(
+                        "%d ticks: mean %.2fms, p50 %.2fms, p99 %.2fms, max %.2fms, %d over the %.2fms budget, %d skipped",
+                        histogram.getCount(),
+                        toMillis(histogram.getMeanNanos()),
+                        toMillis(histogram.getPercentileNanos(50)),
+                        toMillis(histogram.getPercentileNanos(99)),
+                        toMillis(histogram.getMaxNanos()),
+                        intervalOverruns,
+                        toMillis(tickNanos),
+                        intervalSkippedTicks
+                )
+        );
+        server.getCommandQueue().report();
+        server.getPathfindingReporter().report(histogram.getCount());
+        histogram.reset();
+        intervalOverruns = 0;
+        intervalSkippedTicks = 0;
+    }
+
+    private double toMillis(long nanos) {
+        return nanos / (double) MILLISECONDS.toNanos(1);
+    }
+
+    public long getTicks() {
+        return ticks;
+    }
+
+    public long getOverruns() {
+        return overruns;
+    }
+
+    public long getSkippedTicks() {
+        return skippedTicks;
+    }
+
+    public TickHistogram getHistogram() {
+        return histogram;
+    }
+
+}